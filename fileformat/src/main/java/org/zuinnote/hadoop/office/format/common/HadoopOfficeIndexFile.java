@@ -0,0 +1,162 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.common;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.logging.Log;
+
+import org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException;
+import org.zuinnote.hadoop.office.format.common.parser.MSExcelWorkbookIndex;
+
+/**
+* Reads and writes the index of an Excel file (cf. MSExcelWorkbookIndex) as a sidecar file next to it (e.g. test.xlsx.hoidx for test.xlsx).
+* The sidecar contains the sheet names, the zip entries of the sheets, the row offsets of every n-th row and the number of shared strings. It is created once (e.g. by HadoopOfficeIndexTool) so that the splits can be created and the sheets can be read without scanning the whole file each time.
+* A sidecar is ignored if the length or modification time of the Excel file have changed since it has been created.
+*
+**/
+
+public class HadoopOfficeIndexFile {
+private static final Log LOG = LogFactory.getLog(HadoopOfficeIndexFile.class.getName());
+public static final String SUFFIX=".hoidx";
+private static final byte[] ZIP_HEADER={'P','K',3,4};
+
+private HadoopOfficeIndexFile() {
+}
+
+/*
+* Returns the path of the sidecar of an Excel file
+*
+* @param file path of the Excel file
+*
+* @return path of the sidecar
+*
+*/
+public static Path getIndexPath(Path file) {
+	return new Path(file.getParent(),file.getName()+HadoopOfficeIndexFile.SUFFIX);
+}
+
+/*
+* Reads the sidecar of an Excel file
+*
+* @param conf configuration of the file system
+* @param file path of the Excel file
+* @param hocr read configuration
+*
+* @return index or null if there is no sidecar or it is outdated
+*
+* @throws java.io.IOException in case of errors reading the sidecar
+*
+*/
+public static MSExcelWorkbookIndex read(Configuration conf, Path file, HadoopOfficeReadConfiguration hocr) throws IOException {
+	Path indexPath=getIndexPath(file);
+	FileSystem fs = file.getFileSystem(conf);
+	if (!fs.exists(indexPath)) {
+		return null;
+	}
+	FileStatus fileStatus = fs.getFileStatus(file);
+	MSExcelWorkbookIndex result = new MSExcelWorkbookIndex(hocr);
+	FSDataInputStream indexIn = fs.open(indexPath);
+	try {
+		result.readFields(indexIn);
+	} catch (IOException e) {
+		LOG.error(e);
+		LOG.warn("Cannot read index \""+indexPath+"\". It is ignored");
+		return null;
+	} finally {
+		indexIn.close();
+	}
+	if ((result.getFileLength()!=fileStatus.getLen()) || (result.getModificationTime()!=fileStatus.getModificationTime())) {
+		LOG.warn("Index \""+indexPath+"\" is outdated. It is ignored");
+		return null;
+	}
+	LOG.debug("Using index \""+indexPath+"\"");
+	return result;
+}
+
+/*
+* Creates the index of an (uncompressed) Excel file by reading it once
+*
+* @param conf configuration of the file system
+* @param file path of the Excel file
+* @param hocr read configuration (e.g. password)
+* @param rowInterval every rowInterval-th row of a sheet is stored in the index
+*
+* @return index
+*
+* @throws java.io.IOException in case of errors reading the Excel file
+* @throws org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException in case the Excel file cannot be read
+*
+*/
+public static MSExcelWorkbookIndex create(Configuration conf, Path file, HadoopOfficeReadConfiguration hocr, int rowInterval) throws IOException, FormatNotUnderstoodException {
+	FileSystem fs = file.getFileSystem(conf);
+	FileStatus fileStatus = fs.getFileStatus(file);
+	MSExcelWorkbookIndex result = new MSExcelWorkbookIndex(hocr);
+	result.setRowInterval(rowInterval);
+	result.setFileLength(fileStatus.getLen());
+	result.setModificationTime(fileStatus.getModificationTime());
+	FSDataInputStream fileIn = fs.open(file);
+	try {
+		result.parse(fileIn);
+		// the zip directory can only be used for unencrypted new Excel files (.xlsx)
+		byte[] header = new byte[ZIP_HEADER.length];
+		if (fileStatus.getLen()>=header.length) {
+			fileIn.readFully(0, header);
+			if (Arrays.equals(header,ZIP_HEADER)) {
+				result.readZipDirectory(fileIn, fileStatus.getLen());
+			}
+		}
+	} finally {
+		fileIn.close();
+	}
+	return result;
+}
+
+/*
+* Writes the sidecar of an Excel file. An existing sidecar is overwritten
+*
+* @param conf configuration of the file system
+* @param file path of the Excel file
+* @param index index of the Excel file
+*
+* @return path of the sidecar
+*
+* @throws java.io.IOException in case of errors writing the sidecar
+*
+*/
+public static Path write(Configuration conf, Path file, MSExcelWorkbookIndex index) throws IOException {
+	Path indexPath=getIndexPath(file);
+	FileSystem fs = indexPath.getFileSystem(conf);
+	FSDataOutputStream indexOut = fs.create(indexPath, true);
+	try {
+		index.write(indexOut);
+	} finally {
+		indexOut.close();
+	}
+	return indexPath;
+}
+
+}
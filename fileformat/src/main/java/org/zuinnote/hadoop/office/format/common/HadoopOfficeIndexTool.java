@@ -0,0 +1,118 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.common;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.logging.Log;
+
+import org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException;
+import org.zuinnote.hadoop.office.format.common.parser.MSExcelWorkbookIndex;
+
+/**
+* Creates the index sidecar (cf. HadoopOfficeIndexFile) for Excel files, e.g. after they have been uploaded:
+* hadoop jar hadoopoffice-fileformat.jar org.zuinnote.hadoop.office.format.common.HadoopOfficeIndexTool [-D option=value] file1.xlsx [file2.xlsx ...]
+* Files can be specified as glob patterns. The following options are supported:
+* hadoopoffice.read.index.rowinterval: every n-th row of a sheet is stored in the index. Smaller values allow smaller row ranges (cf. hadoopoffice.read.split.rows), but lead to larger indexes. Default: 10000
+* hadoopoffice.read.security.crypt.password: password of encrypted files
+*
+**/
+
+public class HadoopOfficeIndexTool extends Configured implements Tool {
+private static final Log LOG = LogFactory.getLog(HadoopOfficeIndexTool.class.getName());
+
+public HadoopOfficeIndexTool() {
+	// nothing needed here
+}
+
+/*
+* Creates the sidecars for the given files
+*
+* @param args files (glob patterns)
+*
+* @return 0 if all sidecars have been created, 1 if not
+*
+*/
+@Override
+public int run(String[] args) throws Exception {
+	if (args.length==0) {
+		LOG.error("Usage: HadoopOfficeIndexTool [-D option=value] file1 [file2 ...]");
+		return 1;
+	}
+	Configuration conf = getConf();
+	HadoopOfficeReadConfiguration hocr = new HadoopOfficeReadConfiguration(conf);
+	int result=0;
+	for (String currentArg: args) {
+		Path currentPattern = new Path(currentArg);
+		FileSystem fs = currentPattern.getFileSystem(conf);
+		FileStatus[] currentFiles = fs.globStatus(currentPattern);
+		if ((currentFiles==null) || (currentFiles.length==0)) {
+			LOG.error("No files found for \""+currentArg+"\"");
+			result=1;
+			continue;
+		}
+		for (FileStatus currentFile: currentFiles) {
+			if (currentFile.isDirectory() || currentFile.getPath().getName().endsWith(HadoopOfficeIndexFile.SUFFIX)) {
+				continue;
+			}
+			if (!this.createIndex(conf, currentFile.getPath(), hocr)) {
+				result=1;
+			}
+		}
+	}
+	return result;
+}
+
+/*
+* Creates the sidecar for one file
+*
+* @param conf configuration of the file system
+* @param file Excel file
+* @param hocr read configuration
+*
+* @return true, if the sidecar has been created, false if not
+*
+*/
+private boolean createIndex(Configuration conf, Path file, HadoopOfficeReadConfiguration hocr) {
+	try {
+		hocr.setFileName(file.getName());
+		MSExcelWorkbookIndex currentIndex = HadoopOfficeIndexFile.create(conf, file, hocr, hocr.getIndexRowInterval());
+		Path indexPath = HadoopOfficeIndexFile.write(conf, file, currentIndex);
+		LOG.info("Created index \""+indexPath+"\" for \""+file+"\"");
+		return true;
+	} catch (FormatNotUnderstoodException | IOException e) {
+		LOG.error(e);
+		LOG.error("Cannot create index for \""+file+"\"");
+		return false;
+	}
+}
+
+public static void main(String[] args) throws Exception {
+	int res = ToolRunner.run(new Configuration(), new HadoopOfficeIndexTool(), args);
+	System.exit(res);
+}
+
+}
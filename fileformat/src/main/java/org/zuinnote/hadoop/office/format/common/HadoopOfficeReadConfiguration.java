@@ -19,6 +19,10 @@ import java.util.Locale;
 import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.poi.ss.usermodel.DataFormatter;
+
+import org.zuinnote.hadoop.office.format.common.parser.MSExcelKeyCache;
+import org.zuinnote.hadoop.office.format.common.parser.MSExcelWorkbookIndex;
 
 /**
  * read the configuration for reading office files from a Hadoop configuration
@@ -29,32 +33,89 @@ import org.apache.hadoop.conf.Configuration;
 public class HadoopOfficeReadConfiguration {
 public static final String CONF_MIMETYPE="hadoopoffice.read.mimeType";
 public static final String CONF_SHEETS="hadoopoffice.read.sheets";
+public static final String CONF_COLUMNS="hadoopoffice.read.columns";
 public static final String CONF_LOCALE="hadoopoffice.read.locale.bcp47";
 public static final String CONF_LINKEDWB="hadoopoffice.read.linkedworkbooks";
 public static final String CONF_IGNOREMISSINGWB="hadoopoffice.read.ignoremissinglinkedworkbooks";
 public static final String CONF_DECRYPT="hadoopoffice.read.security.crypt.password";
 public static final String CONF_DECRYPTLINKEDWBBASE="hadoopoffice.read.security.crypt.linkedworkbooks.";
+public static final String CONF_KEYCACHE="hadoopoffice.read.security.crypt.keyCache";
 public static final String CONF_FILTERMETADATA = "hadoopoffice.read.filter.metadata."; // base: all these properties (e.g. hadoopoffice.read.filter.metadata.author) will be handed over to the corresponding reader which does the filtering!
+public static final String CONF_FILTERROWS="hadoopoffice.read.filter.rows";
+public static final String CONF_FILTERCELL="hadoopoffice.read.filter.cell."; // base: e.g. hadoopoffice.read.filter.cell.B is a regular expression for the cells of column B
+public static final String CONF_TYPEDVALUES="hadoopoffice.read.typedValues";
+public static final String CONF_TYPEDVALUES_FORMAT="hadoopoffice.read.typedValues.format";
+public static final String CONF_REUSEOBJECTS="hadoopoffice.read.reuseObjects";
 public static final String CONF_LOWFOOTPRINT="hadoopoffice.read.lowFootprint";
+public static final String CONF_LOWFOOTPRINT_CACHEROWS="hadoopoffice.read.lowFootprint.cacherows";
+public static final String CONF_LOWFOOTPRINT_SST_MEMORYLIMIT="hadoopoffice.read.lowFootprint.sharedstrings.memorylimit";
+public static final String CONF_LOWFOOTPRINT_SHEETTHREADS="hadoopoffice.read.lowFootprint.sheetThreads";
+public static final String CONF_PIPELINE="hadoopoffice.read.pipeline";
+public static final String CONF_PIPELINE_BUFFERSIZE="hadoopoffice.read.pipeline.buffersize";
+public static final String CONF_SPLIT_SHEETS="hadoopoffice.read.split.sheets";
+public static final String CONF_SPLIT_SHEETSPERSPLIT="hadoopoffice.read.split.sheetspersplit";
+public static final String CONF_SPLIT_ROWS="hadoopoffice.read.split.rows";
+public static final String CONF_INDEX_SIDECAR="hadoopoffice.read.index.sidecar";
+public static final String CONF_INDEX_ROWINTERVAL="hadoopoffice.read.index.rowinterval";
 public static final String DEFAULT_MIMETYPE="";
 public static final String DEFAULT_LOCALE="";
 public static final String DEFAULT_SHEETS="";
+public static final String DEFAULT_COLUMNS="";
+public static final String DEFAULT_FILTERROWS="";
 public static final boolean DEFAULT_LINKEDWB=false;
 public static final boolean DEFAULT_IGNOREMISSINGLINKEDWB=false;
+public static final boolean DEFAULT_KEYCACHE=true;
 
+public static final boolean DEFAULT_TYPEDVALUES=false;
+public static final boolean DEFAULT_TYPEDVALUES_FORMAT=true;
+public static final boolean DEFAULT_REUSEOBJECTS=false;
 public static final boolean DEFAULT_LOWFOOTPRINT=false;
+public static final int DEFAULT_LOWFOOTPRINT_CACHEROWS=1000;
+public static final long DEFAULT_LOWFOOTPRINT_SST_MEMORYLIMIT=0L;
+public static final int DEFAULT_LOWFOOTPRINT_SHEETTHREADS=1;
+public static final boolean DEFAULT_PIPELINE=false;
+public static final int DEFAULT_PIPELINE_BUFFERSIZE=64*1024;
+public static final boolean DEFAULT_SPLIT_SHEETS=false;
+public static final int DEFAULT_SPLIT_SHEETSPERSPLIT=1;
+public static final int DEFAULT_SPLIT_ROWS=0;
+public static final boolean DEFAULT_INDEX_SIDECAR=true;
+public static final int DEFAULT_INDEX_ROWINTERVAL=10000;
 
 private String fileName;
+private long fileLength=0L;
 private String mimeType=null;
 private String localeStrBCP47=null;
 private String sheets=null;
+private String columns=null;
 private Locale locale=null;
 private boolean readLinkedWorkbooks=false;
 private boolean ignoreMissingLinkedWorkbooks=false;	
 private String password=null;
 private Map<String,String> metadataFilter;
+private String rowFilter=null;
+private Map<String,String> cellFilter=null;
 private Map<String,String> linkedWBCredentialMap;
+private boolean keyCache=HadoopOfficeReadConfiguration.DEFAULT_KEYCACHE;
+private boolean typedValues=HadoopOfficeReadConfiguration.DEFAULT_TYPEDVALUES;
+private boolean typedValuesFormat=HadoopOfficeReadConfiguration.DEFAULT_TYPEDVALUES_FORMAT;
+private boolean reuseObjects=HadoopOfficeReadConfiguration.DEFAULT_REUSEOBJECTS;
 private boolean lowFootprint;
+private int lowFootprintCacheRows=HadoopOfficeReadConfiguration.DEFAULT_LOWFOOTPRINT_CACHEROWS;
+private long lowFootprintSharedStringsMemoryLimit=HadoopOfficeReadConfiguration.DEFAULT_LOWFOOTPRINT_SST_MEMORYLIMIT;
+private int lowFootprintSheetThreads=HadoopOfficeReadConfiguration.DEFAULT_LOWFOOTPRINT_SHEETTHREADS;
+private boolean pipeline=HadoopOfficeReadConfiguration.DEFAULT_PIPELINE;
+private int pipelineBufferSize=HadoopOfficeReadConfiguration.DEFAULT_PIPELINE_BUFFERSIZE;
+private boolean splitSheets=HadoopOfficeReadConfiguration.DEFAULT_SPLIT_SHEETS;
+private int sheetsPerSplit=HadoopOfficeReadConfiguration.DEFAULT_SPLIT_SHEETSPERSPLIT;
+private int splitRows=HadoopOfficeReadConfiguration.DEFAULT_SPLIT_ROWS;
+private long rowRangeStart=0L;
+private long rowRangeEnd=0L;
+private long rowRangeOffset=0L;
+private boolean indexSidecar=HadoopOfficeReadConfiguration.DEFAULT_INDEX_SIDECAR;
+private int indexRowInterval=HadoopOfficeReadConfiguration.DEFAULT_INDEX_ROWINTERVAL;
+private MSExcelWorkbookIndex workbookIndex=null;
+private MSExcelKeyCache derivedKeyCache=null;
+private DataFormatter dataFormatter=null;
 
 /*
  * Create an empty configuration
@@ -70,18 +131,36 @@ public HadoopOfficeReadConfiguration() {
  * * hadoopoffice.read.mimeType: Mimetype of the document
 * hadoopoffice.read.locale: Locale of the document (e.g. needed for interpreting spreadsheets) in the BCP47 format (cf. https://tools.ietf.org/html/bcp47). If not specified then default system locale will be used.
 * hadoopoffice.read.sheets: A ":" separated list of sheets to be read. If not specified then all sheets will be read one after the other
+* hadoopoffice.read.columns: A "," separated list of columns (e.g. A), ranges of columns (e.g. F:H) and header names (matched against the first row of each sheet, e.g. "price") to be read. Cells of other columns are skipped (null) without formatting them. Header names that look like a column need to be quoted (e.g. "\"ID\""). If not specified then all columns will be read
 * hadoopoffice.read.linkedworkbooks: true if linkedworkbooks should be fetched. They must be in the same folder as the main workbook. Linked Workbooks will be processed together with the main workbook on one node and thus it should be avoided to have a lot of linked workbooks. It does only read the linked workbooks that are directly linked to the main workbook. Default: false
 * hadoopoffice.read.ignoremissinglinkedworkbooks: true if missing linked workbooks should be ignored. Default: false
 * hadoopoffice.read.security.crypt.password: if set then hadoopoffice will try to decrypt the file
 * hadoopoffice.read.security.crypt.linkedworkbooks.*: if set then hadoopoffice will try to decrypt all the linked workbooks where a password has been specified. If no password is specified then it is assumed that the linked workbook is not encrypted. Example: Property key for file "linkedworkbook1.xlsx" is  "hadoopoffice.read.security.crypt.linkedworkbooks.linkedworkbook1.xslx". Value is the password. You must not include path or protocol information in the filename 
+* hadoopoffice.read.security.crypt.keyCache: true if the keys derived from the passwords of encrypted new Excel files (.xlsx) with agile encryption should be cached by the record reader, so that its files (e.g. the files of a split of CombineExcelFileInputFormat and linked workbooks) with the same password and salt derive the key only once. The cached keys are released with the record reader. The derivation hashes the password many times (usually 100000 times) and takes longer than reading a small file. Default: true
 * hadoopoffice.read.filter.metadata: filters documents according to metadata. For example, hadoopoffice.read.filter.metadata.author will filter by author and the filter defined as value. Filtering is done by the parser and it is recommended that it supports regular expression for filtering, but this is up to the parser!
+* hadoopoffice.read.filter.rows: A "," separated list of row numbers (starting from 1) and ranges of row numbers (e.g. 2-100,200-) of each sheet to be read. Other rows are skipped by the parser. If not specified then all rows will be read
+* hadoopoffice.read.filter.cell.*: filters rows according to the formatted value of a cell. For example, hadoopoffice.read.filter.cell.B=X only reads rows where the cell of column B is "X" and hadoopoffice.read.filter.cell.D=.+ only reads rows where the cell of column D is not empty. The value is a regular expression that needs to match the whole formatted value (empty cells have the value ""). All filters need to match. Filtering is done by the parser before the row is handed over
+* hadoopoffice.read.typedValues: true if the cells should also contain the type of their value (numeric, string, boolean, date, error, blank) and the value as a primitive (cf. SpreadSheetCellDAO.getValueType), so that it does not need to be parsed from the formatted value. Formulas have the type of their (cached) result. Default: false
+* hadoopoffice.read.typedValues.format: false if the values of typed cells should not be formatted according to their cell style and the locale. The formatted value then contains the raw value (e.g. 36525 for the date 1.1.2000, TRUE for booleans), which saves the formatting. Filters on cells (hadoopoffice.read.filter.cell.*) are evaluated on the raw value. Only used if hadoopoffice.read.typedValues is true. Default: true
+* hadoopoffice.read.reuseObjects: true if the arrays of cells and the cells (SpreadSheetCellDAO) returned for a row should be reused for the following rows (similar to the object reuse of Hadoop). A row and its cells are only valid until the next row is read and need to be copied if they should be kept. This avoids creating objects for every row. Default: false
 * hadoopoffice.read.lowfootprint: uses low memory/cpu footprint for reading documents. Note: In this mode certain features are not availanble, such as reading formulas. Default: false
+* hadoopoffice.read.lowFootprint.cacherows: maximum number of decoded rows that are kept in memory in low footprint mode before decoding waits for the rows to be consumed. Default: 1000
+* hadoopoffice.read.lowFootprint.sharedstrings.memorylimit: maximum size in bytes of the shared strings of a new Excel file (.xlsx) that are kept in (off-heap) memory in low footprint mode. Further shared strings are written to a local temporary file. Default: 0 (all shared strings are kept in memory)
+* hadoopoffice.read.lowFootprint.sheetThreads: number of threads decoding the sheets of a new Excel file (.xlsx) concurrently in low footprint mode. Rows are still returned sheet by sheet in the order of the document. Each thread keeps up to hadoopoffice.read.lowFootprint.cacherows decoded rows in memory. Default: 1 (sheets are decoded one after the other)
+* hadoopoffice.read.pipeline: true if reading the file (including decompression with a compression codec) and inflating the XML of the sheets of new Excel files (.xlsx) in low footprint mode should be done by separate threads ahead of parsing, so that I/O, decompression and parsing overlap. Not used for the parts of a file that are read with its index. Default: false
+* hadoopoffice.read.pipeline.buffersize: size in bytes of each of the buffers handed over between the threads if hadoopoffice.read.pipeline is true. Default: 65536
+* hadoopoffice.read.split.sheets: true if one split per sheet (or group of sheets, see hadoopoffice.read.split.sheetspersplit) should be created instead of one split per file. The names of the sheets are read once when the splits are created. If hadoopoffice.read.sheets is defined then only these sheets are distributed. Default: false
+* hadoopoffice.read.split.sheetspersplit: maximum number of sheets per split if hadoopoffice.read.split.sheets is true. Default: 1
+* hadoopoffice.read.split.rows: if greater than 0 then the sheets of new Excel files (.xlsx) are divided into row ranges with at most this number of rows. Each row range becomes a split. The row offsets are determined once per file when the splits are created. Old Excel files (.xls) are split by sheet. Only supported in low footprint mode, otherwise the files are split by sheet. Default: 0 (no row ranges)
+* hadoopoffice.read.index.sidecar: true if the index sidecar of a file (cf. HadoopOfficeIndexFile, e.g. test.xlsx.hoidx) should be used if it exists. Then the splits are created and the sheets are read without scanning the whole file. Default: true
+* hadoopoffice.read.index.rowinterval: every n-th row of a sheet is stored in an index sidecar created by HadoopOfficeIndexTool. Default: 10000
  * 
  * 
  */
 public HadoopOfficeReadConfiguration(Configuration conf) {
     this.mimeType=conf.get(HadoopOfficeReadConfiguration.CONF_MIMETYPE,HadoopOfficeReadConfiguration.DEFAULT_MIMETYPE);
     this.sheets=conf.get(HadoopOfficeReadConfiguration.CONF_SHEETS,HadoopOfficeReadConfiguration.DEFAULT_SHEETS);
+    this.columns=conf.get(HadoopOfficeReadConfiguration.CONF_COLUMNS,HadoopOfficeReadConfiguration.DEFAULT_COLUMNS);
     this.localeStrBCP47=conf.get(HadoopOfficeReadConfiguration.CONF_LOCALE, HadoopOfficeReadConfiguration.DEFAULT_LOCALE);
     if (!("".equals(localeStrBCP47))) { // create locale
 	this.locale=new Locale.Builder().setLanguageTag(this.localeStrBCP47).build();
@@ -90,8 +169,24 @@ public HadoopOfficeReadConfiguration(Configuration conf) {
      this.ignoreMissingLinkedWorkbooks=conf.getBoolean(HadoopOfficeReadConfiguration.CONF_IGNOREMISSINGWB,HadoopOfficeReadConfiguration.DEFAULT_IGNOREMISSINGLINKEDWB);
      this.password=conf.get(HadoopOfficeReadConfiguration.CONF_DECRYPT); // null if no password is set
       this.metadataFilter=HadoopUtil.parsePropertiesFromBase(conf,HadoopOfficeReadConfiguration.CONF_FILTERMETADATA);
+     this.rowFilter=conf.get(HadoopOfficeReadConfiguration.CONF_FILTERROWS,HadoopOfficeReadConfiguration.DEFAULT_FILTERROWS);
+     this.cellFilter=HadoopUtil.parsePropertiesFromBase(conf,HadoopOfficeReadConfiguration.CONF_FILTERCELL);
      this.linkedWBCredentialMap=HadoopUtil.parsePropertiesFromBase(conf,HadoopOfficeReadConfiguration.CONF_DECRYPTLINKEDWBBASE);
+     this.keyCache=conf.getBoolean(HadoopOfficeReadConfiguration.CONF_KEYCACHE,HadoopOfficeReadConfiguration.DEFAULT_KEYCACHE);
+     this.typedValues=conf.getBoolean(HadoopOfficeReadConfiguration.CONF_TYPEDVALUES,HadoopOfficeReadConfiguration.DEFAULT_TYPEDVALUES);
+     this.typedValuesFormat=conf.getBoolean(HadoopOfficeReadConfiguration.CONF_TYPEDVALUES_FORMAT,HadoopOfficeReadConfiguration.DEFAULT_TYPEDVALUES_FORMAT);
+     this.reuseObjects=conf.getBoolean(HadoopOfficeReadConfiguration.CONF_REUSEOBJECTS,HadoopOfficeReadConfiguration.DEFAULT_REUSEOBJECTS);
      this.lowFootprint=conf.getBoolean(HadoopOfficeReadConfiguration.CONF_LOWFOOTPRINT,HadoopOfficeReadConfiguration.DEFAULT_LOWFOOTPRINT);
+     this.lowFootprintCacheRows=conf.getInt(HadoopOfficeReadConfiguration.CONF_LOWFOOTPRINT_CACHEROWS,HadoopOfficeReadConfiguration.DEFAULT_LOWFOOTPRINT_CACHEROWS);
+     this.lowFootprintSharedStringsMemoryLimit=conf.getLong(HadoopOfficeReadConfiguration.CONF_LOWFOOTPRINT_SST_MEMORYLIMIT,HadoopOfficeReadConfiguration.DEFAULT_LOWFOOTPRINT_SST_MEMORYLIMIT);
+     this.lowFootprintSheetThreads=conf.getInt(HadoopOfficeReadConfiguration.CONF_LOWFOOTPRINT_SHEETTHREADS,HadoopOfficeReadConfiguration.DEFAULT_LOWFOOTPRINT_SHEETTHREADS);
+     this.pipeline=conf.getBoolean(HadoopOfficeReadConfiguration.CONF_PIPELINE,HadoopOfficeReadConfiguration.DEFAULT_PIPELINE);
+     this.pipelineBufferSize=conf.getInt(HadoopOfficeReadConfiguration.CONF_PIPELINE_BUFFERSIZE,HadoopOfficeReadConfiguration.DEFAULT_PIPELINE_BUFFERSIZE);
+     this.splitSheets=conf.getBoolean(HadoopOfficeReadConfiguration.CONF_SPLIT_SHEETS,HadoopOfficeReadConfiguration.DEFAULT_SPLIT_SHEETS);
+     this.sheetsPerSplit=conf.getInt(HadoopOfficeReadConfiguration.CONF_SPLIT_SHEETSPERSPLIT,HadoopOfficeReadConfiguration.DEFAULT_SPLIT_SHEETSPERSPLIT);
+     this.splitRows=conf.getInt(HadoopOfficeReadConfiguration.CONF_SPLIT_ROWS,HadoopOfficeReadConfiguration.DEFAULT_SPLIT_ROWS);
+     this.indexSidecar=conf.getBoolean(HadoopOfficeReadConfiguration.CONF_INDEX_SIDECAR,HadoopOfficeReadConfiguration.DEFAULT_INDEX_SIDECAR);
+     this.indexRowInterval=conf.getInt(HadoopOfficeReadConfiguration.CONF_INDEX_ROWINTERVAL,HadoopOfficeReadConfiguration.DEFAULT_INDEX_ROWINTERVAL);
 }
 
 /*
@@ -111,6 +206,23 @@ public void setSheets(String sheets) {
 	this.sheets=sheets;
 }
 
+/*
+ * Returns the configuration for selecting columns (projection)
+ */
+public String getColumns() {
+	return this.columns;
+}
+
+/*
+ * Set columns
+ * 
+ * @param columns comma-separated list of columns, ranges of columns and header names to be read, null if all should be read
+ * 
+ */
+public void setColumns(String columns) {
+	this.columns=columns;
+}
+
 /*
  * Returns the configured mimetype
  * 
@@ -233,6 +345,43 @@ public void setMetaDataFilter(Map<String,String> metadataFilter) {
 	this.metadataFilter=metadataFilter;
 }
 
+/*
+ * Returns the configuration for filtering rows by their row number
+ * 
+ */
+public String getRowFilter() {
+	return this.rowFilter;
+}
+
+/*
+ * Set row filter
+ * 
+ * @param rowFilter comma-separated list of row numbers and ranges of row numbers (e.g. 2-100,200-) to be read, null if all should be read
+ * 
+ */
+public void setRowFilter(String rowFilter) {
+	this.rowFilter=rowFilter;
+}
+
+/**
+ * Filter for rows according to the formatted values of their cells
+ * 
+ * @return map with the column (e.g. B) as key and a regular expression as value
+ */
+public Map<String,String> getCellFilter() {
+	return this.cellFilter;
+}
+
+/*
+ *  Set filter for rows according to the formatted values of their cells
+ * 
+ * @param cellFilter map with the column (e.g. B) as key and a regular expression as value, null if no rows should be filtered
+ * 
+ */
+public void setCellFilter(Map<String,String> cellFilter) {
+	this.cellFilter=cellFilter;
+}
+
 /*
  * Get credential map for linked workbooks
  * 
@@ -277,6 +426,86 @@ public void setFileName(String fileName) {
 	this.fileName=fileName;
 }
 
+/*
+ *  returns the length of the document to which the configuration belongs (set by the record reader for uncompressed files)
+ *  
+ *  @return length in bytes, 0 if not known
+ */
+public long getFileLength() {
+	return this.fileLength;
+}
+
+
+/*
+ * Sets the length of the document to which this configuration belongs. It is used by the parser to read the central directory of new Excel files (.xlsx) in low footprint mode
+ * 
+ * @param fileLength length in bytes, 0 if not known
+ * 
+ */
+public void setFileLength(long fileLength) {
+	this.fileLength=fileLength;
+}
+
+/*
+ * Should the cells contain the type and the primitive value of their value
+ * 
+ * @return true, if yes, false if not
+ * 
+ */
+public boolean getTypedValues() {
+	return this.typedValues;
+}
+
+/**
+ * Set if the cells should contain the type and the primitive value of their value
+ * 
+ * @param typedValues true, if yes, false, if not
+ * 
+ */
+public void setTypedValues(boolean typedValues) {
+	this.typedValues=typedValues;
+}
+
+/*
+ * Should typed values be formatted according to their cell style and the locale
+ * 
+ * @return true, if yes, false if the formatted value should contain the raw value
+ * 
+ */
+public boolean getTypedValuesFormat() {
+	return this.typedValuesFormat;
+}
+
+/**
+ * Set if typed values should be formatted according to their cell style and the locale
+ * 
+ * @param typedValuesFormat true, if yes, false, if the formatted value should contain the raw value
+ * 
+ */
+public void setTypedValuesFormat(boolean typedValuesFormat) {
+	this.typedValuesFormat=typedValuesFormat;
+}
+
+/*
+ * Should the arrays of cells and the cells be reused for the following rows
+ * 
+ * @return true, if yes, false if new objects are created for every row
+ * 
+ */
+public boolean getReuseObjects() {
+	return this.reuseObjects;
+}
+
+/**
+ * Set if the arrays of cells and the cells should be reused for the following rows. A row is then only valid until the next row is read
+ * 
+ * @param reuseObjects true, if yes, false, if new objects should be created for every row
+ * 
+ */
+public void setReuseObjects(boolean reuseObjects) {
+	this.reuseObjects=reuseObjects;
+}
+
 /*
  * Should files be read in low footprint mode or not
  * 
@@ -300,4 +529,367 @@ public void setLowFootprint(boolean lowFootprint) {
 
 
 
+/*
+ * Maximum number of decoded rows kept in memory in low footprint mode
+ * 
+ * @return number of rows
+ * 
+ */
+public int getLowFootprintCacheRows() {
+	return this.lowFootprintCacheRows;
+}
+
+/**
+ * Set the maximum number of decoded rows kept in memory in low footprint mode
+ * 
+ * @param lowFootprintCacheRows number of rows
+ * 
+ */
+
+public void setLowFootprintCacheRows(int lowFootprintCacheRows) {
+	this.lowFootprintCacheRows=lowFootprintCacheRows;
+}
+
+/*
+ * Maximum size of the shared strings kept in memory in low footprint mode
+ * 
+ * @return size in bytes, 0 if all shared strings are kept in memory
+ * 
+ */
+public long getLowFootprintSharedStringsMemoryLimit() {
+	return this.lowFootprintSharedStringsMemoryLimit;
+}
+
+/**
+ * Set the maximum size of the shared strings kept in memory in low footprint mode. Further shared strings are written to a local temporary file
+ * 
+ * @param lowFootprintSharedStringsMemoryLimit size in bytes, 0 if all shared strings should be kept in memory
+ * 
+ */
+
+public void setLowFootprintSharedStringsMemoryLimit(long lowFootprintSharedStringsMemoryLimit) {
+	this.lowFootprintSharedStringsMemoryLimit=lowFootprintSharedStringsMemoryLimit;
+}
+
+/*
+ * Number of threads decoding the sheets of a new Excel file (.xlsx) concurrently in low footprint mode
+ * 
+ * @return number of threads, 1 if the sheets are decoded one after the other
+ * 
+ */
+public int getLowFootprintSheetThreads() {
+	return this.lowFootprintSheetThreads;
+}
+
+/**
+ * Set the number of threads decoding the sheets of a new Excel file (.xlsx) concurrently in low footprint mode. The rows are still returned in the order of the sheets
+ * 
+ * @param lowFootprintSheetThreads number of threads, 1 if the sheets should be decoded one after the other
+ * 
+ */
+
+public void setLowFootprintSheetThreads(int lowFootprintSheetThreads) {
+	this.lowFootprintSheetThreads=lowFootprintSheetThreads;
+}
+
+/*
+ * Should reading and inflating be done by separate threads ahead of parsing
+ * 
+ * @return true, if yes, false, if not
+ * 
+ */
+public boolean getPipeline() {
+	return this.pipeline;
+}
+
+/**
+ * Set if reading the file and inflating the XML of the sheets should be done by separate threads ahead of parsing
+ * 
+ * @param pipeline true, if yes, false, if not
+ * 
+ */
+
+public void setPipeline(boolean pipeline) {
+	this.pipeline=pipeline;
+}
+
+/*
+ * Size of the buffers handed over between the threads of the pipeline
+ * 
+ * @return size in bytes
+ * 
+ */
+public int getPipelineBufferSize() {
+	return this.pipelineBufferSize;
+}
+
+/**
+ * Set the size of the buffers handed over between the threads of the pipeline
+ * 
+ * @param pipelineBufferSize size in bytes
+ * 
+ */
+
+public void setPipelineBufferSize(int pipelineBufferSize) {
+	this.pipelineBufferSize=pipelineBufferSize;
+}
+
+/*
+ * Should one split per sheet (or group of sheets) be created
+ * 
+ * @return true, if yes, false if not
+ * 
+ */
+public boolean getSplitSheets() {
+	return this.splitSheets;
+}
+
+/**
+ * Set if one split per sheet (or group of sheets) should be created
+ * 
+ * @param splitSheets true, if yes, false, if not
+ * 
+ */
+
+public void setSplitSheets(boolean splitSheets) {
+	this.splitSheets=splitSheets;
+}
+
+/*
+ * Maximum number of sheets per split
+ * 
+ * @return number of sheets
+ * 
+ */
+public int getSheetsPerSplit() {
+	return this.sheetsPerSplit;
+}
+
+/**
+ * Set the maximum number of sheets per split
+ * 
+ * @param sheetsPerSplit number of sheets
+ * 
+ */
+
+public void setSheetsPerSplit(int sheetsPerSplit) {
+	this.sheetsPerSplit=sheetsPerSplit;
+}
+
+/*
+ * Maximum number of rows per split (0 if sheets are not divided into row ranges)
+ * 
+ * @return number of rows
+ * 
+ */
+public int getSplitRows() {
+	return this.splitRows;
+}
+
+/**
+ * Set the maximum number of rows per split
+ * 
+ * @param splitRows number of rows, 0 if sheets should not be divided into row ranges
+ * 
+ */
+
+public void setSplitRows(int splitRows) {
+	this.splitRows=splitRows;
+}
+
+/*
+ * First row to be read (set by the record reader for splits covering a row range)
+ * 
+ * @return row number (starting from 1), 0 if rows are read from the beginning of the sheet
+ * 
+ */
+public long getRowRangeStart() {
+	return this.rowRangeStart;
+}
+
+/**
+ * Set the first row to be read
+ * 
+ * @param rowRangeStart row number (starting from 1), 0 if rows should be read from the beginning of the sheet
+ * 
+ */
+
+public void setRowRangeStart(long rowRangeStart) {
+	this.rowRangeStart=rowRangeStart;
+}
+
+/*
+ * Last row to be read (set by the record reader for splits covering a row range)
+ * 
+ * @return row number (starting from 1), 0 if rows are read until the end of the sheet
+ * 
+ */
+public long getRowRangeEnd() {
+	return this.rowRangeEnd;
+}
+
+/**
+ * Set the last row to be read
+ * 
+ * @param rowRangeEnd row number (starting from 1), 0 if rows should be read until the end of the sheet
+ * 
+ */
+
+public void setRowRangeEnd(long rowRangeEnd) {
+	this.rowRangeEnd=rowRangeEnd;
+}
+
+/*
+ * Position of the first row to be read in the (inflated) XML of the sheet
+ * 
+ * @return offset in bytes, 0 if unknown
+ * 
+ */
+public long getRowRangeOffset() {
+	return this.rowRangeOffset;
+}
+
+/**
+ * Set the position of the first row to be read in the (inflated) XML of the sheet. Only used for new Excel files (.xlsx) in low footprint mode
+ * 
+ * @param rowRangeOffset offset in bytes, 0 if unknown
+ * 
+ */
+
+public void setRowRangeOffset(long rowRangeOffset) {
+	this.rowRangeOffset=rowRangeOffset;
+}
+
+/*
+ * Use the index sidecar of a file if it exists
+ * 
+ * @return true if the index sidecar is used, false if not
+ * 
+ */
+public boolean getIndexSidecar() {
+	return this.indexSidecar;
+}
+
+/**
+ * Set if the index sidecar of a file should be used if it exists
+ * 
+ * @param indexSidecar true if the index sidecar should be used, false if not
+ * 
+ */
+
+public void setIndexSidecar(boolean indexSidecar) {
+	this.indexSidecar=indexSidecar;
+}
+
+/*
+ * Interval of the rows stored in an index sidecar
+ * 
+ * @return every n-th row is stored
+ * 
+ */
+public int getIndexRowInterval() {
+	return this.indexRowInterval;
+}
+
+/**
+ * Set the interval of the rows stored in an index sidecar
+ * 
+ * @param indexRowInterval every n-th row is stored
+ * 
+ */
+
+public void setIndexRowInterval(int indexRowInterval) {
+	this.indexRowInterval=indexRowInterval;
+}
+
+/*
+ * Returns if the keys derived from passwords should be cached
+ * 
+ * @return true if derived keys are cached
+ * 
+ */
+public boolean getKeyCache() {
+	return this.keyCache;
+}
+
+/**
+ * Set if the keys derived from passwords should be cached
+ * 
+ * @param keyCache true if derived keys are cached
+ * 
+ */
+
+public void setKeyCache(boolean keyCache) {
+	this.keyCache=keyCache;
+}
+
+/*
+ * Returns the cache of the keys derived from passwords, which belongs to this configuration. It is created when it is used for the first time
+ * 
+ * @return cache or null if derived keys are not cached (cf. hadoopoffice.read.security.crypt.keyCache)
+ * 
+ */
+public MSExcelKeyCache getDerivedKeyCache() {
+	if (!this.keyCache) {
+		return null;
+	}
+	if (this.derivedKeyCache==null) {
+		this.derivedKeyCache=new MSExcelKeyCache();
+	}
+	return this.derivedKeyCache;
+}
+
+/**
+ * Set the cache of the keys derived from passwords, so that it is shared with another configuration (e.g. of a linked workbook)
+ * 
+ * @param derivedKeyCache cache or null if a new cache should be created when needed
+ * 
+ */
+
+public void setDerivedKeyCache(MSExcelKeyCache derivedKeyCache) {
+	this.derivedKeyCache=derivedKeyCache;
+}
+
+/*
+ * Index of the file to be read (set by the record reader if an index sidecar exists)
+ * 
+ * @return index or null if not available
+ * 
+ */
+public MSExcelWorkbookIndex getWorkbookIndex() {
+	return this.workbookIndex;
+}
+
+/**
+ * Set the index of the file to be read. It is used by the parser to read only the needed parts of the file
+ * 
+ * @param workbookIndex index or null if not available
+ * 
+ */
+
+public void setWorkbookIndex(MSExcelWorkbookIndex workbookIndex) {
+	this.workbookIndex=workbookIndex;
+}
+
+/*
+ * Formatter of the cells that is shared by the parsers of several files read one after the other (set by the record reader of CombineExcelFileInputFormat)
+ * 
+ * @return formatter or null if each parser creates its own formatter
+ * 
+ */
+public DataFormatter getDataFormatter() {
+	return this.dataFormatter;
+}
+
+/**
+ * Set the formatter of the cells that is shared by the parsers of several files read one after the other. It must not be used by several parsers at the same time
+ * 
+ * @param dataFormatter formatter or null if each parser creates its own formatter
+ * 
+ */
+
+public void setDataFormatter(DataFormatter dataFormatter) {
+	this.dataFormatter=dataFormatter;
+}
+
 }
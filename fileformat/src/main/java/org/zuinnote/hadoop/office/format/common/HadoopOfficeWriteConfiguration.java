@@ -46,6 +46,19 @@ public class HadoopOfficeWriteConfiguration {
 
 	public static final String CONF_LOWFOOTPRINT="hadoopoffice.write.lowFootprint";
 	public static final String CONF_LOWFOOTPRINT_CACHEROWS="hadoopoffice.write.lowFootprint.cacherows";
+	public static final String CONF_LOWFOOTPRINT_STREAMING="hadoopoffice.write.lowFootprint.streaming";
+	public static final String CONF_LOWFOOTPRINT_SORT="hadoopoffice.write.lowFootprint.sort";
+	public static final String CONF_LOWFOOTPRINT_SORT_CACHECELLS="hadoopoffice.write.lowFootprint.sort.cachecells";
+	public static final String CONF_CONCURRENT="hadoopoffice.write.concurrent";
+	public static final String CONF_CONCURRENT_BATCHCELLS="hadoopoffice.write.concurrent.batchcells";
+	public static final String CONF_ROLLOVER_ROWS="hadoopoffice.write.rollover.rows";
+	public static final String CONF_ROLLOVER_CELLS="hadoopoffice.write.rollover.cells";
+	public static final String CONF_PARTITION_SHEET="hadoopoffice.write.partition.sheet";
+	public static final String CONF_MEMORY_BUDGET="hadoopoffice.write.memory.budget";
+	public static final String CONF_MEMORY_BUDGET_FALLBACK="hadoopoffice.write.memory.budget.fallback";
+	public static final String CONF_PARALLEL_DEFLATE="hadoopoffice.write.parallelDeflate";
+	public static final String CONF_PARALLEL_DEFLATE_THREADS="hadoopoffice.write.parallelDeflate.threads";
+	public static final String CONF_STREAMING_ENCRYPTION="hadoopoffice.write.security.crypt.streaming";
 	public static final String DEFAULT_MIMETYPE="";
 	public static final String DEFAULT_LOCALE="";
 	public static final String DEFAULT_LINKEDWB="";
@@ -60,6 +73,19 @@ public class HadoopOfficeWriteConfiguration {
 
 	public static final boolean DEFAULT_LOWFOOTPRINT=false;
 	public static final int DEFAULT_LOWFOOTPRINT_CACHEROWS=1000;
+	public static final boolean DEFAULT_LOWFOOTPRINT_STREAMING=false;
+	public static final boolean DEFAULT_LOWFOOTPRINT_SORT=false;
+	public static final int DEFAULT_LOWFOOTPRINT_SORT_CACHECELLS=100000;
+	public static final boolean DEFAULT_CONCURRENT=false;
+	public static final int DEFAULT_CONCURRENT_BATCHCELLS=1024;
+	public static final long DEFAULT_ROLLOVER_ROWS=0L;
+	public static final long DEFAULT_ROLLOVER_CELLS=0L;
+	public static final boolean DEFAULT_PARTITION_SHEET=false;
+	public static final long DEFAULT_MEMORY_BUDGET=0L;
+	public static final boolean DEFAULT_MEMORY_BUDGET_FALLBACK=true;
+	public static final boolean DEFAULT_PARALLEL_DEFLATE=false;
+	public static final int DEFAULT_PARALLEL_DEFLATE_THREADS=0;
+	public static final boolean DEFAULT_STREAMING_ENCRYPTION=true;
 	private String[] linkedWorkbooksName;
 	private String fileName;
 	private String mimeType;
@@ -79,6 +105,19 @@ public class HadoopOfficeWriteConfiguration {
 	private Map<String,String> metadata;
 	private boolean lowFootprint;
 	private int lowFootprintCacheRows;
+	private boolean lowFootprintStreaming;
+	private boolean lowFootprintSort;
+	private int lowFootprintSortCacheCells;
+	private boolean concurrent;
+	private int concurrentBatchCells;
+	private long rolloverRows;
+	private long rolloverCells;
+	private boolean partitionSheet;
+	private long memoryBudget;
+	private boolean memoryBudgetFallback;
+	private boolean parallelDeflate;
+	private int parallelDeflateThreads;
+	private boolean streamingEncryption;
 /*
  * 	Read the configuration for writing office files from a Hadoop configuration
  * 
@@ -92,10 +131,23 @@ public class HadoopOfficeWriteConfiguration {
 * hadoopoffice.write.security.crypt.hash.algorithm: use the following algorithm to hash. Note that some writers do not support all algorithms and an exception will be thrown if the algorithm is not supported. See corresponding writer documentation for supported algorithms.
 * hadoopoffice.write.security.crypt.encrypt.mode: use the following mode to encrypt. Note that some writers do not support all modes and an exception will be thrown if the mode is not supported. See corresponding writer documentation for supported algorithms.
 * hadoopoffice.write.security.crypt.chain.mode: use the following mode to chain. Note that some writers do not support all modes and an exception will be thrown if the mode is not supported. See corresponding writer documentation for supported algorithms.
+* hadoopoffice.write.security.crypt.streaming: if true then new Excel files (.xlsx) with agile encryption are encrypted in segments of 4096 bytes while they are written. Only the encrypted data is kept in a temporary file and the encrypted file is written in one pass when the document is closed. If false then the encryption of POI is used, which reads the encrypted data twice. Default true.
 * hadoopoffice.write.security.crypt.linkedworkbooks.*: if set then hadoopoffice will try to decrypt all the linked workbooks where a password has been specified. If no password is specified then it is assumed that the linked workbook is not encrypted. Example: Property key for file "linkedworkbook1.xlsx" is  "hadoopoffice.read.security.crypt.linkedworkbooks.linkedworkbook1.xslx". Value is the password. You must not include path or protocol information in the filename 
 * hadoopoffice.write.metadata.*: Write metadata properties of the document. All properties belonging to the base (e.g. hadoopoffice.write.metadata.author for author) will be handed over to the corresponding writer. See writer documentation which properties are supported
 * hadoopoffice.write.template.file: Use a template as input to modify selected cells of it
 * hadoopoffice.write.lowFootprint: if true then a file is written in low footprint mode to save cpu/memory resources, false if it should be written in normal mode. Option is ignored for old Excel files (.xls). Note that if it is set to true then certain options are not available, such as formula evaluation. Default false. 
+* hadoopoffice.write.lowFootprint.streaming: if true (and hadoopoffice.write.lowFootprint is true) then a new Excel file (.xlsx) is written directly as XML into the file without any workbook model, temporary files or objects per cell. Cells need to be written sheet by sheet, within a sheet row by row and within a row column by column. Comments, linked workbooks, templates and metadata are not supported. Default false.
+* hadoopoffice.write.lowFootprint.sort: if true (and hadoopoffice.write.lowFootprint is true) then cells can be written in any order. They are sorted by sheet (in the order of their first cell), row and column before they are written to the file. Default false.
+* hadoopoffice.write.lowFootprint.sort.cachecells: number of cells that are sorted in memory. Further cells are sorted in temporary files, which are merged when the file is written. The temporary files are encrypted if the file is encrypted. Default 100000.
+* hadoopoffice.write.concurrent: if true then several threads (e.g. of a MultithreadedMapper) can write cells at the same time without waiting for each other. Each thread collects its cells in its own batch and a single thread writes the batches into the document. Cells of different threads are written in no particular order, i.e. combine it with hadoopoffice.write.lowFootprint.sort if hadoopoffice.write.lowFootprint.streaming is true. Default false.
+* hadoopoffice.write.concurrent.batchcells: number of cells that a thread collects before they are handed over for writing into the document. Default 1024.
+* hadoopoffice.write.rollover.rows: if larger than 0 then a new file is started after this number of rows has been written into a file. The files are named like the file of the task with a number appended (e.g. part-r-00000-1.xlsx) and each file is written as soon as it is complete. Rows of the following files are renumbered, so that the first row of each sheet is row 1 (formulas are not adapted). Cells need to be written row by row. Default 0.
+* hadoopoffice.write.rollover.cells: if larger than 0 then a new file is started after the row in which this number of cells has been written into a file. Cells need to be written row by row. Default 0.
+* hadoopoffice.write.partition.sheet: if true then each sheet is written into a separate file with the sheet name appended (e.g. part-r-00000-Sheet1.xlsx). Characters that are not safe in file names are replaced by an underscore and a counter is appended if another sheet already has the same file name (e.g. part-r-00000-Sheet_1_2.xlsx). Files are rolled over per sheet (cf. hadoopoffice.write.rollover.rows). Default false.
+* hadoopoffice.write.memory.budget: if larger than 0 then the estimated memory (in bytes) of the cells, rows, sheets and comments that the standard writer keeps in memory is limited to this budget. What happens if the budget is exceeded is defined by hadoopoffice.write.memory.budget.fallback. Option is ignored in low footprint mode. Default 0.
+* hadoopoffice.write.memory.budget.fallback: if true then a new Excel file (.xlsx) continues in low footprint mode (SXSSF, independent of hadoopoffice.write.lowFootprint.streaming) with sorted cells (cf. hadoopoffice.write.lowFootprint.sort) once the budget is exceeded. The cells written so far are moved into the low footprint writer. If false, or if this is not possible (old Excel files (.xls), templates, linked workbooks), then writing fails. Note that metadata is not written in low footprint mode. Default true.
+* hadoopoffice.write.parallelDeflate: if true then the parts of a new Excel file (.xlsx) are compressed by several threads when the standard writer writes the file. The data of each part is compressed in blocks of 1 MB while the workbook is still serialized and the compressed blocks are written in order as soon as they are available, so that only a few blocks per thread are kept in memory. Option is ignored for old Excel files (.xls) and in low footprint mode. Default false.
+* hadoopoffice.write.parallelDeflate.threads: number of threads that compress the parts of the file. If 0 then the number of available processors is used. Default 0.
 * @param fileName filename to write
  * 
  */
@@ -125,6 +177,19 @@ public HadoopOfficeWriteConfiguration(Configuration conf, String fileName) {
      this.setTemplatePassword(conf.get(HadoopOfficeWriteConfiguration.CONF_TEMPLATEPW,HadoopOfficeWriteConfiguration.DEFAULT_TEMPLATEPW));
      this.setLowFootprint(conf.getBoolean(HadoopOfficeWriteConfiguration.CONF_LOWFOOTPRINT,HadoopOfficeWriteConfiguration.DEFAULT_LOWFOOTPRINT));
      this.setLowFootprintCacheRows(conf.getInt(HadoopOfficeWriteConfiguration.CONF_LOWFOOTPRINT_CACHEROWS,HadoopOfficeWriteConfiguration.DEFAULT_LOWFOOTPRINT_CACHEROWS));
+     this.setLowFootprintStreaming(conf.getBoolean(HadoopOfficeWriteConfiguration.CONF_LOWFOOTPRINT_STREAMING,HadoopOfficeWriteConfiguration.DEFAULT_LOWFOOTPRINT_STREAMING));
+     this.setLowFootprintSort(conf.getBoolean(HadoopOfficeWriteConfiguration.CONF_LOWFOOTPRINT_SORT,HadoopOfficeWriteConfiguration.DEFAULT_LOWFOOTPRINT_SORT));
+     this.setLowFootprintSortCacheCells(conf.getInt(HadoopOfficeWriteConfiguration.CONF_LOWFOOTPRINT_SORT_CACHECELLS,HadoopOfficeWriteConfiguration.DEFAULT_LOWFOOTPRINT_SORT_CACHECELLS));
+     this.setConcurrent(conf.getBoolean(HadoopOfficeWriteConfiguration.CONF_CONCURRENT,HadoopOfficeWriteConfiguration.DEFAULT_CONCURRENT));
+     this.setConcurrentBatchCells(conf.getInt(HadoopOfficeWriteConfiguration.CONF_CONCURRENT_BATCHCELLS,HadoopOfficeWriteConfiguration.DEFAULT_CONCURRENT_BATCHCELLS));
+     this.setRolloverRows(conf.getLong(HadoopOfficeWriteConfiguration.CONF_ROLLOVER_ROWS,HadoopOfficeWriteConfiguration.DEFAULT_ROLLOVER_ROWS));
+     this.setRolloverCells(conf.getLong(HadoopOfficeWriteConfiguration.CONF_ROLLOVER_CELLS,HadoopOfficeWriteConfiguration.DEFAULT_ROLLOVER_CELLS));
+     this.setPartitionSheet(conf.getBoolean(HadoopOfficeWriteConfiguration.CONF_PARTITION_SHEET,HadoopOfficeWriteConfiguration.DEFAULT_PARTITION_SHEET));
+     this.setMemoryBudget(conf.getLong(HadoopOfficeWriteConfiguration.CONF_MEMORY_BUDGET,HadoopOfficeWriteConfiguration.DEFAULT_MEMORY_BUDGET));
+     this.setMemoryBudgetFallback(conf.getBoolean(HadoopOfficeWriteConfiguration.CONF_MEMORY_BUDGET_FALLBACK,HadoopOfficeWriteConfiguration.DEFAULT_MEMORY_BUDGET_FALLBACK));
+     this.setParallelDeflate(conf.getBoolean(HadoopOfficeWriteConfiguration.CONF_PARALLEL_DEFLATE,HadoopOfficeWriteConfiguration.DEFAULT_PARALLEL_DEFLATE));
+     this.setParallelDeflateThreads(conf.getInt(HadoopOfficeWriteConfiguration.CONF_PARALLEL_DEFLATE_THREADS,HadoopOfficeWriteConfiguration.DEFAULT_PARALLEL_DEFLATE_THREADS));
+     this.setStreamingEncryption(conf.getBoolean(HadoopOfficeWriteConfiguration.CONF_STREAMING_ENCRYPTION,HadoopOfficeWriteConfiguration.DEFAULT_STREAMING_ENCRYPTION));
 }
 public String[] getLinkedWorkbooksName() {
 	return linkedWorkbooksName;
@@ -245,5 +310,83 @@ public int getLowFootprintCacheRows() {
 public void setLowFootprintCacheRows(int lowFootprintCacheRows) {
 	this.lowFootprintCacheRows = lowFootprintCacheRows;
 }
+public boolean getLowFootprintStreaming() {
+	return lowFootprintStreaming;
+}
+public void setLowFootprintStreaming(boolean lowFootprintStreaming) {
+	this.lowFootprintStreaming = lowFootprintStreaming;
+}
+public boolean getLowFootprintSort() {
+	return lowFootprintSort;
+}
+public void setLowFootprintSort(boolean lowFootprintSort) {
+	this.lowFootprintSort = lowFootprintSort;
+}
+public int getLowFootprintSortCacheCells() {
+	return lowFootprintSortCacheCells;
+}
+public void setLowFootprintSortCacheCells(int lowFootprintSortCacheCells) {
+	this.lowFootprintSortCacheCells = lowFootprintSortCacheCells;
+}
+public boolean getConcurrent() {
+	return concurrent;
+}
+public void setConcurrent(boolean concurrent) {
+	this.concurrent = concurrent;
+}
+public int getConcurrentBatchCells() {
+	return concurrentBatchCells;
+}
+public void setConcurrentBatchCells(int concurrentBatchCells) {
+	this.concurrentBatchCells = concurrentBatchCells;
+}
+public long getRolloverRows() {
+	return rolloverRows;
+}
+public void setRolloverRows(long rolloverRows) {
+	this.rolloverRows = rolloverRows;
+}
+public long getRolloverCells() {
+	return rolloverCells;
+}
+public void setRolloverCells(long rolloverCells) {
+	this.rolloverCells = rolloverCells;
+}
+public boolean getPartitionSheet() {
+	return partitionSheet;
+}
+public void setPartitionSheet(boolean partitionSheet) {
+	this.partitionSheet = partitionSheet;
+}
+public long getMemoryBudget() {
+	return memoryBudget;
+}
+public void setMemoryBudget(long memoryBudget) {
+	this.memoryBudget = memoryBudget;
+}
+public boolean getMemoryBudgetFallback() {
+	return memoryBudgetFallback;
+}
+public void setMemoryBudgetFallback(boolean memoryBudgetFallback) {
+	this.memoryBudgetFallback = memoryBudgetFallback;
+}
+public boolean getParallelDeflate() {
+	return parallelDeflate;
+}
+public void setParallelDeflate(boolean parallelDeflate) {
+	this.parallelDeflate = parallelDeflate;
+}
+public int getParallelDeflateThreads() {
+	return parallelDeflateThreads;
+}
+public void setParallelDeflateThreads(int parallelDeflateThreads) {
+	this.parallelDeflateThreads = parallelDeflateThreads;
+}
+public boolean getStreamingEncryption() {
+	return streamingEncryption;
+}
+public void setStreamingEncryption(boolean streamingEncryption) {
+	this.streamingEncryption = streamingEncryption;
+}
 
 }
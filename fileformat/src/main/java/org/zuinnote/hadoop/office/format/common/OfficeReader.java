@@ -160,9 +160,14 @@ private OfficeReaderParserInterface currentParser=null;
 	* @throws java.io.IOException in case of errors
 	*/
 	public void close() throws IOException {
-		
-		if (this.in!=null) {
-			in.close();
+		try {
+			if (this.currentParser!=null) { // parsers may still decode the document in the background
+				this.currentParser.close();
+			}
+		} finally {
+			if (this.in!=null) {
+				in.close();
+			}
 		}
 	}
 
@@ -33,6 +33,10 @@ import org.zuinnote.hadoop.office.format.common.writer.OfficeSpreadSheetWriterIn
 import org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException;
 import org.zuinnote.hadoop.office.format.common.writer.InvalidWriterConfigurationException;
 import org.zuinnote.hadoop.office.format.common.writer.MSExcelLowFootprintWriter;
+import org.zuinnote.hadoop.office.format.common.writer.MSExcelConcurrentWriter;
+import org.zuinnote.hadoop.office.format.common.writer.MSExcelMemoryBudgetWriter;
+import org.zuinnote.hadoop.office.format.common.writer.MSExcelSortingWriter;
+import org.zuinnote.hadoop.office.format.common.writer.MSExcelStreamingWriter;
  
 
 /*
@@ -66,14 +70,26 @@ public OfficeWriter(HadoopOfficeWriteConfiguration howc) throws InvalidWriterCon
 		// check if it is low footprint
 		if (!this.howc.getLowFootprint()) {
 			currentOfficeSpreadSheetWriter=new MSExcelWriter(writerFormat,this.howc);
+			if (this.howc.getMemoryBudget()>0) { // limit the memory of the workbook
+				currentOfficeSpreadSheetWriter=new MSExcelMemoryBudgetWriter((MSExcelWriter)currentOfficeSpreadSheetWriter,writerFormat,this.howc);
+			}
 		} else { // low footprint 
 			if (MSExcelWriter.FORMAT_OLD.equals(writerFormat)) {
 				LOG.warn("Low footprint mode is only supported for new Excel format .xlsx. Continuing with standard writing mode");
 				currentOfficeSpreadSheetWriter=new MSExcelWriter(writerFormat,this.howc);
+			} else if (this.howc.getLowFootprintStreaming()) {
+				LOG.info("Storing new Excel file .xlsx in low footprint streaming mode");
+				currentOfficeSpreadSheetWriter=new MSExcelStreamingWriter(writerFormat,this.howc);
 			} else {
 				LOG.info("Storing new Excel file ,xlsx in low footprint mode");
 				currentOfficeSpreadSheetWriter=new MSExcelLowFootprintWriter(writerFormat,this.howc);
 			}
+			if ((this.howc.getLowFootprintSort()) && (!MSExcelWriter.FORMAT_OLD.equals(writerFormat))) { // cells are sorted in the order of the file
+				currentOfficeSpreadSheetWriter=new MSExcelSortingWriter(currentOfficeSpreadSheetWriter,this.howc);
+			}
+		}
+		if (this.howc.getConcurrent()) { // several threads write cells, a single thread writes them into the document
+			currentOfficeSpreadSheetWriter=new MSExcelConcurrentWriter(currentOfficeSpreadSheetWriter,this.howc);
 		}
 	} else {
 		throw new InvalidWriterConfigurationException("Error: Writer does not recognize format +\""+writerFormat+"\"");
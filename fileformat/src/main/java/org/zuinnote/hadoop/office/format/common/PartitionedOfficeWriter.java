@@ -0,0 +1,336 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.util.Progressable;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+import org.zuinnote.hadoop.office.format.common.util.MSExcelUtil;
+import org.zuinnote.hadoop.office.format.common.writer.InvalidWriterConfigurationException;
+import org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException;
+
+/**
+ * Writes the cells of a task into several files (cf. hadoopoffice.write.rollover.rows, hadoopoffice.write.rollover.cells and hadoopoffice.write.partition.sheet). A new file is started after the configured number of rows or cells. The previous file is written and closed immediately, so that its memory is released. If the cells are partitioned by sheet then each sheet has its own files.
+ * Rows of the following files are renumbered, so that the first row of each sheet is row 1. Sheets whose names lead to the same file name (e.g. "Sales 1" and "Sales_1") get a counter appended to the sheet name in the file name. A writer is used by one thread at a time.
+ *
+ */
+public class PartitionedOfficeWriter {
+	private static final Log LOG = LogFactory.getLog(PartitionedOfficeWriter.class.getName());
+
+	private Configuration conf;
+	private Path file;
+	private Progressable progress;
+	private boolean compressed;
+	private Class<? extends CompressionCodec> compressorClass;
+	private HadoopFileReader currentReader;
+	private long rolloverRows;
+	private long rolloverCells;
+	private boolean partitionSheet;
+	private Map<String,Partition> partitions;
+	private Set<String> partFileNames;
+	private SpreadSheetCellDAO renumberedCell;
+
+	/**
+	 * Creates a writer for the files of a task. If cells are not partitioned by sheet then the first file is created immediately
+	 *
+	 * @param conf Configuration to be parsed by HadoopOfficeWriteConfiguration
+	 * @param file file of the task. Further files are named like this file with the sheet name and/or a number appended
+	 * @param progress progress of the task
+	 * @param compressed true if the files should be compressed
+	 * @param compressorClass codec to compress the files
+	 * @param currentReader reader to load linked workbooks and templates for each file
+	 *
+	 * @throws java.io.IOException in case the file cannot be created
+	 * @throws org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException in case the document cannot be created
+	 *
+	 */
+	public PartitionedOfficeWriter(Configuration conf, Path file, Progressable progress, boolean compressed, Class<? extends CompressionCodec> compressorClass, HadoopFileReader currentReader) throws IOException, OfficeWriterException {
+		this.conf=conf;
+		this.file=file;
+		this.progress=progress;
+		this.compressed=compressed;
+		this.compressorClass=compressorClass;
+		this.currentReader=currentReader;
+		HadoopOfficeWriteConfiguration howc=new HadoopOfficeWriteConfiguration(conf,file.getName());
+		this.rolloverRows=howc.getRolloverRows();
+		this.rolloverCells=howc.getRolloverCells();
+		this.partitionSheet=howc.getPartitionSheet();
+		this.partitions=new LinkedHashMap<>();
+		this.partFileNames=new HashSet<>();
+		this.renumberedCell=new SpreadSheetCellDAO();
+		if (!this.partitionSheet) { // the file of the task is always written
+			this.partitions.put("", this.openPartition(null, null, 0));
+		}
+	}
+
+	/**
+	 * Checks if the cells of a task are written into several files
+	 *
+	 * @param howc configuration
+	 *
+	 * @return true if a new file is started after a number of rows or cells or if the cells are partitioned by sheet
+	 *
+	 */
+	public static boolean isPartitioned(HadoopOfficeWriteConfiguration howc) {
+		return (howc.getRolloverRows()>0) || (howc.getRolloverCells()>0) || (howc.getPartitionSheet());
+	}
+
+	/**
+	 * Writes a cell into the current file of its partition. Starts a new file if the current one is full
+	 *
+	 * @param o cell of the class SpreadSheetCellDAO
+	 *
+	 * @throws org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException in case the cell is not valid (e.g. it is not written row by row)
+	 * @throws java.io.IOException in case a file cannot be written or created
+	 *
+	 */
+	public void write(Object o) throws OfficeWriterException, IOException {
+		if (!(o instanceof SpreadSheetCellDAO)) {
+			throw new OfficeWriterException("Objects which are not of the class SpreadSheetCellDAO are not supported for writing.");
+		}
+		SpreadSheetCellDAO sscd=(SpreadSheetCellDAO)o;
+		if ((sscd.getSheetName()==null) || ("".equals(sscd.getSheetName()))) {
+			throw new OfficeWriterException("Invalid cell specification: empy sheet name not allowed.");
+		}
+		if (sscd.getAddress()==null) {
+			throw new OfficeWriterException("Invalid cell specification: empy cell address not allowed.");
+		}
+		int rowNum=MSExcelUtil.getRowIndex(sscd.getAddress());
+		int columnNum=MSExcelUtil.getColumnIndex(sscd.getAddress());
+		if (rowNum<0) { // not in the usual A1 format (e.g. lower case letters)
+			CellAddress currentCA = new CellAddress(sscd.getAddress());
+			rowNum=currentCA.getRow();
+			columnNum=currentCA.getColumn();
+		}
+		if ((rowNum<0) || (columnNum<0)) {
+			throw new OfficeWriterException("Invalid cell specification: invalid cell address "+sscd.getAddress());
+		}
+		String partitionName=this.partitionSheet?sscd.getSheetName():"";
+		Partition currentPartition=this.partitions.get(partitionName);
+		if (currentPartition==null) {
+			currentPartition=this.openPartition(sscd.getSheetName(), PartitionedOfficeWriter.getFileLabel(sscd.getSheetName()), 0);
+			this.partitions.put(partitionName, currentPartition);
+		}
+		if ((currentPartition.rows==0) || (rowNum!=currentPartition.lastRow) || (!sscd.getSheetName().equals(currentPartition.lastSheetName))) { // new row
+			if (this.isFull(currentPartition)) {
+				currentPartition.close();
+				currentPartition=this.openPartition(currentPartition.sheetName, currentPartition.fileLabel, currentPartition.partNumber+1);
+				this.partitions.put(partitionName, currentPartition);
+			}
+			currentPartition.rows++;
+			currentPartition.lastRow=rowNum;
+			currentPartition.lastSheetName=sscd.getSheetName();
+		}
+		currentPartition.cells++;
+		if (currentPartition.partNumber==0) {
+			currentPartition.officeWriter.write(sscd);
+		} else { // the first row of each sheet is row 1
+			Integer firstRow=currentPartition.firstRows.get(sscd.getSheetName());
+			if (firstRow==null) {
+				firstRow=rowNum;
+				currentPartition.firstRows.put(sscd.getSheetName(), firstRow);
+			}
+			if (rowNum<firstRow) {
+				throw new OfficeWriterException("Invalid cell specification: cell "+sscd.getAddress()+" of sheet "+sscd.getSheetName()+" belongs to a file that has already been written. Cells need to be written row by row");
+			}
+			this.renumberedCell.set(sscd.getFormattedValue(), sscd.getComment(), sscd.getFormula(), MSExcelUtil.getCellAddressA1Format(rowNum-firstRow, columnNum), sscd.getSheetName());
+			currentPartition.officeWriter.write(this.renumberedCell);
+		}
+	}
+
+	/**
+	 * Writes and closes the current files of all partitions
+	 *
+	 * @throws java.io.IOException in case a file cannot be written
+	 *
+	 */
+	public void close() throws IOException {
+		IOException firstException=null;
+		for (Partition currentPartition: this.partitions.values()) {
+			try {
+				currentPartition.close();
+			} catch (IOException e) {
+				LOG.error(e);
+				if (firstException==null) {
+					firstException=e;
+				}
+			}
+		}
+		this.partitions.clear();
+		if (firstException!=null) {
+			throw firstException;
+		}
+	}
+
+	/**
+	 * Checks if a new file needs to be started before the next row
+	 *
+	 * @param partition partition
+	 *
+	 * @return true if the configured number of rows or cells has been written into the current file of the partition
+	 *
+	 */
+	private boolean isFull(Partition partition) {
+		return ((this.rolloverRows>0) && (partition.rows>=this.rolloverRows)) || ((this.rolloverCells>0) && (partition.cells>=this.rolloverCells));
+	}
+
+	/**
+	 * Creates a new file for a partition. The name of the file is unique within the task, so that no file of the task is overwritten
+	 *
+	 * @param sheetName sheet of the partition or null if cells are not partitioned by sheet
+	 * @param fileLabel label of the partition in the file name (cf. getFileLabel) or null if cells are not partitioned by sheet
+	 * @param partNumber number of the file within the partition
+	 *
+	 * @return partition with the new file
+	 *
+	 * @throws java.io.IOException in case the file cannot be created
+	 * @throws org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException in case the document cannot be created
+	 *
+	 */
+	private Partition openPartition(String sheetName, String fileLabel, int partNumber) throws IOException, OfficeWriterException {
+		String uniqueFileLabel=fileLabel;
+		String partFileName=PartitionedOfficeWriter.getPartFileName(this.file.getName(), uniqueFileLabel, partNumber);
+		for (int collision=2;!this.partFileNames.add(partFileName);collision++) { // another partition uses the same file name
+			if (fileLabel==null) {
+				throw new OfficeWriterException("File "+partFileName+" has already been written by the task");
+			}
+			uniqueFileLabel=fileLabel+"_"+collision;
+			partFileName=PartitionedOfficeWriter.getPartFileName(this.file.getName(), uniqueFileLabel, partNumber);
+		}
+		if ((fileLabel!=null) && (!fileLabel.equals(uniqueFileLabel))) {
+			LOG.warn("File name of sheet \""+sheetName+"\" is already used by another sheet. Its cells are written into "+partFileName);
+		}
+		Path partFile=new Path(this.file.getParent(), partFileName);
+		LOG.info("Writing file "+partFile);
+		HadoopOfficeWriteConfiguration howc=new HadoopOfficeWriteConfiguration(this.conf,partFile.getName());
+		OfficeWriter officeWriter;
+		try {
+			officeWriter=new OfficeWriter(howc);
+		} catch (InvalidWriterConfigurationException e) {
+			LOG.error(e);
+			throw new OfficeWriterException(e.toString());
+		}
+		// linked workbooks and template are loaded again for each file
+		Map<String,InputStream> linkedWorkbooksMap=this.currentReader.loadLinkedWorkbooks(howc.getLinkedWorkbooksName());
+		InputStream templateInputStream=null;
+		if ((howc.getTemplate()!=null) && (!"".equals(howc.getTemplate()))) {
+			templateInputStream=this.currentReader.loadTemplate(howc.getTemplate());
+		}
+		DataOutputStream out=HadoopUtil.getDataOutputStream(this.conf,partFile,this.progress,this.compressed,this.compressorClass);
+		try {
+			officeWriter.create(out,linkedWorkbooksMap,howc.getLinkedWBCredentialMap(),templateInputStream);
+		} catch (OfficeWriterException e) {
+			out.close();
+			throw e;
+		}
+		return new Partition(sheetName, uniqueFileLabel, partNumber, officeWriter, out);
+	}
+
+	/**
+	 * Determines the label of a sheet in the names of its files. Different sheets may have the same label
+	 *
+	 * @param sheetName name of the sheet
+	 *
+	 * @return sheet name with only characters that are safe in file names
+	 *
+	 */
+	private static String getFileLabel(String sheetName) {
+		return WorkbookUtil.createSafeSheetName(sheetName).replaceAll("[^A-Za-z0-9_.-]", "_");
+	}
+
+	/**
+	 * Determines the name of a file of a partition
+	 *
+	 * @param fileName name of the file of the task (e.g. part-r-00000.xlsx)
+	 * @param fileLabel label of the partition (cf. getFileLabel) or null if cells are not partitioned by sheet
+	 * @param partNumber number of the file within the partition
+	 *
+	 * @return file name with the label and number appended before the file extension (e.g. part-r-00000-Sheet1-1.xlsx). The first file of a partition has no number
+	 *
+	 */
+	public static String getPartFileName(String fileName, String fileLabel, int partNumber) {
+		int extensionPos=fileName.lastIndexOf('.');
+		if (extensionPos<0) {
+			extensionPos=fileName.length();
+		}
+		StringBuilder result=new StringBuilder(fileName.length()+32);
+		result.append(fileName, 0, extensionPos);
+		if (fileLabel!=null) {
+			result.append('-').append(fileLabel);
+		}
+		if (partNumber>0) {
+			result.append('-').append(partNumber);
+		}
+		result.append(fileName, extensionPos, fileName.length());
+		return result.toString();
+	}
+
+	/**
+	 * Current file of a partition
+	 *
+	 */
+	private static class Partition {
+		private String sheetName;
+		private String fileLabel;
+		private int partNumber;
+		private OfficeWriter officeWriter;
+		private DataOutputStream out;
+		private long rows;
+		private long cells;
+		private int lastRow;
+		private String lastSheetName;
+		private Map<String,Integer> firstRows;
+
+		Partition(String sheetName, String fileLabel, int partNumber, OfficeWriter officeWriter, DataOutputStream out) {
+			this.sheetName=sheetName;
+			this.fileLabel=fileLabel;
+			this.partNumber=partNumber;
+			this.officeWriter=officeWriter;
+			this.out=out;
+			this.firstRows=new HashMap<>();
+		}
+
+		/**
+		 * Writes the document into the file and closes it
+		 *
+		 * @throws java.io.IOException in case the file cannot be written
+		 *
+		 */
+		void close() throws IOException {
+			try {
+				this.officeWriter.close();
+			} finally {
+				this.out.close();
+			}
+		}
+	}
+
+}
@@ -22,18 +22,47 @@ import java.io.IOException;
 
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.zuinnote.hadoop.office.format.common.util.MSExcelUtil;
 
 
 /*
 * This DAO represents a spreadsheet cell
+*
+* If typed values are read (cf. hadoopoffice.read.typedValues) then the cell also contains the type of its value (e.g. TYPE_NUMERIC) and its value as a primitive (cf. getNumericValue, getLongValue), so that it does not need to be parsed from the formatted value.
 */
 
 public class SpreadSheetCellDAO implements Writable {
+public static final byte TYPE_UNKNOWN=0; // only the formatted value is available
+public static final byte TYPE_NUMERIC=1;
+public static final byte TYPE_STRING=2;
+public static final byte TYPE_BOOLEAN=3;
+public static final byte TYPE_DATE=4;
+public static final byte TYPE_ERROR=5;
+public static final byte TYPE_BLANK=6;
+
+// negative, so that it cannot be confused with the length of the formatted value in the original format
+private static final byte FORMAT_VERSION=-1;
+private static final int FLAG_FORMATTEDVALUE=1;
+private static final int FLAG_COMMENT=2;
+private static final int FLAG_FORMULA=4;
+private static final int FLAG_ADDRESS_A1=8;
+private static final int FLAG_ADDRESS_TEXT=16;
+private static final int FLAG_SHEETNAME=32;
+private static final int FLAG_TYPED=64;
+private static final int FLAG_ADDRESS_POSITION=128; // only as part of a row
+private static final int ADDRESS_NOT_PARSED=-2;
+
 private String formattedValue;
 private String comment;
 private String formula;
 private String address;
 private String sheetName;
+private byte valueType;
+private double numericValue;
+private long longValue;
+private int addressRow;
+private int addressColumn;
 
 public SpreadSheetCellDAO() {
 	this.formattedValue="";
@@ -41,7 +70,8 @@ public SpreadSheetCellDAO() {
 	this.formula="";
 	this.address="";
 	this.sheetName="";
-	
+	this.valueType=SpreadSheetCellDAO.TYPE_UNKNOWN;
+	this.addressRow=SpreadSheetCellDAO.ADDRESS_NOT_PARSED;
 }
 
 
@@ -51,6 +81,7 @@ public SpreadSheetCellDAO(String formattedValue, String comment, String formula,
 	this.formula=formula;
 	this.address=address;
 	this.sheetName=sheetName;
+	this.addressRow=SpreadSheetCellDAO.ADDRESS_NOT_PARSED;
 }
 
 public String getFormattedValue() {
@@ -66,6 +97,9 @@ public String getFormula() {
 }
 
 public String getAddress() {
+	if ((this.address==null) && (this.addressRow>=0)) { // deserialized from row and column
+		this.address=MSExcelUtil.getCellAddressA1Format(this.addressRow, this.addressColumn);
+	}
 	return this.address;
 }
 
@@ -74,67 +108,370 @@ public String getSheetName() {
 	return this.sheetName;
 }
 
+/*
+* Returns the type of the value
+*
+* @return type (e.g. TYPE_NUMERIC), TYPE_UNKNOWN if typed values have not been read
+*
+*/
+public byte getValueType() {
+	return this.valueType;
+}
+
+/*
+* Returns the value of a numeric cell (TYPE_NUMERIC) or the serial number of a date (TYPE_DATE) as it is stored in the document
+*
+* @return value
+*
+*/
+public double getNumericValue() {
+	return this.numericValue;
+}
+
+/*
+* Returns the value of a date (TYPE_DATE) in milliseconds since 1970-01-01 (default time zone), of a boolean (TYPE_BOOLEAN, 1 for true and 0 for false) or the error code (TYPE_ERROR, cf. org.apache.poi.ss.usermodel.FormulaError)
+*
+* @return value
+*
+*/
+public long getLongValue() {
+	return this.longValue;
+}
+
+/*
+* Returns the value of a boolean cell (TYPE_BOOLEAN)
+*
+* @return value
+*
+*/
+public boolean getBooleanValue() {
+	return this.longValue!=0L;
+}
+
+/*
+* Sets the type of the value without a primitive value (e.g. TYPE_STRING or TYPE_BLANK)
+*
+* @param valueType type
+*
+*/
+public void setValueType(byte valueType) {
+	this.valueType=valueType;
+}
+
+/*
+* Sets a numeric value (TYPE_NUMERIC)
+*
+* @param numericValue value
+*
+*/
+public void setNumericValue(double numericValue) {
+	this.valueType=SpreadSheetCellDAO.TYPE_NUMERIC;
+	this.numericValue=numericValue;
+}
+
+/*
+* Sets a date (TYPE_DATE)
+*
+* @param numericValue serial number of the date as stored in the document
+* @param dateValue milliseconds since 1970-01-01
+*
+*/
+public void setDateValue(double numericValue, long dateValue) {
+	this.valueType=SpreadSheetCellDAO.TYPE_DATE;
+	this.numericValue=numericValue;
+	this.longValue=dateValue;
+}
+
+/*
+* Sets a boolean value (TYPE_BOOLEAN)
+*
+* @param booleanValue value
+*
+*/
+public void setBooleanValue(boolean booleanValue) {
+	this.valueType=SpreadSheetCellDAO.TYPE_BOOLEAN;
+	this.longValue=booleanValue?1L:0L;
+}
+
+/*
+* Sets an error (TYPE_ERROR)
+*
+* @param errorCode error code (cf. org.apache.poi.ss.usermodel.FormulaError)
+*
+*/
+public void setErrorValue(int errorCode) {
+	this.valueType=SpreadSheetCellDAO.TYPE_ERROR;
+	this.longValue=errorCode;
+}
+
 
 
 public void set(SpreadSheetCellDAO newSpreadSheetCellDAO) {
 	this.formattedValue=newSpreadSheetCellDAO.getFormattedValue();
         this.comment=newSpreadSheetCellDAO.getComment();
 	this.formula=newSpreadSheetCellDAO.getFormula();
-	this.address=newSpreadSheetCellDAO.getAddress();
+	this.address=newSpreadSheetCellDAO.address;
+	this.addressRow=newSpreadSheetCellDAO.addressRow;
+	this.addressColumn=newSpreadSheetCellDAO.addressColumn;
 	this.sheetName=newSpreadSheetCellDAO.getSheetName();
+	this.valueType=newSpreadSheetCellDAO.getValueType();
+	this.numericValue=newSpreadSheetCellDAO.getNumericValue();
+	this.longValue=newSpreadSheetCellDAO.getLongValue();
+}
+
+/*
+* Sets all fields of the cell, e.g. if the cell is reused for another cell (cf. hadoopoffice.read.reuseObjects). The cell does not have a typed value afterwards
+*
+* @param formattedValue formatted value
+* @param comment comment
+* @param formula formula
+* @param address address in A1 format
+* @param sheetName name of the sheet
+*
+*/
+public void set(String formattedValue, String comment, String formula, String address, String sheetName) {
+	this.formattedValue=formattedValue;
+	this.comment=comment;
+	this.formula=formula;
+	this.address=address;
+	this.addressRow=SpreadSheetCellDAO.ADDRESS_NOT_PARSED;
+	this.sheetName=sheetName;
+	this.valueType=SpreadSheetCellDAO.TYPE_UNKNOWN;
+	this.numericValue=0.0;
+	this.longValue=0L;
 }
 
 
 /** Writable **/
 
+/*
+* The serialized form starts with a version byte (cf. FORMAT_VERSION) and a bitmask of the fields that are present, so that empty fields do not need any space. Addresses in A1 format are stored as row and column number.
+* Data in the original format (five Text objects) can still be read.
+*/
+
   @Override
   public void write(DataOutput dataOutput) throws IOException {
-    Text formattedValueText = new Text("");
-    if (formattedValue!=null) {
-	formattedValueText = new Text(formattedValue);
+    dataOutput.writeByte(SpreadSheetCellDAO.FORMAT_VERSION);
+    this.write(dataOutput, "", -1L, -1);
+}
+
+/*
+* Writes the cell without version byte as part of a row (cf. SpreadSheetRowWritable). The sheet name is only written if it differs from the one of the row and the address is not written if it is the position of the cell in the row
+*
+* @param dataOutput output
+* @param rowSheetName sheet name of the row ("" if the cell is written on its own)
+* @param rowNum row number of the row (starting from 1, -1 if the cell is written on its own)
+* @param columnNum position of the cell in the row (starting from 0, -1 if the cell is written on its own)
+*
+* @throws java.io.IOException in case of errors writing to the output
+*
+*/
+void write(DataOutput dataOutput, String rowSheetName, long rowNum, int columnNum) throws IOException {
+    int flags=0;
+    if (!isEmpty(this.formattedValue)) {
+	flags|=SpreadSheetCellDAO.FLAG_FORMATTEDVALUE;
     }
-    Text commentText = new Text("");
-    if (comment!=null) {
-	commentText = new Text(comment);
+    if (!isEmpty(this.comment)) {
+	flags|=SpreadSheetCellDAO.FLAG_COMMENT;
     }
-    Text formulaText = new Text("");
-    if (formula!=null) {
-	formulaText = new Text(formula);
+    if (!isEmpty(this.formula)) {
+	flags|=SpreadSheetCellDAO.FLAG_FORMULA;
     }
-    Text addressText = new Text("");
-    if (address!=null) {
-	addressText = new Text(address);
+    if (this.getAddressRow()>=0) {
+	if ((columnNum>=0) && (this.addressRow==rowNum-1) && (this.addressColumn==columnNum)) {
+		flags|=SpreadSheetCellDAO.FLAG_ADDRESS_POSITION;
+	} else {
+		flags|=SpreadSheetCellDAO.FLAG_ADDRESS_A1;
+	}
+    } else if (!isEmpty(this.address)) {
+	flags|=SpreadSheetCellDAO.FLAG_ADDRESS_TEXT;
     }
-    Text sheetNameText = new Text("");
-    if (sheetName!=null) {
-	sheetNameText = new Text(sheetName);
+    if (!(this.sheetName==null?"":this.sheetName).equals(rowSheetName)) {
+	flags|=SpreadSheetCellDAO.FLAG_SHEETNAME;
+    }
+    if (this.valueType!=SpreadSheetCellDAO.TYPE_UNKNOWN) {
+	flags|=SpreadSheetCellDAO.FLAG_TYPED;
+    }
+    dataOutput.writeByte(flags);
+    if ((flags&SpreadSheetCellDAO.FLAG_FORMATTEDVALUE)!=0) {
+	Text.writeString(dataOutput, this.formattedValue);
+    }
+    if ((flags&SpreadSheetCellDAO.FLAG_COMMENT)!=0) {
+	Text.writeString(dataOutput, this.comment);
+    }
+    if ((flags&SpreadSheetCellDAO.FLAG_FORMULA)!=0) {
+	Text.writeString(dataOutput, this.formula);
+    }
+    if ((flags&SpreadSheetCellDAO.FLAG_ADDRESS_A1)!=0) {
+	WritableUtils.writeVInt(dataOutput, this.addressRow);
+	WritableUtils.writeVInt(dataOutput, this.addressColumn);
+    } else if ((flags&SpreadSheetCellDAO.FLAG_ADDRESS_TEXT)!=0) {
+	Text.writeString(dataOutput, this.address);
+    }
+    if ((flags&SpreadSheetCellDAO.FLAG_SHEETNAME)!=0) {
+	Text.writeString(dataOutput, this.sheetName==null?"":this.sheetName);
+    }
+    if ((flags&SpreadSheetCellDAO.FLAG_TYPED)!=0) {
+	dataOutput.writeByte(this.valueType);
+	switch (this.valueType) {
+		case SpreadSheetCellDAO.TYPE_NUMERIC:
+			dataOutput.writeDouble(this.numericValue);
+			break;
+		case SpreadSheetCellDAO.TYPE_DATE:
+			dataOutput.writeDouble(this.numericValue);
+			WritableUtils.writeVLong(dataOutput, this.longValue);
+			break;
+		case SpreadSheetCellDAO.TYPE_BOOLEAN:
+		case SpreadSheetCellDAO.TYPE_ERROR:
+			WritableUtils.writeVLong(dataOutput, this.longValue);
+			break;
+		default:
+			break;
+	}
     }
-
-    formattedValueText.write(dataOutput);
-    commentText.write(dataOutput);
-    formulaText.write(dataOutput);
-    addressText.write(dataOutput);
-    sheetNameText.write(dataOutput);
-
 }
 
   @Override
   public void readFields(DataInput dataInput) throws IOException {
-    Text formattedValueText = new Text();
-    formattedValueText.readFields(dataInput);
-    this.formattedValue=formattedValueText.toString();
-    Text commentText = new Text();
-    commentText.readFields(dataInput);
-    this.comment=commentText.toString();
-    Text formulaText = new Text();
-    formulaText.readFields(dataInput);
-    this.formula=formulaText.toString();
-    Text addressText = new Text();
-    addressText.readFields(dataInput);
-    this.address=addressText.toString();
-    Text sheetNameText = new Text();
-    sheetNameText.readFields(dataInput);
-    this.sheetName=sheetNameText.toString();
+    byte firstByte=dataInput.readByte();
+    if (firstByte!=SpreadSheetCellDAO.FORMAT_VERSION) {
+	this.readFieldsOriginalFormat(firstByte, dataInput);
+	return;
+    }
+    this.readFields(dataInput, "", -1L, -1);
+}
+
+/*
+* Reads a cell without version byte that has been written as part of a row (cf. write(DataOutput,String,long,int))
+*
+* @param dataInput input
+* @param rowSheetName sheet name of the row ("" if the cell has been written on its own)
+* @param rowNum row number of the row (starting from 1, -1 if the cell has been written on its own)
+* @param columnNum position of the cell in the row (starting from 0, -1 if the cell has been written on its own)
+*
+* @throws java.io.IOException in case of errors reading from the input
+*
+*/
+void readFields(DataInput dataInput, String rowSheetName, long rowNum, int columnNum) throws IOException {
+    int flags=dataInput.readByte()&0xFF;
+    this.formattedValue=(flags&SpreadSheetCellDAO.FLAG_FORMATTEDVALUE)!=0?Text.readString(dataInput):"";
+    this.comment=(flags&SpreadSheetCellDAO.FLAG_COMMENT)!=0?Text.readString(dataInput):"";
+    this.formula=(flags&SpreadSheetCellDAO.FLAG_FORMULA)!=0?Text.readString(dataInput):"";
+    if ((flags&SpreadSheetCellDAO.FLAG_ADDRESS_A1)!=0) {
+	this.addressRow=WritableUtils.readVInt(dataInput);
+	this.addressColumn=WritableUtils.readVInt(dataInput);
+	this.address=null; // created on demand
+    } else if ((flags&SpreadSheetCellDAO.FLAG_ADDRESS_POSITION)!=0) {
+	this.addressRow=(int)(rowNum-1);
+	this.addressColumn=columnNum;
+	this.address=null; // created on demand
+    } else {
+	this.address=(flags&SpreadSheetCellDAO.FLAG_ADDRESS_TEXT)!=0?Text.readString(dataInput):"";
+	this.addressRow=SpreadSheetCellDAO.ADDRESS_NOT_PARSED;
+    }
+    this.sheetName=(flags&SpreadSheetCellDAO.FLAG_SHEETNAME)!=0?Text.readString(dataInput):rowSheetName;
+    this.valueType=SpreadSheetCellDAO.TYPE_UNKNOWN;
+    this.numericValue=0.0;
+    this.longValue=0L;
+    if ((flags&SpreadSheetCellDAO.FLAG_TYPED)!=0) {
+	this.valueType=dataInput.readByte();
+	switch (this.valueType) {
+		case SpreadSheetCellDAO.TYPE_NUMERIC:
+			this.numericValue=dataInput.readDouble();
+			break;
+		case SpreadSheetCellDAO.TYPE_DATE:
+			this.numericValue=dataInput.readDouble();
+			this.longValue=WritableUtils.readVLong(dataInput);
+			break;
+		case SpreadSheetCellDAO.TYPE_BOOLEAN:
+		case SpreadSheetCellDAO.TYPE_ERROR:
+			this.longValue=WritableUtils.readVLong(dataInput);
+			break;
+		default:
+			break;
+	}
+    }
+}
+
+/*
+* Reads a cell in the original format, i.e. formatted value, comment, formula, address and sheet name as Text
+*
+* @param firstByte first byte of the length of the formatted value, which has already been read
+* @param dataInput input
+*
+*/
+private void readFieldsOriginalFormat(byte firstByte, DataInput dataInput) throws IOException {
+    this.formattedValue=readString(firstByte, dataInput);
+    this.comment=Text.readString(dataInput);
+    this.formula=Text.readString(dataInput);
+    this.address=Text.readString(dataInput);
+    this.addressRow=SpreadSheetCellDAO.ADDRESS_NOT_PARSED;
+    this.sheetName=Text.readString(dataInput);
+    this.valueType=SpreadSheetCellDAO.TYPE_UNKNOWN;
+    this.numericValue=0.0;
+    this.longValue=0L;
+}
+
+/*
+* Reads a string that has been written by Text.writeString, but the first byte of its length has already been read
+*
+* @param firstByte first byte of the length (variable-length encoded)
+* @param dataInput input
+*
+* @return string
+*
+*/
+private static String readString(byte firstByte, DataInput dataInput) throws IOException {
+    int length=firstByte;
+    int lengthSize=WritableUtils.decodeVIntSize(firstByte);
+    if (lengthSize>1) {
+	long value=0L;
+	for (int i=0;i<lengthSize-1;i++) {
+		value=(value<<8)|(dataInput.readByte()&0xFF);
+	}
+	length=(int)(WritableUtils.isNegativeVInt(firstByte)?(value^-1L):value);
+    }
+    if (length<0) {
+	throw new IOException("Invalid length of string: "+length);
+    }
+    byte[] bytes=new byte[length];
+    dataInput.readFully(bytes, 0, length);
+    return Text.decode(bytes);
+}
+
+private static boolean isEmpty(String value) {
+    return (value==null) || (value.isEmpty());
+}
+
+/*
+* Returns the row of the address, if it is in A1 format
+*
+* @return row (starting from 0), -1 if the address is not in A1 format
+*
+*/
+private int getAddressRow() {
+    if (this.addressRow==SpreadSheetCellDAO.ADDRESS_NOT_PARSED) {
+	this.parseAddress();
+    }
+    return this.addressRow;
+}
+
+/*
+* Parses the address in A1 format (e.g. AB12) into row and column without creating any objects
+*
+*/
+private void parseAddress() {
+    this.addressRow=-1;
+    this.addressColumn=-1;
+    if (this.address==null) {
+	return;
+    }
+    int row=MSExcelUtil.getRowIndex(this.address);
+    if (row<0) {
+	return;
+    }
+    this.addressRow=row;
+    this.addressColumn=MSExcelUtil.getColumnIndex(this.address);
 }
 
 }
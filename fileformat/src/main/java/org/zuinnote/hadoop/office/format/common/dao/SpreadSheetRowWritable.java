@@ -0,0 +1,255 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.common.dao;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/*
+* This Writable represents a row of a spreadsheet, i.e. the sheet name, the row number and the cells of the row (null for cells that do not exist)
+*
+* Compared to an ArrayWritable of SpreadSheetCellDAO the sheet name and the row number are only serialized once per row and the address of a cell is not serialized if it is the position of the cell in the row. Rows with few cells are serialized with the positions of the cells (sparse), other rows with a bitmap of the existing cells (dense).
+* The array of cells and the cells themselves are reused by readFields, i.e. they are overwritten by the next call.
+*/
+
+public class SpreadSheetRowWritable implements Writable {
+private static final byte FORMAT_VERSION=1;
+private static final byte LAYOUT_DENSE=0;
+private static final byte LAYOUT_SPARSE=1;
+private static final SpreadSheetCellDAO[] EMPTY_ROW=new SpreadSheetCellDAO[0];
+
+private String sheetName;
+private long rowNum;
+private SpreadSheetCellDAO[] cells;
+private int numberOfCells;
+private SpreadSheetCellDAO[] rowBuffer; // array of cells of the rows that have been read
+private SpreadSheetCellDAO[] cellBuffer; // cells that have been read (also those not part of the current row) for reuse
+private byte[] bitmapBuffer;
+
+public SpreadSheetRowWritable() {
+	this.sheetName="";
+	this.rowNum=0L;
+	this.cells=SpreadSheetRowWritable.EMPTY_ROW;
+	this.numberOfCells=0;
+	this.rowBuffer=SpreadSheetRowWritable.EMPTY_ROW;
+	this.cellBuffer=SpreadSheetRowWritable.EMPTY_ROW;
+	this.bitmapBuffer=new byte[0];
+}
+
+public SpreadSheetRowWritable(String sheetName, long rowNum, SpreadSheetCellDAO[] cells) {
+	this();
+	this.set(sheetName, rowNum, cells);
+}
+
+/*
+* Sets the row. The array of cells is not copied
+*
+* @param sheetName name of the sheet
+* @param rowNum row number (starting from 1)
+* @param cells cells of the row (may contain null)
+*
+*/
+public void set(String sheetName, long rowNum, SpreadSheetCellDAO[] cells) {
+	this.sheetName=sheetName==null?"":sheetName;
+	this.rowNum=rowNum;
+	this.cells=cells==null?SpreadSheetRowWritable.EMPTY_ROW:cells;
+	this.numberOfCells=this.cells.length;
+}
+
+public String getSheetName() {
+	return this.sheetName;
+}
+
+/*
+* Returns the row number
+*
+* @return row number (starting from 1)
+*
+*/
+public long getRowNum() {
+	return this.rowNum;
+}
+
+/*
+* Returns the number of cells of the row including cells that do not exist (null)
+*
+* @return number of cells
+*
+*/
+public int getNumberOfCells() {
+	return this.numberOfCells;
+}
+
+/*
+* Returns a cell of the row
+*
+* @param column position of the cell (starting from 0)
+*
+* @return cell or null if it does not exist
+*
+*/
+public SpreadSheetCellDAO getCell(int column) {
+	if ((column<0) || (column>=this.numberOfCells)) {
+		return null;
+	}
+	return this.cells[column];
+}
+
+/*
+* Returns the cells of the row as a new array with getNumberOfCells() elements. The cells are not copied
+*
+* @return cells of the row (may contain null)
+*
+*/
+public SpreadSheetCellDAO[] toArray() {
+	SpreadSheetCellDAO[] result = new SpreadSheetCellDAO[this.numberOfCells];
+	System.arraycopy(this.cells, 0, result, 0, this.numberOfCells);
+	return result;
+}
+
+
+/** Writable **/
+
+  @Override
+  public void write(DataOutput dataOutput) throws IOException {
+    int existingCells=0;
+    for (int i=0;i<this.numberOfCells;i++) {
+	if (this.cells[i]!=null) {
+		existingCells++;
+	}
+    }
+    int bitmapLength=(this.numberOfCells+7)/8;
+    byte layout=existingCells<bitmapLength?SpreadSheetRowWritable.LAYOUT_SPARSE:SpreadSheetRowWritable.LAYOUT_DENSE;
+    dataOutput.writeByte(SpreadSheetRowWritable.FORMAT_VERSION);
+    dataOutput.writeByte(layout);
+    Text.writeString(dataOutput, this.sheetName);
+    WritableUtils.writeVLong(dataOutput, this.rowNum);
+    WritableUtils.writeVInt(dataOutput, this.numberOfCells);
+    if (layout==SpreadSheetRowWritable.LAYOUT_SPARSE) {
+	WritableUtils.writeVInt(dataOutput, existingCells);
+	int lastColumn=-1;
+	for (int i=0;i<this.numberOfCells;i++) {
+		if (this.cells[i]!=null) {
+			WritableUtils.writeVInt(dataOutput, i-lastColumn);
+			this.cells[i].write(dataOutput, this.sheetName, this.rowNum, i);
+			lastColumn=i;
+		}
+	}
+    } else {
+	byte[] bitmap=this.getBitmapBuffer(bitmapLength);
+	for (int i=0;i<this.numberOfCells;i++) {
+		if (this.cells[i]!=null) {
+			bitmap[i>>3]|=(byte)(1<<(i&7));
+		}
+	}
+	dataOutput.write(bitmap, 0, bitmapLength);
+	for (int i=0;i<this.numberOfCells;i++) {
+		if (this.cells[i]!=null) {
+			this.cells[i].write(dataOutput, this.sheetName, this.rowNum, i);
+		}
+	}
+    }
+}
+
+  @Override
+  public void readFields(DataInput dataInput) throws IOException {
+    byte version=dataInput.readByte();
+    if (version!=SpreadSheetRowWritable.FORMAT_VERSION) {
+	throw new IOException("Unknown format version of row: "+version);
+    }
+    byte layout=dataInput.readByte();
+    this.sheetName=Text.readString(dataInput);
+    this.rowNum=WritableUtils.readVLong(dataInput);
+    this.numberOfCells=WritableUtils.readVInt(dataInput);
+    if (this.numberOfCells<0) {
+	throw new IOException("Invalid number of cells of row: "+this.numberOfCells);
+    }
+    if (this.rowBuffer.length<this.numberOfCells) {
+	int newLength=Math.max(this.numberOfCells, this.rowBuffer.length*2);
+	SpreadSheetCellDAO[] newCellBuffer = new SpreadSheetCellDAO[newLength];
+	System.arraycopy(this.cellBuffer, 0, newCellBuffer, 0, this.cellBuffer.length);
+	this.cellBuffer=newCellBuffer;
+	this.rowBuffer=new SpreadSheetCellDAO[newLength];
+    }
+    this.cells=this.rowBuffer;
+    for (int i=0;i<this.numberOfCells;i++) {
+	this.cells[i]=null;
+    }
+    if (layout==SpreadSheetRowWritable.LAYOUT_SPARSE) {
+	int existingCells=WritableUtils.readVInt(dataInput);
+	int column=-1;
+	for (int i=0;i<existingCells;i++) {
+		column+=WritableUtils.readVInt(dataInput);
+		if ((column<0) || (column>=this.numberOfCells)) {
+			throw new IOException("Invalid position of cell in row: "+column);
+		}
+		this.readCell(dataInput, column);
+	}
+    } else if (layout==SpreadSheetRowWritable.LAYOUT_DENSE) {
+	int bitmapLength=(this.numberOfCells+7)/8;
+	byte[] bitmap=this.getBitmapBuffer(bitmapLength);
+	dataInput.readFully(bitmap, 0, bitmapLength);
+	for (int i=0;i<this.numberOfCells;i++) {
+		if ((bitmap[i>>3]&(1<<(i&7)))!=0) {
+			this.readCell(dataInput, i);
+		}
+	}
+    } else {
+	throw new IOException("Unknown layout of row: "+layout);
+    }
+}
+
+/*
+* Reads a cell into the cell buffer and puts it into the row
+*
+* @param dataInput input
+* @param column position of the cell
+*
+*/
+private void readCell(DataInput dataInput, int column) throws IOException {
+	if (this.cellBuffer[column]==null) {
+		this.cellBuffer[column]=new SpreadSheetCellDAO();
+	}
+	this.cellBuffer[column].readFields(dataInput, this.sheetName, this.rowNum, column);
+	this.cells[column]=this.cellBuffer[column];
+}
+
+/*
+* Returns the buffer for the bitmap of existing cells with all bits cleared
+*
+* @param length minimum length
+*
+* @return buffer
+*
+*/
+private byte[] getBitmapBuffer(int length) {
+	if (this.bitmapBuffer.length<length) {
+		this.bitmapBuffer=new byte[length];
+	} else {
+		for (int i=0;i<length;i++) {
+			this.bitmapBuffer[i]=0;
+		}
+	}
+	return this.bitmapBuffer;
+}
+
+}
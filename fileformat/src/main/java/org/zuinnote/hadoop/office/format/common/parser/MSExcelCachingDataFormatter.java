@@ -0,0 +1,204 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.util.LocaleUtil;
+
+/*
+*
+* DataFormatter that keeps the analysis of the formats of a workbook by their format index (e.g. if it is a date format). Integral numbers with the format "General" or a plain integer or decimal format (e.g. 0 or 0.00) are formatted directly without java.text.Format. All other values are formatted by DataFormatter, i.e. the result is always the same as the one of DataFormatter.
+* A formatter is used for one workbook at a time and is not thread-safe.
+*
+*/
+public class MSExcelCachingDataFormatter extends DataFormatter {
+	private static final int MAX_CACHED_FORMATS=4096;
+	private static final Pattern FIXED_FORMAT_PATTERN=Pattern.compile("^0(\\.0+)?$");
+	private static final double MAX_GENERAL_INTEGER=1E10; // larger numbers may be formatted in scientific notation
+	private static final double MAX_FIXED_INTEGER=1E15; // larger numbers are not exact
+
+	private CachedFormat[] cachedFormats;
+	private boolean fastPathSupported;
+	private char decimalSeparator;
+
+	public MSExcelCachingDataFormatter() {
+		super();
+		this.init(LocaleUtil.getUserLocale());
+	}
+
+	public MSExcelCachingDataFormatter(Locale locale) {
+		super(locale);
+		this.init(locale);
+	}
+
+	/*
+	* Initializes the cache
+	*
+	* @param locale locale of the formatter
+	*
+	*/
+	private void init(Locale locale) {
+		this.cachedFormats=new CachedFormat[0];
+		DecimalFormatSymbols symbols=DecimalFormatSymbols.getInstance(locale);
+		// numbers are formatted directly only if the locale uses the usual digits and minus sign
+		this.fastPathSupported=(symbols.getZeroDigit()=='0') && (symbols.getMinusSign()=='-');
+		this.decimalSeparator=symbols.getDecimalSeparator();
+	}
+
+	@Override
+	public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+		CachedFormat cachedFormat=this.getCachedFormat(formatIndex, formatString);
+		if (cachedFormat!=null) {
+			String result=cachedFormat.formatIntegral(value);
+			if (result!=null) {
+				return result;
+			}
+		}
+		return super.formatRawCellContents(value, formatIndex, formatString, use1904Windowing);
+	}
+
+	@Override
+	public String formatCellValue(Cell cell, FormulaEvaluator evaluator) {
+		if ((cell!=null) && (cell.getCellTypeEnum()==CellType.NUMERIC)) {
+			CellStyle cellStyle=cell.getCellStyle();
+			if (cellStyle!=null) {
+				CachedFormat cachedFormat=this.getCachedFormat(cellStyle.getDataFormat(), cellStyle.getDataFormatString());
+				if (cachedFormat!=null) {
+					String result=cachedFormat.formatIntegral(cell.getNumericCellValue());
+					if (result!=null) {
+						return result;
+					}
+				}
+			}
+		}
+		return super.formatCellValue(cell, evaluator);
+	}
+
+	/*
+	* Returns the analysis of a format. It is only done once per format index
+	*
+	* @param formatIndex index of the format
+	* @param formatString format
+	*
+	* @return analysis of the format or null if the format is not cached
+	*
+	*/
+	private CachedFormat getCachedFormat(int formatIndex, String formatString) {
+		if ((!this.fastPathSupported) || (formatString==null) || (formatIndex<0) || (formatIndex>=MSExcelCachingDataFormatter.MAX_CACHED_FORMATS)) {
+			return null;
+		}
+		if (formatIndex>=this.cachedFormats.length) {
+			CachedFormat[] newCachedFormats=new CachedFormat[Math.min(MSExcelCachingDataFormatter.MAX_CACHED_FORMATS, Math.max(formatIndex+1, this.cachedFormats.length*2))];
+			System.arraycopy(this.cachedFormats, 0, newCachedFormats, 0, this.cachedFormats.length);
+			this.cachedFormats=newCachedFormats;
+		}
+		CachedFormat result=this.cachedFormats[formatIndex];
+		if ((result==null) || ((result.formatString!=formatString) && (!result.formatString.equals(formatString)))) { // the same index can have another format in another workbook (e.g. linked workbooks)
+			result=this.analyzeFormat(formatIndex, formatString);
+			this.cachedFormats[formatIndex]=result;
+		}
+		return result;
+	}
+
+	/*
+	* Analyzes a format
+	*
+	* @param formatIndex index of the format
+	* @param formatString format
+	*
+	* @return analysis of the format
+	*
+	*/
+	private CachedFormat analyzeFormat(int formatIndex, String formatString) {
+		if (DateUtil.isADateFormat(formatIndex, formatString)) {
+			return new CachedFormat(formatString, CachedFormat.KIND_OTHER, null);
+		}
+		if (("General".equalsIgnoreCase(formatString)) || ("@".equals(formatString))) {
+			return new CachedFormat(formatString, CachedFormat.KIND_GENERAL, null);
+		}
+		if (FIXED_FORMAT_PATTERN.matcher(formatString).matches()) {
+			String suffix=null;
+			if (formatString.length()>1) { // decimal places of an integer are all 0
+				StringBuilder suffixBuilder=new StringBuilder(formatString.length()-1);
+				suffixBuilder.append(this.decimalSeparator);
+				for (int i=2;i<formatString.length();i++) {
+					suffixBuilder.append('0');
+				}
+				suffix=suffixBuilder.toString();
+			}
+			return new CachedFormat(formatString, CachedFormat.KIND_FIXED, suffix);
+		}
+		return new CachedFormat(formatString, CachedFormat.KIND_OTHER, null);
+	}
+
+	/*
+	* Analysis of a format
+	*
+	*/
+	private static class CachedFormat {
+		private static final byte KIND_OTHER=0;
+		private static final byte KIND_GENERAL=1;
+		private static final byte KIND_FIXED=2;
+
+		private String formatString;
+		private byte kind;
+		private String suffix;
+
+		CachedFormat(String formatString, byte kind, String suffix) {
+			this.formatString=formatString;
+			this.kind=kind;
+			this.suffix=suffix;
+		}
+
+		/*
+		* Formats an integral number directly
+		*
+		* @param value number
+		*
+		* @return formatted number or null if it cannot be formatted directly (e.g. it is not integral or the format is not supported)
+		*
+		*/
+		String formatIntegral(double value) {
+			if ((this.kind==KIND_OTHER) || (value!=Math.rint(value)) || ((value==0.0) && (Double.doubleToRawLongBits(value)!=0L))) { // -0.0 is formatted differently by cell and by raw value
+				return null;
+			}
+			double abs=Math.abs(value);
+			if (this.kind==KIND_GENERAL) {
+				if (abs>=MSExcelCachingDataFormatter.MAX_GENERAL_INTEGER) {
+					return null;
+				}
+				return Long.toString((long)value);
+			}
+			if (abs>=MSExcelCachingDataFormatter.MAX_FIXED_INTEGER) {
+				return null;
+			}
+			if (this.suffix==null) {
+				return Long.toString((long)value);
+			}
+			return Long.toString((long)value)+this.suffix;
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+
+/*
+*
+* Provides the arrays of cells and the cells (SpreadSheetCellDAO) of the rows returned by the parsers (cf. hadoopoffice.read.reuseObjects). If objects are reused then the rows that have been returned before are given back with release and their arrays and cells are used again for the following rows. Otherwise new objects are created for every row.
+* Rows can be released by another thread than the one that decodes the document (e.g. the consumer of the low footprint parser). The number of kept objects is limited.
+*
+*/
+public class MSExcelCellPool {
+	private static final int MAX_CELLS=16384;
+	private static final int MAX_ROWS=16;
+	private static final SpreadSheetCellDAO[] EMPTY_ROW=new SpreadSheetCellDAO[0];
+
+	private boolean reuseObjects;
+	private BlockingQueue<SpreadSheetCellDAO> freeCells;
+	private BlockingQueue<SpreadSheetCellDAO[]> freeRows;
+
+	/*
+	* Creates a pool
+	*
+	* @param reuseObjects true, if objects should be reused, false if new objects should be created for every row
+	*
+	*/
+	public MSExcelCellPool(boolean reuseObjects) {
+		this.reuseObjects=reuseObjects;
+		if (reuseObjects) {
+			this.freeCells=new ArrayBlockingQueue<>(MSExcelCellPool.MAX_CELLS);
+			this.freeRows=new ArrayBlockingQueue<>(MSExcelCellPool.MAX_ROWS);
+		}
+	}
+
+	/*
+	* Returns an array for the cells of a row
+	*
+	* @param numberOfCells number of cells of the row
+	*
+	* @return array with numberOfCells elements, which are all null
+	*
+	*/
+	public SpreadSheetCellDAO[] getRow(int numberOfCells) {
+		if (!this.reuseObjects) {
+			return new SpreadSheetCellDAO[numberOfCells];
+		}
+		if (numberOfCells==0) {
+			return MSExcelCellPool.EMPTY_ROW;
+		}
+		SpreadSheetCellDAO[] result=this.freeRows.poll();
+		if (result==null) {
+			return new SpreadSheetCellDAO[numberOfCells];
+		}
+		if (result.length!=numberOfCells) { // rows of a sheet have mostly the same length, so it is kept for a following row
+			this.freeRows.offer(result);
+			return new SpreadSheetCellDAO[numberOfCells];
+		}
+		for (int i=0;i<result.length;i++) {
+			result[i]=null;
+		}
+		return result;
+	}
+
+	/*
+	* Returns a cell
+	*
+	* @param formattedValue formatted value
+	* @param comment comment
+	* @param formula formula
+	* @param address address in A1 format
+	* @param sheetName name of the sheet
+	*
+	* @return cell
+	*
+	*/
+	public SpreadSheetCellDAO getCell(String formattedValue, String comment, String formula, String address, String sheetName) {
+		if (this.reuseObjects) {
+			SpreadSheetCellDAO result=this.freeCells.poll();
+			if (result!=null) {
+				result.set(formattedValue, comment, formula, address, sheetName);
+				return result;
+			}
+		}
+		return new SpreadSheetCellDAO(formattedValue, comment, formula, address, sheetName);
+	}
+
+	/*
+	* Gives back a row that has been returned by the parser and is not used anymore, so that its array and its cells can be reused
+	*
+	* @param row row, may be null
+	*
+	*/
+	public void release(SpreadSheetCellDAO[] row) {
+		if ((!this.reuseObjects) || (row==null) || (row.length==0)) {
+			return;
+		}
+		for (int i=0;i<row.length;i++) {
+			if (row[i]!=null) {
+				this.freeCells.offer(row[i]);
+			}
+		}
+		this.freeRows.offer(row);
+	}
+
+	/*
+	* Checks if objects are reused
+	*
+	* @return true, if objects are reused, false if not
+	*
+	*/
+	public boolean getReuseObjects() {
+		return this.reuseObjects;
+	}
+
+}
@@ -0,0 +1,164 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.ss.util.CellReference;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+
+/*
+*
+* The columns that should be read (cf. hadoopoffice.read.columns). Cells outside of the projection are skipped by the parsers before they are formatted, so that no objects are created for them.
+* The projection is a "," separated list of columns (e.g. A), ranges of columns (e.g. F:H) and header names. Header names are matched against the values of the first row of each sheet. Header names that look like a column (e.g. ID) need to be put into double quotes (e.g. "ID").
+* Rows keep the position of the cells, i.e. the cell of column C is still the third element of a row, and cells outside of the projection are null. Rows end at the latest with the last column of the projection.
+*
+*/
+public class MSExcelColumnProjection {
+	private static final Log LOG = LogFactory.getLog(MSExcelColumnProjection.class.getName());
+	private static final Pattern COLUMN_PATTERN=Pattern.compile("^([A-Za-z]{1,3})(?::([A-Za-z]{1,3}))?$");
+
+	private BitSet columns;
+	private List<String> headerNames;
+
+	private MSExcelColumnProjection() {
+		this.columns=new BitSet();
+		this.headerNames=new ArrayList<>();
+	}
+
+	/*
+	* Parses the definition of a projection
+	*
+	* @param projection "," separated list of columns, ranges of columns and header names (e.g. A,C,F:H,"ID",price)
+	*
+	* @return projection or null if all columns should be read
+	*
+	*/
+	public static MSExcelColumnProjection parse(String projection) {
+		if ((projection==null) || ("".equals(projection.trim()))) {
+			return null;
+		}
+		MSExcelColumnProjection result = new MSExcelColumnProjection();
+		for (String currentItem: projection.split(",")) {
+			String item=currentItem.trim();
+			if ("".equals(item)) {
+				continue;
+			}
+			if ((item.length()>1) && (item.startsWith("\"")) && (item.endsWith("\""))) { // quoted header name
+				result.headerNames.add(item.substring(1,item.length()-1));
+				continue;
+			}
+			Matcher columnMatcher=COLUMN_PATTERN.matcher(item);
+			if (columnMatcher.matches()) {
+				int firstColumn=CellReference.convertColStringToIndex(columnMatcher.group(1));
+				int lastColumn=columnMatcher.group(2)==null?firstColumn:CellReference.convertColStringToIndex(columnMatcher.group(2));
+				result.columns.set(Math.min(firstColumn,lastColumn),Math.max(firstColumn,lastColumn)+1);
+			} else {
+				result.headerNames.add(item);
+			}
+		}
+		return result;
+	}
+
+	/*
+	* Checks if the projection contains header names, which need to be resolved with the first row of each sheet
+	*
+	* @return true, if it contains header names, false if not
+	*
+	*/
+	public boolean hasHeaderNames() {
+		return !this.headerNames.isEmpty();
+	}
+
+	/*
+	* Returns the columns of the projection without resolving header names
+	*
+	* @return columns (starting from 0)
+	*
+	*/
+	public BitSet getColumns() {
+		return (BitSet)this.columns.clone();
+	}
+
+	/*
+	* Returns the columns of the projection for a sheet
+	*
+	* @param headerRow formatted values of the first row of the sheet (null values are allowed), null if the sheet does not have any rows
+	*
+	* @return columns (starting from 0)
+	*
+	*/
+	public BitSet getColumns(String[] headerRow) {
+		BitSet result=this.getColumns();
+		for (String currentName: this.headerNames) {
+			boolean found=false;
+			if (headerRow!=null) {
+				for (int i=0;i<headerRow.length;i++) {
+					if ((headerRow[i]!=null) && (currentName.equals(headerRow[i].trim()))) {
+						result.set(i);
+						found=true;
+					}
+				}
+			}
+			if (!found) {
+				LOG.warn("Column with header \""+currentName+"\" not found");
+			}
+		}
+		return result;
+	}
+
+	/*
+	* Checks if a column is part of the projection
+	*
+	* @param columns columns of the projection, null if all columns are read
+	* @param column column (starting from 0)
+	*
+	* @return true, if the column should be read, false if not
+	*
+	*/
+	public static boolean isProjected(BitSet columns, int column) {
+		return (columns==null) || columns.get(column);
+	}
+
+	/*
+	* Applies the projection to a row that has been read completely (e.g. the first row of a sheet, which is needed to resolve header names)
+	*
+	* @param row cells of the row
+	* @param columns columns of the projection, null if all columns are read
+	*
+	* @return row with the cells of the projection
+	*
+	*/
+	public static SpreadSheetCellDAO[] project(SpreadSheetCellDAO[] row, BitSet columns) {
+		if ((columns==null) || (row==null)) {
+			return row;
+		}
+		SpreadSheetCellDAO[] result = new SpreadSheetCellDAO[Math.min(row.length, columns.length())];
+		for (int i=0;i<result.length;i++) {
+			if (columns.get(i)) {
+				result[i]=row[i];
+			}
+		}
+		return result;
+	}
+
+}
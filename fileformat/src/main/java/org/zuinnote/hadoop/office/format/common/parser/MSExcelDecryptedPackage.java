@@ -0,0 +1,486 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.RC2ParameterSpec;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.poi.poifs.crypt.CipherAlgorithm;
+import org.apache.poi.poifs.crypt.CryptoFunctions;
+import org.apache.poi.poifs.crypt.Decryptor;
+import org.apache.poi.poifs.crypt.EncryptionHeader;
+import org.apache.poi.poifs.crypt.EncryptionInfo;
+import org.apache.poi.poifs.crypt.EncryptionMode;
+import org.apache.poi.util.LittleEndian;
+import org.apache.poi.util.LittleEndianInputStream;
+
+/*
+*
+* Provides the decrypted zip package of an encrypted new Excel file (.xlsx) by reading the compound file directly from its position in the file (cf. PositionedReadable).
+* Contrary to Apache POI (cf. NPOIFSFileSystem), the compound file is not loaded into memory. Only its header, directory and the EncryptionInfo stream are read when the package is opened. The EncryptedPackage stream is decrypted segment by segment (4096 bytes each) when the zip reader requests the segment (cf. MSExcelZipEntrySource), so that the heap stays bounded independent of the size of the file.
+* Only agile encryption is supported. Other encryption modes are left to Apache POI.
+*
+*/
+public class MSExcelDecryptedPackage implements PositionedReadable {
+	private static final Log LOG = LogFactory.getLog(MSExcelDecryptedPackage.class.getName());
+	private static final long SIGNATURE_CFB=0xE11AB1A1E011CFD0L;
+	private static final int LENGTH_HEADER=512;
+	private static final int LENGTH_DIRECTORY_ENTRY=128;
+	private static final int HEADER_DIFAT_ENTRIES=109;
+	private static final int END_OF_CHAIN=-2;
+	private static final int TYPE_STREAM=2;
+	private static final int SEGMENT_SIZE=4096;
+	private static final int CACHED_SEGMENTS=16;
+	private static final int MAX_FAT_SECTORS_READ=64; // contiguous FAT sectors are read at once
+	private static final String ENTRY_ENCRYPTION_INFO="EncryptionInfo";
+
+	private PositionedReadable in;
+	private int sectorSize;
+	private int[] fatSectors;
+	private int cachedFatStart;
+	private int cachedFatCount;
+	private byte[] cachedFat;
+	// the sectors of the EncryptedPackage stream as runs of contiguous sectors in the file
+	private long[] runStreamSectors;
+	private int[] runFileSectors;
+	private long packageStreamSize;
+	private long length;
+	private EncryptionHeader encryptionHeader;
+	private SecretKey secretKey;
+	private Cipher cipher;
+	private Map<Long,byte[]> segmentCache;
+
+	private MSExcelDecryptedPackage(PositionedReadable in) {
+		this.in=in;
+		this.cachedFatStart=-1;
+		this.cachedFatCount=0;
+		this.segmentCache=new LinkedHashMap<Long,byte[]>(CACHED_SEGMENTS,0.75f,true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long,byte[]> eldest) {
+				return size()>CACHED_SEGMENTS;
+			}
+		};
+	}
+
+	/*
+	* Opens the decrypted zip package of an encrypted new Excel file (.xlsx)
+	*
+	* @param in encrypted new Excel file (compound file). It is not closed by this class
+	* @param password password of the file
+	* @param keyCache cache of the keys derived from passwords or null if the key should not be cached (cf. MSExcelKeyCache)
+	*
+	* @return decrypted zip package or null, if the file cannot be decrypted segment by segment (e.g. it is not encrypted with agile encryption). Such files can still be decrypted by Apache POI
+	*
+	* @throws java.io.IOException in case of errors reading the file
+	* @throws org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException in case the file is not a valid compound file or the password is wrong
+	*
+	*/
+	public static MSExcelDecryptedPackage open(PositionedReadable in, String password, MSExcelKeyCache keyCache) throws IOException, FormatNotUnderstoodException {
+		MSExcelDecryptedPackage result = new MSExcelDecryptedPackage(in);
+		byte[] header = new byte[LENGTH_HEADER];
+		in.readFully(0, header, 0, LENGTH_HEADER);
+		if (LittleEndian.getLong(header,0)!=SIGNATURE_CFB) {
+			throw new FormatNotUnderstoodException("Invalid compound file");
+		}
+		result.sectorSize=1<<LittleEndian.getUShort(header,30);
+		int miniSectorSize=1<<LittleEndian.getUShort(header,32);
+		int numberOfFatSectors=LittleEndian.getInt(header,44);
+		int firstDirectorySector=LittleEndian.getInt(header,48);
+		long miniStreamCutoff=LittleEndian.getUInt(header,56);
+		int firstMiniFatSector=LittleEndian.getInt(header,60);
+		int firstDifatSector=LittleEndian.getInt(header,68);
+		if (((result.sectorSize!=512) && (result.sectorSize!=4096)) || (numberOfFatSectors<0)) {
+			throw new FormatNotUnderstoodException("Invalid compound file");
+		}
+		// locations of the FAT sectors
+		result.fatSectors=new int[numberOfFatSectors];
+		int fatIndex=0;
+		for (int i=0;(i<HEADER_DIFAT_ENTRIES) && (fatIndex<numberOfFatSectors);i++) {
+			result.fatSectors[fatIndex++]=LittleEndian.getInt(header,76+i*4);
+		}
+		int difatSector=firstDifatSector;
+		byte[] difat = new byte[result.sectorSize];
+		while (fatIndex<numberOfFatSectors) {
+			if (difatSector<0) {
+				throw new FormatNotUnderstoodException("Invalid compound file: DIFAT is incomplete");
+			}
+			in.readFully(result.getSectorOffset(difatSector), difat, 0, result.sectorSize);
+			for (int i=0;(i<result.sectorSize/4-1) && (fatIndex<numberOfFatSectors);i++) {
+				result.fatSectors[fatIndex++]=LittleEndian.getInt(difat,i*4);
+			}
+			difatSector=LittleEndian.getInt(difat,result.sectorSize-4);
+		}
+		// find the encryption info and the encrypted package among the entries of the root storage
+		byte[] directory = result.readChain(firstDirectorySector, -1);
+		int rootChild=LittleEndian.getInt(directory,76);
+		int encryptionInfoEntry=-1;
+		int encryptedPackageEntry=-1;
+		Deque<Integer> entriesToVisit = new ArrayDeque<>();
+		entriesToVisit.push(rootChild);
+		int numberOfEntries=directory.length/LENGTH_DIRECTORY_ENTRY;
+		int visitedEntries=0;
+		while (!entriesToVisit.isEmpty()) {
+			int currentEntry=entriesToVisit.pop();
+			if ((currentEntry<0) || (currentEntry>=numberOfEntries)) {
+				continue;
+			}
+			if (++visitedEntries>numberOfEntries) {
+				throw new FormatNotUnderstoodException("Invalid compound file: directory contains a cycle");
+			}
+			int offset=currentEntry*LENGTH_DIRECTORY_ENTRY;
+			String name=getEntryName(directory,offset);
+			if (directory[offset+66]==TYPE_STREAM) {
+				if (ENTRY_ENCRYPTION_INFO.equals(name)) {
+					encryptionInfoEntry=offset;
+				} else if (Decryptor.DEFAULT_POIFS_ENTRY.equals(name)) {
+					encryptedPackageEntry=offset;
+				}
+			}
+			entriesToVisit.push(LittleEndian.getInt(directory,offset+68));
+			entriesToVisit.push(LittleEndian.getInt(directory,offset+72));
+		}
+		if ((encryptionInfoEntry==-1) || (encryptedPackageEntry==-1)) {
+			LOG.debug("Compound file does not contain an encrypted package");
+			return null;
+		}
+		// the encryption info is usually small and then stored in the mini stream
+		long encryptionInfoSize=result.getEntrySize(directory,encryptionInfoEntry);
+		int encryptionInfoStart=LittleEndian.getInt(directory,encryptionInfoEntry+116);
+		byte[] encryptionInfoData;
+		if (encryptionInfoSize<miniStreamCutoff) {
+			byte[] miniFat = result.readChain(firstMiniFatSector, -1);
+			byte[] miniStream = result.readChain(LittleEndian.getInt(directory,116), result.getEntrySize(directory,0));
+			encryptionInfoData=new byte[(int)encryptionInfoSize];
+			int miniSector=encryptionInfoStart;
+			for (int pos=0;pos<encryptionInfoData.length;pos+=miniSectorSize) {
+				if ((miniSector<0) || ((long)(miniSector+1)*miniSectorSize>miniStream.length) || (miniSector*4+4>miniFat.length)) {
+					throw new FormatNotUnderstoodException("Invalid compound file: EncryptionInfo is incomplete");
+				}
+				System.arraycopy(miniStream, miniSector*miniSectorSize, encryptionInfoData, pos, Math.min(miniSectorSize, encryptionInfoData.length-pos));
+				miniSector=LittleEndian.getInt(miniFat,miniSector*4);
+			}
+		} else {
+			encryptionInfoData=result.readChain(encryptionInfoStart, encryptionInfoSize);
+		}
+		EncryptionInfo info = new EncryptionInfo(new LittleEndianInputStream(new ByteArrayInputStream(encryptionInfoData)), null);
+		if (info.getEncryptionMode()!=EncryptionMode.agile) {
+			LOG.debug("Encryption mode "+info.getEncryptionMode()+" is not decrypted segment by segment");
+			return null;
+		}
+		result.packageStreamSize=result.getEntrySize(directory,encryptedPackageEntry);
+		if ((result.packageStreamSize<miniStreamCutoff) || (result.packageStreamSize<LittleEndian.LONG_SIZE)) {
+			LOG.debug("Encrypted package is stored in the mini stream and is not decrypted segment by segment");
+			return null;
+		}
+		Decryptor decryptor = MSExcelKeyCache.getDecryptor(info, keyCache);
+		try {
+			if (!decryptor.verifyPassword(password)) {
+				throw new FormatNotUnderstoodException("Error: Cannot decrypt new Excel file (.xlsx) in low footprint mode: wrong password");
+			}
+		} catch (GeneralSecurityException e) {
+			LOG.error(e);
+			throw new FormatNotUnderstoodException("Error: Cannot decrypt new Excel file (.xlsx) in low footprint mode");
+		}
+		result.encryptionHeader=info.getHeader();
+		result.secretKey=decryptor.getSecretKey();
+		result.cipher=CryptoFunctions.getCipher(result.secretKey, result.encryptionHeader.getCipherAlgorithm(), result.encryptionHeader.getChainingMode(), result.encryptionHeader.getKeySalt(), Cipher.DECRYPT_MODE, "NoPadding");
+		result.readPackageRuns(LittleEndian.getInt(directory,encryptedPackageEntry+116));
+		byte[] streamSize = new byte[LittleEndian.LONG_SIZE];
+		result.readPackageStream(0, streamSize, 0, streamSize.length);
+		result.length=LittleEndian.getLong(streamSize,0);
+		if ((result.length<0) || (result.length>result.packageStreamSize-LittleEndian.LONG_SIZE)) {
+			throw new FormatNotUnderstoodException("Invalid size of encrypted package: "+result.length);
+		}
+		LOG.debug("Decrypting encrypted package of "+result.length+" bytes segment by segment");
+		return result;
+	}
+
+	/*
+	* Returns the length of the decrypted zip package
+	*
+	* @return length in bytes
+	*
+	*/
+	public long getLength() {
+		return this.length;
+	}
+
+	@Override
+	public synchronized int read(long position, byte[] buffer, int offset, int length) throws IOException {
+		if (position>=this.length) {
+			return -1;
+		}
+		int toRead=(int)Math.min(length, this.length-position);
+		int done=0;
+		while (done<toRead) {
+			long currentPosition=position+done;
+			byte[] segment=this.getSegment(currentPosition/SEGMENT_SIZE);
+			int segmentOffset=(int)(currentPosition%SEGMENT_SIZE);
+			int currentLength=Math.min(toRead-done, segment.length-segmentOffset);
+			System.arraycopy(segment, segmentOffset, buffer, offset+done, currentLength);
+			done+=currentLength;
+		}
+		return toRead;
+	}
+
+	@Override
+	public void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+		if ((position<0) || (position+length>this.length)) {
+			throw new EOFException("Cannot read "+length+" bytes at position "+position+" of decrypted package with "+this.length+" bytes");
+		}
+		if (length>0) {
+			this.read(position, buffer, offset, length);
+		}
+	}
+
+	@Override
+	public void readFully(long position, byte[] buffer) throws IOException {
+		this.readFully(position, buffer, 0, buffer.length);
+	}
+
+	/*
+	* Returns a decrypted segment of the package. Recently used segments are cached, because the zip reader reads the headers and the data of an entry separately
+	*
+	* @param index index of the segment
+	*
+	* @return decrypted segment (at most 4096 bytes)
+	*
+	* @throws java.io.IOException in case the segment cannot be read or decrypted
+	*
+	*/
+	private byte[] getSegment(long index) throws IOException {
+		byte[] result=this.segmentCache.get(index);
+		if (result!=null) {
+			return result;
+		}
+		long segmentStart=index*SEGMENT_SIZE;
+		int blockSize=this.encryptionHeader.getBlockSize();
+		int encryptedLength=(int)Math.min(SEGMENT_SIZE, this.packageStreamSize-LittleEndian.LONG_SIZE-segmentStart);
+		encryptedLength-=encryptedLength%blockSize;
+		int plainLength=(int)Math.min(SEGMENT_SIZE, this.length-segmentStart);
+		if (encryptedLength<plainLength) {
+			throw new IOException("Encrypted package is incomplete at segment "+index);
+		}
+		byte[] data = new byte[encryptedLength];
+		this.readPackageStream(LittleEndian.LONG_SIZE+segmentStart, data, 0, encryptedLength);
+		try {
+			byte[] blockKey = new byte[LittleEndian.INT_SIZE];
+			LittleEndian.putInt(blockKey, 0, (int)index);
+			byte[] iv=CryptoFunctions.generateIv(this.encryptionHeader.getHashAlgorithm(), this.encryptionHeader.getKeySalt(), blockKey, blockSize);
+			AlgorithmParameterSpec aps;
+			if (this.encryptionHeader.getCipherAlgorithm()==CipherAlgorithm.rc2) {
+				aps=new RC2ParameterSpec(this.secretKey.getEncoded().length*8, iv);
+			} else {
+				aps=new IvParameterSpec(iv);
+			}
+			this.cipher.init(Cipher.DECRYPT_MODE, this.secretKey, aps);
+			this.cipher.doFinal(data, 0, encryptedLength, data);
+		} catch (GeneralSecurityException e) {
+			LOG.error(e);
+			throw new IOException("Cannot decrypt segment "+index+" of encrypted package", e);
+		}
+		if (plainLength<encryptedLength) {
+			result=new byte[plainLength];
+			System.arraycopy(data, 0, result, 0, plainLength);
+		} else {
+			result=data;
+		}
+		this.segmentCache.put(index, result);
+		return result;
+	}
+
+	/*
+	* Reads from the EncryptedPackage stream
+	*
+	* @param streamPosition position in the stream
+	* @param buffer buffer
+	* @param offset offset in the buffer
+	* @param length number of bytes to read
+	*
+	* @throws java.io.IOException in case the stream cannot be read
+	*
+	*/
+	private void readPackageStream(long streamPosition, byte[] buffer, int offset, int length) throws IOException {
+		int done=0;
+		while (done<length) {
+			long currentPosition=streamPosition+done;
+			long streamSector=currentPosition/this.sectorSize;
+			int sectorOffset=(int)(currentPosition%this.sectorSize);
+			// find the run containing the sector
+			int low=0;
+			int high=this.runStreamSectors.length-2;
+			while (low<high) {
+				int middle=(low+high+1)>>>1;
+				if (this.runStreamSectors[middle]<=streamSector) {
+					low=middle;
+				} else {
+					high=middle-1;
+				}
+			}
+			long fileSector=this.runFileSectors[low]+(streamSector-this.runStreamSectors[low]);
+			long runRemaining=(this.runStreamSectors[low+1]-streamSector)*this.sectorSize-sectorOffset;
+			int currentLength=(int)Math.min(length-done, runRemaining);
+			this.in.readFully(this.getSectorOffset(fileSector)+sectorOffset, buffer, offset+done, currentLength);
+			done+=currentLength;
+		}
+	}
+
+	/*
+	* Determines the sectors of the EncryptedPackage stream as runs of contiguous sectors, so that the stream can be read at any position without following its chain
+	*
+	* @param startSector first sector of the stream
+	*
+	* @throws java.io.IOException in case the FAT cannot be read
+	* @throws org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException in case the chain of the stream is invalid
+	*
+	*/
+	private void readPackageRuns(int startSector) throws IOException, FormatNotUnderstoodException {
+		long numberOfSectors=(this.packageStreamSize+this.sectorSize-1)/this.sectorSize;
+		List<Long> streamSectors = new ArrayList<>();
+		List<Integer> fileSectors = new ArrayList<>();
+		int currentSector=startSector;
+		int previousSector=-1;
+		for (long i=0;i<numberOfSectors;i++) {
+			if (currentSector<0) {
+				throw new FormatNotUnderstoodException("Invalid compound file: EncryptedPackage is incomplete");
+			}
+			if ((previousSector==-1) || (currentSector!=previousSector+1)) {
+				streamSectors.add(i);
+				fileSectors.add(currentSector);
+			}
+			previousSector=currentSector;
+			currentSector=this.getNextSector(currentSector);
+		}
+		this.runStreamSectors=new long[streamSectors.size()+1];
+		this.runFileSectors=new int[fileSectors.size()];
+		for (int i=0;i<fileSectors.size();i++) {
+			this.runStreamSectors[i]=streamSectors.get(i);
+			this.runFileSectors[i]=fileSectors.get(i);
+		}
+		this.runStreamSectors[streamSectors.size()]=numberOfSectors;
+		LOG.debug("EncryptedPackage consists of "+fileSectors.size()+" runs of sectors");
+	}
+
+	/*
+	* Reads a stream by following its chain in the FAT
+	*
+	* @param startSector first sector
+	* @param size size of the stream in bytes or -1, if the complete chain should be read (e.g. directory)
+	*
+	* @return content of the stream
+	*
+	* @throws java.io.IOException in case the file cannot be read
+	* @throws org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException in case the chain is invalid
+	*
+	*/
+	private byte[] readChain(int startSector, long size) throws IOException, FormatNotUnderstoodException {
+		List<Integer> sectors = new ArrayList<>();
+		long maxSectors=(long)this.fatSectors.length*(this.sectorSize/4);
+		int currentSector=startSector;
+		while ((currentSector!=END_OF_CHAIN) && ((size==-1) || ((long)sectors.size()*this.sectorSize<size))) {
+			if ((currentSector<0) || (sectors.size()>=maxSectors)) {
+				throw new FormatNotUnderstoodException("Invalid compound file: invalid chain of sectors");
+			}
+			sectors.add(currentSector);
+			currentSector=this.getNextSector(currentSector);
+		}
+		long chainLength=(long)sectors.size()*this.sectorSize;
+		if ((size>chainLength) || (chainLength>Integer.MAX_VALUE)) {
+			throw new FormatNotUnderstoodException("Invalid compound file: invalid chain of sectors");
+		}
+		byte[] result = new byte[(int)(size==-1?chainLength:size)];
+		for (int i=0;i<sectors.size();i++) {
+			int pos=i*this.sectorSize;
+			this.in.readFully(this.getSectorOffset(sectors.get(i)), result, pos, Math.min(this.sectorSize, result.length-pos));
+		}
+		return result;
+	}
+
+	/*
+	* Returns the next sector of a chain. Contiguous FAT sectors are read and cached together
+	*
+	* @param sector current sector
+	*
+	* @return next sector
+	*
+	* @throws java.io.IOException in case the FAT cannot be read
+	* @throws org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException in case the sector is not covered by the FAT
+	*
+	*/
+	private int getNextSector(int sector) throws IOException, FormatNotUnderstoodException {
+		int entriesPerSector=this.sectorSize/4;
+		int fatIndex=sector/entriesPerSector;
+		if (fatIndex>=this.fatSectors.length) {
+			throw new FormatNotUnderstoodException("Invalid compound file: sector "+sector+" is not covered by the FAT");
+		}
+		if ((fatIndex<this.cachedFatStart) || (fatIndex>=this.cachedFatStart+this.cachedFatCount)) {
+			int count=1;
+			while ((count<MAX_FAT_SECTORS_READ) && (fatIndex+count<this.fatSectors.length) && (this.fatSectors[fatIndex+count]==this.fatSectors[fatIndex]+count)) {
+				count++;
+			}
+			if ((this.cachedFat==null) || (this.cachedFat.length<count*this.sectorSize)) {
+				this.cachedFat=new byte[count*this.sectorSize];
+			}
+			this.in.readFully(this.getSectorOffset(this.fatSectors[fatIndex]), this.cachedFat, 0, count*this.sectorSize);
+			this.cachedFatStart=fatIndex;
+			this.cachedFatCount=count;
+		}
+		return LittleEndian.getInt(this.cachedFat, (sector-this.cachedFatStart*entriesPerSector)*4);
+	}
+
+	private long getSectorOffset(long sector) {
+		return (sector+1)*this.sectorSize;
+	}
+
+	private long getEntrySize(byte[] directory, int offset) {
+		if (this.sectorSize==512) { // the upper 32 bits may contain garbage in version 3 files
+			return LittleEndian.getUInt(directory,offset+120);
+		}
+		return LittleEndian.getLong(directory,offset+120);
+	}
+
+	private static String getEntryName(byte[] directory, int offset) {
+		int nameLength=LittleEndian.getUShort(directory,offset+64);
+		if ((nameLength<2) || (nameLength>64)) {
+			return "";
+		}
+		char[] name = new char[nameLength/2-1];
+		for (int i=0;i<name.length;i++) {
+			name[i]=(char)LittleEndian.getUShort(directory,offset+i*2);
+		}
+		return new String(name);
+	}
+
+}
@@ -0,0 +1,235 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.EncryptedDocumentException;
+import org.apache.poi.poifs.crypt.CipherAlgorithm;
+import org.apache.poi.poifs.crypt.CryptoFunctions;
+import org.apache.poi.poifs.crypt.Decryptor;
+import org.apache.poi.poifs.crypt.EncryptionInfo;
+import org.apache.poi.poifs.crypt.EncryptionMode;
+import org.apache.poi.poifs.crypt.HashAlgorithm;
+import org.apache.poi.poifs.crypt.agile.AgileDecryptor;
+import org.apache.poi.poifs.crypt.agile.AgileEncryptionHeader;
+import org.apache.poi.poifs.crypt.agile.AgileEncryptionVerifier;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+
+/*
+*
+* Caches the keys derived from the passwords of encrypted new Excel files (.xlsx) with agile encryption (cf. hadoopoffice.read.security.crypt.keyCache).
+* Apache POI derives the key of every file by hashing the password together with the salt of the file many times (usually 100000 times SHA-512), which takes longer than reading a small file. The derived key only depends on the hash algorithm, the number of iterations (spin count), the salt and the password.
+* The cache belongs to the configuration of a reader (cf. HadoopOfficeReadConfiguration.getDerivedKeyCache), so that further files of the reader with the same password and salt (e.g. files written by the same tool in a split of CombineExcelFileInputFormat or linked workbooks) do not derive it again. The keys are released together with the reader, so that they are not kept by long-lived JVMs (e.g. Spark executors or reused JVMs) for later tasks. Only a hash of the password is kept in the cache. At most MAX_KEYS derived keys are kept.
+*
+*/
+public class MSExcelKeyCache {
+	private static final Log LOG = LogFactory.getLog(MSExcelKeyCache.class.getName());
+	private static final int MAX_KEYS=64;
+	private static final String PASSWORD_DIGEST="SHA-256";
+	private static final Charset CHARSET_UTF16LE=Charset.forName("UTF-16LE");
+	// block keys of agile encryption (cf. AgileDecryptor)
+	private static final byte[] VERIFIER_INPUT_BLOCK={(byte)0xfe, (byte)0xa7, (byte)0xd2, (byte)0x76, (byte)0x3b, (byte)0x4b, (byte)0x9e, (byte)0x79};
+	private static final byte[] HASHED_VERIFIER_BLOCK={(byte)0xd7, (byte)0xaa, (byte)0x0f, (byte)0x6d, (byte)0x30, (byte)0x61, (byte)0x34, (byte)0x4e};
+	private static final byte[] CRYPTO_KEY_BLOCK={(byte)0x14, (byte)0x6e, (byte)0x0b, (byte)0xe7, (byte)0xab, (byte)0xac, (byte)0xd0, (byte)0xd6};
+	private static final byte[] INTEGRITY_KEY_BLOCK={(byte)0x5f, (byte)0xb2, (byte)0xad, (byte)0x01, (byte)0x0c, (byte)0xb9, (byte)0xe1, (byte)0xf6};
+	private static final byte[] INTEGRITY_VALUE_BLOCK={(byte)0xa0, (byte)0x67, (byte)0x7f, (byte)0x02, (byte)0xb2, (byte)0x2c, (byte)0x84, (byte)0x33};
+	private Map<ByteBuffer,byte[]> derivedKeys;
+
+	/*
+	* Creates an empty cache
+	*
+	*/
+	public MSExcelKeyCache() {
+		this.derivedKeys=new LinkedHashMap<ByteBuffer,byte[]>(MAX_KEYS,0.75f,true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ByteBuffer,byte[]> eldest) {
+				return size()>MAX_KEYS;
+			}
+		};
+	}
+
+	/*
+	* Returns the decryptor of an encrypted new Excel file (.xlsx). Files with agile encryption get a decryptor that uses the cache when the password is verified
+	*
+	* @param info encryption info of the file
+	* @param keyCache cache of derived keys or null if derived keys should not be cached
+	*
+	* @return decryptor (also set as decryptor of info)
+	*
+	*/
+	public static Decryptor getDecryptor(EncryptionInfo info, MSExcelKeyCache keyCache) {
+		Decryptor result=Decryptor.getInstance(info);
+		if ((keyCache!=null) && (info.getEncryptionMode()==EncryptionMode.agile) && (!(result instanceof CachingAgileDecryptor))) {
+			result=new CachingAgileDecryptor(keyCache);
+			result.setEncryptionInfo(info);
+			info.setDecryptor(result);
+		}
+		return result;
+	}
+
+	/*
+	* Returns the decrypted zip package of an encrypted new Excel file (.xlsx). Behaves like Apache POI (cf. WorkbookFactory), i.e. the default password is tried if the password is wrong or not given
+	*
+	* @param fs compound file containing the encrypted package. It is closed when the returned stream is closed
+	* @param password password or null if no password is given
+	* @param keyCache cache of derived keys or null if derived keys should not be cached
+	*
+	* @return decrypted zip package
+	*
+	* @throws java.io.IOException in case the file cannot be read or decrypted
+	* @throws org.apache.poi.EncryptedDocumentException in case the password is wrong
+	*
+	*/
+	public static InputStream getDecryptedStream(final NPOIFSFileSystem fs, String password, MSExcelKeyCache keyCache) throws IOException {
+		Decryptor decryptor=MSExcelKeyCache.getDecryptor(new EncryptionInfo(fs), keyCache);
+		try {
+			boolean passwordCorrect=((password!=null) && (decryptor.verifyPassword(password))) || (decryptor.verifyPassword(Decryptor.DEFAULT_PASSWORD));
+			if (!passwordCorrect) {
+				if (password!=null) {
+					throw new EncryptedDocumentException("Password incorrect");
+				}
+				throw new EncryptedDocumentException("The supplied spreadsheet is protected, but no password was supplied");
+			}
+			return new FilterInputStream(decryptor.getDataStream(fs)) {
+				@Override
+				public void close() throws IOException {
+					fs.close();
+					super.close();
+				}
+			};
+		} catch (GeneralSecurityException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/*
+	* Returns the hash of a password as it is used by agile encryption (cf. CryptoFunctions.hashPassword). It is only calculated if it is not yet cached
+	*
+	* @param password password, null for the default password
+	* @param hashAlgorithm hash algorithm
+	* @param salt salt of the file
+	* @param spinCount number of iterations
+	*
+	* @return hash of the password
+	*
+	*/
+	public byte[] getPasswordHash(String password, HashAlgorithm hashAlgorithm, byte[] salt, int spinCount) {
+		String currentPassword=password==null?Decryptor.DEFAULT_PASSWORD:password;
+		ByteBuffer key;
+		try {
+			byte[] passwordDigest=MessageDigest.getInstance(PASSWORD_DIGEST).digest(currentPassword.getBytes(CHARSET_UTF16LE));
+			// the digest of the password has a fixed length, so that the salt can have any length
+			key=ByteBuffer.allocate(8+salt.length+passwordDigest.length);
+			key.putInt(hashAlgorithm.ordinal());
+			key.putInt(spinCount);
+			key.put(salt);
+			key.put(passwordDigest);
+			key.flip();
+		} catch (NoSuchAlgorithmException e) {
+			LOG.error(e);
+			return CryptoFunctions.hashPassword(currentPassword, hashAlgorithm, salt, spinCount);
+		}
+		byte[] result;
+		synchronized(this.derivedKeys) {
+			result=this.derivedKeys.get(key);
+		}
+		if (result==null) {
+			result=CryptoFunctions.hashPassword(currentPassword, hashAlgorithm, salt, spinCount);
+			synchronized(this.derivedKeys) {
+				this.derivedKeys.put(key, result);
+			}
+		} else {
+			LOG.debug("Using cached key derived from password");
+		}
+		return result.clone();
+	}
+
+	/*
+	* Decrypts a value of the key encryptor of agile encryption with a key derived from the hash of the password (cf. AgileDecryptor.hashInput)
+	*
+	*/
+	private static byte[] hashInput(AgileEncryptionVerifier ver, byte[] passwordHash, byte[] blockKey, byte[] input) throws GeneralSecurityException {
+		int blockSize=ver.getBlockSize();
+		byte[] intermediateKey=CryptoFunctions.generateKey(passwordHash, ver.getHashAlgorithm(), blockKey, ver.getKeySize()/8);
+		SecretKey secretKey=new SecretKeySpec(intermediateKey, ver.getCipherAlgorithm().jceId);
+		byte[] iv=CryptoFunctions.generateIv(ver.getHashAlgorithm(), ver.getSalt(), null, blockSize);
+		Cipher cipher=CryptoFunctions.getCipher(secretKey, ver.getCipherAlgorithm(), ver.getChainingMode(), iv, Cipher.DECRYPT_MODE);
+		int paddedLength=Math.max(blockSize, ((input.length+blockSize-1)/blockSize)*blockSize);
+		return cipher.doFinal(CryptoFunctions.getBlock0(input, paddedLength));
+	}
+
+	/*
+	* Decryptor of agile encryption that takes the hash of the password from the cache. Apart from that it verifies the password as the decryptor of Apache POI
+	*
+	*/
+	private static class CachingAgileDecryptor extends AgileDecryptor {
+		private MSExcelKeyCache keyCache;
+
+		CachingAgileDecryptor(MSExcelKeyCache keyCache) {
+			super();
+			this.keyCache=keyCache;
+		}
+
+		@Override
+		public boolean verifyPassword(String password) throws GeneralSecurityException {
+			AgileEncryptionVerifier ver=(AgileEncryptionVerifier)getEncryptionInfo().getVerifier();
+			AgileEncryptionHeader header=(AgileEncryptionHeader)getEncryptionInfo().getHeader();
+			HashAlgorithm hashAlgorithm=ver.getHashAlgorithm();
+			byte[] passwordHash=this.keyCache.getPasswordHash(password, hashAlgorithm, ver.getSalt(), ver.getSpinCount());
+			byte[] verifierInput=MSExcelKeyCache.hashInput(ver, passwordHash, VERIFIER_INPUT_BLOCK, ver.getEncryptedVerifier());
+			byte[] verifierHash=CryptoFunctions.getMessageDigest(hashAlgorithm).digest(verifierInput);
+			byte[] decryptedVerifierHash=CryptoFunctions.getBlock0(MSExcelKeyCache.hashInput(ver, passwordHash, HASHED_VERIFIER_BLOCK, ver.getEncryptedVerifierHash()), hashAlgorithm.hashSize);
+			if (!Arrays.equals(decryptedVerifierHash, verifierHash)) {
+				return false;
+			}
+			byte[] keySpec=CryptoFunctions.getBlock0(MSExcelKeyCache.hashInput(ver, passwordHash, CRYPTO_KEY_BLOCK, ver.getEncryptedKey()), header.getKeySize()/8);
+			CipherAlgorithm cipherAlgorithm=header.getCipherAlgorithm();
+			SecretKeySpec secretKey=new SecretKeySpec(keySpec, cipherAlgorithm.jceId);
+			int blockSize=header.getBlockSize();
+			byte[] iv=CryptoFunctions.generateIv(header.getHashAlgorithm(), header.getKeySalt(), INTEGRITY_KEY_BLOCK, blockSize);
+			Cipher cipher=CryptoFunctions.getCipher(secretKey, cipherAlgorithm, header.getChainingMode(), iv, Cipher.DECRYPT_MODE);
+			byte[] hmacKey=CryptoFunctions.getBlock0(cipher.doFinal(header.getEncryptedHmacKey()), header.getHashAlgorithm().hashSize);
+			iv=CryptoFunctions.generateIv(header.getHashAlgorithm(), header.getKeySalt(), INTEGRITY_VALUE_BLOCK, blockSize);
+			cipher=CryptoFunctions.getCipher(secretKey, cipherAlgorithm, ver.getChainingMode(), iv, Cipher.DECRYPT_MODE);
+			byte[] hmacValue=CryptoFunctions.getBlock0(cipher.doFinal(header.getEncryptedHmacValue()), header.getHashAlgorithm().hashSize);
+			setVerifier(verifierInput);
+			setSecretKey(secretKey);
+			setIntegrityHmacKey(hmacKey);
+			setIntegrityHmacValue(hmacValue);
+			return true;
+		}
+	}
+
+}
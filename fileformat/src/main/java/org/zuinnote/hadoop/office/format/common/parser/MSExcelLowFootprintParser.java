@@ -15,20 +15,28 @@
 **/
 package org.zuinnote.hadoop.office.format.common.parser;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.commons.math3.optim.linear.LinearObjectiveFunction;
+import org.apache.hadoop.fs.PositionedReadable;
 import org.apache.poi.EmptyFileException;
 import org.apache.poi.EncryptedDocumentException;
 import org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder.SheetRecordCollectingListener;
@@ -40,28 +48,32 @@ import org.apache.poi.hssf.eventusermodel.dummyrecord.MissingRowDummyRecord;
 import org.apache.poi.hssf.model.HSSFFormulaParser;
 import org.apache.poi.hssf.record.BOFRecord;
 import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
 import org.apache.poi.hssf.record.ExtendedFormatRecord;
 import org.apache.poi.hssf.record.FormatRecord;
 import org.apache.poi.hssf.record.FormulaRecord;
 import org.apache.poi.hssf.record.LabelSSTRecord;
-import org.apache.poi.hssf.record.NameCommentRecord;
-import org.apache.poi.hssf.record.NameRecord;
 import org.apache.poi.hssf.record.NumberRecord;
 import org.apache.poi.hssf.record.Record;
 import org.apache.poi.hssf.record.RowRecord;
 import org.apache.poi.hssf.record.SSTRecord;
 import org.apache.poi.hssf.record.StringRecord;
-import org.apache.poi.hssf.record.aggregates.FormulaRecordAggregate;
 import org.apache.poi.hssf.record.crypto.Biff8EncryptionKey;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
 import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.poifs.crypt.Decryptor;
 import org.apache.poi.poifs.crypt.EncryptionInfo;
 import org.apache.poi.poifs.filesystem.DocumentFactoryHelper;
 import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaError;
 import org.apache.poi.ss.util.CellAddress;
 import org.apache.poi.util.IOUtils;
 import org.apache.poi.util.SAXHelper;
@@ -70,21 +82,33 @@ import org.apache.poi.xssf.eventusermodel.XSSFReader;
 import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
 import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
 import org.apache.poi.xssf.model.CommentsTable;
-import org.apache.poi.xssf.model.SharedStringsTable;
 import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
 import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
 import org.zuinnote.hadoop.office.format.common.util.MSExcelUtil;
+import org.zuinnote.hadoop.office.format.common.util.ReadAheadInputStream;
 
 /*
 *
 * This class is responsible for parsing Excel content in OOXML format and old excel format using a low resource footprint (CPU, memory)
 *
+* The document is decoded by a background thread (SAX for .xlsx, HSSF event API for .xls), which hands over the rows through a bounded queue. Rows are thus returned by getNext() as soon as they are decoded and only a limited number of rows (cf. hadoopoffice.read.lowFootprint.cacherows) is kept in memory at any point in time.
+* The sheets of a new Excel file (.xlsx) can be decoded concurrently by several threads (cf. hadoopoffice.read.lowFootprint.sheetThreads). Each of them decodes one sheet at a time into its own bounded queue and the rows are still handed over sheet by sheet in the order of the document.
+* If the pipeline is enabled (cf. hadoopoffice.read.pipeline) then the XML of a sheet is inflated by another thread ahead of parsing (cf. ReadAheadInputStream).
+* If only a range of rows should be read (cf. HadoopOfficeReadConfiguration.getRowRangeStart) then the XML of a sheet of a new Excel file (.xlsx) is positioned at the first row of the range (if its offset is known) and decoding stops after the last row of the range.
+* Rows that do not match the row filter (cf. MSExcelRowFilter) are dropped while decoding, i.e. before they are handed over. Decoding of a sheet stops after the last row of the row filter.
+* Shared strings of new Excel files (.xlsx) are kept as UTF-8 bytes outside of the heap and decoded on demand (cf. MSExcelSharedStringsTable).
+* If the index of an unencrypted new Excel file (.xlsx) is available (cf. HadoopOfficeReadConfiguration.getWorkbookIndex) then only the needed parts of the file (e.g. shared strings, styles and the selected sheets) are read directly from their position in the file instead of reading the whole file.
+*
 */
 public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 	/*
@@ -99,15 +123,21 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 	public final static int FORMAT_OLDEXCEL=0;
 	public final static int FORMAT_OOXML=1;
 
-	private DataFormatter useDataFormatter=null;
 	private static final Log LOG = LogFactory.getLog(MSExcelLowFootprintParser.class.getName());
-	private Map<Integer,List<SpreadSheetCellDAO[]>> spreadSheetCellDAOCache;
-	private List<String> sheetNameList;
+	private static final ParsedRow END_OF_DOCUMENT = new ParsedRow(null,0,null);
+	private DataFormatter useDataFormatter=null;
+	private BlockingQueue<ParsedRow> rowQueue;
+	private Thread producerThread;
+	private volatile Exception producerException;
+	private volatile boolean closed;
+	private ParsedRow lookAheadRow;
+	private ParsedRow currentParsedRow;
 	private InputStream in;
 	private String[] sheets=null;
 	private HadoopOfficeReadConfiguration hocr;
-	private int currentSheet;
-	private int currentRow;
+	private MSExcelColumnProjection projection;
+	private MSExcelRowFilter rowFilter;
+	private MSExcelCellPool cellPool;
 	
 	public MSExcelLowFootprintParser(HadoopOfficeReadConfiguration hocr) {
 		this(hocr, null);
@@ -121,21 +151,24 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 	* password Password of this document (null if no password)
 	* metadataFilter filter on metadata. The name is the metadata attribute name and the property is a filter which contains a regular expression. Currently the following are supported for .xlsx documents: category,contentstatus, contenttype,created,creator,description,identifier,keywords,lastmodifiedbyuser,lastprinted,modified,revision,subject,title. Additionally all custom.* are defined as custom properties. Example custom.myproperty. Finally, matchAll can be set to true (all metadata needs to be matched), or false (at least one of the metadata item needs to match).
  Currently the following are supported for .xls documents: applicationname,author,charcount, comments, createdatetime,edittime,keywords,lastauthor,lastprinted,lastsavedatetime,pagecount,revnumber,security,subject,template,title,wordcount. Finally, matchAll can be set to true (all metadata needs to be matched), or false (at least one of the metadata item needs to match).
+	* cacheRows number of decoded rows that are kept in memory before the background thread waits for the consumer
+	* rowRangeStart, rowRangeEnd, rowRangeOffset range of rows of the selected sheets that should be read (set by the record reader for splits covering a row range)
 	* @param sheets selecrted sheets
 	*
 	*/
 	public MSExcelLowFootprintParser(HadoopOfficeReadConfiguration hocr, String[] sheets) {
 		this.sheets=sheets;
 		this.hocr=hocr;
-		if (hocr.getLocale()==null)  {
-			useDataFormatter=new DataFormatter(); // use default locale
+		this.projection=MSExcelColumnProjection.parse(hocr.getColumns());
+		this.rowFilter=MSExcelRowFilter.create(hocr);
+		this.cellPool=new MSExcelCellPool(hocr.getReuseObjects());
+		if (hocr.getDataFormatter()!=null) { // shared by the parsers of several files read one after the other
+			this.useDataFormatter=hocr.getDataFormatter();
 		} else {
-			useDataFormatter=new DataFormatter(hocr.getLocale());
+			this.useDataFormatter=this.createDataFormatter();
 		}
-		this.spreadSheetCellDAOCache=new HashMap<>();
-		this.sheetNameList=new ArrayList<>();
-		this.currentRow=0;
-		this.currentSheet=0;
+		this.rowQueue=new ArrayBlockingQueue<>(Math.max(1, hocr.getLowFootprintCacheRows()));
+		this.closed=false;
 		// check not supported things and log
 		if ((this.hocr.getReadLinkedWorkbooks()) || (this.hocr.getIgnoreMissingLinkedWorkbooks())) {
 			LOG.warn("Linked workbooks not supported in low footprint parsing mode");
@@ -144,12 +177,23 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 			LOG.warn("Metadata filtering is not supported in low footprint parsing mode");
 		}
 	}
+
+	/**
+	 * Creates the formatter of the cells according to the configuration
+	 *
+	 * @return formatter
+	 */
+	private DataFormatter createDataFormatter() {
+		return MSExcelParser.createDataFormatter(this.hocr);
+	}
 	
 	/*
 	*
 	* Parses the given InputStream containing Excel data. The type of InputStream (e.g. FileInputStream, BufferedInputStream etc.) does not matter here, but it is recommended to use an appropriate
 	* type to avoid performance issues. 
 	*
+	* The content itself is decoded in a background thread. This method returns as soon as the first row is available (or the document turned out to be empty), so that errors, such as a wrong password, are still reported here.
+	*
 	* @param in InputStream containing Excel data
 	*
 	* @throws org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException in case there are issues reading from the Excel file, e.g. wrong password or unknown format
@@ -157,80 +201,93 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 	*/
 	@Override
 	public void parse(InputStream in) throws FormatNotUnderstoodException {
-		this.currentRow=0;
+		this.currentParsedRow=null;
+		this.lookAheadRow=null;
 		// detect workbook type (based on Workbookfactory code in Apache POI
+		// the index of the file (if available) allows to read the parts of an unencrypted new Excel file (.xlsx) directly from the file
+		InputStream originalIn=in;
 		// If clearly doesn't do mark/reset, wrap up
 		if(!in.markSupported()) {
 					in = new PushbackInputStream(in, 8);
 				}
+		this.in=in;
 		 try {
 			byte[] header8 = IOUtils.peekFirst8Bytes(in);
 		 
 				if(NPOIFSFileSystem.hasPOIFSHeader(header8)) {
-				
-					NPOIFSFileSystem poifs = new NPOIFSFileSystem(in);
-					// check if we need to decrypt a new Excel file
-					if (poifs.getRoot().hasEntry(Decryptor.DEFAULT_POIFS_ENTRY)) {
-							LOG.debug("Parsing OLE2 container in low footprint mode");
-							EncryptionInfo info = new EncryptionInfo(poifs);
-							Decryptor d = Decryptor.getInstance(info);
-							try {
-								if (!d.verifyPassword(this.hocr.getPassword())) {
-									throw new FormatNotUnderstoodException("Error: Cannot decrypt new Excel file (.xlsx) in low footprint mode: wrong password");
-								}
-								in = d.getDataStream(poifs);
-							} catch (GeneralSecurityException e) {
-								
-								LOG.error(e);
-								throw new FormatNotUnderstoodException("Error: Cannot decrypt new Excel file (.xlsx) in low footprint mode");
-							}
-						
-						OPCPackage pkg;
+					// agile encrypted new Excel files (.xlsx) are decrypted segment by segment directly from the file instead of loading the whole file into memory
+					MSExcelDecryptedPackage decryptedPackage=null;
+					if (originalIn instanceof PositionedReadable) {
+						decryptedPackage=MSExcelDecryptedPackage.open((PositionedReadable)originalIn, this.hocr.getPassword(), this.hocr.getDerivedKeyCache());
+					}
+					if (decryptedPackage!=null) {
+						LOG.info("Low footprint parsing of encrypted new Excel files (.xlsx) directly from the file");
 						try {
-							pkg = OPCPackage.open(in);
-							this.processOPCPackage(pkg);
-							
+							OPCPackage pkg = OPCPackage.open(new MSExcelZipEntrySource(decryptedPackage, MSExcelZipDirectory.read(decryptedPackage, decryptedPackage.getLength())));
+							this.startProducer(new OPCPackageProducer(pkg));
 						} catch (InvalidFormatException e) {
 							LOG.error(e);
 							throw new FormatNotUnderstoodException("Error: Cannot read new Excel file (.xlsx) in low footprint mode");
 						}
-						return;
+					} else {
+						NPOIFSFileSystem poifs = new NPOIFSFileSystem(in);
+						// check if we need to decrypt a new Excel file
+						if (poifs.getRoot().hasEntry(Decryptor.DEFAULT_POIFS_ENTRY)) {
+								LOG.debug("Parsing OLE2 container in low footprint mode");
+								EncryptionInfo info = new EncryptionInfo(poifs);
+								Decryptor d = MSExcelKeyCache.getDecryptor(info, this.hocr.getDerivedKeyCache());
+								InputStream decryptedIn = null;
+								try {
+									if (!d.verifyPassword(this.hocr.getPassword())) {
+										throw new FormatNotUnderstoodException("Error: Cannot decrypt new Excel file (.xlsx) in low footprint mode: wrong password");
+									}
+									decryptedIn = d.getDataStream(poifs);
+								} catch (GeneralSecurityException e) {
 						
-					}
-					// else we need to 
-					LOG.info("Low footprint parsing of old Excel files (.xls)");
-					 // use event model API for old Excel files
-					if (this.hocr.getPassword()!=null) {
-						Biff8EncryptionKey.setCurrentUserPassword(this.hocr.getPassword());
-					}
-					
-					InputStream din = poifs.createDocumentInputStream("Workbook");
-					try {
-					  HSSFRequest req = new HSSFRequest();
-					  HSSFEventParser parser = new HSSFEventParser(this.sheetNameList,this.useDataFormatter,this.spreadSheetCellDAOCache,this.sheets);
-					  SheetRecordCollectingListener listener = new SheetRecordCollectingListener(new MissingRecordAwareHSSFListener(parser));
-					  parser.setSheetRecordCollectingListener(listener);
-					  req.addListenerForAllRecords(listener);
-					  HSSFEventFactory factory = new HSSFEventFactory();
-					  factory.processEvents(req, din);
-					} catch (EncryptedDocumentException e) {
-						LOG.error(e);
-						throw new FormatNotUnderstoodException("Cannot decrypt document");
-					}
-					  finally {
+									LOG.error(e);
+									throw new FormatNotUnderstoodException("Error: Cannot decrypt new Excel file (.xlsx) in low footprint mode");
+								}
+
+							try {
+								OPCPackage pkg = OPCPackage.open(decryptedIn);
+								this.startProducer(new OPCPackageProducer(pkg));
+							} catch (InvalidFormatException e) {
+								LOG.error(e);
+								throw new FormatNotUnderstoodException("Error: Cannot read new Excel file (.xlsx) in low footprint mode");
+							} finally {
+								decryptedIn.close();
+								poifs.close();
+							}
 
-						  Biff8EncryptionKey.setCurrentUserPassword(null);
-						  din.close();
-						  poifs.close();
-					  }
+						} else {
+							LOG.info("Low footprint parsing of old Excel files (.xls)");
+							 // use event model API for old Excel files
+							this.startProducer(new HSSFProducer(poifs));
+						}
+					}
 				} else
 				if(DocumentFactoryHelper.hasOOXMLHeader(in)) { // use event model API for uncrypted new Excel files
 					LOG.info("Low footprint parsing of new Excel files (.xlsx)");
 					// this is unencrypted
 					
 					try {
-						OPCPackage pkg = OPCPackage.open(in);
-						this.processOPCPackage(pkg);
+						OPCPackage pkg;
+						MSExcelZipDirectory zipDirectory=null;
+						if (originalIn instanceof PositionedReadable) {
+							MSExcelWorkbookIndex workbookIndex=this.hocr.getWorkbookIndex();
+							if ((workbookIndex!=null) && (workbookIndex.getZipDirectory()!=null)) {
+								LOG.debug("Reading only the needed parts of the new Excel file (.xlsx) using its index");
+								zipDirectory=workbookIndex.getZipDirectory();
+							} else if (this.hocr.getFileLength()>0) {
+								zipDirectory=this.readZipDirectory((PositionedReadable)originalIn, this.hocr.getFileLength());
+							}
+						}
+						if (zipDirectory!=null) {
+							pkg = OPCPackage.open(new MSExcelZipEntrySource((PositionedReadable)originalIn, zipDirectory));
+						} else { // streams that cannot be read at any position (e.g. compressed files or files read ahead) are inflated by POI
+							pkg = OPCPackage.open(in);
+						}
+						this.startProducer(new OPCPackageProducer(pkg));
 					} catch (InvalidFormatException e) {
 						LOG.error(e);
 						throw new FormatNotUnderstoodException("Error cannot read new Excel file (.xlsx)");
@@ -245,19 +302,113 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 					LOG.error(e);
 					throw new FormatNotUnderstoodException("Could not detect format in Low footprint reading mode");
 				}
-		 finally {
-		 	  if (this.in!=null) {
-		 		  try {
-					this.in.close();
-				} catch (IOException e) {
-					LOG.error(e);
-					throw new FormatNotUnderstoodException("Error closing inputstream");
-				}
-		 	  }
+		 // wait for the first row so that errors during decoding of the beginning of the document are reported by parse
+		 this.lookAheadRow=this.takeRow();
+		 if ((this.lookAheadRow==END_OF_DOCUMENT) && (this.producerException!=null)) {
+			 if (this.producerException instanceof FormatNotUnderstoodException) {
+				 throw (FormatNotUnderstoodException)this.producerException;
+			 }
+			 throw new FormatNotUnderstoodException("Error: Cannot parse Excel file in low footprint mode: "+this.producerException.getMessage());
 		 }
 	}
 
+	/**
+	 * Reads the central directory of an unencrypted new Excel file (.xlsx), so that its parts are read directly from the file instead of keeping all of them in memory
+	 *
+	 * @param in Excel file
+	 * @param fileLength length of the Excel file in bytes
+	 *
+	 * @return zip directory or null if it cannot be read (e.g. Zip64 packages), then the file is read sequentially
+	 *
+	 * @throws java.io.IOException in case of errors reading the file
+	 */
+	private MSExcelZipDirectory readZipDirectory(PositionedReadable in, long fileLength) throws IOException {
+		try {
+			LOG.debug("Reading the parts of the new Excel file (.xlsx) using its central directory");
+			return MSExcelZipDirectory.read(in, fileLength);
+		} catch (FormatNotUnderstoodException e) {
+			LOG.warn("Cannot read central directory of \""+this.hocr.getFileName()+"\" ("+e.getMessage()+"). Reading the file sequentially");
+			return null;
+		}
+	}
+
+	/**
+	 * Starts the background thread decoding the document
+	 *
+	 * @param producer Runnable decoding the document and putting the rows into the row queue
+	 */
+	private void startProducer(Runnable producer) {
+		this.producerException=null;
+		this.producerThread=new Thread(producer,"hadoopoffice-lowfootprint-"+this.hocr.getFileName());
+		this.producerThread.setDaemon(true);
+		this.producerThread.start();
+	}
 	
+	/**
+	 * Takes the next row from the queue filled by the background thread. Waits until a row is available
+	 *
+	 * @return row or END_OF_DOCUMENT if there are no more rows
+	 */
+	private ParsedRow takeRow() {
+		if (this.closed) {
+			return END_OF_DOCUMENT;
+		}
+		try {
+			return this.rowQueue.take();
+		} catch (InterruptedException e) {
+			LOG.error(e);
+			Thread.currentThread().interrupt();
+			return END_OF_DOCUMENT;
+		}
+	}
+
+	/**
+	 * Called by the background thread to hand over a decoded row. Waits if the queue is full
+	 *
+	 * @param row decoded row
+	 *
+	 */
+	private void putRow(ParsedRow row) {
+		this.putRow(this.rowQueue, row);
+	}
+
+	/**
+	 * Called by a background thread to hand over a decoded row to a queue. Waits if the queue is full
+	 *
+	 * @param queue queue
+	 * @param row decoded row
+	 *
+	 */
+	private void putRow(BlockingQueue<ParsedRow> queue, ParsedRow row) {
+		if (this.closed) {
+			throw new ParsingStoppedException();
+		}
+		try {
+			queue.put(row);
+		} catch (InterruptedException e) {
+			throw new ParsingStoppedException();
+		}
+	}
+
+	/**
+	 * Called by the background thread after decoding the document or after an error.
+	 *
+	 * @param e exception that occurred during parsing, null if there was none
+	 */
+	private void finishProducer(Exception e) {
+		if (e!=null) {
+			LOG.error(e);
+			this.producerException=e;
+		}
+		if (!this.closed) {
+			try {
+				this.rowQueue.put(END_OF_DOCUMENT);
+			} catch (InterruptedException ie) {
+				LOG.debug("Parsing in low footprint mode has been stopped");
+			}
+		}
+	}
+
 	/**
 	 * Processes a OPCPackage (new Excel format, .xlsx) in Streaming Mode
 	 * 
@@ -274,44 +425,53 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 			LOG.error(e);
 			throw new FormatNotUnderstoodException("Error cannot parse new Excel file (.xlsx)");
 		}
+		MSExcelSharedStringsTable strings = null;
 		try {
-			
-			ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+			long expectedNumberOfStrings=-1L;
+			if (this.hocr.getWorkbookIndex()!=null) {
+				expectedNumberOfStrings=this.hocr.getWorkbookIndex().getSharedStringsCount();
+			}
+			strings = new MSExcelSharedStringsTable(pkg, this.hocr.getLowFootprintSharedStringsMemoryLimit(), expectedNumberOfStrings);
 			
 			StylesTable styles = r.getStylesTable();
+			boolean date1904=false;
+			if (this.hocr.getTypedValues()) {
+				date1904=this.isDate1904(r);
+			}
 			XSSFReader.SheetIterator iter = (XSSFReader.SheetIterator)r.getSheetsData();
-			int sheetNumber = 0;
+			int sheetThreads=Math.max(1, this.hocr.getLowFootprintSheetThreads());
+			List<SheetDecoder> sheetDecoders = new ArrayList<>();
 			while (iter.hasNext()) {
-				
-				// check if we need to parse this sheet?
-				boolean parse=false;
-				if (this.sheets!=null) {
-					for (int i=0;i<this.sheets.length;i++) {
-						if (iter.getSheetName().equals(this.sheets[i])) {
-							parse=true;
-							break;
+				InputStream rawSheetInputStream = iter.next();
+				try {
+					String sheetName=iter.getSheetName();
+					// check if we need to parse this sheet?
+					boolean parse=false;
+					if (this.sheets!=null) {
+						for (int i=0;i<this.sheets.length;i++) {
+							if (sheetName.equals(this.sheets[i])) {
+								parse=true;
+								break;
+							}
 						}
+					} else {
+						parse=true;
 					}
-				} else {
-					parse=true;
-				}
-				// sheet is supposed to be parsed
-				if (parse) {
-					
-					InputStream rawSheetInputStream = iter.next();
-					this.sheetNameList.add(iter.getSheetName());
-					InputSource rawSheetInputSource = new InputSource(rawSheetInputStream);
-					XMLReader sheetParser = SAXHelper.newXMLReader();
-					XSSFEventParser xssfp = new XSSFEventParser(sheetNumber,iter.getSheetName(), this.spreadSheetCellDAOCache);
-					
-		            ContentHandler handler = new XSSFSheetXMLHandler(
-		                  styles, iter.getSheetComments(), strings, xssfp, this.useDataFormatter, false);
-		            sheetParser.setContentHandler(handler);
-		            sheetParser.parse(rawSheetInputSource);
-		            sheetNumber++;
-
-				}
+					// sheet is supposed to be parsed
+					if (parse) {
+						if (sheetThreads>1) { // decoded later by one of the threads
+							sheetDecoders.add(new SheetDecoder(iter.getSheetPart(), sheetName, iter.getSheetComments(), styles, strings, date1904));
+						} else {
+							this.parseSheet(rawSheetInputStream, iter.getSheetPart(), sheetName, iter.getSheetComments(), styles, strings, date1904, this.useDataFormatter, this.rowQueue);
 						}
+					}
+				} finally {
+					rawSheetInputStream.close();
+				}
+			}
+			if (!sheetDecoders.isEmpty()) {
+				this.parseSheetsConcurrently(sheetDecoders, sheetThreads);
+			}
 		} catch (InvalidFormatException | IOException e) {
 			LOG.error(e);
 			throw new FormatNotUnderstoodException("Error cannot parse new Excel file (.xlsx)");
@@ -321,26 +481,239 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 		} catch (ParserConfigurationException e) {
 			LOG.error(e);
 			throw new FormatNotUnderstoodException("Parsing Excel sheet in .xlsx format failed. Cannot read XML content");
+		} finally {
+			if (strings!=null) {
+				try {
+					strings.close();
+				} catch (IOException e) {
+					LOG.error(e);
+				}
+			}
 		}
 		
 		
 	
+	}
+
+	/**
+	 * Decodes the XML of a sheet of a new Excel file (.xlsx) and hands over its rows
+	 *
+	 * @param rawSheetInputStream XML of the sheet (not closed by this method)
+	 * @param sheetPart part of the sheet
+	 * @param sheetName name of the sheet
+	 * @param comments comments of the sheet (may be null)
+	 * @param styles styles of the workbook
+	 * @param strings shared strings of the workbook
+	 * @param date1904 true, if dates are based on 1904
+	 * @param dataFormatter formatter of the cells. A DataFormatter is not thread-safe, i.e. each thread needs its own one
+	 * @param queue queue to which the rows are handed over
+	 * @throws IOException
+	 * @throws SAXException
+	 * @throws ParserConfigurationException
+	 */
+	private void parseSheet(InputStream rawSheetInputStream, PackagePart sheetPart, String sheetName, CommentsTable comments, StylesTable styles, ReadOnlySharedStringsTable strings, boolean date1904, DataFormatter dataFormatter, BlockingQueue<ParsedRow> queue) throws IOException, SAXException, ParserConfigurationException {
+		InputStream sheetInputStream = rawSheetInputStream;
+		try {
+			if ((this.hocr.getRowRangeOffset()>0) && ((this.projection==null) || (!this.projection.hasHeaderNames()))) { // skip the rows before the row range (the first row is needed if header names are projected)
+				sheetInputStream=this.getSheetInputStreamAtRowOffset(rawSheetInputStream, sheetPart, sheetName);
+			}
+			if (this.hocr.getPipeline()) { // inflate the XML of the sheet in a separate thread ahead of parsing
+				sheetInputStream=new ReadAheadInputStream(sheetInputStream, this.hocr.getPipelineBufferSize(), ReadAheadInputStream.DEFAULT_NUMBER_OF_BUFFERS, "hadoopoffice-inflate-"+this.hocr.getFileName()+"-"+sheetName);
+			}
+			InputSource rawSheetInputSource = new InputSource(sheetInputStream);
+			XMLReader sheetParser = SAXHelper.newXMLReader();
+			XSSFEventParser xssfp = new XSSFEventParser(sheetName,this.hocr.getRowRangeStart(),this.getLastRow(),queue);
+
+			ContentHandler handler = new XSSFSheetXMLHandler(
+					styles, comments, strings, xssfp, dataFormatter, false);
+			if (this.hocr.getTypedValues()) { // keep the raw values of the cells
+				TypedValueContentHandler typedValueHandler = new TypedValueContentHandler(handler, styles, date1904);
+				xssfp.setTypedValueContentHandler(typedValueHandler);
+				handler=typedValueHandler;
+			}
+			if (this.projection!=null) { // skip cells outside of the projection before they are decoded
+				ProjectionContentHandler projectionHandler = new ProjectionContentHandler(handler);
+				xssfp.setProjectionContentHandler(projectionHandler);
+				handler=projectionHandler;
+			}
+			sheetParser.setContentHandler(handler);
+			try {
+				sheetParser.parse(rawSheetInputSource);
+			} catch (RowRangeCompleteException e) {
+				LOG.debug("All rows of the row range of sheet \""+sheetName+"\" have been read");
+			}
+		} finally {
+			if (sheetInputStream!=rawSheetInputStream) {
+				sheetInputStream.close();
+			}
+		}
+	}
+
+	/**
+	 * Decodes the sheets of a new Excel file (.xlsx) concurrently (cf. hadoopoffice.read.lowFootprint.sheetThreads). Each sheet is decoded into its own bounded queue. The rows are handed over sheet by sheet in the order of the document, i.e. the threads decoding the following sheets wait if their queue is full.
+	 * Sheets are started in the order of the document, so that the sheet whose rows are handed over is always decoded (or has been decoded) by one of the threads
+	 *
+	 * @param sheetDecoders sheets to be decoded in the order of the document
+	 * @param sheetThreads number of threads
+	 * @throws FormatNotUnderstoodException if a sheet cannot be decoded
+	 */
+	private void parseSheetsConcurrently(List<SheetDecoder> sheetDecoders, int sheetThreads) throws FormatNotUnderstoodException {
+		LOG.debug("Decoding "+sheetDecoders.size()+" sheets with "+sheetThreads+" threads in low footprint mode");
+		final String threadName="hadoopoffice-lowfootprint-sheet-"+this.hocr.getFileName();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(sheetThreads, sheetDecoders.size()), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread result = new Thread(runnable, threadName);
+				result.setDaemon(true);
+				return result;
+			}
+		});
+		try {
+			for (SheetDecoder currentSheetDecoder: sheetDecoders) {
+				executor.execute(currentSheetDecoder);
+			}
+			for (SheetDecoder currentSheetDecoder: sheetDecoders) {
+				ParsedRow currentRow=currentSheetDecoder.takeRow();
+				while (currentRow!=END_OF_DOCUMENT) {
+					this.putRow(currentRow);
+					currentRow=currentSheetDecoder.takeRow();
+				}
+				if (currentSheetDecoder.getException()!=null) {
+					if (currentSheetDecoder.getException() instanceof FormatNotUnderstoodException) {
+						throw (FormatNotUnderstoodException)currentSheetDecoder.getException();
+					}
+					LOG.error(currentSheetDecoder.getException());
+					throw new FormatNotUnderstoodException("Parsing Excel sheet \""+currentSheetDecoder.getSheetName()+"\" in .xlsx format failed");
+				}
+			}
+		} finally {
+			// stops the threads that are still decoding (e.g. if the parser has been closed)
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Checks if the dates of a new Excel file (.xlsx) are based on 1904 instead of 1900
+	 *
+	 * @param r reader of the file
+	 * @return true, if they are based on 1904, false if not
+	 * @throws IOException
+	 * @throws InvalidFormatException
+	 * @throws SAXException
+	 * @throws ParserConfigurationException
+	 */
+	private boolean isDate1904(XSSFReader r) throws IOException, InvalidFormatException, SAXException, ParserConfigurationException {
+		WorkbookPropertiesHandler workbookPropertiesHandler = new WorkbookPropertiesHandler();
+		InputStream workbookInputStream = r.getWorkbookData();
+		try {
+			XMLReader workbookParser = SAXHelper.newXMLReader();
+			workbookParser.setContentHandler(workbookPropertiesHandler);
+			workbookParser.parse(new InputSource(workbookInputStream));
+		} finally {
+			workbookInputStream.close();
+		}
+		return workbookPropertiesHandler.isDate1904();
+	}
+
+	/**
+	 * Positions the XML of a sheet at the first row of the row range. The start of the XML (until the sheet data) is kept so that it can still be parsed. If the row cannot be found at the given offset then the XML of the sheet is read from the beginning
+	 *
+	 * @param rawSheetInputStream XML of the sheet
+	 * @param sheetPart part of the sheet
+	 * @param sheetName name of the sheet
+	 * @return XML of the sheet without the rows before the row range
+	 * @throws IOException
+	 */
+	private InputStream getSheetInputStreamAtRowOffset(InputStream rawSheetInputStream, PackagePart sheetPart, String sheetName) throws IOException {
+		MSExcelSheetRowScanner scanner = new MSExcelSheetRowScanner(rawSheetInputStream);
+		byte[] sheetDataStart=scanner.readSheetDataStart();
+		if ((sheetDataStart!=null) && (scanner.skipToRow(this.hocr.getRowRangeOffset()))) {
+			return new SequenceInputStream(new ByteArrayInputStream(sheetDataStart), scanner.getRemainingInputStream());
+		}
+		LOG.warn("Row "+this.hocr.getRowRangeStart()+" not found at offset "+this.hocr.getRowRangeOffset()+" of sheet \""+sheetName+"\". Sheet is read from the beginning");
+		return sheetPart.getInputStream();
+	}
+
+	/**
+	 * Checks if a row is part of the row range that should be read and selected by the row numbers of the row filter
+	 *
+	 * @param rowNum row number (starting from 1)
+	 * @return true, if it should be read, false if not
+	 */
+	private boolean isRowSelected(long rowNum) {
+		return ((this.hocr.getRowRangeStart()<=0) || (rowNum>=this.hocr.getRowRangeStart())) && ((this.hocr.getRowRangeEnd()<=0) || (rowNum<=this.hocr.getRowRangeEnd())) && ((this.rowFilter==null) || (this.rowFilter.isRowSelected(rowNum)));
+	}
+
+	/**
+	 * Returns the last row of a sheet that should be read (cf. row range and row filter)
+	 *
+	 * @return row number (starting from 1), 0 if all rows until the end of the sheet should be read
+	 */
+	private long getLastRow() {
+		long result=this.hocr.getRowRangeEnd();
+		if ((this.rowFilter!=null) && (this.rowFilter.getLastRow()>0) && ((result<=0) || (this.rowFilter.getLastRow()<result))) {
+			result=this.rowFilter.getLastRow();
+		}
+		return result;
 	}
 	
+	/**
+	 * Processes an old Excel file (.xls) in Streaming Mode
+	 *
+	 * @param poifs OLE2 container of the Excel file
+	 *
+	 * @throws FormatNotUnderstoodException in case the file cannot be read (e.g. wrong password)
+	 *
+	 */
+	private void processHSSF(NPOIFSFileSystem poifs) throws FormatNotUnderstoodException {
+		// the password is thread-local and thus needs to be set by the thread processing the records
+		if (this.hocr.getPassword()!=null) {
+			Biff8EncryptionKey.setCurrentUserPassword(this.hocr.getPassword());
+		}
+		InputStream din = null;
+		try {
+		  din = poifs.createDocumentInputStream("Workbook");
+		  HSSFRequest req = new HSSFRequest();
+		  HSSFEventParser parser = new HSSFEventParser(this.useDataFormatter,this.sheets);
+		  SheetRecordCollectingListener listener = new SheetRecordCollectingListener(new MissingRecordAwareHSSFListener(parser));
+		  parser.setSheetRecordCollectingListener(listener);
+		  req.addListenerForAllRecords(listener);
+		  HSSFEventFactory factory = new HSSFEventFactory();
+		  factory.processEvents(req, din);
+		  parser.flushRows();
+		} catch (EncryptedDocumentException e) {
+			LOG.error(e);
+			throw new FormatNotUnderstoodException("Cannot decrypt document");
+		} catch (IOException e) {
+			LOG.error(e);
+			throw new FormatNotUnderstoodException("Error cannot read old Excel file (.xls)");
+		}
+		  finally {
+			  Biff8EncryptionKey.setCurrentUserPassword(null);
+			  if (din!=null) {
+				  try {
+					din.close();
+				  } catch (IOException e) {
+					LOG.error(e);
+				  }
+			  }
+		  }
+	}
+
 	@Override
 	public long getCurrentRow() {
-		if (this.currentRow==0) { // to be checked this is a fix for HSSF in low footprint mode (if and only if) the HSSF is encrypted
-			return 1;
+		if (this.currentParsedRow==null) {
+			return 0;
 		}
-		return this.currentRow;
+		return this.currentParsedRow.getRowNum();
 	}
 
 	@Override
 	public String getCurrentSheetName() {
-		if (this.currentSheet>=this.sheetNameList.size()) {
-			return this.sheetNameList.get(this.sheetNameList.size()-1);
+		if (this.currentParsedRow==null) {
+			return null;
 		}
-		return this.sheetNameList.get(this.currentSheet);
+		return this.currentParsedRow.getSheetName();
 	}
 
 	@Override
@@ -354,20 +727,36 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 		return new ArrayList<>();
 	}
 
+	/*
+	 * Returns the next decoded row. Waits until the background thread has decoded it.
+	 *
+	 * @return row as array of SpreadSheetCellDAO, null if no further rows exist
+	 *
+	 * @throws org.zuinnote.hadoop.office.format.common.parser.ParsingAbortedException in case an error occurred during parsing
+	 *
+	 */
 	@Override
 	public Object[] getNext() {
-		SpreadSheetCellDAO[] result = null;
-		if (this.currentRow<this.spreadSheetCellDAOCache.get(this.currentSheet).size()) {
-			result=this.spreadSheetCellDAOCache.get(this.currentSheet).get(this.currentRow++);
-		} 
-		if (this.currentRow==this.spreadSheetCellDAOCache.get(this.currentSheet).size()) { // next sheet
-			this.spreadSheetCellDAOCache.remove(this.currentSheet);
-			this.currentSheet++;
-			this.currentRow=0;
-			
+		if (this.currentParsedRow==END_OF_DOCUMENT) {
+			return null;
 		}
-		
-		return result;
+		if (this.currentParsedRow!=null) { // the row returned before is not used anymore (cf. hadoopoffice.read.reuseObjects)
+			this.cellPool.release(this.currentParsedRow.getCells());
+		}
+		if (this.lookAheadRow!=null) {
+			this.currentParsedRow=this.lookAheadRow;
+			this.lookAheadRow=null;
+		} else {
+			this.currentParsedRow=this.takeRow();
+		}
+		if (this.currentParsedRow==END_OF_DOCUMENT) {
+			if (this.producerException!=null) {
+				LOG.error("Parsing of Excel file in low footprint mode has been aborted: "+this.producerException.getMessage());
+				throw new ParsingAbortedException("Error: Cannot parse Excel file in low footprint mode: "+this.producerException.getMessage());
+			}
+			return null;
+		}
+		return this.currentParsedRow.getCells();
 	}
 
 	@Override
@@ -375,75 +764,681 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 		return true;
 	}
 
+	/*
+	 * Stops the background thread (if still running) and closes the underlying stream
+	 *
+	 * @throws java.io.IOException in case of errors
+	 */
 	@Override
 	public void close() throws IOException {
+		this.closed=true;
+		if ((this.producerThread!=null) && (this.producerThread.isAlive())) {
+			this.producerThread.interrupt();
+			this.rowQueue.clear();
+			try {
+				this.producerThread.join();
+			} catch (InterruptedException e) {
+				LOG.error(e);
+				Thread.currentThread().interrupt();
+			}
+		}
+		this.rowQueue.clear();
  	  if (this.in!=null) {
  		  this.in.close();
  	  }
 		
 	}
+
+	/**
+	 * A decoded row together with its position in the document
+	 *
+	 */
+	private static class ParsedRow {
+		private String sheetName;
+		private long rowNum;
+		private SpreadSheetCellDAO[] cells;
+
+		/**
+		 *
+		 * @param sheetName name of the sheet of the row
+		 * @param rowNum row number (starting from 1)
+		 * @param cells cells of the row
+		 */
+		ParsedRow(String sheetName, long rowNum, SpreadSheetCellDAO[] cells) {
+			this.sheetName=sheetName;
+			this.rowNum=rowNum;
+			this.cells=cells;
+		}
+
+		public String getSheetName() {
+			return this.sheetName;
+		}
+
+		public long getRowNum() {
+			return this.rowNum;
+		}
+
+		public SpreadSheetCellDAO[] getCells() {
+			return this.cells;
+		}
+	}
+
+	/**
+	 * Thrown within the background thread to abort parsing if the parser has been closed
+	 *
+	 */
+	private static class ParsingStoppedException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		ParsingStoppedException() {
+			super("Parsing has been stopped");
+		}
+	}
+
+	/**
+	 * Thrown within the background thread to stop parsing a sheet after the last row of the row range
+	 *
+	 */
+	private static class RowRangeCompleteException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		RowRangeCompleteException() {
+			super("All rows of the row range have been read");
+		}
+	}
+
+	/**
+	 * Passes on all SAX events of the XML of a sheet to another ContentHandler (e.g. XSSFSheetXMLHandler)
+	 *
+	 */
+	private abstract static class DelegatingContentHandler implements ContentHandler {
+		private ContentHandler handler;
+
+		DelegatingContentHandler(ContentHandler handler) {
+			this.handler=handler;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+			this.handler.startElement(uri, localName, qName, atts);
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			this.handler.endElement(uri, localName, qName);
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) throws SAXException {
+			this.handler.characters(ch, start, length);
+		}
+
+		@Override
+		public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+			this.handler.ignorableWhitespace(ch, start, length);
+		}
+
+		@Override
+		public void setDocumentLocator(Locator locator) {
+			this.handler.setDocumentLocator(locator);
+		}
+
+		@Override
+		public void startDocument() throws SAXException {
+			this.handler.startDocument();
+		}
+
+		@Override
+		public void endDocument() throws SAXException {
+			this.handler.endDocument();
+		}
+
+		@Override
+		public void startPrefixMapping(String prefix, String uri) throws SAXException {
+			this.handler.startPrefixMapping(prefix, uri);
+		}
+
+		@Override
+		public void endPrefixMapping(String prefix) throws SAXException {
+			this.handler.endPrefixMapping(prefix);
+		}
+
+		@Override
+		public void processingInstruction(String target, String data) throws SAXException {
+			this.handler.processingInstruction(target, data);
+		}
+
+		@Override
+		public void skippedEntity(String name) throws SAXException {
+			this.handler.skippedEntity(name);
+		}
+	}
+
+	/**
+	 * Drops the XML of the cells (c elements) of a sheet that are not part of the projection, so that they are not decoded and formatted by the XSSFSheetXMLHandler
+	 *
+	 */
+	private static class ProjectionContentHandler extends DelegatingContentHandler {
+		private BitSet columns;
+		private int skipDepth;
+
+		ProjectionContentHandler(ContentHandler handler) {
+			super(handler);
+			this.columns=null;
+			this.skipDepth=0;
+		}
+
+		/**
+		 * Sets the columns that should be passed on
+		 *
+		 * @param columns columns of the projection, null if all columns should be passed on (e.g. until the header names have been resolved)
+		 */
+		public void setColumns(BitSet columns) {
+			this.columns=columns;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+			if (this.skipDepth>0) {
+				this.skipDepth++;
+				return;
+			}
+			if ((this.columns!=null) && ("c".equals(localName))) {
+				String cellReference=atts.getValue("r");
+				int column=cellReference==null?-1:MSExcelUtil.getColumnIndex(cellReference);
+				if ((column>=0) && (!this.columns.get(column))) {
+					this.skipDepth=1;
+					return;
+				}
+			}
+			super.startElement(uri, localName, qName, atts);
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			if (this.skipDepth>0) {
+				this.skipDepth--;
+				return;
+			}
+			super.endElement(uri, localName, qName);
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) throws SAXException {
+			if (this.skipDepth==0) {
+				super.characters(ch, start, length);
+			}
+		}
+
+		@Override
+		public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+			if (this.skipDepth==0) {
+				super.ignorableWhitespace(ch, start, length);
+			}
+		}
+	}
+
+	/**
+	 * Keeps the type, style and raw value of the current cell (c element) of a sheet, so that the typed value (cf. hadoopoffice.read.typedValues) is available when the XSSFSheetXMLHandler hands over the formatted value of the cell
+	 *
+	 */
+	private static class TypedValueContentHandler extends DelegatingContentHandler {
+		private StylesTable styles;
+		private boolean date1904;
+		private BitSet checkedStyles;
+		private BitSet dateStyles;
+		private String cellReference;
+		private String cellType;
+		private int cellStyle;
+		private boolean valueOpen;
+		private StringBuilder value;
+
+		TypedValueContentHandler(ContentHandler handler, StylesTable styles, boolean date1904) {
+			super(handler);
+			this.styles=styles;
+			this.date1904=date1904;
+			this.checkedStyles=new BitSet();
+			this.dateStyles=new BitSet();
+			this.value=new StringBuilder();
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+			if ("c".equals(localName)) {
+				this.cellReference=atts.getValue("r");
+				this.cellType=atts.getValue("t");
+				String cellStyleStr=atts.getValue("s");
+				this.cellStyle=cellStyleStr==null?0:Integer.parseInt(cellStyleStr);
+				this.value.setLength(0);
+			} else if ("v".equals(localName)) {
+				this.valueOpen=true;
+			}
+			super.startElement(uri, localName, qName, atts);
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			if ("v".equals(localName)) {
+				this.valueOpen=false;
+			}
+			super.endElement(uri, localName, qName);
+			if ("c".equals(localName)) {
+				this.cellReference=null;
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) throws SAXException {
+			if (this.valueOpen) {
+				this.value.append(ch, start, length);
+			}
+			super.characters(ch, start, length);
+		}
+
+		/**
+		 * Sets the type and the primitive value of a cell that is handed over by the XSSFSheetXMLHandler
+		 *
+		 * @param cellReference reference of the cell
+		 * @param cellDAO cell
+		 */
+		public void setTypedValue(String cellReference, SpreadSheetCellDAO cellDAO) {
+			if ((this.cellReference==null) || (!this.cellReference.equals(cellReference))) { // e.g. comment of an empty cell
+				cellDAO.setValueType(SpreadSheetCellDAO.TYPE_BLANK);
+				return;
+			}
+			if (("s".equals(this.cellType)) || ("inlineStr".equals(this.cellType)) || ("str".equals(this.cellType))) {
+				cellDAO.setValueType(SpreadSheetCellDAO.TYPE_STRING);
+			} else if ("b".equals(this.cellType)) {
+				cellDAO.setBooleanValue((this.value.length()>0) && (this.value.charAt(0)!='0'));
+			} else if ("e".equals(this.cellType)) {
+				try {
+					cellDAO.setErrorValue(FormulaError.forString(this.value.toString()).getCode());
+				} catch (IllegalArgumentException e) {
+					LOG.warn("Unknown error \""+this.value+"\" in cell "+cellReference);
+					cellDAO.setErrorValue(0);
+				}
+			} else if (this.value.length()==0) {
+				cellDAO.setValueType(SpreadSheetCellDAO.TYPE_BLANK);
+			} else {
+				try {
+					double numericValue=Double.parseDouble(this.value.toString());
+					if ((this.isDateStyle(this.cellStyle)) && (DateUtil.isValidExcelDate(numericValue))) {
+						cellDAO.setDateValue(numericValue, DateUtil.getJavaDate(numericValue, this.date1904).getTime());
+					} else {
+						cellDAO.setNumericValue(numericValue);
+					}
+				} catch (NumberFormatException e) {
+					LOG.warn("Invalid number \""+this.value+"\" in cell "+cellReference);
+					cellDAO.setValueType(SpreadSheetCellDAO.TYPE_STRING);
+				}
+			}
+		}
+
+		/**
+		 * Checks if a style formats numbers as dates. The result is kept for each style
+		 *
+		 * @param styleIndex index of the style
+		 * @return true, if it is a date format, false if not
+		 */
+		private boolean isDateStyle(int styleIndex) {
+			if ((this.styles==null) || (styleIndex<0) || (styleIndex>=this.styles.getNumCellStyles())) {
+				return false;
+			}
+			if (!this.checkedStyles.get(styleIndex)) {
+				XSSFCellStyle style=this.styles.getStyleAt(styleIndex);
+				this.dateStyles.set(styleIndex, (style!=null) && (DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString())));
+				this.checkedStyles.set(styleIndex);
+			}
+			return this.dateStyles.get(styleIndex);
+		}
+	}
+
+	/**
+	 * Reads the properties of the workbook (workbookPr element) that are needed to interpret the values of cells
+	 *
+	 */
+	private static class WorkbookPropertiesHandler extends DefaultHandler {
+		private boolean date1904;
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+			if ("workbookPr".equals(localName)) {
+				String date1904Str=atts.getValue("date1904");
+				this.date1904=("1".equals(date1904Str)) || ("true".equalsIgnoreCase(date1904Str));
+			}
+		}
+
+		public boolean isDate1904() {
+			return this.date1904;
+		}
+	}
+
+	/**
+	 * Decodes a new Excel file (.xlsx) in the background
+	 *
+	 */
+	private class OPCPackageProducer implements Runnable {
+		private OPCPackage pkg;
+
+		OPCPackageProducer(OPCPackage pkg) {
+			this.pkg=pkg;
+		}
+
+		@Override
+		public void run() {
+			Exception error=null;
+			try {
+				processOPCPackage(this.pkg);
+			} catch (ParsingStoppedException e) {
+				LOG.debug("Parsing in low footprint mode has been stopped");
+			} catch (FormatNotUnderstoodException | RuntimeException e) {
+				error=e;
+			} finally {
+				this.pkg.revert();
+			}
+			finishProducer(error);
+		}
+	}
+
+	/**
+	 * Decodes an old Excel file (.xls) in the background
+	 *
+	 */
+	private class HSSFProducer implements Runnable {
+		private NPOIFSFileSystem poifs;
+
+		HSSFProducer(NPOIFSFileSystem poifs) {
+			this.poifs=poifs;
+		}
+
+		@Override
+		public void run() {
+			Exception error=null;
+			try {
+				processHSSF(this.poifs);
+			} catch (ParsingStoppedException e) {
+				LOG.debug("Parsing in low footprint mode has been stopped");
+			} catch (FormatNotUnderstoodException | RuntimeException e) {
+				error=e;
+			} finally {
+				try {
+					this.poifs.close();
+				} catch (IOException e) {
+					LOG.error(e);
+				}
+			}
+			finishProducer(error);
+		}
+	}
 	
+	/**
+	 * Decodes a sheet of a new Excel file (.xlsx) in one of the threads decoding sheets concurrently into its own bounded queue
+	 *
+	 */
+	private class SheetDecoder implements Runnable {
+		private PackagePart sheetPart;
+		private String sheetName;
+		private CommentsTable comments;
+		private StylesTable styles;
+		private ReadOnlySharedStringsTable strings;
+		private boolean date1904;
+		private BlockingQueue<ParsedRow> sheetQueue;
+		private volatile Exception exception;
+
+		SheetDecoder(PackagePart sheetPart, String sheetName, CommentsTable comments, StylesTable styles, ReadOnlySharedStringsTable strings, boolean date1904) {
+			this.sheetPart=sheetPart;
+			this.sheetName=sheetName;
+			this.comments=comments;
+			this.styles=styles;
+			this.strings=strings;
+			this.date1904=date1904;
+			this.sheetQueue=new ArrayBlockingQueue<>(Math.max(1, hocr.getLowFootprintCacheRows()));
+		}
+
+		@Override
+		public void run() {
+			try {
+				InputStream rawSheetInputStream = this.sheetPart.getInputStream();
+				try {
+					parseSheet(rawSheetInputStream, this.sheetPart, this.sheetName, this.comments, this.styles, this.strings, this.date1904, createDataFormatter(), this.sheetQueue);
+				} finally {
+					rawSheetInputStream.close();
+				}
+			} catch (ParsingStoppedException e) {
+				LOG.debug("Decoding of sheet \""+this.sheetName+"\" has been stopped");
+				return;
+			} catch (IOException | SAXException | ParserConfigurationException | RuntimeException e) {
+				this.exception=e;
+			}
+			try {
+				this.sheetQueue.put(END_OF_DOCUMENT);
+			} catch (InterruptedException e) {
+				LOG.debug("Decoding of sheet \""+this.sheetName+"\" has been stopped");
+			}
+		}
+
+		/**
+		 * Takes the next row of the sheet. Waits until a row is available
+		 *
+		 * @return row or END_OF_DOCUMENT if all rows of the sheet have been taken
+		 */
+		public ParsedRow takeRow() {
+			try {
+				return this.sheetQueue.take();
+			} catch (InterruptedException e) {
+				throw new ParsingStoppedException();
+			}
+		}
+
+		public String getSheetName() {
+			return this.sheetName;
+		}
+
+		/**
+		 * Returns the error that occurred while decoding the sheet
+		 *
+		 * @return exception or null if there was none
+		 */
+		public Exception getException() {
+			return this.exception;
+		}
+	}
+
 	/** Adapted from the Apache POI HowTos 
 	 * https://poi.apache.org/spreadsheet/how-to.html
 	 * 
 	 * **/
 	//https://svn.apache.org/repos/asf/poi/trunk/src/examples/src/org/apache/poi/xssf/streaming/examples/HybridStreaming.java
-	private static class XSSFEventParser implements SheetContentsHandler {
-		private Map<Integer,List<SpreadSheetCellDAO[]>> spreadSheetCellDAOCache; 
+	private class XSSFEventParser implements SheetContentsHandler {
 		private ArrayList<SpreadSheetCellDAO> spreadSheetCellDAOCurrentRow;
+		private ArrayList<SpreadSheetCellDAO> rowCellBuffer;
+		private BlockingQueue<ParsedRow> queue;
 		private String sheetName;
-		private Integer currentSheet;
+		private long firstRow;
+		private long lastRow;
+		private boolean skipRow;
+		private ProjectionContentHandler projectionHandler;
+		private TypedValueContentHandler typedValueHandler;
+		private BitSet columns;
+		private boolean headerPending;
+		private boolean headerRow;
+		private List<String> headerValues;
+		private boolean rowRejected;
+		private BitSet seenColumns;
 
 		private int currentRow;
 		private int currentColumn;
 		
-		public XSSFEventParser(Integer currentSheet,String sheetName, Map<Integer,List<SpreadSheetCellDAO[]>> spreadSheetCellDAOCache) {
-			this.currentSheet=currentSheet;
-			this.spreadSheetCellDAOCache=spreadSheetCellDAOCache;
-			this.spreadSheetCellDAOCache.put(currentSheet, new ArrayList<SpreadSheetCellDAO[]>());
+		/**
+		 *
+		 * @param sheetName name of the sheet
+		 * @param firstRow first row (starting from 1) to be handed over, 0 if all rows from the beginning of the sheet should be handed over
+		 * @param lastRow last row (starting from 1) to be handed over, 0 if all rows until the end of the sheet should be handed over
+		 * @param queue queue to which the rows are handed over
+		 */
+		public XSSFEventParser(String sheetName, long firstRow, long lastRow, BlockingQueue<ParsedRow> queue) {
 			this.sheetName=sheetName;
-			this.currentRow=-1;
+			this.queue=queue;
+			this.firstRow=firstRow;
+			this.lastRow=lastRow;
+			this.currentRow=firstRow>0?(int)firstRow-2:-1;
+			this.skipRow=false;
+			this.columns=null;
+			this.headerPending=false;
+			this.headerRow=false;
+			this.rowRejected=false;
+			if ((rowFilter!=null) && (rowFilter.hasCellPredicates())) {
+				this.seenColumns=new BitSet();
+			}
+		}
+
+		/**
+		 * Adds the typed values (cf. hadoopoffice.read.typedValues) to the cells
+		 *
+		 * @param typedValueHandler handler that keeps the raw value of the current cell
+		 */
+		public void setTypedValueContentHandler(TypedValueContentHandler typedValueHandler) {
+			this.typedValueHandler=typedValueHandler;
+		}
+
+		/**
+		 * Applies the projection (cf. hadoopoffice.read.columns) to the sheet. Header names are resolved with the first row of the sheet
+		 *
+		 * @param projectionHandler filter for the XML of the cells
+		 */
+		public void setProjectionContentHandler(ProjectionContentHandler projectionHandler) {
+			this.projectionHandler=projectionHandler;
+			if (projection.hasHeaderNames()) {
+				this.headerPending=true;
+			} else {
+				this.columns=projection.getColumns();
+				this.projectionHandler.setColumns(MSExcelRowFilter.getDecodedColumns(rowFilter, this.columns));
+			}
 		}
 		
 		
 		@Override
 		public void startRow(int rowNum) {
+			if ((this.lastRow>0) && (rowNum>=this.lastRow)) { // end of the row range
+				while (this.currentRow<this.lastRow-1) { // create empty rows until the end of the row range
+					this.currentRow++;
+					this.putEmptyRow();
+				}
+				throw new RowRangeCompleteException();
+			}
+			this.headerRow=this.headerPending;
+			if (this.headerRow) {
+				this.headerValues=new ArrayList<>();
+			}
+			this.skipRow=rowNum+1L<this.firstRow;
+			if (this.skipRow) { // before the row range
+				return;
+			}
 			if (rowNum>currentRow+1) {
 				// create empty rows
 				while (rowNum-1!=currentRow) {
-					this.spreadSheetCellDAOCache.get(this.currentSheet).add(new SpreadSheetCellDAO[0]);
 					this.currentRow++;
+					this.putEmptyRow();
 				}
 			}
-				// create for current Row temporary storage
-				this.spreadSheetCellDAOCurrentRow=new ArrayList<SpreadSheetCellDAO>();
+			this.rowRejected=(rowFilter!=null) && (!rowFilter.isRowSelected(rowNum+1L));
+			if (this.seenColumns!=null) {
+				this.seenColumns.clear();
+			}
+			if (!this.rowRejected) {
+				// create for current Row temporary storage (reused for all rows)
+				if (this.rowCellBuffer==null) {
+					this.rowCellBuffer=new ArrayList<SpreadSheetCellDAO>();
+				}
+				this.rowCellBuffer.clear();
+				this.spreadSheetCellDAOCurrentRow=this.rowCellBuffer;
 				this.currentColumn=0;
+			}
+		}
+
+		/**
+		 * Hands over the current row as an empty row if it matches the row filter
+		 *
+		 */
+		private void putEmptyRow() {
+			if ((rowFilter==null) || ((rowFilter.isRowSelected(this.currentRow+1L)) && (rowFilter.matchesEmptyRow()))) {
+				putRow(this.queue,new ParsedRow(this.sheetName,this.currentRow+1L,cellPool.getRow(0)));
+			}
 		}
 		
 		@Override
 		public void endRow(int rowNum) {
+			if (this.headerRow) { // resolve the header names of the projection
+				this.columns=projection.getColumns(this.headerValues.toArray(new String[this.headerValues.size()]));
+				this.projectionHandler.setColumns(MSExcelRowFilter.getDecodedColumns(rowFilter, this.columns));
+				this.headerPending=false;
+				this.headerValues=null;
+			}
+			if (this.skipRow) {
+				return;
+			}
 			currentRow+=1;
+			if ((this.rowRejected) || ((this.seenColumns!=null) && (!rowFilter.matchesMissing(this.seenColumns)))) { // row does not match the row filter
+				this.spreadSheetCellDAOCurrentRow=null;
+				return;
+			}
 			// store row
-			SpreadSheetCellDAO[] currentRowDAO = new SpreadSheetCellDAO[this.spreadSheetCellDAOCurrentRow.size()];
-			currentRowDAO=this.spreadSheetCellDAOCurrentRow.toArray(currentRowDAO);
-			this.spreadSheetCellDAOCache.get(this.currentSheet).add(currentRowDAO);
+			SpreadSheetCellDAO[] currentRowDAO = cellPool.getRow(this.spreadSheetCellDAOCurrentRow.size());
+			for (int i=0;i<currentRowDAO.length;i++) {
+				currentRowDAO[i]=this.spreadSheetCellDAOCurrentRow.get(i);
+			}
+			if (this.headerRow) {
+				currentRowDAO=MSExcelColumnProjection.project(currentRowDAO, this.columns);
+			}
+			putRow(this.queue,new ParsedRow(this.sheetName,this.currentRow+1L,currentRowDAO));
 			
 		}
 		@Override
 		public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+			if ((this.skipRow) && (!this.headerRow)) {
+				return;
+			}
+			int currentCellColumn=MSExcelUtil.getColumnIndex(cellReference);
+			if (currentCellColumn<0) { // not in the usual A1 format
+				currentCellColumn=new CellAddress(cellReference).getColumn();
+			}
+			if (this.headerRow) {
+				while (this.headerValues.size()<currentCellColumn) {
+					this.headerValues.add(null);
+				}
+				this.headerValues.add(formattedValue);
+				if (this.skipRow) {
+					return;
+				}
+			}
+			if (this.rowRejected) {
+				return;
+			}
+			if (this.seenColumns!=null) { // evaluate the row filter as soon as the cell is known, so that the further cells of the row are not created if it does not match
+				this.seenColumns.set(currentCellColumn);
+				if (!rowFilter.matches(currentCellColumn, formattedValue)) {
+					this.rowRejected=true;
+					this.spreadSheetCellDAOCurrentRow=null;
+					return;
+				}
+			}
+			if ((!this.headerRow) && (!MSExcelColumnProjection.isProjected(this.columns, currentCellColumn))) { // e.g. comments of empty cells or cells only needed for the row filter
+				return;
+			}
 			// create empty column, if needed
-			
-			CellAddress currentCellAddress = new CellAddress(cellReference);
-			for (int i=this.currentColumn;i<currentCellAddress.getColumn();i++) {
+			for (int i=this.currentColumn;i<currentCellColumn;i++) {
 				this.spreadSheetCellDAOCurrentRow.add(null);
 				this.currentColumn++;
 			}
 			// add column
 			SpreadSheetCellDAO currentDAO = null;
 			if (comment!=null) {
-				currentDAO = new SpreadSheetCellDAO(formattedValue,comment.getString().getString(), "", cellReference,this.sheetName);
+				currentDAO = cellPool.getCell(formattedValue,comment.getString().getString(), "", cellReference,this.sheetName);
 			} else {
-				currentDAO = new SpreadSheetCellDAO(formattedValue,"", "", cellReference,this.sheetName);
+				currentDAO = cellPool.getCell(formattedValue,"", "", cellReference,this.sheetName);
+			}
+			if (this.typedValueHandler!=null) {
+				this.typedValueHandler.setTypedValue(cellReference, currentDAO);
 			}
 			this.currentColumn++;
 			this.spreadSheetCellDAOCurrentRow.add(currentDAO);
@@ -463,42 +1458,104 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 	/** Adapted the Apache POI HowTos 
 	 * https://poi.apache.org/spreadsheet/how-to.html
 	 * 
+	 * Rows of a sheet are stored in blocks (up to 32 row records followed by the cell records of these rows). Only the rows of the current block are kept in memory. They are handed over as soon as the next block or sheet starts.
+	 *
 	 * **/
 	private class HSSFEventParser implements HSSFListener {
-		private Map<Integer,List<SpreadSheetCellDAO[]>> spreadSheetCellDAOCache; 
+		private List<BoundSheetRecord> boundSheetRecordList;
 		private List<String> sheetList;
-		private Map<Integer,Boolean> sheetMap;
-		private Map<Integer,Long> sheetSizeMap;
+		private List<SpreadSheetCellDAO[]> currentRowBlock;
+		private int currentRowBlockStart;
+		private boolean currentRowBlockHasCells;
 		private List<Integer> extendedRecordFormatIndexList;
 		private Map<Integer,String> formatRecordIndexMap;
+		private int[] extendedRecordFormatIndexes;
+		private String[] extendedRecordFormatStrings;
 		private DataFormatter useDataFormatter;
+		private char[] addressBuffer;
 		private int currentSheet;
+		private int currentSubstreamDepth;
+		private String currentSheetName;
 		private String[] sheets;
 		private long currentCellNum;
-		private boolean readCachedFormulaResult;
 		private int cachedRowNum;
 		private short cachedColumnNum;
 		private boolean currentSheetIgnore;
+		private BitSet currentColumns;
+		private BitSet currentProjectedColumns;
+		private boolean currentHeaderPending;
 		private SSTRecord currentSSTrecord;
+		private boolean typedValues;
+		private boolean date1904;
 		private SheetRecordCollectingListener workbookBuildingListener;
 		private HSSFWorkbook stubWorkbook;
 
-		public HSSFEventParser(List<String> sheetNameList,DataFormatter useDataFormatter, Map<Integer,List<SpreadSheetCellDAO[]>> spreadSheetCellDAOCache, String[] sheets) {
-			this.spreadSheetCellDAOCache=spreadSheetCellDAOCache;
+		public HSSFEventParser(DataFormatter useDataFormatter, String[] sheets) {
 			this.sheets=sheets;
 			this.currentCellNum=0L;
-			this.currentSheetIgnore=false;
-			this.readCachedFormulaResult=false;
+			this.currentSheetIgnore=true;
 			this.cachedRowNum=0;
 			this.cachedColumnNum=0;
-			this.sheetList=new ArrayList<>();
-			this.sheetMap=new HashMap<>();
-			this.sheetSizeMap=new HashMap<>();
-			this.currentSheet=0;
+			this.boundSheetRecordList=new ArrayList<>();
+			this.sheetList=null;
+			this.currentRowBlock=new ArrayList<>();
+			this.currentRowBlockStart=0;
+			this.currentRowBlockHasCells=false;
+			this.currentSheet=-1;
+			this.currentSubstreamDepth=0;
 			this.extendedRecordFormatIndexList=new ArrayList<>();
 			this.formatRecordIndexMap=new HashMap<>();
-			this.sheetList=sheetNameList;
+			this.extendedRecordFormatIndexes=null;
+			this.extendedRecordFormatStrings=null;
 			this.useDataFormatter=useDataFormatter;
+			this.addressBuffer=new char[MSExcelUtil.MAX_ADDRESS_LENGTH];
+			this.typedValues=hocr.getTypedValues();
+			this.date1904=false;
+		}
+
+		/**
+		 * Sets the typed value (cf. hadoopoffice.read.typedValues) of a number, which is a date if its format is a date format
+		 *
+		 * @param cellDAO cell
+		 * @param value number
+		 * @param formatIndex index of the format of the cell
+		 * @param formatString format of the cell
+		 */
+		private void setTypedNumber(SpreadSheetCellDAO cellDAO, double value, int formatIndex, String formatString) {
+			if ((DateUtil.isADateFormat(formatIndex, formatString)) && (DateUtil.isValidExcelDate(value))) {
+				cellDAO.setDateValue(value, DateUtil.getJavaDate(value, this.date1904).getTime());
+			} else {
+				cellDAO.setNumericValue(value);
+			}
+		}
+
+		/**
+		 * Returns the type of the cached result of a formula. FormulaRecord in POI 3.16 only provides the code of the type, so it is converted in the same way as HSSFCell does
+		 *
+		 * @param formRec formula record
+		 * @return type of the cached result
+		 */
+		@SuppressWarnings("deprecation")
+		private CellType getCachedResultType(FormulaRecord formRec) {
+			return CellType.forInt(formRec.getCachedResultType());
+		}
+
+		/**
+		 * Resolves the format index and the format of all extended format records, so that they are not looked up for each cell. Formats that are not stored in the workbook are built-in formats
+		 *
+		 */
+		private void resolveExtendedRecordFormats() {
+			this.extendedRecordFormatIndexes=new int[this.extendedRecordFormatIndexList.size()];
+			this.extendedRecordFormatStrings=new String[this.extendedRecordFormatIndexList.size()];
+			for (int i=0;i<this.extendedRecordFormatIndexes.length;i++) {
+				int formatIndex=this.extendedRecordFormatIndexList.get(i);
+				String formatString=this.formatRecordIndexMap.get(formatIndex);
+				if (formatString==null) {
+					formatString=BuiltinFormats.getBuiltinFormat(formatIndex);
+				}
+				this.extendedRecordFormatIndexes[i]=formatIndex;
+				this.extendedRecordFormatStrings[i]=formatString;
+			}
 		}
 		
 		public void setSheetRecordCollectingListener(SheetRecordCollectingListener listener) {
@@ -506,6 +1563,145 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 			
 		}
 
+		/**
+		 * Hands over all rows of the current block
+		 *
+		 */
+		public void flushRows() {
+			boolean projectRows=false;
+			if ((this.currentHeaderPending) && (!this.currentRowBlock.isEmpty())) { // resolve the header names of the projection with the first row of the sheet
+				SpreadSheetCellDAO[] firstRow=this.currentRowBlock.get(0);
+				String[] headerRow=new String[firstRow.length];
+				for (int i=0;i<firstRow.length;i++) {
+					if (firstRow[i]!=null) {
+						headerRow[i]=firstRow[i].getFormattedValue();
+					}
+				}
+				this.currentProjectedColumns=projection.getColumns(headerRow);
+				this.currentColumns=MSExcelRowFilter.getDecodedColumns(rowFilter, this.currentProjectedColumns);
+				this.currentHeaderPending=false;
+				projectRows=true;
+			}
+			for (int i=0;i<this.currentRowBlock.size();i++) {
+				long rowNum=this.currentRowBlockStart+i+1L;
+				SpreadSheetCellDAO[] currentRowDAO=this.currentRowBlock.get(i);
+				if ((currentRowDAO!=null) && (isRowSelected(rowNum)) && ((rowFilter==null) || (rowFilter.matches(currentRowDAO)))) {
+					if ((projectRows) || (this.currentColumns!=this.currentProjectedColumns)) { // remove cells that are not part of the projection, e.g. cells only needed for the row filter
+						currentRowDAO=MSExcelColumnProjection.project(currentRowDAO, this.currentProjectedColumns);
+					}
+					putRow(new ParsedRow(this.currentSheetName,rowNum,currentRowDAO));
+				}
+			}
+			this.currentRowBlock.clear();
+			this.currentRowBlockHasCells=false;
+		}
+
+		/**
+		 * Adds a row to the current block. If cells have already been read for the current block then a new block starts. Rows that are not selected (cf. row range and row filter) are not created
+		 *
+		 * @param rowNum row number (starting from 0)
+		 * @param numberOfCells number of cells of the row
+		 */
+		private void addRow(int rowNum, int numberOfCells) {
+			if (this.currentRowBlockHasCells) {
+				this.flushRows();
+			}
+			if (this.currentRowBlock.isEmpty()) {
+				this.currentRowBlockStart=rowNum;
+			}
+			if (rowNum!=this.currentRowBlockStart+this.currentRowBlock.size()) {
+				LOG.error("Unexpected row number. Expected: "+(this.currentRowBlockStart+this.currentRowBlock.size())+" Found: "+rowNum+". Row ignored");
+				return;
+			}
+			boolean headerRowNeeded=(this.currentHeaderPending) && (this.currentRowBlock.isEmpty()); // the first row of the sheet is needed to resolve the header names of the projection
+			if ((!headerRowNeeded) && (!isRowSelected(rowNum+1L))) {
+				this.currentRowBlock.add(null);
+				return;
+			}
+			int rowLength=numberOfCells;
+			if (this.currentColumns!=null) { // only up to the last column of the projection
+				rowLength=Math.min(rowLength, this.currentColumns.length());
+			}
+			this.currentRowBlock.add(cellPool.getRow(rowLength));
+		}
+
+		/**
+		 * Returns the row of the current block where a cell should be stored
+		 *
+		 * @param rowNum row number (starting from 0)
+		 * @param columnNum column number (starting from 0)
+		 * @return row or null if the cell is not part of the current block, a selected row or the projection
+		 */
+		private SpreadSheetCellDAO[] getRowForCell(int rowNum, int columnNum) {
+			this.currentRowBlockHasCells=true;
+			if (!MSExcelColumnProjection.isProjected(this.currentColumns, columnNum)) {
+				return null;
+			}
+			int blockIndex=rowNum-this.currentRowBlockStart;
+			if ((blockIndex<0) || (blockIndex>=this.currentRowBlock.size())) {
+				LOG.error("Cell outside of the current row block. Row number: "+rowNum+" Column number: "+columnNum+". Cell ignored");
+				return null;
+			}
+			SpreadSheetCellDAO[] row = this.currentRowBlock.get(blockIndex);
+			if (row==null) { // row is not selected
+				return null;
+			}
+			if (columnNum>=row.length) {
+				LOG.error("More cells in row than expected. Row number:"+rowNum+"Column number: "+columnNum+"row length "+row.length);
+				return null;
+			}
+			return row;
+		}
+
+		/**
+		 * Starts processing a new sheet
+		 *
+		 */
+		private void startSheet() {
+			this.flushRows();
+			if (this.sheetList==null) { // sheets are stored in the order of the BOF records
+				this.sheetList=new ArrayList<>();
+				BoundSheetRecord[] orderedBoundSheetRecords=BoundSheetRecord.orderByBofPosition(this.boundSheetRecordList);
+				for (int i=0;i<orderedBoundSheetRecords.length;i++) {
+					this.sheetList.add(orderedBoundSheetRecords[i].getSheetname());
+				}
+			}
+			if ((this.stubWorkbook==null) && (this.workbookBuildingListener!=null)) { // all workbook records have been read
+				this.stubWorkbook=this.workbookBuildingListener.getStubHSSFWorkbook();
+			}
+			this.currentSheet++;
+			this.currentCellNum=0;
+			this.currentColumns=null;
+			this.currentProjectedColumns=null;
+			this.currentHeaderPending=false;
+			if (projection!=null) { // header names are resolved with the first row of the sheet
+				this.currentHeaderPending=projection.hasHeaderNames();
+				if (!this.currentHeaderPending) {
+					this.currentProjectedColumns=projection.getColumns();
+					this.currentColumns=MSExcelRowFilter.getDecodedColumns(rowFilter, this.currentProjectedColumns);
+				}
+			}
+			if (this.currentSheet>=this.sheetList.size()) {
+				LOG.error("Sheet without BoundSheet record found. Sheet ignored");
+				this.currentSheetName=null;
+				this.currentSheetIgnore=true;
+				return;
+			}
+			this.currentSheetName=this.sheetList.get(this.currentSheet);
+			this.currentSheetIgnore=false;
+			if (this.sheets!=null) { // sheets filter
+				boolean found=false;
+				for(int i=0;i<this.sheets.length;i++) {
+					if (this.currentSheetName.equals(this.sheets[i])) {
+						found=true;
+						break;
+					}
+				}
+				this.currentSheetIgnore=!found;
+			}
+			LOG.debug("Sheet found: "+this.currentSheetName+" ignored: "+this.currentSheetIgnore);
+		}
+
 		@Override
 		public void processRecord(Record record) {
 			switch (record.getSid()) // one should note that these do not arrive necessary in linear order. First all the sheets are processed. Then all the rows of the sheets
@@ -513,61 +1709,31 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 	            // the BOFRecord can represent either the beginning of a sheet or the workbook
 	            case BOFRecord.sid:
 	                BOFRecord bof = (BOFRecord) record;
-	                if (bof.getType() == bof.TYPE_WORKBOOK)
+	                this.currentSubstreamDepth++;
+	                if ((this.currentSubstreamDepth==1) && (bof.getType() != BOFRecord.TYPE_WORKBOOK)) // new sheet (ignore embedded charts etc.)
 	                {
-	                    // ignored
-	                	if ((stubWorkbook==null) && (workbookBuildingListener!=null)){
-	                		stubWorkbook= workbookBuildingListener.getStubHSSFWorkbook();
-	                	} else {
-	                		LOG.error("Cannot create stub network. Formula Strings cannot be parsed");
-	                	}
-	                } else if (bof.getType() == bof.TYPE_WORKSHEET)
-	                {
-	                    // ignored
+	                	this.startSheet();
 	                }
 	                break;
+	            case EOFRecord.sid:
+	            	if ((this.currentSubstreamDepth==1) && (this.currentSheet>=0)) { // end of sheet
+	            		LOG.debug("Sheet number : "+this.currentSheet+" total number of cells "+this.currentCellNum);
+	            		this.flushRows();
+	            		this.currentSheetIgnore=true;
+	            	}
+	            	this.currentSubstreamDepth--;
+	            	break;
 	            case BoundSheetRecord.sid:
 	                BoundSheetRecord bsr = (BoundSheetRecord) record;
-	                String currentSheet=bsr.getSheetname();
-	                LOG.debug("Sheet found: "+currentSheet);
-	                if (this.sheets==null) { // no sheets filter
-	                	// ignore the filter
-	                	this.sheetMap.put(this.sheetList.size(), true);
-	                	this.sheetSizeMap.put(this.sheetList.size(), 0L);
-                    	this.sheetList.add(currentSheet);
-	                } else
-	                if (currentSheet!=null) { // sheets filter
-	                 	boolean found=false;
-	                    for(int i=0;i<this.sheets.length;i++) {
-	                    	if (currentSheet.equals(this.sheets[i])) {
-	                    		found=true;
-	                    		break;
-	                    	}
-	                    }
-	                    this.sheetMap.put(this.sheetList.size(), found);
-	                    this.sheetList.add(currentSheet);
-	                } 
-	                if (this.sheetMap.get(this.sheetList.size()-1)) { // create sheet
-	                	 this.spreadSheetCellDAOCache.put(this.sheetList.size()-1, new ArrayList<SpreadSheetCellDAO[]>());
-	                }
+	                LOG.debug("Sheet found: "+bsr.getSheetname());
+	                this.boundSheetRecordList.add(bsr);
 	                break;
 	            case RowRecord.sid:
 	            	  RowRecord rowRec = (RowRecord) record;
 		              LOG.debug("Row found. Number of Cells: "+rowRec.getLastCol());
-		              if ((this.currentSheet==0) && (rowRec.getRowNumber()==0)) { // first sheet
-		            	  // special handling first sheet
-		            	  this.currentSheet++;
-		            	  this.currentCellNum=0;
-		              } else
-		              if ((this.currentSheet>0) && (rowRec.getRowNumber()==0)) { // new sheet
-		            	  LOG.debug("Sheet number : "+this.currentSheet+" total number of cells "+this.currentCellNum);
-		            	  this.sheetSizeMap.put(this.currentSheet-1, this.currentCellNum);
-		            	  this.currentSheet++; // start processing next sheet
-		            	  this.currentCellNum=0;
-		              }
 		              // create row if this sheet is supposed to be parsed
-		              if (this.sheetMap.get(this.currentSheet-1)) {
-		            	  this.spreadSheetCellDAOCache.get(this.currentSheet-1).add(new SpreadSheetCellDAO[rowRec.getLastCol()]);
+		              if (!this.currentSheetIgnore) {
+		            	  this.addRow(rowRec.getRowNumber(),rowRec.getLastCol());
 		              }
 		              this.currentCellNum+=rowRec.getLastCol();
 	                break;
@@ -577,28 +1743,38 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 	            	FormulaRecord formRec=(FormulaRecord) record;
 	            	
 	            	/** check if this one should be parsed **/
-	            	if (!this.sheetMap.get(this.currentSheet-1)) {// if not then do nothing
+	            	if (this.currentSheetIgnore) {// if not then do nothing
 	            		break;
 	            	}
 	            	/** **/
-	            	String formulaString = "";
-	            	if (this.stubWorkbook!=null) {
-	            		formulaString=HSSFFormulaParser.toFormulaString(stubWorkbook, formRec.getParsedExpression());
-	            	}
 	            	if (formRec.hasCachedResultString()) {
-	            		this.readCachedFormulaResult=true;
 	            		this.cachedColumnNum=formRec.getColumn();
 	            		this.cachedRowNum=formRec.getRow();
 	            	} else {
 	            		// try to read the result
-	            		if (formRec.getColumn()>=this.spreadSheetCellDAOCache.get(this.currentSheet-1).get(formRec.getRow()).length) {
-	            			LOG.error("More cells in row than expected. Row number:"+(formRec.getRow())+"Column number: "+formRec.getColumn()+"row length "+this.spreadSheetCellDAOCache.get(this.currentSheet-1).get(formRec.getRow()).length);
-	                    	
-	            		} else {
-
-	            			int formatIndex= this.extendedRecordFormatIndexList.get(formRec.getXFIndex());
-	            			String theNumber=this.useDataFormatter.formatRawCellContents(formRec.getValue(), formatIndex, this.formatRecordIndexMap.get(formatIndex));
-	            			this.spreadSheetCellDAOCache.get(this.currentSheet-1).get(formRec.getRow())[formRec.getColumn()]=new SpreadSheetCellDAO(theNumber,"",formulaString,MSExcelUtil.getCellAddressA1Format(formRec.getRow(), formRec.getColumn()),this.sheetList.get(this.currentSheet-1));          			
+	            		SpreadSheetCellDAO[] formRow=this.getRowForCell(formRec.getRow(), formRec.getColumn());
+	            		if (formRow!=null) {
+	            			String formulaString = "";
+	    	            	if (this.stubWorkbook!=null) {
+	    	            		formulaString=HSSFFormulaParser.toFormulaString(stubWorkbook, formRec.getParsedExpression());
+	    	            	}
+	            			if (this.extendedRecordFormatIndexes==null) {
+	            				this.resolveExtendedRecordFormats();
+	            			}
+	            			int formatIndex=this.extendedRecordFormatIndexes[formRec.getXFIndex()];
+	            			String formatString=this.extendedRecordFormatStrings[formRec.getXFIndex()];
+	            			String theNumber=this.useDataFormatter.formatRawCellContents(formRec.getValue(), formatIndex, formatString);
+	            			formRow[formRec.getColumn()]=cellPool.getCell(theNumber,"",formulaString,MSExcelUtil.getCellAddressA1Format(formRec.getRow(), formRec.getColumn(),this.addressBuffer),this.currentSheetName);
+	            			if (this.typedValues) {
+	            				CellType cachedResultType=getCachedResultType(formRec);
+	            				if (cachedResultType==CellType.BOOLEAN) {
+	            					formRow[formRec.getColumn()].setBooleanValue(formRec.getCachedBooleanValue());
+	            				} else if (cachedResultType==CellType.ERROR) {
+	            					formRow[formRec.getColumn()].setErrorValue(formRec.getCachedErrorValue());
+	            				} else {
+	            					this.setTypedNumber(formRow[formRec.getColumn()], formRec.getValue(), formatIndex, formatString);
+	            				}
+	            			}
 	            		}
 	            	}
 	            	break;
@@ -606,13 +1782,17 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 	            	LOG.debug("String Record found");
 	            	StringRecord strRec=(StringRecord) record;
 	            	/** check if this one should be parsed **/
-	               	if (!this.sheetMap.get(this.currentSheet-1)) {// if not then do nothing
+	               	if (this.currentSheetIgnore) {// if not then do nothing
 	            		break;
 	            	}
 	            	/** **/
-	              this.spreadSheetCellDAOCache.get(this.currentSheet-1).get(this.cachedRowNum)[this.cachedColumnNum]=new SpreadSheetCellDAO(strRec.getString(),"","",MSExcelUtil.getCellAddressA1Format(this.cachedRowNum,this.cachedColumnNum),this.sheetList.get(this.currentSheet-1));          			
-	    	         this.readCachedFormulaResult=false;	
-	            	
+	               	SpreadSheetCellDAO[] strRow=this.getRowForCell(this.cachedRowNum, this.cachedColumnNum);
+	               	if (strRow!=null) {
+	               		strRow[this.cachedColumnNum]=cellPool.getCell(strRec.getString(),"","",MSExcelUtil.getCellAddressA1Format(this.cachedRowNum,this.cachedColumnNum,this.addressBuffer),this.currentSheetName);
+	               		if (this.typedValues) {
+	               			strRow[this.cachedColumnNum].setValueType(SpreadSheetCellDAO.TYPE_STRING);
+	               		}
+	               	}
 	            	break;
 	            case NumberRecord.sid: // read number result
 	            	LOG.debug("Number Record found");
@@ -621,18 +1801,24 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 	           
 	            
 	                /** check if this one should be parsed **/
-	               	if (!this.sheetMap.get(this.currentSheet-1)) {// if not then do nothing
+	               	if (this.currentSheetIgnore) {// if not then do nothing
 	            		break;
 	            	}
 	            	/** **/
 	            	// try to read the result
-            		if (numrec.getColumn()>=this.spreadSheetCellDAOCache.get(this.currentSheet-1).get(numrec.getRow()).length) {
-            			LOG.error("More cells in row than expected. Row number:"+(numrec.getRow())+"Column number: "+numrec.getColumn()+"row length "+this.spreadSheetCellDAOCache.get(this.currentSheet-1).get(numrec.getRow()).length);
-            		} else {
+	               	SpreadSheetCellDAO[] numRow=this.getRowForCell(numrec.getRow(), numrec.getColumn());
+            		if (numRow!=null) {
             			// convert the number in the right format (can be date etc.)
-            			int formatIndex= this.extendedRecordFormatIndexList.get(numrec.getXFIndex());
-            			String theNumber=this.useDataFormatter.formatRawCellContents(numrec.getValue(), formatIndex, this.formatRecordIndexMap.get(formatIndex));
-            			   this.spreadSheetCellDAOCache.get(this.currentSheet-1).get(numrec.getRow())[numrec.getColumn()]=new SpreadSheetCellDAO(theNumber,"","",MSExcelUtil.getCellAddressA1Format(numrec.getRow(),numrec.getColumn()),this.sheetList.get(this.currentSheet-1));          		
+            			if (this.extendedRecordFormatIndexes==null) {
+            				this.resolveExtendedRecordFormats();
+            			}
+            			int formatIndex=this.extendedRecordFormatIndexes[numrec.getXFIndex()];
+            			String formatString=this.extendedRecordFormatStrings[numrec.getXFIndex()];
+            			String theNumber=this.useDataFormatter.formatRawCellContents(numrec.getValue(), formatIndex, formatString);
+            			numRow[numrec.getColumn()]=cellPool.getCell(theNumber,"","",MSExcelUtil.getCellAddressA1Format(numrec.getRow(),numrec.getColumn(),this.addressBuffer),this.currentSheetName);
+            			if (this.typedValues) {
+            				this.setTypedNumber(numRow[numrec.getColumn()], numrec.getValue(), formatIndex, formatString);
+            			}
             		}
 	                break;
 	                // SSTRecords store a array of unique strings used in Excel. (one per sheet?)
@@ -645,20 +1831,19 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 	            	LOG.debug("Label found");
 	                LabelSSTRecord lrec = (LabelSSTRecord) record;
 	              	/** check if this one should be parsed **/
-	               	if (!this.sheetMap.get(this.currentSheet-1)) {// if not then do nothing
+	               	if (this.currentSheetIgnore) {// if not then do nothing
 	            		break;
 	            	}
 	            	/** **/
-	            	if (lrec.getColumn()>=this.spreadSheetCellDAOCache.get(this.currentSheet-1).get(lrec.getRow()).length) {
-	            		LOG.error("More cells in row than expected. Row number:"+(lrec.getRow())+"Column number: "+lrec.getColumn()+"row length "+this.spreadSheetCellDAOCache.get(this.currentSheet-1).get(lrec.getRow()).length);
-	                	
-            		} else {
-            			if ((lrec.getSSTIndex()<0) || (lrec.getSSTIndex()>=this.currentSSTrecord.getNumUniqueStrings())) {
+	               	SpreadSheetCellDAO[] labelRow=this.getRowForCell(lrec.getRow(), lrec.getColumn());
+	            	if (labelRow!=null) {
+            			if ((this.currentSSTrecord==null) || (lrec.getSSTIndex()<0) || (lrec.getSSTIndex()>=this.currentSSTrecord.getNumUniqueStrings())) {
             				LOG.error("Invalid SST record index. Cell ignored");
             			} else {
-            				   this.spreadSheetCellDAOCache.get(this.currentSheet-1).get(lrec.getRow())[lrec.getColumn()]=new SpreadSheetCellDAO(this.currentSSTrecord.getString(lrec.getSSTIndex()).getString(),"","",MSExcelUtil.getCellAddressA1Format(lrec.getRow(),lrec.getColumn()),this.sheetList.get(this.currentSheet-1));          		
-            	            	
-            				
+            				labelRow[lrec.getColumn()]=cellPool.getCell(this.currentSSTrecord.getString(lrec.getSSTIndex()).getString(),"","",MSExcelUtil.getCellAddressA1Format(lrec.getRow(),lrec.getColumn(),this.addressBuffer),this.currentSheetName);
+            				if (this.typedValues) {
+            					labelRow[lrec.getColumn()].setValueType(SpreadSheetCellDAO.TYPE_STRING);
+            				}
             			}
             		}
 	                break;
@@ -666,13 +1851,18 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 	            	LOG.debug("Found extended format record");
 	            	ExtendedFormatRecord nfir = (ExtendedFormatRecord)record;
 	            	this.extendedRecordFormatIndexList.add((int)nfir.getFormatIndex());
+	            	this.extendedRecordFormatIndexes=null;
 	               	
 	            	
+	            	break;
+	            case DateWindow1904Record.sid:
+	            	this.date1904=((DateWindow1904Record)record).getWindowing()==1;
 	            	break;
 	            case FormatRecord.sid:
 	            	LOG.debug("Found format record");
 	            	FormatRecord frec = (FormatRecord)record;
 	            	this.formatRecordIndexMap.put(frec.getIndexCode(),frec.getFormatString());
+	            	this.extendedRecordFormatIndexes=null;
 	            	
 	            	break;
 	            	
@@ -683,20 +1873,9 @@ public class MSExcelLowFootprintParser implements OfficeReaderParserInterface  {
 			if (record instanceof MissingRowDummyRecord) { // this is an empty row in the Excel
 				MissingRowDummyRecord emptyRow = (MissingRowDummyRecord)record;
 				 LOG.debug("Detected Empty row");
-	              if ((this.currentSheet==0) && (emptyRow.getRowNumber()==0)) { // first sheet
-	            	  // special handling first sheet
-	            	  this.currentSheet++;
-	            	  this.currentCellNum=0;
-	              } else
-	              if ((this.currentSheet>0) && (emptyRow.getRowNumber()==0)) { // new sheet
-	            	  LOG.debug("Sheet number : "+this.currentSheet+" total number of cells "+this.currentCellNum);
-	            	  this.sheetSizeMap.put(this.currentSheet-1, this.currentCellNum);
-	            	  this.currentSheet++; // start processing next sheet
-	            	  this.currentCellNum=0;
-	              }
 	              // create empty row if this sheet is supposed to be parsed
-	              if (this.sheetMap.get(this.currentSheet-1)) {
-	            	  this.spreadSheetCellDAOCache.get(this.currentSheet-1).add(new SpreadSheetCellDAO[0]);
+	              if (!this.currentSheetIgnore) {
+	            	  this.addRow(emptyRow.getRowNumber(),0);
 	              }
 			}
 			
@@ -18,16 +18,19 @@ package org.zuinnote.hadoop.office.format.common.parser;
 
 import java.io.InputStream;
 import java.io.IOException;
+import java.io.PushbackInputStream;
 import java.text.SimpleDateFormat;
 
 
 import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Map;
 import java.util.HashMap;
 
 import org.apache.poi.hssf.model.InternalWorkbook;
+import org.apache.poi.hssf.record.crypto.Biff8EncryptionKey;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.ss.usermodel.DataFormatter;
@@ -35,6 +38,7 @@ import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -45,6 +49,10 @@ import org.apache.poi.POIXMLProperties;
 import org.apache.poi.hpsf.SummaryInformation;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.poifs.crypt.Decryptor;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.util.IOUtils;
 
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.Log;
@@ -55,6 +63,7 @@ import java.lang.reflect.InvocationTargetException;
 
 import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
 import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+import org.zuinnote.hadoop.office.format.common.util.MSExcelUtil;
 
 /*
 *
@@ -84,6 +93,13 @@ private ArrayList<Workbook> addedWorkbooks;
 
 private boolean filtered=false;
 private HadoopOfficeReadConfiguration hocr;
+private MSExcelColumnProjection projection;
+private MSExcelRowFilter rowFilter;
+private BitSet projectedColumns=null;
+private int projectedSheet=-1;
+private MSExcelCellPool cellPool;
+private char[] addressBuffer;
+private SpreadSheetCellDAO[] lastReturnedRow=null;
 	/*
 	* In the default case all sheets are parsed one after the other.
 	* @param hocr HadoopOffice configuration for reading files:
@@ -118,16 +134,37 @@ private HadoopOfficeReadConfiguration hocr;
 	public MSExcelParser(HadoopOfficeReadConfiguration hocr, String[] sheets) {
 		this.sheets=sheets;
 		this.hocr=hocr;
-		if (hocr.getLocale()==null)  {
-			useDataFormatter=new DataFormatter(); // use default locale
+		if (hocr.getDataFormatter()!=null) { // shared by the parsers of several files read one after the other
+			useDataFormatter=hocr.getDataFormatter();
 		} else {
-			useDataFormatter=new DataFormatter(hocr.getLocale());
+			useDataFormatter=MSExcelParser.createDataFormatter(hocr);
 		}
-		
+		this.projection=MSExcelColumnProjection.parse(hocr.getColumns());
+		this.cellPool=new MSExcelCellPool(hocr.getReuseObjects());
+		this.addressBuffer=new char[MSExcelUtil.MAX_ADDRESS_LENGTH];
+		this.rowFilter=MSExcelRowFilter.create(hocr);
 		this.addedFormulaEvaluators = new HashMap<>();
 		this.addedWorkbooks = new ArrayList<>();
 	}
 
+	/*
+	* Creates the formatter of the cells for the given configuration. It can be shared by the parsers of several files read one after the other (cf. HadoopOfficeReadConfiguration.setDataFormatter), but not by parsers running at the same time
+	*
+	* @param hocr HadoopOffice configuration for reading files (locale, typed values)
+	*
+	* @return formatter of the cells
+	*
+	*/
+	public static DataFormatter createDataFormatter(HadoopOfficeReadConfiguration hocr) {
+		if ((hocr.getTypedValues()) && (!hocr.getTypedValuesFormat())) { // typed values are not formatted
+			return new MSExcelRawDataFormatter();
+		}
+		if (hocr.getLocale()==null)  {
+			return new MSExcelCachingDataFormatter(); // use default locale
+		}
+		return new MSExcelCachingDataFormatter(hocr.getLocale());
+	}
+
 	/*
 	*
 	* Parses the given InputStream containing Excel data. The type of InputStream (e.g. FileInputStream, BufferedInputStream etc.) does not matter here, but it is recommended to use an appropriate
@@ -143,7 +180,7 @@ private HadoopOfficeReadConfiguration hocr;
 		// read xls
 	
 			try {
-				this.currentWorkbook=WorkbookFactory.create(in,this.hocr.getPassword());
+				this.currentWorkbook=this.createWorkbook(in);
 			} catch (EncryptedDocumentException | InvalidFormatException | IOException e) {
 				LOG.error(e);
 				throw new FormatNotUnderstoodException(e.toString());
@@ -162,7 +199,7 @@ private HadoopOfficeReadConfiguration hocr;
 		 this.addedFormulaEvaluators.put(this.hocr.getFileName(),this.formulaEvaluator);
 		 this.formulaEvaluator.setIgnoreMissingWorkbooks(this.hocr.getIgnoreMissingLinkedWorkbooks());
 		 this.filtered=this.checkFiltered();
-		 this.currentRow=0;
+		 this.currentRow=this.getFirstRow();
 		 if (this.sheets==null) {
 			this.currentSheetName=this.currentWorkbook.getSheetAt(0).getSheetName();
 		 } else if (sheets.length<1) {
@@ -172,6 +209,43 @@ private HadoopOfficeReadConfiguration hocr;
 		 }
 	}
 
+	/*
+	* Creates the workbook like Apache POI (cf. WorkbookFactory), but the keys of encrypted new Excel files (.xlsx) are taken from the cache of derived keys if it is enabled (cf. MSExcelKeyCache)
+	*
+	* @param in InputStream containing Excel data
+	*
+	* @return workbook
+	*
+	* @throws java.io.IOException in case the file cannot be read
+	* @throws org.apache.poi.openxml4j.exceptions.InvalidFormatException in case the file is not an Excel file
+	*
+	*/
+	private Workbook createWorkbook(InputStream in) throws IOException, InvalidFormatException {
+		if (!this.hocr.getKeyCache()) {
+			return WorkbookFactory.create(in,this.hocr.getPassword());
+		}
+		InputStream currentIn=in;
+		if (!currentIn.markSupported()) {
+			currentIn=new PushbackInputStream(currentIn, 8);
+		}
+		if (!NPOIFSFileSystem.hasPOIFSHeader(IOUtils.peekFirst8Bytes(currentIn))) { // unencrypted new Excel file
+			return WorkbookFactory.create(currentIn,this.hocr.getPassword());
+		}
+		NPOIFSFileSystem poifs = new NPOIFSFileSystem(currentIn);
+		if (poifs.getRoot().hasEntry(Decryptor.DEFAULT_POIFS_ENTRY)) {
+			return new XSSFWorkbook(OPCPackage.open(MSExcelKeyCache.getDecryptedStream(poifs, this.hocr.getPassword(), this.hocr.getDerivedKeyCache())));
+		}
+		// old Excel file
+		if (this.hocr.getPassword()!=null) {
+			Biff8EncryptionKey.setCurrentUserPassword(this.hocr.getPassword());
+		}
+		try {
+			return new HSSFWorkbook(poifs.getRoot(), true);
+		} finally {
+			Biff8EncryptionKey.setCurrentUserPassword(null);
+		}
+	}
+
 	/**
 	* Adds a linked workbook that is referred from this workbook. If the filename is already in the list then it is not processed twice. Note that the inputStream is closed after parsing
 	*
@@ -198,6 +272,8 @@ private HadoopOfficeReadConfiguration hocr;
 		linkedWBHOCR.setIgnoreMissingLinkedWorkbooks(this.hocr.getIgnoreMissingLinkedWorkbooks());
 		linkedWBHOCR.setFileName(name);
 		linkedWBHOCR.setPassword(password);
+		linkedWBHOCR.setKeyCache(this.hocr.getKeyCache());
+		linkedWBHOCR.setDerivedKeyCache(this.hocr.getDerivedKeyCache());
 		linkedWBHOCR.setMetaDataFilter(null);
 		MSExcelParser linkedWBMSExcelParser = new MSExcelParser(linkedWBHOCR,null);
 		// parse workbook 
@@ -342,28 +418,85 @@ private HadoopOfficeReadConfiguration hocr;
 	*/
 	@Override
 	public Object[] getNext() {
-		SpreadSheetCellDAO[] result=null;
+		// the row returned before is not used anymore (cf. hadoopoffice.read.reuseObjects)
+		this.cellPool.release(this.lastReturnedRow);
+		this.lastReturnedRow=null;
+		while (this.nextRow()) {
+			// read row from the sheet currently to be processed
+			Sheet rSheet = this.currentWorkbook.getSheetAt(this.currentSheet);
+			Row rRow = rSheet.getRow(this.currentRow);
+			// increase rows
+			this.currentRow++;
+			if ((this.rowFilter==null) || ((this.rowFilter.isRowSelected(this.currentRow)) && (this.matchesRowFilter(rRow)))) {
+				this.lastReturnedRow=this.getRow(rSheet, rRow);
+				return this.lastReturnedRow;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Moves to the sheet with the next row to be read
+	 *
+	 * @return true, if there is a next row, false if all rows of all sheets have been read
+	 */
+	private boolean nextRow() {
 		// all sheets?
 		if (this.sheets==null) { //  go on with all sheets
-			if (!nextAllSheets()) {
-				return result;
+			return nextAllSheets();
+		}
+		// go on with specified sheets
+		return nextSpecificSheets();
+	}
+
+	/**
+	 * Checks if the cells of a row match the filter (cf. hadoopoffice.read.filter.cell.*). Only the cells needed for the filter are formatted
+	 *
+	 * @param rRow row, null if it is empty
+	 * @return true, if the row matches, false if not
+	 */
+	private boolean matchesRowFilter(Row rRow) {
+		if (!this.rowFilter.hasCellPredicates()) {
+			return true;
+		}
+		if (rRow==null) {
+			return this.rowFilter.matchesEmptyRow();
+		}
+		BitSet filterColumns=this.rowFilter.getColumns();
+		for (int i=filterColumns.nextSetBit(0);i>=0;i=filterColumns.nextSetBit(i+1)) {
+			Cell currentCell=rRow.getCell(i);
+			String formattedValue="";
+			if (currentCell!=null) {
+				formattedValue=useDataFormatter.formatCellValue(currentCell,this.formulaEvaluator);
 			}
-		} else { // go on with specified sheets
-			if (!nextSpecificSheets()) {
-				return result;
+			if (!this.rowFilter.matches(i, formattedValue)) {
+				return false;
 			}
 		}
-		// read row from the sheet currently to be processed
-		Sheet rSheet = this.currentWorkbook.getSheetAt(this.currentSheet);
-		Row rRow = rSheet.getRow(this.currentRow);
+		return true;
+	}
+
+	/**
+	 * Reads the cells of a row
+	 *
+	 * @param rSheet sheet of the row
+	 * @param rRow row, null if it is empty
+	 * @return column array of SpreadSheetCellDAO (may contain nulls if cell is without content)
+	 */
+	private SpreadSheetCellDAO[] getRow(Sheet rSheet, Row rRow) {
 		if (rRow==null) {
-			this.currentRow++;
-			return new SpreadSheetCellDAO[0]; // emtpy row
+			return this.cellPool.getRow(0); // emtpy row
+		}
+		SpreadSheetCellDAO[] result=null;
+		BitSet currentColumns=this.getProjectedColumns(rSheet);
+		int numberOfCells=rRow.getLastCellNum();
+		if (currentColumns!=null) { // only up to the last column of the projection
+			numberOfCells=Math.min(numberOfCells, currentColumns.length());
 		}
-		result = new SpreadSheetCellDAO[rRow.getLastCellNum()];
-		for (int i=0;i<rRow.getLastCellNum();i++) {
+		result = this.cellPool.getRow(Math.max(0, numberOfCells));
+		for (int i=0;i<result.length;i++) {
 			Cell currentCell=rRow.getCell(i);
-			if (currentCell==null) {
+			if ((currentCell==null) || (!MSExcelColumnProjection.isProjected(currentColumns, i))) {
 				result[i]=null;
 			} else {	
 				String formattedValue=useDataFormatter.formatCellValue(currentCell,this.formulaEvaluator);
@@ -376,22 +509,22 @@ private HadoopOfficeReadConfiguration hocr;
 				if (currentCellComment!=null) {
 					comment = currentCellComment.getString().getString();
 				}
-				String address = currentCell.getAddress().toString();
+				String address = MSExcelUtil.getCellAddressA1Format(currentCell.getRowIndex(), currentCell.getColumnIndex(), this.addressBuffer);
 				String sheetName = currentCell.getSheet().getSheetName();
-				SpreadSheetCellDAO mySpreadSheetCellDAO = new SpreadSheetCellDAO(formattedValue,comment,formula,address,sheetName);
+				SpreadSheetCellDAO mySpreadSheetCellDAO = this.cellPool.getCell(formattedValue,comment,formula,address,sheetName);
+				if (this.hocr.getTypedValues()) {
+					this.setTypedValue(mySpreadSheetCellDAO, currentCell);
+				}
 				result[i]=mySpreadSheetCellDAO;
 			}
 		}
-		
-		// increase rows
-		this.currentRow++;
 		return result;
 	}
 	
 	private boolean nextAllSheets() {
-		if (this.currentRow>this.currentWorkbook.getSheetAt(this.currentSheet).getLastRowNum()) { // end of row reached? => next sheet
+		if (this.currentRow>this.getLastRow(this.currentWorkbook.getSheetAt(this.currentSheet))) { // end of row reached? => next sheet
 			this.currentSheet++;
-			this.currentRow=0;
+			this.currentRow=this.getFirstRow();
 			if (this.currentSheet>=this.currentWorkbook.getNumberOfSheets()) {
 				return false; // no more sheets available?
 			}
@@ -406,9 +539,9 @@ private HadoopOfficeReadConfiguration hocr;
 						if (this.currentWorkbook.getSheet(this.sheets[this.sheetsIndex])==null) { // log only if sheet not found
 							LOG.warn("Sheet \""+this.sheets[this.sheetsIndex]+"\" not found");
 						} else { // sheet found, check number of rows
-						   if (this.currentRow>this.currentWorkbook.getSheet(this.sheets[this.sheetsIndex]).getLastRowNum()) {
+						   if (this.currentRow>this.getLastRow(this.currentWorkbook.getSheet(this.sheets[this.sheetsIndex]))) {
 							// reset rows
-							this.currentRow=0;
+							this.currentRow=this.getFirstRow();
 						   } else { // we have a sheet where we still need to process rows
 							this.currentSheet=this.currentWorkbook.getSheetIndex(this.currentWorkbook.getSheet(this.sheets[this.sheetsIndex]));
 							this.currentSheetName=this.currentWorkbook.getSheetAt(this.currentSheet).getSheetName();
@@ -424,6 +557,101 @@ private HadoopOfficeReadConfiguration hocr;
 	}
 
 
+	/**
+	 * Sets the type and the primitive value of a cell (cf. hadoopoffice.read.typedValues). Formulas have the type of their result, which has already been evaluated when the cell has been formatted
+	 *
+	 * @param cellDAO cell to be handed over
+	 * @param currentCell cell of the workbook
+	 */
+	private void setTypedValue(SpreadSheetCellDAO cellDAO, Cell currentCell) {
+		CellType cellType=currentCell.getCellTypeEnum();
+		if (cellType==CellType.FORMULA) {
+			cellType=currentCell.getCachedFormulaResultTypeEnum();
+		}
+		switch (cellType) {
+			case NUMERIC:
+				if (DateUtil.isCellDateFormatted(currentCell)) {
+					cellDAO.setDateValue(currentCell.getNumericCellValue(), currentCell.getDateCellValue().getTime());
+				} else {
+					cellDAO.setNumericValue(currentCell.getNumericCellValue());
+				}
+				break;
+			case STRING:
+				cellDAO.setValueType(SpreadSheetCellDAO.TYPE_STRING);
+				break;
+			case BOOLEAN:
+				cellDAO.setBooleanValue(currentCell.getBooleanCellValue());
+				break;
+			case ERROR:
+				cellDAO.setErrorValue(currentCell.getErrorCellValue());
+				break;
+			default:
+				cellDAO.setValueType(SpreadSheetCellDAO.TYPE_BLANK);
+				break;
+		}
+	}
+
+	/**
+	 * Returns the columns to be read in the current sheet (cf. hadoopoffice.read.columns). Header names are resolved with the first row of the sheet
+	 *
+	 * @param sheet current sheet
+	 * @return columns or null if all columns should be read
+	 */
+	private BitSet getProjectedColumns(Sheet sheet) {
+		if (this.projection==null) {
+			return null;
+		}
+		if (this.projectedSheet!=this.currentSheet) {
+			this.projectedSheet=this.currentSheet;
+			if (this.projection.hasHeaderNames()) {
+				String[] headerRow=null;
+				Row firstRow=sheet.getRow(sheet.getFirstRowNum());
+				if (firstRow!=null) {
+					headerRow=new String[Math.max(0, (int)firstRow.getLastCellNum())];
+					for (int i=0;i<headerRow.length;i++) {
+						Cell currentCell=firstRow.getCell(i);
+						if (currentCell!=null) {
+							headerRow[i]=this.useDataFormatter.formatCellValue(currentCell,this.formulaEvaluator);
+						}
+					}
+				}
+				this.projectedColumns=this.projection.getColumns(headerRow);
+			} else {
+				this.projectedColumns=this.projection.getColumns();
+			}
+		}
+		return this.projectedColumns;
+	}
+
+	/**
+	 * Returns the first row to be read in a sheet (cf. row range in the configuration)
+	 *
+	 * @return row index (starting from 0)
+	 */
+	private int getFirstRow() {
+		if (this.hocr.getRowRangeStart()>0) {
+			return (int)(this.hocr.getRowRangeStart()-1);
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the last row to be read in a sheet (cf. row range and row filter in the configuration)
+	 *
+	 * @param sheet sheet
+	 * @return row index (starting from 0)
+	 */
+	private int getLastRow(Sheet sheet) {
+		int result=sheet.getLastRowNum();
+		if (this.hocr.getRowRangeEnd()>0) {
+			result=Math.min(result, (int)(this.hocr.getRowRangeEnd()-1));
+		}
+		if ((this.rowFilter!=null) && (this.rowFilter.getLastRow()>0)) { // no rows are selected after the last row of the filter
+			result=(int)Math.min(result, this.rowFilter.getLastRow()-1);
+		}
+		return result;
+	}
+
 	
 	/**
 	* Close parser and linked workbooks
@@ -0,0 +1,72 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.util.NumberToTextConverter;
+
+/*
+*
+* DataFormatter that does not apply the cell style and locale to numbers and dates, but returns the raw value as Excel would display it with the "General" format (e.g. 36525 for the date 1.1.2000). It is used if only typed values are needed (cf. hadoopoffice.read.typedValues.format) to avoid the costs of formatting.
+*
+*/
+public class MSExcelRawDataFormatter extends DataFormatter {
+
+	public MSExcelRawDataFormatter() {
+		super();
+	}
+
+	@Override
+	public String formatRawCellContents(double value, int formatIndex, String formatString) {
+		return NumberToTextConverter.toText(value);
+	}
+
+	@Override
+	public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+		return NumberToTextConverter.toText(value);
+	}
+
+	@Override
+	public String formatCellValue(Cell cell, FormulaEvaluator evaluator) {
+		if (cell==null) {
+			return "";
+		}
+		CellType cellType=cell.getCellTypeEnum();
+		if (cellType==CellType.FORMULA) {
+			if (evaluator==null) {
+				return cell.getCellFormula();
+			}
+			cellType=evaluator.evaluateFormulaCellEnum(cell);
+		}
+		switch (cellType) {
+			case NUMERIC:
+				return NumberToTextConverter.toText(cell.getNumericCellValue());
+			case STRING:
+				return cell.getRichStringCellValue().getString();
+			case BOOLEAN:
+				return cell.getBooleanCellValue()?"TRUE":"FALSE";
+			case ERROR:
+				return FormulaError.forInt(cell.getErrorCellValue()).getString();
+			default:
+				return "";
+		}
+	}
+
+}
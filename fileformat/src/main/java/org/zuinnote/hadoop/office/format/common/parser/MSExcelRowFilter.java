@@ -0,0 +1,284 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.ss.util.CellReference;
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+
+/*
+*
+* Filter for the rows of a sheet (cf. hadoopoffice.read.filter.rows and hadoopoffice.read.filter.cell.*). It is evaluated by the parsers, so that rows that do not match are dropped before they are handed over to the record reader.
+* A row matches if its row number is part of one of the ranges of row numbers (if any) and the formatted values of its cells match all regular expressions (if any). Cells that do not exist have the value "".
+*
+*/
+public class MSExcelRowFilter {
+	private static final Log LOG = LogFactory.getLog(MSExcelRowFilter.class.getName());
+
+	private long[] rangeStart;
+	private long[] rangeEnd;
+	private BitSet columns;
+	private Pattern[] patterns;
+	private boolean matchesEmptyRow;
+
+	private MSExcelRowFilter(List<long[]> ranges, Map<Integer,Pattern> cellPatterns) {
+		this.rangeStart=new long[ranges.size()];
+		this.rangeEnd=new long[ranges.size()];
+		for (int i=0;i<ranges.size();i++) {
+			this.rangeStart[i]=ranges.get(i)[0];
+			this.rangeEnd[i]=ranges.get(i)[1];
+		}
+		this.columns=new BitSet();
+		int maxColumn=-1;
+		for (Integer currentColumn: cellPatterns.keySet()) {
+			this.columns.set(currentColumn);
+			maxColumn=Math.max(maxColumn, currentColumn);
+		}
+		this.patterns=new Pattern[maxColumn+1];
+		for (Map.Entry<Integer,Pattern> currentEntry: cellPatterns.entrySet()) {
+			this.patterns[currentEntry.getKey()]=currentEntry.getValue();
+		}
+		this.matchesEmptyRow=this.matchesMissing(new BitSet());
+	}
+
+	/*
+	* Creates the filter defined in the configuration
+	*
+	* @param hocr configuration (cf. getRowFilter and getCellFilter)
+	*
+	* @return filter or null if all rows should be read
+	*
+	*/
+	public static MSExcelRowFilter create(HadoopOfficeReadConfiguration hocr) {
+		List<long[]> ranges = new ArrayList<>();
+		String rowFilter=hocr.getRowFilter();
+		if (rowFilter!=null) {
+			for (String currentItem: rowFilter.split(",")) {
+				String item=currentItem.trim();
+				if ("".equals(item)) {
+					continue;
+				}
+				long[] range=parseRange(item);
+				if (range==null) {
+					LOG.error("Invalid row range \""+item+"\" in "+HadoopOfficeReadConfiguration.CONF_FILTERROWS+". It is ignored");
+				} else {
+					ranges.add(range);
+				}
+			}
+		}
+		Map<Integer,Pattern> cellPatterns = new HashMap<>();
+		if (hocr.getCellFilter()!=null) {
+			for (Map.Entry<String,String> currentEntry: hocr.getCellFilter().entrySet()) {
+				String column=currentEntry.getKey().trim();
+				if (!column.matches("[A-Za-z]{1,3}")) {
+					LOG.error("Invalid column \""+column+"\" in "+HadoopOfficeReadConfiguration.CONF_FILTERCELL+column+". It is ignored");
+					continue;
+				}
+				try {
+					cellPatterns.put(CellReference.convertColStringToIndex(column), Pattern.compile(currentEntry.getValue()));
+				} catch (PatternSyntaxException e) {
+					LOG.error(e);
+					LOG.error("Invalid regular expression in "+HadoopOfficeReadConfiguration.CONF_FILTERCELL+column+". It is ignored");
+				}
+			}
+		}
+		if (ranges.isEmpty() && cellPatterns.isEmpty()) {
+			return null;
+		}
+		return new MSExcelRowFilter(ranges, cellPatterns);
+	}
+
+	/*
+	* Parses a row number (e.g. 5) or a range of row numbers (e.g. 2-100, 200- or -50)
+	*
+	* @param item row number or range
+	*
+	* @return first and last row number (0 if unbounded) or null if it is not valid
+	*
+	*/
+	private static long[] parseRange(String item) {
+		int separator=item.indexOf('-');
+		try {
+			if (separator==-1) {
+				long rowNum=Long.parseLong(item);
+				return rowNum>0?new long[]{rowNum,rowNum}:null;
+			}
+			String start=item.substring(0,separator).trim();
+			String end=item.substring(separator+1).trim();
+			long[] result=new long[]{"".equals(start)?1L:Long.parseLong(start),"".equals(end)?0L:Long.parseLong(end)};
+			if ((result[0]<=0) || ((result[1]!=0) && (result[1]<result[0])) || (result[1]<0)) {
+				return null;
+			}
+			return result;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/*
+	* Checks if a row is part of the ranges of row numbers
+	*
+	* @param rowNum row number (starting from 1)
+	*
+	* @return true, if there are no ranges or the row is part of one of them, false if not
+	*
+	*/
+	public boolean isRowSelected(long rowNum) {
+		if (this.rangeStart.length==0) {
+			return true;
+		}
+		for (int i=0;i<this.rangeStart.length;i++) {
+			if ((rowNum>=this.rangeStart[i]) && ((this.rangeEnd[i]==0) || (rowNum<=this.rangeEnd[i]))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	* Returns the last row number that can be selected, so that parsers can stop reading a sheet after it
+	*
+	* @return row number (starting from 1), 0 if there is no last row
+	*
+	*/
+	public long getLastRow() {
+		long result=0L;
+		for (int i=0;i<this.rangeEnd.length;i++) {
+			if (this.rangeEnd[i]==0) {
+				return 0L;
+			}
+			result=Math.max(result, this.rangeEnd[i]);
+		}
+		return result;
+	}
+
+	/*
+	* Checks if the filter contains regular expressions for cells
+	*
+	* @return true, if it contains regular expressions, false if only row numbers are filtered
+	*
+	*/
+	public boolean hasCellPredicates() {
+		return !this.columns.isEmpty();
+	}
+
+	/*
+	* Returns the columns that are needed to evaluate the filter
+	*
+	* @return columns (starting from 0)
+	*
+	*/
+	public BitSet getColumns() {
+		return (BitSet)this.columns.clone();
+	}
+
+	/*
+	* Returns the columns that need to be decoded if a projection is applied, i.e. the columns of the projection and the columns needed to evaluate the filter
+	*
+	* @param filter filter, null if there is no filter
+	* @param projectedColumns columns of the projection, null if all columns are read
+	*
+	* @return columns (the same object as projectedColumns if the filter does not need further columns), null if all columns need to be decoded
+	*
+	*/
+	public static BitSet getDecodedColumns(MSExcelRowFilter filter, BitSet projectedColumns) {
+		if ((filter==null) || (projectedColumns==null)) {
+			return projectedColumns;
+		}
+		BitSet additionalColumns=filter.getColumns();
+		additionalColumns.andNot(projectedColumns);
+		if (additionalColumns.isEmpty()) {
+			return projectedColumns;
+		}
+		additionalColumns.or(projectedColumns);
+		return additionalColumns;
+	}
+
+	/*
+	* Checks if the formatted value of a cell matches the filter of its column
+	*
+	* @param column column (starting from 0)
+	* @param formattedValue formatted value of the cell ("" or null if empty)
+	*
+	* @return true, if there is no filter for the column or it matches, false if not
+	*
+	*/
+	public boolean matches(int column, String formattedValue) {
+		if ((column<0) || (column>=this.patterns.length) || (this.patterns[column]==null)) {
+			return true;
+		}
+		return this.patterns[column].matcher(formattedValue==null?"":formattedValue).matches();
+	}
+
+	/*
+	* Checks if the filters of all columns that have not been seen in a row match empty cells
+	*
+	* @param seenColumns columns of the row that have already been checked with matches(int,String)
+	*
+	* @return true, if all filters of the other columns match "", false if not
+	*
+	*/
+	public boolean matchesMissing(BitSet seenColumns) {
+		for (int i=this.columns.nextSetBit(0);i>=0;i=this.columns.nextSetBit(i+1)) {
+			if ((!seenColumns.get(i)) && (!this.matches(i,""))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	* Checks if an empty row matches the filter for cells
+	*
+	* @return true, if all filters match "", false if not
+	*
+	*/
+	public boolean matchesEmptyRow() {
+		return this.matchesEmptyRow;
+	}
+
+	/*
+	* Checks if the cells of a row match the filter for cells
+	*
+	* @param row cells of the row (may contain null)
+	*
+	* @return true, if all filters match, false if not
+	*
+	*/
+	public boolean matches(SpreadSheetCellDAO[] row) {
+		for (int i=this.columns.nextSetBit(0);i>=0;i=this.columns.nextSetBit(i+1)) {
+			String formattedValue="";
+			if ((row!=null) && (i<row.length) && (row[i]!=null)) {
+				formattedValue=row[i].getFormattedValue();
+			}
+			if (!this.matches(i, formattedValue)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,411 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/*
+*
+* Shared strings table of a new Excel file (.xlsx) with a low memory footprint. Contrary to ReadOnlySharedStringsTable of Apache POI, the strings are not kept as Java Strings, but as UTF-8 bytes in off-heap memory (direct buffers) together with an array of their positions. A string is only decoded when it is used by a cell.
+* If the size of the strings exceeds a given limit (cf. hadoopoffice.read.lowFootprint.sharedstrings.memorylimit) then the remaining strings are written to a local temporary file, which is memory-mapped for reading. The temporary file is deleted when the table is closed.
+* It can be used wherever Apache POI expects a ReadOnlySharedStringsTable (e.g. XSSFSheetXMLHandler). Phonetic runs are included in the strings, as in ReadOnlySharedStringsTable.
+*
+*/
+public class MSExcelSharedStringsTable extends ReadOnlySharedStringsTable implements Closeable {
+	private static final Log LOG = LogFactory.getLog(MSExcelSharedStringsTable.class.getName());
+	private static final Charset CHARSET_UTF8=Charset.forName("UTF-8");
+	private static final int MEMORY_CHUNK_SIZE=1024*1024;
+	private static final int MAPPED_SEGMENT_SIZE=1024*1024*1024;
+	private static final int DEFAULT_NUMBER_OF_STRINGS=1024;
+	private static final int MAX_PRESIZED_NUMBER_OF_STRINGS=16*1024*1024;
+
+	// set after the constructor of ReadOnlySharedStringsTable, which calls readFrom before this class is initialized
+	private boolean initialized;
+	private long memoryLimit;
+	private List<ByteBuffer> memoryChunks;
+	private long memoryLength;
+	private File spillFile;
+	private OutputStream spillOut;
+	private List<ByteBuffer> spillSegments;
+	private long spillLength;
+	private long[] offsets;
+	private int numberOfStrings;
+	private int count;
+	private int uniqueCount;
+	// parsing state
+	private StringBuilder characters;
+	private boolean tIsOpen;
+	private boolean inRPh;
+
+	/*
+	* Reads the shared strings table of a new Excel file (.xlsx)
+	*
+	* @param pkg package of the Excel file
+	* @param memoryLimit maximum size in bytes of the strings that are kept in memory. Further strings are written to a temporary file. 0 if all strings should be kept in memory
+	* @param expectedNumberOfStrings number of unique strings, if known in advance (e.g. from the index of the file), to avoid resizing. -1 if unknown
+	*
+	* @throws java.io.IOException in case of errors reading the shared strings table or writing the temporary file
+	* @throws org.xml.sax.SAXException in case the shared strings table cannot be parsed
+	*
+	*/
+	public MSExcelSharedStringsTable(OPCPackage pkg, long memoryLimit, long expectedNumberOfStrings) throws IOException, SAXException {
+		super(pkg);
+		this.initialized=true;
+		this.memoryLimit=memoryLimit;
+		this.memoryChunks=new ArrayList<>();
+		this.memoryLength=0L;
+		this.spillSegments=new ArrayList<>();
+		this.spillLength=0L;
+		this.numberOfStrings=0;
+		int initialNumberOfStrings=DEFAULT_NUMBER_OF_STRINGS;
+		if (expectedNumberOfStrings>=0) {
+			initialNumberOfStrings=(int)Math.min(expectedNumberOfStrings, (long)MAX_PRESIZED_NUMBER_OF_STRINGS);
+		}
+		this.offsets=new long[initialNumberOfStrings+1];
+		this.characters=new StringBuilder();
+		List<PackagePart> parts = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+		// some workbooks do not have a shared strings table
+		if (parts.size()>0) {
+			InputStream sstIn = parts.get(0).getInputStream();
+			try {
+				this.readFrom(sstIn);
+			} finally {
+				sstIn.close();
+			}
+		}
+		this.finishSpill();
+		LOG.debug("Shared strings table with "+this.numberOfStrings+" strings read ("+this.memoryLength+" bytes in memory, "+this.spillLength+" bytes in temporary file)");
+	}
+
+	/*
+	* Reads the shared strings from the XML of the shared strings table
+	*
+	* @param is XML of the shared strings table. It is not closed
+	*
+	* @throws java.io.IOException in case of errors reading
+	* @throws org.xml.sax.SAXException in case the XML cannot be parsed
+	*
+	*/
+	@Override
+	public void readFrom(InputStream is) throws IOException, SAXException {
+		if (!this.initialized) { // called by the constructor of ReadOnlySharedStringsTable: the strings are read later by this class
+			is.close();
+			return;
+		}
+		// test if the file is empty, otherwise parse it
+		PushbackInputStream pis = new PushbackInputStream(is, 1);
+		int emptyTest = pis.read();
+		if (emptyTest > -1) {
+			pis.unread(emptyTest);
+			try {
+				XMLReader sstParser = SAXHelper.newXMLReader();
+				sstParser.setContentHandler(this);
+				sstParser.parse(new InputSource(pis));
+			} catch (ParserConfigurationException e) {
+				LOG.error(e);
+				throw new SAXException("Cannot create parser for shared strings table", e);
+			}
+		}
+	}
+
+	/*
+	* Returns the string at the given position
+	*
+	* @param idx position in the shared strings table
+	*
+	* @return string
+	*
+	*/
+	@Override
+	public String getEntryAt(int idx) {
+		if ((idx<0) || (idx>=this.numberOfStrings)) {
+			throw new IndexOutOfBoundsException("Shared string "+idx+" does not exist. Number of shared strings: "+this.numberOfStrings);
+		}
+		long start=this.offsets[idx];
+		byte[] content = new byte[(int)(this.offsets[idx+1]-start)];
+		if (start<this.memoryLength) {
+			readBytes(this.memoryChunks, MEMORY_CHUNK_SIZE, start, content);
+		} else {
+			readBytes(this.spillSegments, MAPPED_SEGMENT_SIZE, start-this.memoryLength, content);
+		}
+		return new String(content, CHARSET_UTF8);
+	}
+
+	/*
+	* Returns all strings. They are decoded on access
+	*
+	* @return list of strings
+	*
+	*/
+	@Override
+	public List<String> getItems() {
+		return new AbstractList<String>() {
+			@Override
+			public String get(int index) {
+				return MSExcelSharedStringsTable.this.getEntryAt(index);
+			}
+
+			@Override
+			public int size() {
+				return MSExcelSharedStringsTable.this.numberOfStrings;
+			}
+		};
+	}
+
+	@Override
+	public int getCount() {
+		return this.count;
+	}
+
+	@Override
+	public int getUniqueCount() {
+		return this.uniqueCount;
+	}
+
+	/*
+	* Size of the strings in bytes (UTF-8)
+	*
+	* @return number of bytes in memory and in the temporary file
+	*
+	*/
+	public long getSize() {
+		return this.memoryLength+this.spillLength;
+	}
+
+	/*
+	* Checks if strings have been written to a temporary file
+	*
+	* @return true, if the size of the strings exceeded the memory limit, false if not
+	*
+	*/
+	public boolean isSpilled() {
+		return this.spillFile!=null;
+	}
+
+	/*
+	* Releases the memory and deletes the temporary file
+	*
+	* @throws java.io.IOException in case the temporary file cannot be closed
+	*
+	*/
+	@Override
+	public void close() throws IOException {
+		this.memoryChunks.clear();
+		this.spillSegments.clear();
+		this.numberOfStrings=0;
+		if (this.spillOut!=null) {
+			this.spillOut.close();
+			this.spillOut=null;
+		}
+		if (this.spillFile!=null) {
+			// mapped buffers are only released by the garbage collector, thus the file may still be in use on some operating systems
+			if (!this.spillFile.delete()) {
+				LOG.warn("Cannot delete temporary file \""+this.spillFile+"\" of shared strings table. It is deleted on exit");
+				this.spillFile.deleteOnExit();
+			}
+			this.spillFile=null;
+		}
+	}
+
+	//// ContentHandler methods ////
+
+	@Override
+	public void startElement(String uri, String localName, String name, Attributes attributes) throws SAXException {
+		if ((uri!=null) && (!uri.equals(XSSFRelation.NS_SPREADSHEETML))) {
+			return;
+		}
+		if ("sst".equals(localName)) {
+			String countAttribute = attributes.getValue("count");
+			if (countAttribute!=null) {
+				this.count=Integer.parseInt(countAttribute);
+			}
+			String uniqueCountAttribute = attributes.getValue("uniqueCount");
+			if (uniqueCountAttribute!=null) {
+				this.uniqueCount=Integer.parseInt(uniqueCountAttribute);
+				this.ensureCapacity(Math.min(this.uniqueCount, MAX_PRESIZED_NUMBER_OF_STRINGS));
+			}
+		} else if ("si".equals(localName)) {
+			this.characters.setLength(0);
+		} else if ("t".equals(localName)) {
+			this.tIsOpen=true;
+		} else if ("rPh".equals(localName)) {
+			this.inRPh=true;
+			// phonetic runs are appended after the text
+			if (this.characters.length()>0) {
+				this.characters.append(" ");
+			}
+		}
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String name) throws SAXException {
+		if ((uri!=null) && (!uri.equals(XSSFRelation.NS_SPREADSHEETML))) {
+			return;
+		}
+		if ("si".equals(localName)) {
+			try {
+				this.addString(this.characters.toString());
+			} catch (IOException e) {
+				LOG.error(e);
+				throw new SAXException("Cannot store shared string", e);
+			}
+		} else if ("t".equals(localName)) {
+			this.tIsOpen=false;
+		} else if ("rPh".equals(localName)) {
+			this.inRPh=false;
+		}
+	}
+
+	@Override
+	public void characters(char[] ch, int start, int length) throws SAXException {
+		if (this.tIsOpen) {
+			this.characters.append(ch, start, length);
+		}
+	}
+
+	/**
+	 * Appends a string to the table
+	 *
+	 * @param value string
+	 * @throws IOException in case the temporary file cannot be written
+	 */
+	private void addString(String value) throws IOException {
+		byte[] content = value.getBytes(CHARSET_UTF8);
+		this.ensureCapacity(this.numberOfStrings+1);
+		if ((this.spillOut==null) && (this.memoryLimit>0) && (this.memoryLength+content.length>this.memoryLimit)) {
+			this.spillFile=File.createTempFile("hadoopoffice-sst-", ".tmp");
+			LOG.info("Shared strings table exceeds "+this.memoryLimit+" bytes. Further strings are written to temporary file \""+this.spillFile+"\"");
+			this.spillOut=new BufferedOutputStream(new FileOutputStream(this.spillFile), MEMORY_CHUNK_SIZE);
+		}
+		if (this.spillOut!=null) {
+			this.spillOut.write(content);
+			this.spillLength+=content.length;
+		} else {
+			this.writeMemory(content);
+		}
+		this.numberOfStrings++;
+		this.offsets[this.numberOfStrings]=this.memoryLength+this.spillLength;
+	}
+
+	/**
+	 * Appends bytes to the off-heap memory
+	 *
+	 * @param content bytes
+	 */
+	private void writeMemory(byte[] content) {
+		int written=0;
+		while (written<content.length) {
+			ByteBuffer currentChunk;
+			if ((this.memoryChunks.isEmpty()) || (!this.memoryChunks.get(this.memoryChunks.size()-1).hasRemaining())) {
+				currentChunk=ByteBuffer.allocateDirect(MEMORY_CHUNK_SIZE);
+				this.memoryChunks.add(currentChunk);
+			} else {
+				currentChunk=this.memoryChunks.get(this.memoryChunks.size()-1);
+			}
+			int length=Math.min(content.length-written, currentChunk.remaining());
+			currentChunk.put(content, written, length);
+			written+=length;
+		}
+		this.memoryLength+=content.length;
+	}
+
+	/**
+	 * Closes the temporary file (if any) and maps it into memory for reading
+	 *
+	 * @throws IOException in case the temporary file cannot be mapped
+	 */
+	private void finishSpill() throws IOException {
+		if (this.spillOut==null) {
+			return;
+		}
+		this.spillOut.close();
+		this.spillOut=null;
+		RandomAccessFile spillRaf = new RandomAccessFile(this.spillFile, "r");
+		try {
+			FileChannel spillChannel = spillRaf.getChannel();
+			for (long position=0L;position<this.spillLength;position+=MAPPED_SEGMENT_SIZE) {
+				this.spillSegments.add(spillChannel.map(FileChannel.MapMode.READ_ONLY, position, Math.min((long)MAPPED_SEGMENT_SIZE, this.spillLength-position)));
+			}
+		} finally {
+			// mapped buffers stay valid after the file is closed
+			spillRaf.close();
+		}
+	}
+
+	/**
+	 * Makes sure that the offset array can hold the given number of strings
+	 *
+	 * @param capacity number of strings
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity+1>this.offsets.length) {
+			int newLength=Math.max(capacity+1, this.offsets.length+(this.offsets.length>>1));
+			this.offsets=Arrays.copyOf(this.offsets, newLength);
+		}
+	}
+
+	/**
+	 * Reads bytes from a list of buffers of the same size
+	 *
+	 * @param buffers buffers
+	 * @param bufferSize size of each buffer (except the last one)
+	 * @param position position of the first byte
+	 * @param result array to be filled
+	 */
+	private static void readBytes(List<ByteBuffer> buffers, int bufferSize, long position, byte[] result) {
+		int read=0;
+		long currentPosition=position;
+		while (read<result.length) {
+			ByteBuffer currentBuffer=buffers.get((int)(currentPosition/bufferSize)).duplicate();
+			currentBuffer.clear();
+			currentBuffer.position((int)(currentPosition%bufferSize));
+			int length=Math.min(result.length-read, currentBuffer.remaining());
+			currentBuffer.get(result, read, length);
+			read+=length;
+			currentPosition+=length;
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+*
+* Lightweight index of the rows of one sheet of a new Excel file (.xlsx). It contains the row number and the position in the (inflated) XML of the sheet of every n-th row element (cf. MSExcelSheetRowScanner). It is used to divide a sheet into row ranges.
+*
+*/
+public class MSExcelSheetRowIndex {
+	private int rowInterval;
+	private long numberOfRows;
+	private List<Long> rowNumbers;
+	private List<Long> rowOffsets;
+
+	/*
+	* Creates an empty index
+	*
+	* @param rowInterval every rowInterval-th row element is stored in the index
+	*
+	*/
+	public MSExcelSheetRowIndex(int rowInterval) {
+		this.rowInterval=Math.max(1, rowInterval);
+		this.numberOfRows=0L;
+		this.rowNumbers=new ArrayList<>();
+		this.rowOffsets=new ArrayList<>();
+	}
+
+	/*
+	* Creates the index by scanning the XML of a sheet
+	*
+	* @param sheetIn InputStream of the (inflated) XML of the sheet. The stream is not closed
+	* @param rowInterval every rowInterval-th row element is stored in the index
+	*
+	* @return index of the sheet
+	*
+	* @throws java.io.IOException in case of errors reading the sheet
+	*
+	*/
+	public static MSExcelSheetRowIndex build(InputStream sheetIn, int rowInterval) throws IOException {
+		MSExcelSheetRowIndex result = new MSExcelSheetRowIndex(rowInterval);
+		MSExcelSheetRowScanner scanner = new MSExcelSheetRowScanner(sheetIn);
+		while (scanner.nextRow()) {
+			result.addRow(scanner.getRowNumber(), scanner.getRowOffset());
+		}
+		return result;
+	}
+
+	/*
+	* Adds the next row element of the sheet to the index
+	*
+	* @param rowNumber number of the row (starting from 1)
+	* @param rowOffset position of the row element in the XML of the sheet
+	*
+	*/
+	public void addRow(long rowNumber, long rowOffset) {
+		if (this.numberOfRows%this.rowInterval==0) {
+			this.rowNumbers.add(rowNumber);
+			this.rowOffsets.add(rowOffset);
+		}
+		this.numberOfRows++;
+	}
+
+	/*
+	* Number of row elements in the sheet (empty rows not contained in the XML are not counted)
+	*
+	* @return number of row elements
+	*
+	*/
+	public long getNumberOfRows() {
+		return this.numberOfRows;
+	}
+
+	/*
+	* Interval of the row elements stored in the index
+	*
+	* @return every n-th row element is stored
+	*
+	*/
+	public int getRowInterval() {
+		return this.rowInterval;
+	}
+
+	/*
+	* Serializes the index
+	*
+	* @param out output
+	*
+	* @throws java.io.IOException in case of errors writing
+	*
+	*/
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(this.rowInterval);
+		out.writeLong(this.numberOfRows);
+		out.writeInt(this.rowNumbers.size());
+		for (int i=0;i<this.rowNumbers.size();i++) {
+			out.writeLong(this.rowNumbers.get(i));
+			out.writeLong(this.rowOffsets.get(i));
+		}
+	}
+
+	/*
+	* Deserializes the index
+	*
+	* @param in input
+	*
+	* @return index
+	*
+	* @throws java.io.IOException in case of errors reading
+	*
+	*/
+	public static MSExcelSheetRowIndex read(DataInput in) throws IOException {
+		MSExcelSheetRowIndex result = new MSExcelSheetRowIndex(in.readInt());
+		result.numberOfRows=in.readLong();
+		int numberOfSamples=in.readInt();
+		for (int i=0;i<numberOfSamples;i++) {
+			result.rowNumbers.add(in.readLong());
+			result.rowOffsets.add(in.readLong());
+		}
+		return result;
+	}
+
+	/*
+	* Divides the sheet into row ranges
+	*
+	* @param rowsPerRange maximum number of row elements per range. It is rounded to a multiple of the interval of the index
+	*
+	* @return row ranges in the order of the sheet. The first range starts at the beginning of the sheet and the last range ends at the end of the sheet
+	*
+	*/
+	public List<RowRange> getRowRanges(int rowsPerRange) {
+		List<RowRange> result = new ArrayList<>();
+		int step=Math.max(1, rowsPerRange/this.rowInterval);
+		long currentStartRow=0L;
+		long currentOffset=0L;
+		for (int i=step;i<this.rowNumbers.size();i+=step) {
+			long nextStartRow=this.rowNumbers.get(i);
+			if (nextStartRow<=Math.max(1L, currentStartRow)) { // row numbers are not ascending, row ranges cannot be determined
+				result.clear();
+				currentStartRow=0L;
+				currentOffset=0L;
+				break;
+			}
+			result.add(new RowRange(currentStartRow,nextStartRow-1,currentOffset));
+			currentStartRow=nextStartRow;
+			currentOffset=this.rowOffsets.get(i);
+		}
+		result.add(new RowRange(currentStartRow,0L,currentOffset));
+		return result;
+	}
+
+	/*
+	* A range of rows of a sheet
+	*
+	*/
+	public static class RowRange {
+		private long startRow;
+		private long endRow;
+		private long offset;
+
+		/*
+		* @param startRow first row of the range (starting from 1), 0 if the range starts at the beginning of the sheet
+		* @param endRow last row of the range (starting from 1), 0 if the range ends at the end of the sheet
+		* @param offset position of the row element of the first row in the XML of the sheet, 0 if the range starts at the beginning of the sheet
+		*
+		*/
+		public RowRange(long startRow, long endRow, long offset) {
+			this.startRow=startRow;
+			this.endRow=endRow;
+			this.offset=offset;
+		}
+
+		public long getStartRow() {
+			return this.startRow;
+		}
+
+		public long getEndRow() {
+			return this.endRow;
+		}
+
+		public long getOffset() {
+			return this.offset;
+		}
+	}
+
+}
@@ -0,0 +1,325 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+*
+* This class scans the (inflated) XML of a sheet of a new Excel file (.xlsx) for row elements (<row r="...">) without parsing the XML. It determines the position of the rows in the XML, e.g. to divide a sheet into row ranges, and positions the XML of a sheet at a given row.
+* Note: The scanner relies on the fact that "<" is always escaped in the content of a sheet (except in CDATA sections, which are not written by Excel).
+*
+*/
+public class MSExcelSheetRowScanner {
+	private static final int BUFFER_SIZE=64*1024;
+	private static final int MAX_TAG_NAME_LENGTH=64;
+	private static final String ROW_ELEMENT="row";
+	private static final String SHEETDATA_ELEMENT="sheetData";
+
+	private InputStream in;
+	private byte[] buffer;
+	private int bufferPos;
+	private int bufferLength;
+	private long position;
+	private long rowOffset;
+	private long rowNumber;
+
+	/*
+	* Creates a new scanner
+	*
+	* @param in InputStream of the (inflated) XML of the sheet. It is not closed by the scanner
+	*
+	*/
+	public MSExcelSheetRowScanner(InputStream in) {
+		this.in=in;
+		this.buffer=new byte[BUFFER_SIZE];
+		this.bufferPos=0;
+		this.bufferLength=0;
+		this.position=0L;
+		this.rowOffset=-1L;
+		this.rowNumber=0L;
+	}
+
+	/*
+	* Moves to the next row element
+	*
+	* @return true, if a row element has been found, false if the end of the sheet has been reached
+	*
+	* @throws java.io.IOException in case of errors reading the sheet
+	*
+	*/
+	public boolean nextRow() throws IOException {
+		int currentByte=this.read();
+		while (currentByte!=-1) {
+			if (currentByte=='<') {
+				long tagOffset=this.position-1;
+				String tagName=this.readTagName();
+				if (isElement(tagName,ROW_ELEMENT)) {
+					String rowNumberAttribute=this.readAttribute("r");
+					this.rowOffset=tagOffset;
+					if (rowNumberAttribute!=null) {
+						try {
+							this.rowNumber=Long.parseLong(rowNumberAttribute.trim());
+						} catch (NumberFormatException e) {
+							throw new IOException("Invalid row number \""+rowNumberAttribute+"\" at position "+tagOffset,e);
+						}
+					} else { // rows without number follow the previous row
+						this.rowNumber++;
+					}
+					return true;
+				}
+			}
+			currentByte=this.read();
+		}
+		return false;
+	}
+
+	/*
+	* Position of the current row element in the XML of the sheet
+	*
+	* @return offset in bytes of the start of the row element
+	*
+	*/
+	public long getRowOffset() {
+		return this.rowOffset;
+	}
+
+	/*
+	* Number of the current row
+	*
+	* @return row number (starting from 1)
+	*
+	*/
+	public long getRowNumber() {
+		return this.rowNumber;
+	}
+
+	/*
+	* Reads the start of the XML of the sheet until (including) the start tag of the sheet data (<sheetData>). This needs to be called before any other method of the scanner.
+	*
+	* @return start of the XML of the sheet or null if the sheet does not contain sheet data
+	*
+	* @throws java.io.IOException in case of errors reading the sheet
+	*
+	*/
+	public byte[] readSheetDataStart() throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		int currentByte=this.read();
+		while (currentByte!=-1) {
+			result.write(currentByte);
+			if (currentByte=='<') {
+				String tagName=this.readTagName();
+				byte[] tagNameBytes=tagName.getBytes("ISO-8859-1"); // tag names are read byte by byte
+				result.write(tagNameBytes,0,tagNameBytes.length);
+				if (isElement(tagName,SHEETDATA_ELEMENT)) {
+					// read remaining tag
+					int previousByte=-1;
+					currentByte=this.read();
+					while ((currentByte!=-1) && (currentByte!='>')) {
+						result.write(currentByte);
+						previousByte=currentByte;
+						currentByte=this.read();
+					}
+					if ((currentByte==-1) || (previousByte=='/')) { // empty sheet data
+						return null;
+					}
+					result.write(currentByte);
+					return result.toByteArray();
+				}
+			}
+			currentByte=this.read();
+		}
+		return null;
+	}
+
+	/*
+	* Skips the XML of the sheet until the given position and checks that a row element starts there
+	*
+	* @param offset position of the row element (cf. getRowOffset)
+	*
+	* @return true, if a row element starts at the position, false if not
+	*
+	* @throws java.io.IOException in case of errors reading the sheet
+	*
+	*/
+	public boolean skipToRow(long offset) throws IOException {
+		if (offset<this.position) {
+			return false;
+		}
+		long remaining=offset-this.position;
+		while (remaining>0) {
+			if (this.bufferPos==this.bufferLength) {
+				if (!this.fill(1)) {
+					return false;
+				}
+			}
+			int skipped=(int)Math.min(remaining, (long)(this.bufferLength-this.bufferPos));
+			this.bufferPos+=skipped;
+			this.position+=skipped;
+			remaining-=skipped;
+		}
+		// check that the row element starts here without consuming it
+		this.fill(MAX_TAG_NAME_LENGTH+2);
+		if ((this.bufferPos==this.bufferLength) || (this.buffer[this.bufferPos]!='<')) {
+			return false;
+		}
+		StringBuilder tagName=new StringBuilder();
+		for (int i=this.bufferPos+1;(i<this.bufferLength) && (!isTagNameEnd(this.buffer[i]));i++) {
+			tagName.append((char)(this.buffer[i] & 0xff));
+		}
+		return isElement(tagName.toString(),ROW_ELEMENT);
+	}
+
+	/*
+	* Returns the not yet scanned XML of the sheet
+	*
+	* @return InputStream containing the remaining XML of the sheet
+	*
+	*/
+	public InputStream getRemainingInputStream() {
+		return new InputStream() {
+			@Override
+			public int read() throws IOException {
+				return MSExcelSheetRowScanner.this.read();
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (len==0) {
+					return 0;
+				}
+				if ((MSExcelSheetRowScanner.this.bufferPos==MSExcelSheetRowScanner.this.bufferLength) && (!MSExcelSheetRowScanner.this.fill(1))) {
+					return -1;
+				}
+				int available=Math.min(len, MSExcelSheetRowScanner.this.bufferLength-MSExcelSheetRowScanner.this.bufferPos);
+				System.arraycopy(MSExcelSheetRowScanner.this.buffer, MSExcelSheetRowScanner.this.bufferPos, b, off, available);
+				MSExcelSheetRowScanner.this.bufferPos+=available;
+				MSExcelSheetRowScanner.this.position+=available;
+				return available;
+			}
+		};
+	}
+
+	/**
+	 * Reads the name of a tag (the "<" has already been read)
+	 *
+	 * @return name of the tag (possibly including a namespace prefix)
+	 * @throws IOException
+	 */
+	private String readTagName() throws IOException {
+		StringBuilder result = new StringBuilder();
+		this.fill(MAX_TAG_NAME_LENGTH+1);
+		while ((this.bufferPos<this.bufferLength) && (!isTagNameEnd(this.buffer[this.bufferPos])) && (result.length()<MAX_TAG_NAME_LENGTH)) {
+			result.append((char)(this.buffer[this.bufferPos] & 0xff));
+			this.bufferPos++;
+			this.position++;
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Reads the attributes of the current tag until its end and returns the value of the given attribute
+	 *
+	 * @param attributeName local name of the attribute
+	 * @return value of the attribute or null if the tag does not have this attribute
+	 * @throws IOException
+	 */
+	private String readAttribute(String attributeName) throws IOException {
+		String result=null;
+		StringBuilder currentName = new StringBuilder();
+		int currentByte=this.read();
+		while ((currentByte!=-1) && (currentByte!='>')) {
+			if ((currentByte=='"') || (currentByte=='\'')) { // attribute value
+				int quote=currentByte;
+				StringBuilder currentValue = new StringBuilder();
+				currentByte=this.read();
+				while ((currentByte!=-1) && (currentByte!=quote)) {
+					currentValue.append((char)currentByte);
+					currentByte=this.read();
+				}
+				String name=currentName.toString().trim();
+				if (name.endsWith("=")) {
+					name=name.substring(0,name.length()-1).trim();
+				}
+				if (attributeName.equals(name)) {
+					result=currentValue.toString();
+				}
+				currentName.setLength(0);
+			} else if (!isWhitespace(currentByte) || (currentName.length()>0)) {
+				currentName.append((char)currentByte);
+			}
+			if (currentByte!=-1) {
+				currentByte=this.read();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the next byte of the XML
+	 *
+	 * @return byte or -1 if the end has been reached
+	 * @throws IOException
+	 */
+	private int read() throws IOException {
+		if ((this.bufferPos==this.bufferLength) && (!this.fill(1))) {
+			return -1;
+		}
+		this.position++;
+		return this.buffer[this.bufferPos++] & 0xff;
+	}
+
+	/**
+	 * Makes sure that at least the given number of bytes is available in the buffer (unless the end of the XML has been reached)
+	 *
+	 * @param minimumAvailable number of bytes
+	 * @return true, if at least one byte is available, false if not
+	 * @throws IOException
+	 */
+	private boolean fill(int minimumAvailable) throws IOException {
+		if (this.bufferLength-this.bufferPos>=minimumAvailable) {
+			return true;
+		}
+		// move remaining bytes to the beginning of the buffer
+		int remaining=this.bufferLength-this.bufferPos;
+		System.arraycopy(this.buffer, this.bufferPos, this.buffer, 0, remaining);
+		this.bufferPos=0;
+		this.bufferLength=remaining;
+		while (this.bufferLength<minimumAvailable) {
+			int bytesRead=this.in.read(this.buffer, this.bufferLength, this.buffer.length-this.bufferLength);
+			if (bytesRead==-1) {
+				break;
+			}
+			this.bufferLength+=bytesRead;
+		}
+		return this.bufferLength>0;
+	}
+
+	private static boolean isElement(String tagName, String elementName) {
+		return tagName.equals(elementName) || tagName.endsWith(":"+elementName);
+	}
+
+	private static boolean isTagNameEnd(int currentByte) {
+		return isWhitespace(currentByte) || (currentByte=='>') || (currentByte=='/');
+	}
+
+	private static boolean isWhitespace(int currentByte) {
+		return (currentByte==' ') || (currentByte=='\t') || (currentByte=='\r') || (currentByte=='\n');
+	}
+
+}
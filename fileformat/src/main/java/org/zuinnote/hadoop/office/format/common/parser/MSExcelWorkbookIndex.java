@@ -0,0 +1,714 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.poi.EmptyFileException;
+import org.apache.poi.EncryptedDocumentException;
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.crypto.Biff8EncryptionKey;
+import org.apache.poi.poifs.crypt.Decryptor;
+import org.apache.poi.poifs.crypt.EncryptionInfo;
+import org.apache.poi.poifs.filesystem.DocumentFactoryHelper;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.SAXHelper;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
+
+/*
+*
+* This class reads only the structure of an Excel workbook (e.g. the names of the sheets) without decoding its content. It is used, for example, to create one split per sheet.
+* New Excel files (.xlsx) are read until the workbook part (xl/workbook.xml) has been found. For old Excel files (.xls) only the workbook globals (BoundSheet records) are read.
+* If sheets should be divided into row ranges (hadoopoffice.read.split.rows) then the sheets of new Excel files (.xlsx) are additionally scanned for the positions of their rows (cf. MSExcelSheetRowIndex). This requires reading the whole file.
+* The index can be stored next to the Excel file (cf. HadoopOfficeIndexFile), so that it does not need to be created again each time the file is read. Additionally, the stored index can contain the zip directory of the file (cf. MSExcelZipDirectory), which allows to read only the needed parts of the file.
+*
+*/
+public class MSExcelWorkbookIndex {
+	private static final Log LOG = LogFactory.getLog(MSExcelWorkbookIndex.class.getName());
+	private static final String OOXML_PACKAGE_RELATIONSHIPS="_rels/.rels";
+	private static final String OOXML_DEFAULT_WORKBOOK="xl/workbook.xml";
+	private static final String OOXML_RELATIONSHIP_OFFICEDOCUMENT="/officeDocument";
+	private static final String OOXML_RELATIONSHIP_WORKSHEET="/worksheet";
+	private static final String OOXML_NS_RELATIONSHIPS="http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+	private static final String OOXML_DEFAULT_WORKSHEETS="worksheets/";
+	private static final String OOXML_RELATIONSHIP_SHAREDSTRINGS="/sharedStrings";
+	private static final String OOXML_DEFAULT_SHAREDSTRINGS="sharedStrings.xml";
+	private static final int INDEX_MAGIC=0x484f4958; // HOIX
+	private static final byte INDEX_VERSION=1;
+
+	private HadoopOfficeReadConfiguration hocr;
+	private List<String> sheetNames;
+	private Map<String,MSExcelSheetRowIndex> sheetRowIndexMap;
+	private Map<String,String> sheetPartMap;
+	private int rowInterval;
+	private long sharedStringsCount;
+	private MSExcelZipDirectory zipDirectory;
+	private long fileLength;
+	private long modificationTime;
+
+	/*
+	* Creates a new index of an Excel workbook
+	*
+	* @param hocr HadoopOffice configuration for reading files:
+	* password Password of this document (null if no password)
+	* splitRows if greater than 0 then a row index (with an interval of splitRows) is created for each sheet of new Excel files (.xlsx)
+	*
+	*/
+	public MSExcelWorkbookIndex(HadoopOfficeReadConfiguration hocr) {
+		this.hocr=hocr;
+		this.sheetNames=new ArrayList<>();
+		this.sheetRowIndexMap=new HashMap<>();
+		this.sheetPartMap=new HashMap<>();
+		this.rowInterval=hocr.getSplitRows();
+		this.sharedStringsCount=-1L;
+		this.fileLength=-1L;
+		this.modificationTime=-1L;
+	}
+
+	/*
+	* Sets the interval of the row indexes. By default, the maximum number of rows per split (hadoopoffice.read.split.rows) is used
+	*
+	* @param rowInterval every rowInterval-th row of a sheet is stored in the row index, 0 if no row indexes should be created
+	*
+	*/
+	public void setRowInterval(int rowInterval) {
+		this.rowInterval=rowInterval;
+	}
+
+	/*
+	*
+	* Reads the structure of the workbook from the given InputStream. The stream is not closed.
+	*
+	* @param in InputStream containing Excel data
+	*
+	* @throws org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException in case there are issues reading from the Excel file, e.g. wrong password or unknown format
+	*
+	*/
+	public void parse(InputStream in) throws FormatNotUnderstoodException {
+		this.sheetNames.clear();
+		this.sheetRowIndexMap.clear();
+		this.sheetPartMap.clear();
+		this.sharedStringsCount=-1L;
+		this.zipDirectory=null;
+		if(!in.markSupported()) {
+			in = new PushbackInputStream(in, 8);
+		}
+		try {
+			byte[] header8 = IOUtils.peekFirst8Bytes(in);
+			if(NPOIFSFileSystem.hasPOIFSHeader(header8)) {
+				NPOIFSFileSystem poifs = new NPOIFSFileSystem(in);
+				try {
+					if (poifs.getRoot().hasEntry(Decryptor.DEFAULT_POIFS_ENTRY)) { // encrypted new Excel file
+						EncryptionInfo info = new EncryptionInfo(poifs);
+						Decryptor d = MSExcelKeyCache.getDecryptor(info, this.hocr.getDerivedKeyCache());
+						if (!d.verifyPassword(this.hocr.getPassword())) {
+							throw new FormatNotUnderstoodException("Error: Cannot decrypt new Excel file (.xlsx) for reading the workbook index: wrong password");
+						}
+						InputStream decryptedIn = d.getDataStream(poifs);
+						try {
+							this.parseOOXML(decryptedIn);
+						} finally {
+							decryptedIn.close();
+						}
+					} else {
+						this.parseHSSF(poifs);
+					}
+				} catch (GeneralSecurityException e) {
+					LOG.error(e);
+					throw new FormatNotUnderstoodException("Error: Cannot decrypt new Excel file (.xlsx) for reading the workbook index");
+				} finally {
+					poifs.close();
+				}
+			} else if (DocumentFactoryHelper.hasOOXMLHeader(in)) {
+				this.parseOOXML(in);
+			} else {
+				throw new FormatNotUnderstoodException("Could not detect Excel format for reading the workbook index");
+			}
+		} catch (EmptyFileException | IOException e) {
+			LOG.error(e);
+			throw new FormatNotUnderstoodException("Could not read workbook index");
+		}
+	}
+
+	/*
+	* Returns the names of all sheets in the order they appear in the workbook
+	*
+	* @return list of sheet names
+	*
+	*/
+	public List<String> getSheetNames() {
+		return this.sheetNames;
+	}
+
+	/*
+	* Returns the row index of a sheet
+	*
+	* @param sheetName name of the sheet
+	*
+	* @return row index or null if no row index has been created for the sheet (e.g. old Excel files (.xls) or hadoopoffice.read.split.rows is not set)
+	*
+	*/
+	public MSExcelSheetRowIndex getSheetRowIndex(String sheetName) {
+		return this.sheetRowIndexMap.get(sheetName);
+	}
+
+	/*
+	* Returns the name of the part of a sheet in the zip package of a new Excel file (.xlsx)
+	*
+	* @param sheetName name of the sheet
+	*
+	* @return name of the part (e.g. xl/worksheets/sheet1.xml) or null if not known (e.g. old Excel files (.xls) or no row indexes have been created)
+	*
+	*/
+	public String getSheetPartName(String sheetName) {
+		return this.sheetPartMap.get(sheetName);
+	}
+
+	/*
+	* Returns the number of unique shared strings of a new Excel file (.xlsx)
+	*
+	* @return number of shared strings, -1 if not known (e.g. old Excel files (.xls) or no row indexes have been created)
+	*
+	*/
+	public long getSharedStringsCount() {
+		return this.sharedStringsCount;
+	}
+
+	/*
+	* Reads the zip directory of an (unencrypted) new Excel file (.xlsx) from its central directory
+	*
+	* @param in Excel file
+	* @param fileLength length of the Excel file in bytes
+	*
+	* @throws java.io.IOException in case of errors reading the file
+	* @throws org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException in case the zip directory cannot be read
+	*
+	*/
+	public void readZipDirectory(PositionedReadable in, long fileLength) throws IOException, FormatNotUnderstoodException {
+		this.zipDirectory=MSExcelZipDirectory.read(in, fileLength);
+	}
+
+	/*
+	* Returns the zip directory of the Excel file
+	*
+	* @return zip directory or null if not known (e.g. old Excel files (.xls), encrypted files or it has not been read)
+	*
+	*/
+	public MSExcelZipDirectory getZipDirectory() {
+		return this.zipDirectory;
+	}
+
+	/*
+	* Returns the zip entry of a sheet
+	*
+	* @param sheetName name of the sheet
+	*
+	* @return zip entry (position, compressed size) or null if not known
+	*
+	*/
+	public MSExcelZipDirectory.Entry getSheetZipEntry(String sheetName) {
+		String partName=this.sheetPartMap.get(sheetName);
+		if ((partName==null) || (this.zipDirectory==null)) {
+			return null;
+		}
+		return this.zipDirectory.getEntry(partName);
+	}
+
+	/*
+	* Length of the Excel file described by the index (used to detect if a stored index is outdated)
+	*
+	* @return length in bytes, -1 if unknown
+	*
+	*/
+	public long getFileLength() {
+		return this.fileLength;
+	}
+
+	/*
+	* Set the length of the Excel file described by the index
+	*
+	* @param fileLength length in bytes
+	*
+	*/
+	public void setFileLength(long fileLength) {
+		this.fileLength=fileLength;
+	}
+
+	/*
+	* Modification time of the Excel file described by the index (used to detect if a stored index is outdated)
+	*
+	* @return modification time in milliseconds since the epoch, -1 if unknown
+	*
+	*/
+	public long getModificationTime() {
+		return this.modificationTime;
+	}
+
+	/*
+	* Set the modification time of the Excel file described by the index
+	*
+	* @param modificationTime modification time in milliseconds since the epoch
+	*
+	*/
+	public void setModificationTime(long modificationTime) {
+		this.modificationTime=modificationTime;
+	}
+
+	/*
+	* Serializes the index, e.g. to store it next to the Excel file
+	*
+	* @param out output
+	*
+	* @throws java.io.IOException in case of errors writing
+	*
+	*/
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(INDEX_MAGIC);
+		out.writeByte(INDEX_VERSION);
+		out.writeLong(this.fileLength);
+		out.writeLong(this.modificationTime);
+		out.writeLong(this.sharedStringsCount);
+		out.writeInt(this.sheetNames.size());
+		for (String currentSheet: this.sheetNames) {
+			out.writeUTF(currentSheet);
+			String partName=this.sheetPartMap.get(currentSheet);
+			out.writeUTF(partName==null?"":partName);
+			MSExcelSheetRowIndex currentRowIndex=this.sheetRowIndexMap.get(currentSheet);
+			out.writeBoolean(currentRowIndex!=null);
+			if (currentRowIndex!=null) {
+				currentRowIndex.write(out);
+			}
+		}
+		out.writeBoolean(this.zipDirectory!=null);
+		if (this.zipDirectory!=null) {
+			this.zipDirectory.write(out);
+		}
+	}
+
+	/*
+	* Deserializes the index
+	*
+	* @param in input
+	*
+	* @throws java.io.IOException in case of errors reading or if the input does not contain a supported index
+	*
+	*/
+	public void readFields(DataInput in) throws IOException {
+		if (in.readInt()!=INDEX_MAGIC) {
+			throw new IOException("Not a HadoopOffice index");
+		}
+		byte version=in.readByte();
+		if (version!=INDEX_VERSION) {
+			throw new IOException("Unsupported version of HadoopOffice index: "+version);
+		}
+		this.sheetNames.clear();
+		this.sheetRowIndexMap.clear();
+		this.sheetPartMap.clear();
+		this.zipDirectory=null;
+		this.fileLength=in.readLong();
+		this.modificationTime=in.readLong();
+		this.sharedStringsCount=in.readLong();
+		int numberOfSheets=in.readInt();
+		for (int i=0;i<numberOfSheets;i++) {
+			String currentSheet=in.readUTF();
+			this.sheetNames.add(currentSheet);
+			String partName=in.readUTF();
+			if (!"".equals(partName)) {
+				this.sheetPartMap.put(currentSheet, partName);
+			}
+			if (in.readBoolean()) {
+				this.sheetRowIndexMap.put(currentSheet, MSExcelSheetRowIndex.read(in));
+			}
+		}
+		if (in.readBoolean()) {
+			this.zipDirectory=new MSExcelZipDirectory();
+			this.zipDirectory.readFields(in);
+		}
+	}
+
+	/*
+	* Groups the sheets of the workbook, e.g. to assign them to splits.
+	*
+	* @param selectedSheets sheets that should be taken into account (null if all sheets should be taken into account)
+	* @param sheetsPerGroup maximum number of sheets per group
+	*
+	* @return list of groups. Each group contains the names of its sheets in the order of the workbook
+	*
+	*/
+	public List<String[]> getSheetGroups(String[] selectedSheets, int sheetsPerGroup) {
+		List<String> currentSheets = new ArrayList<>();
+		for (String currentSheet: this.sheetNames) {
+			boolean selected=false;
+			if (selectedSheets==null) {
+				selected=true;
+			} else {
+				for (int i=0;i<selectedSheets.length;i++) {
+					if (currentSheet.equals(selectedSheets[i])) {
+						selected=true;
+						break;
+					}
+				}
+			}
+			if (selected) {
+				currentSheets.add(currentSheet);
+			}
+		}
+		int groupSize=Math.max(1, sheetsPerGroup);
+		List<String[]> result = new ArrayList<>();
+		for (int i=0;i<currentSheets.size();i+=groupSize) {
+			List<String> currentGroup=currentSheets.subList(i, Math.min(i+groupSize, currentSheets.size()));
+			result.add(currentGroup.toArray(new String[currentGroup.size()]));
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the sheet names of a new Excel file (.xlsx) by scanning the zip entries until the workbook part has been found. If row indexes are needed then all zip entries are scanned and the row indexes are created for all worksheet parts.
+	 *
+	 * @param in InputStream of the zip package
+	 * @throws IOException
+	 * @throws FormatNotUnderstoodException
+	 */
+	private void parseOOXML(InputStream in) throws IOException, FormatNotUnderstoodException {
+		boolean indexRows=this.rowInterval>0;
+		ZipInputStream zis = new ZipInputStream(in);
+		String workbookPartName=null;
+		OOXMLWorkbookHandler wbHandler=null;
+		Map<String,String> worksheetTargets=null;
+		String sharedStringsPartName=null;
+		Map<String,MSExcelSheetRowIndex> partRowIndexMap = new HashMap<>();
+		ZipEntry currentEntry = zis.getNextEntry();
+		while (currentEntry!=null) {
+			String currentEntryName=currentEntry.getName();
+			String currentWorkbookPartName=workbookPartName==null?OOXML_DEFAULT_WORKBOOK:workbookPartName;
+			if (OOXML_PACKAGE_RELATIONSHIPS.equals(currentEntryName)) {
+				OOXMLRelationshipHandler relHandler = new OOXMLRelationshipHandler();
+				this.parseXML(zis, relHandler);
+				workbookPartName=relHandler.getFirstTarget(OOXML_RELATIONSHIP_OFFICEDOCUMENT);
+			} else if ((wbHandler==null) && (currentEntryName.equals(currentWorkbookPartName))) {
+				wbHandler = new OOXMLWorkbookHandler(this.sheetNames);
+				this.parseXML(zis, wbHandler);
+				if (!indexRows) {
+					return;
+				}
+			} else if (indexRows && (worksheetTargets==null) && (currentEntryName.equals(getRelationshipPartName(currentWorkbookPartName)))) {
+				OOXMLRelationshipHandler relHandler = new OOXMLRelationshipHandler();
+				this.parseXML(zis, relHandler);
+				worksheetTargets=relHandler.getTargets(OOXML_RELATIONSHIP_WORKSHEET);
+				String sharedStringsTarget=relHandler.getFirstTarget(OOXML_RELATIONSHIP_SHAREDSTRINGS);
+				sharedStringsPartName=sharedStringsTarget==null?"":resolveTarget(currentWorkbookPartName,sharedStringsTarget);
+			} else if (indexRows && isWorksheetPart(currentEntryName, currentWorkbookPartName, worksheetTargets)) {
+				LOG.debug("Creating row index for \""+currentEntryName+"\"");
+				partRowIndexMap.put(currentEntryName, MSExcelSheetRowIndex.build(zis, this.rowInterval));
+			} else if (indexRows && (currentEntryName.equals(sharedStringsPartName==null?getFolder(currentWorkbookPartName)+OOXML_DEFAULT_SHAREDSTRINGS:sharedStringsPartName))) {
+				OOXMLSharedStringsHandler sstHandler = new OOXMLSharedStringsHandler();
+				this.parseXML(zis, sstHandler);
+				this.sharedStringsCount=sstHandler.getCount();
+			}
+			currentEntry = zis.getNextEntry();
+		}
+		if (wbHandler==null) {
+			throw new FormatNotUnderstoodException("No workbook found in new Excel file (.xlsx)");
+		}
+		if (worksheetTargets==null) {
+			LOG.warn("No relationships of the workbook found in new Excel file (.xlsx). Sheets cannot be divided into row ranges");
+			return;
+		}
+		if ((this.sharedStringsCount==-1L) && ("".equals(sharedStringsPartName))) { // workbook without shared strings
+			this.sharedStringsCount=0L;
+		}
+		// assign the row indexes to the sheets
+		String currentWorkbookPartName=workbookPartName==null?OOXML_DEFAULT_WORKBOOK:workbookPartName;
+		List<String> sheetRelationshipIds=wbHandler.getSheetRelationshipIds();
+		for (int i=0;i<this.sheetNames.size();i++) {
+			String target=worksheetTargets.get(sheetRelationshipIds.get(i));
+			if (target!=null) {
+				String partName=resolveTarget(currentWorkbookPartName,target);
+				this.sheetPartMap.put(this.sheetNames.get(i), partName);
+				MSExcelSheetRowIndex currentRowIndex=partRowIndexMap.get(partName);
+				if (currentRowIndex!=null) {
+					this.sheetRowIndexMap.put(this.sheetNames.get(i), currentRowIndex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determines if a zip entry is a worksheet part. If the relationships of the workbook are not yet known then all parts in the worksheets folder are assumed to be worksheets
+	 *
+	 * @param entryName name of the zip entry
+	 * @param workbookPartName name of the workbook part
+	 * @param worksheetTargets targets of the worksheet relationships of the workbook, null if not yet known
+	 * @return true, if it is a worksheet part, false if not
+	 */
+	private static boolean isWorksheetPart(String entryName, String workbookPartName, Map<String,String> worksheetTargets) {
+		if (worksheetTargets==null) {
+			return entryName.startsWith(getFolder(workbookPartName)+OOXML_DEFAULT_WORKSHEETS) && entryName.endsWith(".xml");
+		}
+		for (String currentTarget: worksheetTargets.values()) {
+			if (entryName.equals(resolveTarget(workbookPartName, currentTarget))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Resolves the target of a relationship of a part
+	 *
+	 * @param sourcePartName part containing the relationship, e.g. xl/workbook.xml
+	 * @param target target of the relationship, e.g. worksheets/sheet1.xml
+	 * @return name of the target part, e.g. xl/worksheets/sheet1.xml
+	 */
+	private static String resolveTarget(String sourcePartName, String target) {
+		if (target.startsWith("/")) {
+			return target.substring(1);
+		}
+		return getFolder(sourcePartName)+target;
+	}
+
+	/**
+	 * Returns the name of the relationship part of a part, e.g. xl/_rels/workbook.xml.rels for xl/workbook.xml
+	 *
+	 * @param partName name of the part
+	 * @return name of the relationship part
+	 */
+	private static String getRelationshipPartName(String partName) {
+		String folder=getFolder(partName);
+		return folder+"_rels/"+partName.substring(folder.length())+".rels";
+	}
+
+	/**
+	 * Returns the folder of a part including a trailing "/", e.g. xl/ for xl/workbook.xml
+	 *
+	 * @param partName name of the part
+	 * @return folder of the part, empty if the part is in the root folder
+	 */
+	private static String getFolder(String partName) {
+		return partName.substring(0, partName.lastIndexOf('/')+1);
+	}
+
+	/**
+	 * Parses a XML part of an OOXML package
+	 *
+	 * @param zis zip package positioned at the part. It is not closed
+	 * @param handler SAX handler
+	 * @throws IOException
+	 * @throws FormatNotUnderstoodException
+	 */
+	private void parseXML(ZipInputStream zis, DefaultHandler handler) throws IOException, FormatNotUnderstoodException {
+		try {
+			XMLReader xmlReader = SAXHelper.newXMLReader();
+			xmlReader.setContentHandler(handler);
+			// the XML parser closes the stream after parsing, but the zip package is still needed
+			xmlReader.parse(new InputSource(new FilterInputStream(zis) {
+				@Override
+				public void close() {
+					// do not close the zip package
+				}
+			}));
+		} catch (SAXException | ParserConfigurationException e) {
+			LOG.error(e);
+			throw new FormatNotUnderstoodException("Cannot read XML content of new Excel file (.xlsx)");
+		}
+	}
+
+	/**
+	 * Reads the sheet names of an old Excel file (.xls) from the workbook globals
+	 *
+	 * @param poifs OLE2 container of the Excel file
+	 * @throws IOException
+	 * @throws FormatNotUnderstoodException
+	 */
+	private void parseHSSF(NPOIFSFileSystem poifs) throws IOException, FormatNotUnderstoodException {
+		if (this.hocr.getPassword()!=null) {
+			Biff8EncryptionKey.setCurrentUserPassword(this.hocr.getPassword());
+		}
+		InputStream din = poifs.createDocumentInputStream("Workbook");
+		try {
+			HSSFRequest req = new HSSFRequest();
+			HSSFBoundSheetListener listener = new HSSFBoundSheetListener();
+			req.addListenerForAllRecords(listener);
+			HSSFEventFactory factory = new HSSFEventFactory();
+			factory.abortableProcessEvents(req, din);
+			BoundSheetRecord[] orderedBoundSheetRecords=BoundSheetRecord.orderByBofPosition(listener.getBoundSheetRecords());
+			for (int i=0;i<orderedBoundSheetRecords.length;i++) {
+				this.sheetNames.add(orderedBoundSheetRecords[i].getSheetname());
+			}
+		} catch (EncryptedDocumentException | HSSFUserException e) {
+			LOG.error(e);
+			throw new FormatNotUnderstoodException("Cannot read workbook index of old Excel file (.xls)");
+		} finally {
+			Biff8EncryptionKey.setCurrentUserPassword(null);
+			din.close();
+		}
+	}
+
+	/**
+	 * Collects the BoundSheet records of the workbook globals and stops processing when the first sheet starts
+	 *
+	 */
+	private static class HSSFBoundSheetListener extends AbortableHSSFListener {
+		private List<BoundSheetRecord> boundSheetRecords;
+
+		HSSFBoundSheetListener() {
+			this.boundSheetRecords=new ArrayList<>();
+		}
+
+		public List<BoundSheetRecord> getBoundSheetRecords() {
+			return this.boundSheetRecords;
+		}
+
+		@Override
+		public short abortableProcessRecord(Record record) {
+			if (record.getSid()==BoundSheetRecord.sid) {
+				this.boundSheetRecords.add((BoundSheetRecord)record);
+			} else if ((record.getSid()==BOFRecord.sid) && (((BOFRecord)record).getType()!=BOFRecord.TYPE_WORKBOOK)) {
+				return 1; // all sheets are known
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Collects the relationships of a part, e.g. the workbook part from the package relationships (_rels/.rels)
+	 *
+	 */
+	private static class OOXMLRelationshipHandler extends DefaultHandler {
+		private Map<String,String> targets;
+		private Map<String,String> types;
+
+		OOXMLRelationshipHandler() {
+			this.targets=new LinkedHashMap<>();
+			this.types=new HashMap<>();
+		}
+
+		public Map<String,String> getTargets(String typeSuffix) {
+			Map<String,String> result = new LinkedHashMap<>();
+			for (Map.Entry<String,String> currentTarget: this.targets.entrySet()) {
+				if (this.types.get(currentTarget.getKey()).endsWith(typeSuffix)) {
+					result.put(currentTarget.getKey(), currentTarget.getValue());
+				}
+			}
+			return result;
+		}
+
+		public String getFirstTarget(String typeSuffix) {
+			Map<String,String> result=this.getTargets(typeSuffix);
+			if (result.isEmpty()) {
+				return null;
+			}
+			String target=result.values().iterator().next();
+			return target.startsWith("/")?target.substring(1):target;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			if ("Relationship".equals(localName)) {
+				String id=attributes.getValue("Id");
+				String type=attributes.getValue("Type");
+				String target=attributes.getValue("Target");
+				if ((id!=null) && (type!=null) && (target!=null)) {
+					this.targets.put(id, target);
+					this.types.put(id, type);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the unique strings of the shared strings part (e.g. xl/sharedStrings.xml)
+	 *
+	 */
+	private static class OOXMLSharedStringsHandler extends DefaultHandler {
+		private long count;
+
+		OOXMLSharedStringsHandler() {
+			this.count=0L;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			if ("si".equals(localName)) {
+				this.count++;
+			}
+		}
+	}
+
+	/**
+	 * Reads the sheet names from the workbook part (e.g. xl/workbook.xml)
+	 *
+	 */
+	private static class OOXMLWorkbookHandler extends DefaultHandler {
+		private List<String> sheetNames;
+		private List<String> sheetRelationshipIds;
+
+		OOXMLWorkbookHandler(List<String> sheetNames) {
+			this.sheetNames=sheetNames;
+			this.sheetRelationshipIds=new ArrayList<>();
+		}
+
+		public List<String> getSheetRelationshipIds() {
+			return this.sheetRelationshipIds;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			if ("sheet".equals(localName)) {
+				String name=attributes.getValue("name");
+				if (name!=null) {
+					this.sheetNames.add(name);
+					this.sheetRelationshipIds.add(attributes.getValue(OOXML_NS_RELATIONSHIPS,"id"));
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,252 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.PositionedReadable;
+
+/*
+*
+* The directory of the zip package of a new Excel file (.xlsx), i.e. the position and size of the (compressed) data of each zip entry. It is read from the central directory at the end of the file and allows to read single entries without reading the whole file (cf. MSExcelZipEntrySource).
+* Zip64 packages are not supported.
+*
+*/
+public class MSExcelZipDirectory {
+	private static final Log LOG = LogFactory.getLog(MSExcelZipDirectory.class.getName());
+	private static final int SIGNATURE_EOCD=0x06054b50;
+	private static final int SIGNATURE_CENTRAL_DIRECTORY=0x02014b50;
+	private static final int SIGNATURE_LOCAL_HEADER=0x04034b50;
+	private static final int LENGTH_EOCD=22;
+	private static final int LENGTH_CENTRAL_DIRECTORY_HEADER=46;
+	private static final int LENGTH_LOCAL_HEADER=30;
+	private static final int MAX_LENGTH_ZIP_COMMENT=65535;
+	private static final long ZIP64_MARKER=0xFFFFFFFFL;
+	private static final Charset CHARSET_UTF8=Charset.forName("UTF-8");
+
+	private Map<String,Entry> entries;
+
+	/*
+	* Creates an empty zip directory
+	*
+	*/
+	public MSExcelZipDirectory() {
+		this.entries=new LinkedHashMap<>();
+	}
+
+	/*
+	* Reads the zip directory from the central directory of a zip package
+	*
+	* @param in zip package
+	* @param fileLength length of the zip package in bytes
+	*
+	* @return zip directory
+	*
+	* @throws java.io.IOException in case of errors reading the zip package
+	* @throws org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException in case the file is not a supported zip package
+	*
+	*/
+	public static MSExcelZipDirectory read(PositionedReadable in, long fileLength) throws IOException, FormatNotUnderstoodException {
+		// find end of central directory record
+		int tailLength=(int)Math.min(fileLength, (long)(LENGTH_EOCD+MAX_LENGTH_ZIP_COMMENT));
+		byte[] tail = new byte[tailLength];
+		in.readFully(fileLength-tailLength, tail, 0, tailLength);
+		int eocdPos=-1;
+		for (int i=tailLength-LENGTH_EOCD;i>=0;i--) {
+			if (getInt(tail,i)==SIGNATURE_EOCD) {
+				eocdPos=i;
+				break;
+			}
+		}
+		if (eocdPos==-1) {
+			throw new FormatNotUnderstoodException("No central directory found in zip package");
+		}
+		int numberOfEntries=getShort(tail,eocdPos+10);
+		long centralDirectorySize=getInt(tail,eocdPos+12) & ZIP64_MARKER;
+		long centralDirectoryOffset=getInt(tail,eocdPos+16) & ZIP64_MARKER;
+		if ((numberOfEntries==0xFFFF) || (centralDirectorySize==ZIP64_MARKER) || (centralDirectoryOffset==ZIP64_MARKER)) {
+			throw new FormatNotUnderstoodException("Zip64 packages are not supported");
+		}
+		byte[] centralDirectory = new byte[(int)centralDirectorySize];
+		in.readFully(centralDirectoryOffset, centralDirectory, 0, centralDirectory.length);
+		MSExcelZipDirectory result = new MSExcelZipDirectory();
+		byte[] localHeader = new byte[LENGTH_LOCAL_HEADER];
+		int pos=0;
+		for (int i=0;i<numberOfEntries;i++) {
+			if ((pos+LENGTH_CENTRAL_DIRECTORY_HEADER>centralDirectory.length) || (getInt(centralDirectory,pos)!=SIGNATURE_CENTRAL_DIRECTORY)) {
+				throw new FormatNotUnderstoodException("Invalid central directory in zip package");
+			}
+			int method=getShort(centralDirectory,pos+10);
+			long compressedSize=getInt(centralDirectory,pos+20) & ZIP64_MARKER;
+			long size=getInt(centralDirectory,pos+24) & ZIP64_MARKER;
+			int nameLength=getShort(centralDirectory,pos+28);
+			int extraLength=getShort(centralDirectory,pos+30);
+			int commentLength=getShort(centralDirectory,pos+32);
+			long localHeaderOffset=getInt(centralDirectory,pos+42) & ZIP64_MARKER;
+			String name=new String(centralDirectory,pos+LENGTH_CENTRAL_DIRECTORY_HEADER,nameLength,CHARSET_UTF8);
+			if ((compressedSize==ZIP64_MARKER) || (size==ZIP64_MARKER) || (localHeaderOffset==ZIP64_MARKER)) {
+				throw new FormatNotUnderstoodException("Zip64 packages are not supported");
+			}
+			// the data starts after the local header, which may have a different extra field than the central directory
+			in.readFully(localHeaderOffset, localHeader, 0, LENGTH_LOCAL_HEADER);
+			if (getInt(localHeader,0)!=SIGNATURE_LOCAL_HEADER) {
+				throw new FormatNotUnderstoodException("Invalid local header of zip entry \""+name+"\"");
+			}
+			long dataOffset=localHeaderOffset+LENGTH_LOCAL_HEADER+getShort(localHeader,26)+getShort(localHeader,28);
+			result.addEntry(new Entry(name,method,dataOffset,compressedSize,size));
+			pos+=LENGTH_CENTRAL_DIRECTORY_HEADER+nameLength+extraLength+commentLength;
+		}
+		LOG.debug("Zip directory with "+numberOfEntries+" entries read");
+		return result;
+	}
+
+	/*
+	* Adds an entry to the directory
+	*
+	* @param entry zip entry
+	*
+	*/
+	public void addEntry(Entry entry) {
+		this.entries.put(entry.getName(), entry);
+	}
+
+	/*
+	* Returns an entry of the zip package
+	*
+	* @param name name of the entry, e.g. xl/worksheets/sheet1.xml
+	*
+	* @return entry or null if the package does not contain it
+	*
+	*/
+	public Entry getEntry(String name) {
+		return this.entries.get(name);
+	}
+
+	/*
+	* Returns all entries of the zip package
+	*
+	* @return entries in the order of the central directory
+	*
+	*/
+	public Collection<Entry> getEntries() {
+		return this.entries.values();
+	}
+
+	/*
+	* Serializes the zip directory
+	*
+	* @param out output
+	*
+	* @throws java.io.IOException in case of errors writing
+	*
+	*/
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(this.entries.size());
+		for (Entry currentEntry: this.entries.values()) {
+			out.writeUTF(currentEntry.getName());
+			out.writeShort(currentEntry.getMethod());
+			out.writeLong(currentEntry.getDataOffset());
+			out.writeLong(currentEntry.getCompressedSize());
+			out.writeLong(currentEntry.getSize());
+		}
+	}
+
+	/*
+	* Deserializes the zip directory
+	*
+	* @param in input
+	*
+	* @throws java.io.IOException in case of errors reading
+	*
+	*/
+	public void readFields(DataInput in) throws IOException {
+		this.entries.clear();
+		int numberOfEntries=in.readInt();
+		for (int i=0;i<numberOfEntries;i++) {
+			String name=in.readUTF();
+			int method=in.readShort();
+			long dataOffset=in.readLong();
+			long compressedSize=in.readLong();
+			long size=in.readLong();
+			this.addEntry(new Entry(name,method,dataOffset,compressedSize,size));
+		}
+	}
+
+	private static int getShort(byte[] b, int pos) {
+		return (b[pos] & 0xff) | ((b[pos+1] & 0xff) << 8);
+	}
+
+	private static int getInt(byte[] b, int pos) {
+		return (b[pos] & 0xff) | ((b[pos+1] & 0xff) << 8) | ((b[pos+2] & 0xff) << 16) | ((b[pos+3] & 0xff) << 24);
+	}
+
+	/*
+	* An entry of a zip package
+	*
+	*/
+	public static class Entry {
+		private String name;
+		private int method;
+		private long dataOffset;
+		private long compressedSize;
+		private long size;
+
+		/*
+		* @param name name of the entry
+		* @param method compression method (cf. java.util.zip.ZipEntry.STORED and DEFLATED)
+		* @param dataOffset position of the (compressed) data of the entry in the zip package
+		* @param compressedSize size of the compressed data
+		* @param size size of the uncompressed data
+		*
+		*/
+		public Entry(String name, int method, long dataOffset, long compressedSize, long size) {
+			this.name=name;
+			this.method=method;
+			this.dataOffset=dataOffset;
+			this.compressedSize=compressedSize;
+			this.size=size;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public int getMethod() {
+			return this.method;
+		}
+
+		public long getDataOffset() {
+			return this.dataOffset;
+		}
+
+		public long getCompressedSize() {
+			return this.compressedSize;
+		}
+
+		public long getSize() {
+			return this.size;
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.poi.openxml4j.util.ZipEntrySource;
+
+/*
+*
+* Provides the entries of the zip package of a new Excel file (.xlsx) to Apache POI (cf. OPCPackage.open(ZipEntrySource)) by reading them directly from their position in the file (cf. MSExcelZipDirectory).
+* Contrary to reading the package from a stream, only the entries that are actually needed (e.g. the shared strings, the styles and the selected sheets) are read and inflated.
+*
+*/
+public class MSExcelZipEntrySource implements ZipEntrySource {
+	private static final int BUFFER_SIZE=64*1024;
+
+	private PositionedReadable in;
+	private MSExcelZipDirectory zipDirectory;
+	private boolean closed;
+
+	/*
+	* Creates a new zip entry source
+	*
+	* @param in zip package. It is not closed by this class
+	* @param zipDirectory directory of the zip package
+	*
+	*/
+	public MSExcelZipEntrySource(PositionedReadable in, MSExcelZipDirectory zipDirectory) {
+		this.in=in;
+		this.zipDirectory=zipDirectory;
+		this.closed=false;
+	}
+
+	@Override
+	public Enumeration<? extends ZipEntry> getEntries() {
+		List<ZipEntry> result = new ArrayList<>();
+		for (MSExcelZipDirectory.Entry currentEntry: this.zipDirectory.getEntries()) {
+			ZipEntry currentZipEntry = new ZipEntry(currentEntry.getName());
+			currentZipEntry.setMethod(currentEntry.getMethod());
+			currentZipEntry.setSize(currentEntry.getSize());
+			currentZipEntry.setCompressedSize(currentEntry.getCompressedSize());
+			result.add(currentZipEntry);
+		}
+		return Collections.enumeration(result);
+	}
+
+	@Override
+	public InputStream getInputStream(ZipEntry entry) throws IOException {
+		MSExcelZipDirectory.Entry currentEntry = this.zipDirectory.getEntry(entry.getName());
+		if (currentEntry==null) {
+			throw new IOException("Zip entry \""+entry.getName()+"\" not found");
+		}
+		if (currentEntry.getMethod()==ZipEntry.STORED) {
+			return new PositionedInputStream(this.in, currentEntry.getDataOffset(), currentEntry.getCompressedSize(), false);
+		} else if (currentEntry.getMethod()==ZipEntry.DEFLATED) {
+			final Inflater inflater = new Inflater(true);
+			// a dummy byte is appended, because the inflater may need it to detect the end of the compressed data (cf. java.util.zip.ZipFile)
+			return new InflaterInputStream(new PositionedInputStream(this.in, currentEntry.getDataOffset(), currentEntry.getCompressedSize(), true), inflater, BUFFER_SIZE) {
+				private boolean inflaterEnded=false;
+
+				@Override
+				public void close() throws IOException {
+					super.close();
+					if (!this.inflaterEnded) {
+						inflater.end();
+						this.inflaterEnded=true;
+					}
+				}
+			};
+		}
+		throw new IOException("Unsupported compression method "+currentEntry.getMethod()+" of zip entry \""+entry.getName()+"\"");
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.closed=true;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/*
+	* Reads a range of bytes of a file using positioned reads
+	*
+	*/
+	private static class PositionedInputStream extends InputStream {
+		private PositionedReadable in;
+		private long position;
+		private long end;
+		private boolean dummyByte;
+
+		PositionedInputStream(PositionedReadable in, long start, long length, boolean dummyByte) {
+			this.in=in;
+			this.position=start;
+			this.end=start+length;
+			this.dummyByte=dummyByte;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int bytesRead=this.read(b,0,1);
+			if (bytesRead<=0) {
+				return -1;
+			}
+			return b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len==0) {
+				return 0;
+			}
+			if (this.position>=this.end) {
+				if (this.dummyByte) {
+					this.dummyByte=false;
+					b[off]=0;
+					return 1;
+				}
+				return -1;
+			}
+			int bytesToRead=(int)Math.min((long)len, this.end-this.position);
+			int bytesRead=this.in.read(this.position, b, off, bytesToRead);
+			if (bytesRead<=0) {
+				throw new IOException("Unexpected end of file at position "+this.position);
+			}
+			this.position+=bytesRead;
+			return bytesRead;
+		}
+
+		@Override
+		public int available() {
+			return (int)Math.min((long)Integer.MAX_VALUE, this.end-this.position);
+		}
+	}
+
+}
@@ -0,0 +1,30 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.parser;
+
+/*
+* Thrown by getNext() of a parser if the document cannot be decoded after rows of it have already been returned (e.g. a corrupt sheet in low footprint mode). The record readers convert it into an IOException, so that the rest of the document is not silently skipped
+*
+*/
+
+public class ParsingAbortedException extends RuntimeException {
+private static final long serialVersionUID = 1L;
+
+public ParsingAbortedException(String message) {
+	super(message);
+}
+
+}
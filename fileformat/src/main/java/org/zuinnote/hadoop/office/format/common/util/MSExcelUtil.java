@@ -17,8 +17,18 @@
 package org.zuinnote.hadoop.office.format.common.util;
 
 import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.CellReference;
 
 public class MSExcelUtil {
+public static final int MAX_COLUMNS=16384; // columns of Excel 2007 and later (A to XFD)
+public static final int MAX_ADDRESS_LENGTH=13; // e.g. XFD2147483647
+private static final char[][] COLUMN_LETTERS=new char[MAX_COLUMNS][];
+
+static {
+	for (int i=0;i<MAX_COLUMNS;i++) {
+		COLUMN_LETTERS[i]=CellReference.convertNumToColString(i).toCharArray();
+	}
+}
 
 private MSExcelUtil() {
 }
@@ -34,8 +44,122 @@ private MSExcelUtil() {
 */
 
 public static String getCellAddressA1Format(int rowNum, int columnNum) {
- CellAddress cellAddr = new CellAddress(rowNum, columnNum);
- return cellAddr.formatAsString();
+ return getCellAddressA1Format(rowNum, columnNum, new char[MAX_ADDRESS_LENGTH]);
+}
+
+/**
+* Generate a cell address in A1 format from a row and column number using a buffer, which can be reused for all cells
+*
+* @param rowNum row number (starting from 0)
+* @param columnNum column number (starting from 0)
+* @param buffer buffer with at least MAX_ADDRESS_LENGTH characters
+*
+* @return Address in A1 format
+*
+*/
+
+public static String getCellAddressA1Format(int rowNum, int columnNum, char[] buffer) {
+ if ((rowNum<0) || (columnNum<0) || (columnNum>=MAX_COLUMNS)) { // not a valid cell, let POI format it
+	return new CellAddress(rowNum, columnNum).formatAsString();
+ }
+ return new String(buffer, 0, appendCellAddressA1Format(rowNum, columnNum, buffer, 0));
+}
+
+/**
+* Writes a cell address in A1 format into a buffer
+*
+* @param rowNum row number (starting from 0)
+* @param columnNum column number (starting from 0 to MAX_COLUMNS-1)
+* @param buffer buffer with at least MAX_ADDRESS_LENGTH characters after the offset
+* @param offset position in the buffer
+*
+* @return position in the buffer after the address
+*
+*/
+
+public static int appendCellAddressA1Format(int rowNum, int columnNum, char[] buffer, int offset) {
+ char[] columnLetters=COLUMN_LETTERS[columnNum];
+ System.arraycopy(columnLetters, 0, buffer, offset, columnLetters.length);
+ int position=offset+columnLetters.length;
+ long row=rowNum+1L;
+ int firstDigit=position;
+ do {
+	buffer[position++]=(char)('0'+(int)(row%10));
+	row/=10;
+ } while (row>0);
+ // digits have been written in reverse order
+ for (int i=firstDigit,j=position-1;i<j;i++,j--) {
+	char currentChar=buffer[i];
+	buffer[i]=buffer[j];
+	buffer[j]=currentChar;
+ }
+ return position;
+}
+
+/**
+* Returns the letters of a column (e.g. AB for 27)
+*
+* @param columnNum column number (starting from 0 to MAX_COLUMNS-1)
+*
+* @return column letters
+*
+*/
+
+public static String getColumnName(int columnNum) {
+ return new String(COLUMN_LETTERS[columnNum]);
+}
+
+/**
+* Returns the column of a cell address in A1 format without creating any objects
+*
+* @param address address in A1 format (e.g. AB12)
+*
+* @return column (starting from 0), -1 if the address does not start with a column and row in A1 format (e.g. lower case letters, absolute references or columns after MAX_COLUMNS). The rest of the address is not checked (cf. getRowIndex)
+*
+*/
+
+public static int getColumnIndex(CharSequence address) {
+ int column=0;
+ int i=0;
+ while ((i<address.length()) && (i<3) && (address.charAt(i)>='A') && (address.charAt(i)<='Z')) {
+	column=column*26+(address.charAt(i)-'A'+1);
+	i++;
+ }
+ if ((i==0) || (column>MAX_COLUMNS) || (i==address.length()) || (address.charAt(i)<'1') || (address.charAt(i)>'9')) {
+	return -1;
+ }
+ return column-1;
+}
+
+/**
+* Returns the row of a cell address in A1 format without creating any objects
+*
+* @param address address in A1 format (e.g. AB12)
+*
+* @return row (starting from 0), -1 if the address is not in A1 format (e.g. lower case letters, absolute references or columns after MAX_COLUMNS)
+*
+*/
+
+public static int getRowIndex(CharSequence address) {
+ if (getColumnIndex(address)<0) {
+	return -1;
+ }
+ int i=0;
+ while ((address.charAt(i)>='A') && (address.charAt(i)<='Z')) {
+	i++;
+ }
+ long row=0L;
+ for (;i<address.length();i++) {
+	char currentChar=address.charAt(i);
+	if ((currentChar<'0') || (currentChar>'9')) {
+		return -1;
+	}
+	row=row*10+(currentChar-'0');
+	if (row>Integer.MAX_VALUE) {
+		return -1;
+	}
+ }
+ return (int)row-1;
 }
 
 
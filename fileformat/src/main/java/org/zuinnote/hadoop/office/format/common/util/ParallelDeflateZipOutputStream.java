@@ -0,0 +1,479 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ZipOutputStream that compresses the entries with several threads (cf. hadoopoffice.write.parallelDeflate). It can be handed over to POI when a workbook is written, because POI uses a given ZipOutputStream instead of creating its own.
+ * The data of each entry is split into blocks, which are compressed independently as soon as they are complete (like pigz). Each block uses the end of the previous block as dictionary and all blocks except the last one end with a sync flush, so that the compressed blocks form one deflate stream.
+ * Compressed blocks are written in order as soon as they are available and only a few blocks per thread are in memory at the same time. The sizes and the checksum of an entry follow its data in a data descriptor. Zip64 extensions are written for entries and archives that need them.
+ *
+ */
+public class ParallelDeflateZipOutputStream extends ZipOutputStream {
+	private static final int BLOCK_SIZE=1024*1024;
+	private static final int DICTIONARY_SIZE=32*1024; // window of deflate
+	private static final int BUFFER_SIZE=64*1024;
+	private static final int PENDING_BLOCKS_PER_THREAD=2;
+	private static final long MAX_ZIP32_VALUE=0xFFFFFFFFL;
+	private static final int MAX_ZIP32_ENTRIES=0xFFFF;
+	private static final int SIGNATURE_LOCAL_HEADER=0x04034b50;
+	private static final int SIGNATURE_DATA_DESCRIPTOR=0x08074b50;
+	private static final int SIGNATURE_CENTRAL_HEADER=0x02014b50;
+	private static final int SIGNATURE_ZIP64_END_OF_CENTRAL_DIRECTORY=0x06064b50;
+	private static final int SIGNATURE_ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR=0x07064b50;
+	private static final int SIGNATURE_END_OF_CENTRAL_DIRECTORY=0x06054b50;
+	private static final int ZIP64_EXTRA_FIELD=0x0001;
+	private static final int ZIP_VERSION=20;
+	private static final int ZIP64_VERSION=45;
+	private static final int FLAG_DATA_DESCRIPTOR=0x0008;
+	private static final int FLAG_UTF8=0x0800;
+
+	private OutputStream out;
+	private CountingHeaderWriter headerWriter;
+	private int threads;
+	private int maxPendingBlocks;
+	private ExecutorService executor;
+	private List<Entry> entries;
+	private Entry currentEntry;
+	private boolean closed;
+
+	/**
+	 * Creates a ZipOutputStream that compresses the entries with several threads
+	 *
+	 * @param out stream to which the archive is written
+	 * @param threads number of threads that compress the data. If 0 or less then the number of available processors is used
+	 *
+	 */
+	public ParallelDeflateZipOutputStream(OutputStream out, int threads) {
+		super(out);
+		this.out=out;
+		this.headerWriter=new CountingHeaderWriter(out);
+		this.threads=threads>0?threads:Runtime.getRuntime().availableProcessors();
+		this.maxPendingBlocks=this.threads*ParallelDeflateZipOutputStream.PENDING_BLOCKS_PER_THREAD;
+		this.entries=new ArrayList<>();
+	}
+
+	@Override
+	public void putNextEntry(ZipEntry e) throws IOException {
+		this.ensureOpen();
+		if (this.currentEntry!=null) {
+			this.closeEntry();
+		}
+		if (this.executor==null) {
+			this.executor=Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread result=new Thread(r, "hadoopoffice-deflate");
+					result.setDaemon(true);
+					return result;
+				}
+			});
+		}
+		this.currentEntry=new Entry(e.getName(), e.getTime()==-1?System.currentTimeMillis():e.getTime(), this.headerWriter.count);
+		this.writeLocalHeader(this.currentEntry);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		this.write(new byte[]{(byte)b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		this.ensureOpen();
+		if (this.currentEntry==null) {
+			throw new IOException("No current ZIP entry");
+		}
+		int pos=off;
+		int remaining=len;
+		while (remaining>0) {
+			int copyLength=Math.min(remaining, this.currentEntry.currentBlock.length-this.currentEntry.currentBlockLength);
+			System.arraycopy(b, pos, this.currentEntry.currentBlock, this.currentEntry.currentBlockLength, copyLength);
+			this.currentEntry.currentBlockLength+=copyLength;
+			pos+=copyLength;
+			remaining-=copyLength;
+			if (this.currentEntry.currentBlockLength==this.currentEntry.currentBlock.length) { // compress the full block while further data is written
+				this.submitBlock(false);
+				this.writeCompressedBlocks(false);
+			}
+		}
+		this.currentEntry.crc.update(b, off, len);
+		this.currentEntry.size+=len;
+	}
+
+	@Override
+	public void closeEntry() throws IOException {
+		this.ensureOpen();
+		if (this.currentEntry!=null) {
+			this.submitBlock(true);
+			this.writeCompressedBlocks(true);
+			this.writeDataDescriptor(this.currentEntry);
+			this.entries.add(this.currentEntry);
+			this.currentEntry=null;
+		}
+	}
+
+	@Override
+	public void finish() throws IOException {
+		this.ensureOpen();
+		try {
+			this.closeEntry();
+			this.writeCentralDirectory();
+		} finally {
+			this.closed=true;
+			this.entries.clear();
+			if (this.executor!=null) {
+				this.executor.shutdownNow();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!this.closed) {
+			this.finish();
+		}
+		this.out.close();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		this.out.flush();
+	}
+
+	/**
+	 * Checks that the stream is not yet closed
+	 *
+	 * @throws java.io.IOException in case the stream is closed
+	 *
+	 */
+	private void ensureOpen() throws IOException {
+		if (this.closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	/**
+	 * Hands over the current block of the current entry for compression. The block is only referenced by the compression task, so that it is released once it is compressed
+	 *
+	 * @param lastBlock true if it is the last block of the entry
+	 *
+	 */
+	private void submitBlock(boolean lastBlock) {
+		final Entry entry=this.currentEntry;
+		final byte[] block=entry.currentBlock;
+		final int blockLength=entry.currentBlockLength;
+		final byte[] dictionary=entry.dictionary;
+		final boolean finish=lastBlock;
+		entry.pendingBlocks.addLast(this.executor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() {
+				return ParallelDeflateZipOutputStream.deflateBlock(block, blockLength, dictionary, finish);
+			}
+		}));
+		if (!lastBlock) {
+			entry.dictionary=Arrays.copyOfRange(block, blockLength-ParallelDeflateZipOutputStream.DICTIONARY_SIZE, blockLength);
+			entry.currentBlock=new byte[ParallelDeflateZipOutputStream.BLOCK_SIZE];
+			entry.currentBlockLength=0;
+		} else {
+			entry.dictionary=null;
+			entry.currentBlock=null;
+		}
+	}
+
+	/**
+	 * Writes the compressed blocks of the current entry in their original order. Waits for the oldest blocks if too many blocks are pending
+	 *
+	 * @param allBlocks true if all blocks should be written (waits until they are compressed), false if only the blocks that are already compressed should be written
+	 *
+	 * @throws java.io.IOException in case a block could not be compressed or written
+	 *
+	 */
+	private void writeCompressedBlocks(boolean allBlocks) throws IOException {
+		Deque<Future<byte[]>> pendingBlocks=this.currentEntry.pendingBlocks;
+		while ((!pendingBlocks.isEmpty()) && ((allBlocks) || (pendingBlocks.size()>this.maxPendingBlocks) || (pendingBlocks.peekFirst().isDone()))) {
+			byte[] compressedBlock;
+			try {
+				compressedBlock=pendingBlocks.removeFirst().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while compressing entry", e);
+			} catch (ExecutionException e) {
+				throw new IOException("Cannot compress entry", e.getCause());
+			}
+			this.headerWriter.write(compressedBlock, 0, compressedBlock.length);
+			this.currentEntry.compressedSize+=compressedBlock.length;
+		}
+	}
+
+	/**
+	 * Compresses a block of an entry
+	 *
+	 * @param block uncompressed data
+	 * @param blockLength length of the data
+	 * @param dictionary end of the previous block of the entry or null if it is the first block
+	 * @param lastBlock true if it is the last block of the entry
+	 *
+	 * @return raw deflate data of the block
+	 *
+	 */
+	private static byte[] deflateBlock(byte[] block, int blockLength, byte[] dictionary, boolean lastBlock) {
+		Deflater deflater=new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			if (dictionary!=null) {
+				deflater.setDictionary(dictionary);
+			}
+			deflater.setInput(block, 0, blockLength);
+			ByteArrayOutputStream result=new ByteArrayOutputStream(Math.max(blockLength/4, 64));
+			byte[] buffer=new byte[ParallelDeflateZipOutputStream.BUFFER_SIZE];
+			if (lastBlock) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					int compressedLength=deflater.deflate(buffer);
+					result.write(buffer, 0, compressedLength);
+				}
+			} else { // the sync flush ends the block on a byte boundary, so that the next block can be appended
+				int compressedLength;
+				do {
+					compressedLength=deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+					result.write(buffer, 0, compressedLength);
+				} while ((compressedLength==buffer.length) || (!deflater.needsInput()));
+			}
+			return result.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Writes the local header of an entry. Checksum and sizes are not known yet and follow the data in the data descriptor
+	 *
+	 * @param entry entry
+	 *
+	 * @throws java.io.IOException in case the header cannot be written
+	 *
+	 */
+	private void writeLocalHeader(Entry entry) throws IOException {
+		this.headerWriter.writeInt(ParallelDeflateZipOutputStream.SIGNATURE_LOCAL_HEADER);
+		this.headerWriter.writeShort(ParallelDeflateZipOutputStream.ZIP_VERSION);
+		this.headerWriter.writeShort(ParallelDeflateZipOutputStream.FLAG_UTF8 | ParallelDeflateZipOutputStream.FLAG_DATA_DESCRIPTOR);
+		this.headerWriter.writeShort(ZipEntry.DEFLATED);
+		this.headerWriter.writeInt(entry.dosTime);
+		this.headerWriter.writeInt(0); // crc
+		this.headerWriter.writeInt(0); // compressed size
+		this.headerWriter.writeInt(0); // size
+		this.headerWriter.writeShort(entry.name.length);
+		this.headerWriter.writeShort(0); // extra field
+		this.headerWriter.write(entry.name, 0, entry.name.length);
+	}
+
+	/**
+	 * Writes the data descriptor of an entry. Sizes are written with 8 bytes if the entry needs Zip64 extensions (as java.util.zip does)
+	 *
+	 * @param entry entry
+	 *
+	 * @throws java.io.IOException in case the data descriptor cannot be written
+	 *
+	 */
+	private void writeDataDescriptor(Entry entry) throws IOException {
+		this.headerWriter.writeInt(ParallelDeflateZipOutputStream.SIGNATURE_DATA_DESCRIPTOR);
+		this.headerWriter.writeInt((int)entry.crc.getValue());
+		if ((entry.compressedSize>=ParallelDeflateZipOutputStream.MAX_ZIP32_VALUE) || (entry.size>=ParallelDeflateZipOutputStream.MAX_ZIP32_VALUE)) {
+			this.headerWriter.writeLong(entry.compressedSize);
+			this.headerWriter.writeLong(entry.size);
+		} else {
+			this.headerWriter.writeInt((int)entry.compressedSize);
+			this.headerWriter.writeInt((int)entry.size);
+		}
+	}
+
+	/**
+	 * Writes the central directory and its end record. Values that do not fit into the ZIP format are stored in Zip64 extra fields and a Zip64 end record
+	 *
+	 * @throws java.io.IOException in case the central directory cannot be written
+	 *
+	 */
+	private void writeCentralDirectory() throws IOException {
+		long centralDirectoryOffset=this.headerWriter.count;
+		for (Entry currentItem: this.entries) {
+			boolean zip64Size=currentItem.size>=ParallelDeflateZipOutputStream.MAX_ZIP32_VALUE;
+			boolean zip64CompressedSize=currentItem.compressedSize>=ParallelDeflateZipOutputStream.MAX_ZIP32_VALUE;
+			boolean zip64Offset=currentItem.offset>=ParallelDeflateZipOutputStream.MAX_ZIP32_VALUE;
+			int extraLength=(zip64Size?8:0)+(zip64CompressedSize?8:0)+(zip64Offset?8:0);
+			int version=extraLength>0?ParallelDeflateZipOutputStream.ZIP64_VERSION:ParallelDeflateZipOutputStream.ZIP_VERSION;
+			this.headerWriter.writeInt(ParallelDeflateZipOutputStream.SIGNATURE_CENTRAL_HEADER);
+			this.headerWriter.writeShort(version); // made by
+			this.headerWriter.writeShort(version); // needed to extract
+			this.headerWriter.writeShort(ParallelDeflateZipOutputStream.FLAG_UTF8 | ParallelDeflateZipOutputStream.FLAG_DATA_DESCRIPTOR);
+			this.headerWriter.writeShort(ZipEntry.DEFLATED);
+			this.headerWriter.writeInt(currentItem.dosTime);
+			this.headerWriter.writeInt((int)currentItem.crc.getValue());
+			this.headerWriter.writeInt((int)(zip64CompressedSize?ParallelDeflateZipOutputStream.MAX_ZIP32_VALUE:currentItem.compressedSize));
+			this.headerWriter.writeInt((int)(zip64Size?ParallelDeflateZipOutputStream.MAX_ZIP32_VALUE:currentItem.size));
+			this.headerWriter.writeShort(currentItem.name.length);
+			this.headerWriter.writeShort(extraLength>0?extraLength+4:0); // extra field
+			this.headerWriter.writeShort(0); // comment
+			this.headerWriter.writeShort(0); // disk number
+			this.headerWriter.writeShort(0); // internal attributes
+			this.headerWriter.writeInt(0); // external attributes
+			this.headerWriter.writeInt((int)(zip64Offset?ParallelDeflateZipOutputStream.MAX_ZIP32_VALUE:currentItem.offset));
+			this.headerWriter.write(currentItem.name, 0, currentItem.name.length);
+			if (extraLength>0) { // the values are stored in this order and only if they do not fit into the header
+				this.headerWriter.writeShort(ParallelDeflateZipOutputStream.ZIP64_EXTRA_FIELD);
+				this.headerWriter.writeShort(extraLength);
+				if (zip64Size) {
+					this.headerWriter.writeLong(currentItem.size);
+				}
+				if (zip64CompressedSize) {
+					this.headerWriter.writeLong(currentItem.compressedSize);
+				}
+				if (zip64Offset) {
+					this.headerWriter.writeLong(currentItem.offset);
+				}
+			}
+		}
+		long centralDirectorySize=this.headerWriter.count-centralDirectoryOffset;
+		int numberOfEntries=this.entries.size();
+		if ((numberOfEntries>=ParallelDeflateZipOutputStream.MAX_ZIP32_ENTRIES) || (centralDirectorySize>=ParallelDeflateZipOutputStream.MAX_ZIP32_VALUE) || (centralDirectoryOffset>=ParallelDeflateZipOutputStream.MAX_ZIP32_VALUE)) {
+			long zip64EndOffset=this.headerWriter.count;
+			this.headerWriter.writeInt(ParallelDeflateZipOutputStream.SIGNATURE_ZIP64_END_OF_CENTRAL_DIRECTORY);
+			this.headerWriter.writeLong(44); // size of the remaining record
+			this.headerWriter.writeShort(ParallelDeflateZipOutputStream.ZIP64_VERSION); // made by
+			this.headerWriter.writeShort(ParallelDeflateZipOutputStream.ZIP64_VERSION); // needed to extract
+			this.headerWriter.writeInt(0); // disk number
+			this.headerWriter.writeInt(0); // disk with central directory
+			this.headerWriter.writeLong(numberOfEntries);
+			this.headerWriter.writeLong(numberOfEntries);
+			this.headerWriter.writeLong(centralDirectorySize);
+			this.headerWriter.writeLong(centralDirectoryOffset);
+			this.headerWriter.writeInt(ParallelDeflateZipOutputStream.SIGNATURE_ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR);
+			this.headerWriter.writeInt(0); // disk with Zip64 end record
+			this.headerWriter.writeLong(zip64EndOffset);
+			this.headerWriter.writeInt(1); // number of disks
+			numberOfEntries=Math.min(numberOfEntries, ParallelDeflateZipOutputStream.MAX_ZIP32_ENTRIES);
+			centralDirectorySize=Math.min(centralDirectorySize, ParallelDeflateZipOutputStream.MAX_ZIP32_VALUE);
+			centralDirectoryOffset=Math.min(centralDirectoryOffset, ParallelDeflateZipOutputStream.MAX_ZIP32_VALUE);
+		}
+		this.headerWriter.writeInt(ParallelDeflateZipOutputStream.SIGNATURE_END_OF_CENTRAL_DIRECTORY);
+		this.headerWriter.writeShort(0); // disk number
+		this.headerWriter.writeShort(0); // disk with central directory
+		this.headerWriter.writeShort(numberOfEntries);
+		this.headerWriter.writeShort(numberOfEntries);
+		this.headerWriter.writeInt((int)centralDirectorySize);
+		this.headerWriter.writeInt((int)centralDirectoryOffset);
+		this.headerWriter.writeShort(0); // comment
+		this.out.flush();
+	}
+
+	/**
+	 * Converts a time into the MS-DOS format of ZIP files
+	 *
+	 * @param time milliseconds since 1970
+	 *
+	 * @return time in the MS-DOS format
+	 *
+	 */
+	private static int toDosTime(long time) {
+		Calendar calendar=Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+		int year=calendar.get(Calendar.YEAR);
+		if (year<1980) {
+			return (1 << 21) | (1 << 16);
+		}
+		return ((year-1980) << 25) | ((calendar.get(Calendar.MONTH)+1) << 21) | (calendar.get(Calendar.DAY_OF_MONTH) << 16) | (calendar.get(Calendar.HOUR_OF_DAY) << 11) | (calendar.get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1);
+	}
+
+	/**
+	 * Entry of the archive with the block that is currently filled and the blocks that are compressed
+	 *
+	 */
+	private static class Entry {
+		private byte[] name;
+		private int dosTime;
+		private long offset;
+		private CRC32 crc;
+		private long size;
+		private long compressedSize;
+		private byte[] currentBlock;
+		private int currentBlockLength;
+		private byte[] dictionary;
+		private Deque<Future<byte[]>> pendingBlocks;
+
+		Entry(String name, long time, long offset) {
+			this.name=name.getBytes(StandardCharsets.UTF_8);
+			this.dosTime=ParallelDeflateZipOutputStream.toDosTime(time);
+			this.offset=offset;
+			this.crc=new CRC32();
+			this.currentBlock=new byte[ParallelDeflateZipOutputStream.BLOCK_SIZE];
+			this.pendingBlocks=new ArrayDeque<>();
+		}
+	}
+
+	/**
+	 * Writes little endian values of the ZIP headers and counts the written bytes
+	 *
+	 */
+	private static class CountingHeaderWriter {
+		private OutputStream out;
+		private long count;
+
+		CountingHeaderWriter(OutputStream out) {
+			this.out=out;
+		}
+
+		void writeShort(int value) throws IOException {
+			this.out.write(value & 0xFF);
+			this.out.write((value >>> 8) & 0xFF);
+			this.count+=2;
+		}
+
+		void writeInt(int value) throws IOException {
+			this.writeShort(value & 0xFFFF);
+			this.writeShort((value >>> 16) & 0xFFFF);
+		}
+
+		void writeLong(long value) throws IOException {
+			this.writeInt((int)value);
+			this.writeInt((int)(value >>> 32));
+		}
+
+		void write(byte[] b, int off, int len) throws IOException {
+			this.out.write(b, off, len);
+			this.count+=len;
+		}
+	}
+
+}
@@ -0,0 +1,219 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/*
+*
+* InputStream that reads another InputStream (e.g. a file decompressed by a compression codec or an inflated entry of a zip file) in a background thread ahead of the consumer (cf. hadoopoffice.read.pipeline). The content is handed over in a fixed number of buffers, which are reused, so that reading (and decompressing) overlaps with parsing, but only a limited amount of content is kept in memory.
+* Errors of the background thread are reported by the next read after the content read before the error. The stream is not thread-safe, i.e. it should be read by one thread.
+*
+*/
+public class ReadAheadInputStream extends InputStream {
+	public static final int DEFAULT_NUMBER_OF_BUFFERS=4;
+	private static final Log LOG = LogFactory.getLog(ReadAheadInputStream.class.getName());
+	private static final Buffer END_OF_STREAM=new Buffer(0);
+
+	private InputStream in;
+	private BlockingQueue<Buffer> freeBuffers;
+	private BlockingQueue<Buffer> filledBuffers;
+	private Thread readerThread;
+	private volatile IOException readException;
+	private volatile boolean closed;
+	private Buffer currentBuffer;
+	private int currentPosition;
+	private boolean endOfStream;
+
+	/*
+	* Creates the stream and starts reading ahead
+	*
+	* @param in stream to be read ahead
+	* @param bufferSize size of each buffer in bytes
+	* @param numberOfBuffers number of buffers
+	* @param name name of the background thread
+	*
+	*/
+	public ReadAheadInputStream(InputStream in, int bufferSize, int numberOfBuffers, String name) {
+		this.in=in;
+		int buffers=Math.max(1, numberOfBuffers);
+		this.freeBuffers=new ArrayBlockingQueue<>(buffers);
+		this.filledBuffers=new ArrayBlockingQueue<>(buffers+1); // the end of the stream can always be added
+		for (int i=0;i<buffers;i++) {
+			this.freeBuffers.add(new Buffer(Math.max(1, bufferSize)));
+		}
+		this.closed=false;
+		this.endOfStream=false;
+		this.readerThread=new Thread(new Reader(), name);
+		this.readerThread.setDaemon(true);
+		this.readerThread.start();
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!this.nextBuffer()) {
+			return -1;
+		}
+		return this.currentBuffer.content[this.currentPosition++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len==0) {
+			return 0;
+		}
+		if (!this.nextBuffer()) {
+			return -1;
+		}
+		int result=Math.min(len, this.currentBuffer.length-this.currentPosition);
+		System.arraycopy(this.currentBuffer.content, this.currentPosition, b, off, result);
+		this.currentPosition+=result;
+		return result;
+	}
+
+	@Override
+	public int available() {
+		if (this.currentBuffer==null) {
+			return 0;
+		}
+		return this.currentBuffer.length-this.currentPosition;
+	}
+
+	/*
+	* Stops the background thread and closes the underlying stream
+	*
+	* @throws java.io.IOException in case of errors
+	*
+	*/
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed=true;
+		this.readerThread.interrupt();
+		try {
+			this.readerThread.join();
+		} catch (InterruptedException e) {
+			LOG.error(e);
+			Thread.currentThread().interrupt();
+		}
+		this.freeBuffers.clear();
+		this.filledBuffers.clear();
+		this.currentBuffer=null;
+		this.in.close();
+	}
+
+	/*
+	* Makes sure that the current buffer has content left. Gives back the current buffer and waits for the next one if needed
+	*
+	* @return true, if there is content left, false if the end of the stream has been reached
+	*
+	* @throws java.io.IOException in case of errors reading the underlying stream or if the stream has been closed
+	*
+	*/
+	private boolean nextBuffer() throws IOException {
+		if (this.closed) {
+			throw new IOException("Stream closed");
+		}
+		if ((this.currentBuffer!=null) && (this.currentPosition<this.currentBuffer.length)) {
+			return true;
+		}
+		if (this.endOfStream) {
+			return false;
+		}
+		if (this.currentBuffer!=null) {
+			this.freeBuffers.add(this.currentBuffer);
+			this.currentBuffer=null;
+		}
+		Buffer nextBuffer;
+		try {
+			nextBuffer=this.filledBuffers.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for content read ahead");
+		}
+		if (nextBuffer==END_OF_STREAM) {
+			this.endOfStream=true;
+			if (this.readException!=null) {
+				throw new IOException("Error reading ahead: "+this.readException.getMessage(), this.readException);
+			}
+			return false;
+		}
+		this.currentBuffer=nextBuffer;
+		this.currentPosition=0;
+		return true;
+	}
+
+	/*
+	* Content of the stream read ahead
+	*
+	*/
+	private static class Buffer {
+		private byte[] content;
+		private int length;
+
+		Buffer(int size) {
+			this.content=new byte[size];
+			this.length=0;
+		}
+	}
+
+	/*
+	* Reads the underlying stream into the free buffers
+	*
+	*/
+	private class Reader implements Runnable {
+
+		@Override
+		public void run() {
+			try {
+				boolean endReached=false;
+				while ((!endReached) && (!closed)) {
+					Buffer buffer=freeBuffers.take();
+					buffer.length=0;
+					while (buffer.length<buffer.content.length) {
+						int bytesRead=in.read(buffer.content, buffer.length, buffer.content.length-buffer.length);
+						if (bytesRead<0) {
+							endReached=true;
+							break;
+						}
+						buffer.length+=bytesRead;
+					}
+					if (buffer.length>0) {
+						filledBuffers.put(buffer);
+					}
+				}
+			} catch (InterruptedException e) {
+				LOG.debug("Reading ahead has been stopped");
+			} catch (IOException e) {
+				if (!closed) {
+					readException=e;
+				}
+			} finally {
+				filledBuffers.offer(END_OF_STREAM);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.util;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.io.Text;
+
+/*
+*
+* Builds the keys of the rows returned by the record readers (e.g. [name.xlsx]Sheet1!A1) directly as UTF-8 bytes into the key. The prefix with the file name and the sheet name is only encoded if the sheet changes, so that no objects are created for a row.
+*
+*/
+public class SpreadSheetRowKeyBuilder {
+	private static final int MAX_DIGITS=20;
+
+	private String fileName;
+	private String sheetName;
+	private byte[] buffer;
+	private int prefixLength;
+
+	public SpreadSheetRowKeyBuilder() {
+		this.buffer=new byte[0];
+		this.prefixLength=0;
+	}
+
+	/*
+	* Sets the key of a row
+	*
+	* @param key key, which is overwritten
+	* @param fileName name of the file
+	* @param sheetName name of the sheet
+	* @param rowNum row number (starting from 1)
+	*
+	*/
+	public void set(Text key, String fileName, String sheetName, long rowNum) {
+		if ((this.fileName==null) || (!this.fileName.equals(fileName)) || (this.sheetName==null) || (!this.sheetName.equals(sheetName))) {
+			this.setPrefix(fileName, sheetName);
+		}
+		int length=this.prefixLength;
+		long remaining=rowNum;
+		if (remaining<0) {
+			this.buffer[length++]='-';
+			remaining=-remaining;
+		}
+		int firstDigit=length;
+		do {
+			this.buffer[length++]=(byte)('0'+(int)(remaining%10));
+			remaining/=10;
+		} while (remaining>0);
+		// digits have been written in reverse order
+		for (int i=firstDigit,j=length-1;i<j;i++,j--) {
+			byte currentByte=this.buffer[i];
+			this.buffer[i]=this.buffer[j];
+			this.buffer[j]=currentByte;
+		}
+		key.set(this.buffer, 0, length);
+	}
+
+	/*
+	* Encodes the prefix of the keys of a sheet
+	*
+	* @param fileName name of the file
+	* @param sheetName name of the sheet
+	*
+	*/
+	private void setPrefix(String fileName, String sheetName) {
+		this.fileName=fileName;
+		this.sheetName=sheetName;
+		byte[] prefix=("["+fileName+"]"+sheetName+"!A").getBytes(StandardCharsets.UTF_8);
+		if (this.buffer.length<prefix.length+SpreadSheetRowKeyBuilder.MAX_DIGITS) {
+			this.buffer=new byte[prefix.length+SpreadSheetRowKeyBuilder.MAX_DIGITS];
+		}
+		System.arraycopy(prefix, 0, this.buffer, 0, prefix.length);
+		this.prefixLength=prefix.length;
+	}
+
+}
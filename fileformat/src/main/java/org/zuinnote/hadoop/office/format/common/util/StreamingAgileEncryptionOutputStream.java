@@ -0,0 +1,800 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.RC2ParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.poifs.crypt.CipherAlgorithm;
+import org.apache.poi.poifs.crypt.CryptoFunctions;
+import org.apache.poi.poifs.crypt.DataSpaceMapUtils;
+import org.apache.poi.poifs.crypt.EncryptionInfo;
+import org.apache.poi.poifs.crypt.EncryptionMode;
+import org.apache.poi.poifs.crypt.HashAlgorithm;
+import org.apache.poi.poifs.crypt.agile.AgileEncryptionHeader;
+import org.apache.poi.poifs.crypt.agile.AgileEncryptor;
+import org.apache.poi.poifs.filesystem.DirectoryEntry;
+import org.apache.poi.poifs.filesystem.DocumentEntry;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.filesystem.Entry;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.LittleEndian;
+import org.apache.poi.util.LittleEndianByteArrayOutputStream;
+import org.apache.poi.util.TempFile;
+
+import com.microsoft.schemas.office.x2006.encryption.EncryptionDocument;
+
+/**
+ * Encrypts a new Excel file (.xlsx) with agile encryption while it is written. The data is encrypted in segments of 4096 bytes as soon as a segment is complete. Only the encrypted data is kept in a temporary file, because the compound file that contains it can only be written once its size is known.
+ * When the stream is closed the compound file is written in one pass: header, allocation tables and directory are derived from the size of the encrypted data, which is then copied directly into the output. The integrity HMAC is calculated while copying, because it covers the size of the data. The EncryptionInfo stream, which contains the HMAC, is placed behind the encrypted data, so that nothing needs to be changed after it has been written.
+ * Compared to the encryption of POI the encrypted data is written and read once instead of being read twice and there is no intermediate file system in memory.
+ *
+ */
+public class StreamingAgileEncryptionOutputStream extends OutputStream {
+	private static final Log LOG = LogFactory.getLog(StreamingAgileEncryptionOutputStream.class.getName());
+	private static final int SEGMENT_SIZE=4096;
+	private static final int BUFFER_SIZE=64*1024;
+	private static final int SECTOR_SIZE=512;
+	private static final int MINI_SECTOR_SIZE=64;
+	private static final int MINI_STREAM_CUTOFF=4096;
+	private static final int DIRECTORY_ENTRY_SIZE=128;
+	private static final int MAX_NAME_LENGTH=31;
+	private static final int ENTRIES_PER_SECTOR=SECTOR_SIZE/4;
+	private static final int HEADER_DIFAT_ENTRIES=109;
+	private static final int DIFAT_ENTRIES_PER_SECTOR=ENTRIES_PER_SECTOR-1; // the last entry points to the next sector
+	private static final long MAX_SECTOR=0xFFFFFFFAL;
+	private static final long MAX_STREAM_SIZE=0xFFFFFFFFL;
+	private static final long SIGNATURE=0xE11AB1A1E011CFD0L;
+	private static final int FREESECT=0xFFFFFFFF;
+	private static final int ENDOFCHAIN=0xFFFFFFFE;
+	private static final int FATSECT=0xFFFFFFFD;
+	private static final int DIFSECT=0xFFFFFFFC;
+	private static final int NOSTREAM=0xFFFFFFFF;
+	private static final byte TYPE_STORAGE=1;
+	private static final byte TYPE_STREAM=2;
+	private static final byte TYPE_ROOT=5;
+	private static final byte COLOR_BLACK=1;
+	private static final String ENTRY_ENCRYPTION_INFO="EncryptionInfo";
+	private static final String ENTRY_ENCRYPTED_PACKAGE="EncryptedPackage";
+	private static final int MAX_ENCRYPTION_INFO_SIZE=64*1024;
+	// block key of the integrity HMAC value (cf. [MS-OFFCRYPTO] 2.3.4.14)
+	private static final byte[] INTEGRITY_VALUE_BLOCK={(byte)0xa0, (byte)0x67, (byte)0x7f, (byte)0x02, (byte)0xb2, (byte)0x2c, (byte)0x84, (byte)0x33};
+
+	private static List<DataSpaceStream> dataSpaceStreams;
+
+	private OutputStream out;
+	private StreamingAgileEncryptor encryptor;
+	private AgileEncryptionHeader header;
+	private byte[] integritySalt;
+	private Cipher cipher;
+	private byte[] segment;
+	private int segmentLength;
+	private int segmentNumber;
+	private long size;
+	private long encryptedSize;
+	private File tempFile;
+	private OutputStream tempOut;
+	private boolean closed;
+
+	/**
+	 * Creates a stream that encrypts the data written into it and writes the encrypted file into the given stream when it is closed
+	 *
+	 * @param out stream to which the encrypted file is written. It is not closed by this stream
+	 * @param info agile encryption (algorithms) to use, e.g. new EncryptionInfo(EncryptionMode.agile, CipherAlgorithm.aes256, HashAlgorithm.sha512, -1, -1, ChainingMode.cbc)
+	 * @param password password of the encrypted file
+	 *
+	 * @throws java.io.IOException in case the temporary file cannot be created
+	 * @throws java.security.GeneralSecurityException in case the encryption is not agile encryption or cannot be initialized
+	 *
+	 */
+	public StreamingAgileEncryptionOutputStream(OutputStream out, EncryptionInfo info, String password) throws IOException, GeneralSecurityException {
+		if (info.getEncryptionMode()!=EncryptionMode.agile) {
+			throw new GeneralSecurityException("Only agile encryption can be written as stream");
+		}
+		this.out=out;
+		this.encryptor=new StreamingAgileEncryptor();
+		this.encryptor.setEncryptionInfo(info);
+		info.setEncryptor(this.encryptor);
+		this.header=(AgileEncryptionHeader)info.getHeader();
+		// the integrity salt is generated here, because it is needed to calculate the HMAC
+		SecureRandom random=new SecureRandom();
+		int blockSize=this.header.getBlockSize();
+		byte[] keySpec=new byte[this.header.getKeySize()/8];
+		byte[] keySalt=new byte[blockSize];
+		byte[] verifier=new byte[blockSize];
+		byte[] verifierSalt=new byte[blockSize];
+		this.integritySalt=new byte[this.header.getHashAlgorithm().hashSize];
+		random.nextBytes(keySpec);
+		random.nextBytes(keySalt);
+		random.nextBytes(verifier);
+		random.nextBytes(verifierSalt);
+		random.nextBytes(this.integritySalt);
+		this.encryptor.confirmPassword(password, keySpec, keySalt, verifier, verifierSalt, this.integritySalt);
+		this.cipher=CryptoFunctions.getCipher(this.encryptor.getSecretKey(), this.header.getCipherAlgorithm(), this.header.getChainingMode(), this.header.getKeySalt(), Cipher.ENCRYPT_MODE, "NoPadding");
+		this.segment=new byte[StreamingAgileEncryptionOutputStream.SEGMENT_SIZE];
+		this.tempFile=TempFile.createTempFile("hadoopoffice-encrypted-package", ".tmp");
+		this.tempFile.deleteOnExit();
+		this.tempOut=new BufferedOutputStream(new FileOutputStream(this.tempFile), StreamingAgileEncryptionOutputStream.BUFFER_SIZE);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		this.write(new byte[]{(byte)b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (this.closed) {
+			throw new IOException("Stream closed");
+		}
+		int pos=off;
+		int remaining=len;
+		while (remaining>0) {
+			int copyLength=Math.min(remaining, this.segment.length-this.segmentLength);
+			System.arraycopy(b, pos, this.segment, this.segmentLength, copyLength);
+			this.segmentLength+=copyLength;
+			pos+=copyLength;
+			remaining-=copyLength;
+			if (this.segmentLength==this.segment.length) {
+				this.encryptSegment();
+			}
+		}
+		this.size+=len;
+	}
+
+	/**
+	 * Encrypts the remaining data and writes the encrypted file
+	 *
+	 * @throws java.io.IOException in case the encrypted file cannot be written
+	 *
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed=true;
+		try {
+			if (this.segmentLength>0) {
+				this.encryptSegment();
+			}
+			this.tempOut.close();
+			this.writeCompoundFile();
+			this.out.flush();
+		} catch (GeneralSecurityException e) {
+			LOG.error(e);
+			throw new IOException("Cannot encrypt file", e);
+		} finally {
+			this.tempOut.close();
+			if (!this.tempFile.delete()) {
+				LOG.warn("Cannot delete temporary file "+this.tempFile.getAbsolutePath());
+			}
+		}
+	}
+
+	/**
+	 * Encrypts the current segment into the temporary file. The last segment is padded to the block size of the cipher
+	 *
+	 * @throws java.io.IOException in case the segment cannot be encrypted or written
+	 *
+	 */
+	private void encryptSegment() throws IOException {
+		int blockSize=this.header.getBlockSize();
+		int paddedLength=StreamingAgileEncryptionOutputStream.getNextBlockSize(this.segmentLength, blockSize);
+		Arrays.fill(this.segment, this.segmentLength, paddedLength, (byte)0);
+		byte[] blockKey=new byte[LittleEndian.INT_SIZE];
+		LittleEndian.putInt(blockKey, 0, this.segmentNumber);
+		byte[] iv=CryptoFunctions.generateIv(this.header.getHashAlgorithm(), this.header.getKeySalt(), blockKey, blockSize);
+		AlgorithmParameterSpec aps;
+		if (this.header.getCipherAlgorithm()==CipherAlgorithm.rc2) {
+			aps=new RC2ParameterSpec(this.encryptor.getSecretKey().getEncoded().length*8, iv);
+		} else {
+			aps=new IvParameterSpec(iv);
+		}
+		int encryptedLength;
+		try {
+			this.cipher.init(Cipher.ENCRYPT_MODE, this.encryptor.getSecretKey(), aps);
+			encryptedLength=this.cipher.doFinal(this.segment, 0, paddedLength, this.segment);
+		} catch (GeneralSecurityException e) {
+			LOG.error(e);
+			throw new IOException("Cannot encrypt segment "+this.segmentNumber, e);
+		}
+		this.tempOut.write(this.segment, 0, encryptedLength);
+		this.encryptedSize+=encryptedLength;
+		this.segmentNumber++;
+		this.segmentLength=0;
+	}
+
+	/**
+	 * Writes the compound file with the encrypted data, the EncryptionInfo and the data spaces
+	 *
+	 * @throws java.io.IOException in case the file cannot be written
+	 * @throws java.security.GeneralSecurityException in case the integrity HMAC cannot be calculated
+	 *
+	 */
+	private void writeCompoundFile() throws IOException, GeneralSecurityException {
+		int blockSize=this.header.getBlockSize();
+		HashAlgorithm hashAlgorithm=this.header.getHashAlgorithm();
+		long packageSize=LittleEndian.LONG_SIZE+this.encryptedSize;
+		if (packageSize>StreamingAgileEncryptionOutputStream.MAX_STREAM_SIZE) {
+			throw new IOException("Encrypted file is too large ("+packageSize+" bytes)");
+		}
+		// the size of the EncryptionInfo does not depend on the value of the HMAC
+		byte[] encryptionInfoPlaceholder=this.encryptor.createEncryptionInfo(new byte[StreamingAgileEncryptionOutputStream.getNextBlockSize(hashAlgorithm.hashSize, blockSize)]);
+		if (encryptionInfoPlaceholder.length>=StreamingAgileEncryptionOutputStream.MINI_STREAM_CUTOFF) {
+			throw new IOException("EncryptionInfo is too large ("+encryptionInfoPlaceholder.length+" bytes)");
+		}
+		CompoundFileEntry root=new CompoundFileEntry("Root Entry", StreamingAgileEncryptionOutputStream.TYPE_ROOT, null, 0);
+		for (DataSpaceStream currentStream: StreamingAgileEncryptionOutputStream.getDataSpaceStreams()) {
+			root.addStream(currentStream.path, currentStream.data);
+		}
+		CompoundFileEntry encryptionInfoEntry=root.addStream(new String[]{StreamingAgileEncryptionOutputStream.ENTRY_ENCRYPTION_INFO}, encryptionInfoPlaceholder);
+		CompoundFileEntry packageEntry;
+		byte[] encryptedHmacValue=null;
+		if (packageSize<StreamingAgileEncryptionOutputStream.MINI_STREAM_CUTOFF) { // small streams need to be stored in the mini stream
+			ByteArrayOutputStream packageData=new ByteArrayOutputStream((int)packageSize);
+			encryptedHmacValue=this.copyPackage(packageData);
+			packageEntry=root.addStream(new String[]{StreamingAgileEncryptionOutputStream.ENTRY_ENCRYPTED_PACKAGE}, packageData.toByteArray());
+		} else {
+			packageEntry=root.addStream(new String[]{StreamingAgileEncryptionOutputStream.ENTRY_ENCRYPTED_PACKAGE}, null);
+			packageEntry.size=packageSize;
+		}
+		// number entries and assign mini sectors
+		List<CompoundFileEntry> entries=new ArrayList<>();
+		root.collect(entries);
+		long miniSectors=0;
+		for (CompoundFileEntry currentEntry: entries) {
+			currentEntry.prepareSiblings();
+			if (currentEntry.isInMiniStream()) {
+				long entryMiniSectors=StreamingAgileEncryptionOutputStream.divideRoundUp(currentEntry.size, StreamingAgileEncryptionOutputStream.MINI_SECTOR_SIZE);
+				currentEntry.startSector=entryMiniSectors>0?(int)miniSectors:StreamingAgileEncryptionOutputStream.ENDOFCHAIN;
+				miniSectors+=entryMiniSectors;
+			}
+		}
+		// layout: FAT, DIFAT, directory, encrypted package, mini FAT, mini stream (contains the EncryptionInfo)
+		long directorySectors=StreamingAgileEncryptionOutputStream.divideRoundUp(entries.size()*(long)StreamingAgileEncryptionOutputStream.DIRECTORY_ENTRY_SIZE, StreamingAgileEncryptionOutputStream.SECTOR_SIZE);
+		long packageSectors=packageEntry.isInMiniStream()?0:StreamingAgileEncryptionOutputStream.divideRoundUp(packageSize, StreamingAgileEncryptionOutputStream.SECTOR_SIZE);
+		long miniFatSectors=StreamingAgileEncryptionOutputStream.divideRoundUp(miniSectors, StreamingAgileEncryptionOutputStream.ENTRIES_PER_SECTOR);
+		long miniStreamSectors=StreamingAgileEncryptionOutputStream.divideRoundUp(miniSectors*StreamingAgileEncryptionOutputStream.MINI_SECTOR_SIZE, StreamingAgileEncryptionOutputStream.SECTOR_SIZE);
+		long otherSectors=directorySectors+packageSectors+miniFatSectors+miniStreamSectors;
+		long fatSectors=0;
+		long difatSectors=0;
+		while (true) { // the allocation tables need to describe their own sectors
+			long neededFatSectors=StreamingAgileEncryptionOutputStream.divideRoundUp(otherSectors+fatSectors+difatSectors, StreamingAgileEncryptionOutputStream.ENTRIES_PER_SECTOR);
+			long neededDifatSectors=neededFatSectors>StreamingAgileEncryptionOutputStream.HEADER_DIFAT_ENTRIES?StreamingAgileEncryptionOutputStream.divideRoundUp(neededFatSectors-StreamingAgileEncryptionOutputStream.HEADER_DIFAT_ENTRIES, StreamingAgileEncryptionOutputStream.DIFAT_ENTRIES_PER_SECTOR):0;
+			if ((neededFatSectors==fatSectors) && (neededDifatSectors==difatSectors)) {
+				break;
+			}
+			fatSectors=neededFatSectors;
+			difatSectors=neededDifatSectors;
+		}
+		SectorLayout layout=new SectorLayout(fatSectors, difatSectors, directorySectors, packageSectors, miniFatSectors, miniStreamSectors);
+		if (layout.totalSectors>StreamingAgileEncryptionOutputStream.MAX_SECTOR) {
+			throw new IOException("Encrypted file is too large ("+layout.totalSectors+" sectors)");
+		}
+		if (!packageEntry.isInMiniStream()) {
+			packageEntry.startSector=(int)layout.packageStart;
+		}
+		root.startSector=miniStreamSectors>0?(int)layout.miniStreamStart:StreamingAgileEncryptionOutputStream.ENDOFCHAIN;
+		root.size=miniSectors*StreamingAgileEncryptionOutputStream.MINI_SECTOR_SIZE;
+		this.writeHeader(layout);
+		this.writeFat(layout);
+		this.writeDifat(layout);
+		this.writeDirectory(entries);
+		if (!packageEntry.isInMiniStream()) {
+			encryptedHmacValue=this.copyPackage(this.out);
+			this.writePadding(packageSize);
+		}
+		encryptionInfoEntry.data=this.encryptor.createEncryptionInfo(encryptedHmacValue);
+		if (encryptionInfoEntry.data.length!=encryptionInfoPlaceholder.length) {
+			throw new IOException("Size of EncryptionInfo has changed after calculating the HMAC");
+		}
+		this.writeMiniStream(entries, miniSectors, miniFatSectors);
+	}
+
+	/**
+	 * Writes the header of the compound file
+	 *
+	 * @param layout position of the parts of the file
+	 *
+	 * @throws java.io.IOException in case the header cannot be written
+	 *
+	 */
+	private void writeHeader(SectorLayout layout) throws IOException {
+		ByteBuffer sector=StreamingAgileEncryptionOutputStream.newSector();
+		sector.putLong(StreamingAgileEncryptionOutputStream.SIGNATURE);
+		sector.position(24); // CLSID is zero
+		sector.putShort((short)0x003E); // minor version
+		sector.putShort((short)0x0003); // major version: 512 byte sectors
+		sector.putShort((short)0xFFFE); // byte order
+		sector.putShort((short)9); // sector shift
+		sector.putShort((short)6); // mini sector shift
+		sector.position(40); // reserved
+		sector.putInt(0); // number of directory sectors (not used in version 3)
+		sector.putInt((int)layout.fatSectors);
+		sector.putInt((int)layout.directoryStart);
+		sector.putInt(0); // transaction signature
+		sector.putInt(StreamingAgileEncryptionOutputStream.MINI_STREAM_CUTOFF);
+		sector.putInt(layout.miniFatSectors>0?(int)layout.miniFatStart:StreamingAgileEncryptionOutputStream.ENDOFCHAIN);
+		sector.putInt((int)layout.miniFatSectors);
+		sector.putInt(layout.difatSectors>0?(int)layout.difatStart:StreamingAgileEncryptionOutputStream.ENDOFCHAIN);
+		sector.putInt((int)layout.difatSectors);
+		for (int i=0;i<StreamingAgileEncryptionOutputStream.HEADER_DIFAT_ENTRIES;i++) {
+			sector.putInt(i<layout.fatSectors?(int)(layout.fatStart+i):StreamingAgileEncryptionOutputStream.FREESECT);
+		}
+		this.out.write(sector.array());
+	}
+
+	/**
+	 * Writes the file allocation table
+	 *
+	 * @param layout position of the parts of the file
+	 *
+	 * @throws java.io.IOException in case the table cannot be written
+	 *
+	 */
+	private void writeFat(SectorLayout layout) throws IOException {
+		ByteBuffer sector=StreamingAgileEncryptionOutputStream.newSector();
+		for (long i=0;i<layout.fatSectors*StreamingAgileEncryptionOutputStream.ENTRIES_PER_SECTOR;i++) {
+			int value;
+			if (i<layout.difatStart) {
+				value=StreamingAgileEncryptionOutputStream.FATSECT;
+			} else if (i<layout.directoryStart) {
+				value=StreamingAgileEncryptionOutputStream.DIFSECT;
+			} else if (i<layout.totalSectors) {
+				value=layout.isEndOfChain(i)?StreamingAgileEncryptionOutputStream.ENDOFCHAIN:(int)(i+1);
+			} else {
+				value=StreamingAgileEncryptionOutputStream.FREESECT;
+			}
+			sector.putInt(value);
+			if (!sector.hasRemaining()) {
+				this.out.write(sector.array());
+				sector.clear();
+			}
+		}
+	}
+
+	/**
+	 * Writes the sectors that contain the positions of the FAT sectors, which do not fit into the header
+	 *
+	 * @param layout position of the parts of the file
+	 *
+	 * @throws java.io.IOException in case the sectors cannot be written
+	 *
+	 */
+	private void writeDifat(SectorLayout layout) throws IOException {
+		long fatSector=StreamingAgileEncryptionOutputStream.HEADER_DIFAT_ENTRIES;
+		for (long i=0;i<layout.difatSectors;i++) {
+			ByteBuffer sector=StreamingAgileEncryptionOutputStream.newSector();
+			for (int j=0;j<StreamingAgileEncryptionOutputStream.DIFAT_ENTRIES_PER_SECTOR;j++) {
+				sector.putInt(fatSector<layout.fatSectors?(int)(layout.fatStart+fatSector):StreamingAgileEncryptionOutputStream.FREESECT);
+				fatSector++;
+			}
+			sector.putInt(i<layout.difatSectors-1?(int)(layout.difatStart+i+1):StreamingAgileEncryptionOutputStream.ENDOFCHAIN);
+			this.out.write(sector.array());
+		}
+	}
+
+	/**
+	 * Writes the directory of the compound file
+	 *
+	 * @param entries entries of the directory in the order of their ids
+	 *
+	 * @throws java.io.IOException in case the directory cannot be written
+	 *
+	 */
+	private void writeDirectory(List<CompoundFileEntry> entries) throws IOException {
+		ByteBuffer sector=StreamingAgileEncryptionOutputStream.newSector();
+		for (CompoundFileEntry currentEntry: entries) {
+			int entryStart=sector.position();
+			String name=currentEntry.name.length()>StreamingAgileEncryptionOutputStream.MAX_NAME_LENGTH?currentEntry.name.substring(0, StreamingAgileEncryptionOutputStream.MAX_NAME_LENGTH):currentEntry.name;
+			sector.put(name.getBytes(StandardCharsets.UTF_16LE));
+			sector.position(entryStart+64);
+			sector.putShort((short)((name.length()+1)*2)); // including the terminating zero
+			sector.put(currentEntry.type);
+			sector.put(StreamingAgileEncryptionOutputStream.COLOR_BLACK);
+			sector.putInt(currentEntry.leftSibling);
+			sector.putInt(currentEntry.rightSibling);
+			sector.putInt(currentEntry.child);
+			sector.position(entryStart+116); // CLSID, state bits and times are zero
+			sector.putInt(currentEntry.type==StreamingAgileEncryptionOutputStream.TYPE_STORAGE?0:currentEntry.startSector);
+			sector.putLong(currentEntry.size);
+			if (!sector.hasRemaining()) {
+				this.out.write(sector.array());
+				sector=StreamingAgileEncryptionOutputStream.newSector();
+			}
+		}
+		if (sector.position()>0) {
+			while (sector.hasRemaining()) { // unused entries
+				int entryStart=sector.position();
+				sector.position(entryStart+68);
+				sector.putInt(StreamingAgileEncryptionOutputStream.NOSTREAM);
+				sector.putInt(StreamingAgileEncryptionOutputStream.NOSTREAM);
+				sector.putInt(StreamingAgileEncryptionOutputStream.NOSTREAM);
+				sector.position(entryStart+StreamingAgileEncryptionOutputStream.DIRECTORY_ENTRY_SIZE);
+			}
+			this.out.write(sector.array());
+		}
+	}
+
+	/**
+	 * Writes the content of the EncryptedPackage stream, i.e. the size of the unencrypted data followed by the encrypted data, and calculates its integrity HMAC
+	 *
+	 * @param packageOut stream to which the content is written
+	 *
+	 * @return encrypted integrity HMAC
+	 *
+	 * @throws java.io.IOException in case the encrypted data cannot be read or written
+	 * @throws java.security.GeneralSecurityException in case the HMAC cannot be calculated
+	 *
+	 */
+	private byte[] copyPackage(OutputStream packageOut) throws IOException, GeneralSecurityException {
+		int blockSize=this.header.getBlockSize();
+		HashAlgorithm hashAlgorithm=this.header.getHashAlgorithm();
+		Mac integrityMac=CryptoFunctions.getMac(hashAlgorithm);
+		byte[] hmacKey=CryptoFunctions.getBlock0(this.integritySalt, StreamingAgileEncryptionOutputStream.getNextBlockSize(this.integritySalt.length, blockSize));
+		integrityMac.init(new SecretKeySpec(hmacKey, hashAlgorithm.jceHmacId));
+		byte[] buffer=new byte[StreamingAgileEncryptionOutputStream.BUFFER_SIZE];
+		LittleEndian.putLong(buffer, 0, this.size);
+		integrityMac.update(buffer, 0, LittleEndian.LONG_SIZE);
+		packageOut.write(buffer, 0, LittleEndian.LONG_SIZE);
+		try (InputStream tempIn=new FileInputStream(this.tempFile)) {
+			int readBytes;
+			while ((readBytes=tempIn.read(buffer))!=-1) {
+				integrityMac.update(buffer, 0, readBytes);
+				packageOut.write(buffer, 0, readBytes);
+			}
+		}
+		byte[] hmacValue=integrityMac.doFinal();
+		byte[] iv=CryptoFunctions.generateIv(hashAlgorithm, this.header.getKeySalt(), StreamingAgileEncryptionOutputStream.INTEGRITY_VALUE_BLOCK, blockSize);
+		Cipher hmacCipher=CryptoFunctions.getCipher(this.encryptor.getSecretKey(), this.header.getCipherAlgorithm(), this.header.getChainingMode(), iv, Cipher.ENCRYPT_MODE);
+		return hmacCipher.doFinal(CryptoFunctions.getBlock0(hmacValue, StreamingAgileEncryptionOutputStream.getNextBlockSize(hmacValue.length, blockSize)));
+	}
+
+	/**
+	 * Writes the mini FAT and the mini stream, which contains the small streams (EncryptionInfo, data spaces and a small encrypted package)
+	 *
+	 * @param entries entries of the directory
+	 * @param miniSectors number of mini sectors
+	 * @param miniFatSectors number of sectors of the mini FAT
+	 *
+	 * @throws java.io.IOException in case the mini stream cannot be written
+	 *
+	 */
+	private void writeMiniStream(List<CompoundFileEntry> entries, long miniSectors, long miniFatSectors) throws IOException {
+		ByteBuffer sector=StreamingAgileEncryptionOutputStream.newSector();
+		long writtenEntries=0;
+		for (CompoundFileEntry currentEntry: entries) {
+			if (!currentEntry.isInMiniStream()) {
+				continue;
+			}
+			long entryMiniSectors=StreamingAgileEncryptionOutputStream.divideRoundUp(currentEntry.size, StreamingAgileEncryptionOutputStream.MINI_SECTOR_SIZE);
+			for (long i=0;i<entryMiniSectors;i++) {
+				sector.putInt(i==entryMiniSectors-1?StreamingAgileEncryptionOutputStream.ENDOFCHAIN:(int)(currentEntry.startSector+i+1));
+				writtenEntries++;
+				if (!sector.hasRemaining()) {
+					this.out.write(sector.array());
+					sector.clear();
+				}
+			}
+		}
+		if (writtenEntries<miniFatSectors*StreamingAgileEncryptionOutputStream.ENTRIES_PER_SECTOR) {
+			while (sector.hasRemaining()) {
+				sector.putInt(StreamingAgileEncryptionOutputStream.FREESECT);
+			}
+			this.out.write(sector.array());
+		}
+		for (CompoundFileEntry currentEntry: entries) {
+			if (!currentEntry.isInMiniStream()) {
+				continue;
+			}
+			this.out.write(currentEntry.data);
+			int lastMiniSectorLength=currentEntry.data.length%StreamingAgileEncryptionOutputStream.MINI_SECTOR_SIZE;
+			if (lastMiniSectorLength>0) {
+				this.out.write(new byte[StreamingAgileEncryptionOutputStream.MINI_SECTOR_SIZE-lastMiniSectorLength]);
+			}
+		}
+		this.writePadding(miniSectors*StreamingAgileEncryptionOutputStream.MINI_SECTOR_SIZE);
+	}
+
+	/**
+	 * Fills the last sector of data with zeros
+	 *
+	 * @param length length of the data
+	 *
+	 * @throws java.io.IOException in case the padding cannot be written
+	 *
+	 */
+	private void writePadding(long length) throws IOException {
+		int lastSectorLength=(int)(length%StreamingAgileEncryptionOutputStream.SECTOR_SIZE);
+		if (lastSectorLength>0) {
+			this.out.write(new byte[StreamingAgileEncryptionOutputStream.SECTOR_SIZE-lastSectorLength]);
+		}
+	}
+
+	private static ByteBuffer newSector() {
+		return ByteBuffer.allocate(StreamingAgileEncryptionOutputStream.SECTOR_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static long divideRoundUp(long value, long divisor) {
+		return (value+divisor-1)/divisor;
+	}
+
+	private static int getNextBlockSize(int length, int blockSize) {
+		return (int)StreamingAgileEncryptionOutputStream.divideRoundUp(length, blockSize)*blockSize;
+	}
+
+	/**
+	 * Returns the streams of the default data spaces of encrypted files as created by POI. They are created once
+	 *
+	 * @return streams with their path and content
+	 *
+	 * @throws java.io.IOException in case the data spaces cannot be created
+	 *
+	 */
+	private static synchronized List<DataSpaceStream> getDataSpaceStreams() throws IOException {
+		if (StreamingAgileEncryptionOutputStream.dataSpaceStreams==null) {
+			POIFSFileSystem dataSpaceFileSystem=new POIFSFileSystem();
+			DataSpaceMapUtils.addDefaultDataSpace(dataSpaceFileSystem.getRoot());
+			ByteArrayOutputStream serializedFileSystem=new ByteArrayOutputStream();
+			dataSpaceFileSystem.writeFilesystem(serializedFileSystem);
+			dataSpaceFileSystem.close();
+			List<DataSpaceStream> result=new ArrayList<>();
+			try (NPOIFSFileSystem readFileSystem=new NPOIFSFileSystem(new BufferedInputStream(new ByteArrayInputStream(serializedFileSystem.toByteArray())))) {
+				StreamingAgileEncryptionOutputStream.collectDataSpaceStreams(readFileSystem.getRoot(), new ArrayList<String>(), result);
+			}
+			StreamingAgileEncryptionOutputStream.dataSpaceStreams=Collections.unmodifiableList(result);
+		}
+		return StreamingAgileEncryptionOutputStream.dataSpaceStreams;
+	}
+
+	private static void collectDataSpaceStreams(DirectoryEntry directory, List<String> path, List<DataSpaceStream> result) throws IOException {
+		for (Entry currentEntry: directory) {
+			List<String> currentPath=new ArrayList<>(path);
+			currentPath.add(currentEntry.getName());
+			if (currentEntry instanceof DirectoryEntry) {
+				StreamingAgileEncryptionOutputStream.collectDataSpaceStreams((DirectoryEntry)currentEntry, currentPath, result);
+			} else {
+				try (DocumentInputStream documentIn=new DocumentInputStream((DocumentEntry)currentEntry)) {
+					result.add(new DataSpaceStream(currentPath.toArray(new String[currentPath.size()]), IOUtils.toByteArray(documentIn)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Agile encryptor that creates the EncryptionInfo with a given integrity HMAC
+	 *
+	 */
+	private static class StreamingAgileEncryptor extends AgileEncryptor {
+
+		/**
+		 * Creates the content of the EncryptionInfo stream
+		 *
+		 * @param encryptedHmacValue encrypted integrity HMAC of the encrypted package
+		 *
+		 * @return content of the stream
+		 *
+		 */
+		byte[] createEncryptionInfo(byte[] encryptedHmacValue) {
+			EncryptionDocument ed=this.createEncryptionDocument();
+			ed.getEncryption().getDataIntegrity().setEncryptedHmacValue(encryptedHmacValue);
+			byte[] buffer=new byte[StreamingAgileEncryptionOutputStream.MAX_ENCRYPTION_INFO_SIZE];
+			LittleEndianByteArrayOutputStream bos=new LittleEndianByteArrayOutputStream(buffer, 0);
+			EncryptionInfo encryptionInfo=this.getEncryptionInfo();
+			bos.writeShort(encryptionInfo.getVersionMajor());
+			bos.writeShort(encryptionInfo.getVersionMinor());
+			bos.writeInt(encryptionInfo.getEncryptionFlags());
+			this.marshallEncryptionDocument(ed, bos);
+			return Arrays.copyOf(buffer, bos.getWriteIndex());
+		}
+	}
+
+	/**
+	 * Stream of the data spaces with its path
+	 *
+	 */
+	private static class DataSpaceStream {
+		private String[] path;
+		private byte[] data;
+
+		DataSpaceStream(String[] path, byte[] data) {
+			this.path=path;
+			this.data=data;
+		}
+	}
+
+	/**
+	 * Entry (storage or stream) of the directory of the compound file
+	 *
+	 */
+	private static class CompoundFileEntry {
+		private String name;
+		private byte type;
+		private byte[] data;
+		private long size;
+		private List<CompoundFileEntry> children;
+		private int id;
+		private int leftSibling;
+		private int rightSibling;
+		private int child;
+		private int startSector;
+
+		CompoundFileEntry(String name, byte type, byte[] data, long size) {
+			this.name=name;
+			this.type=type;
+			this.data=data;
+			this.size=size;
+			this.children=new ArrayList<>();
+			this.leftSibling=StreamingAgileEncryptionOutputStream.NOSTREAM;
+			this.rightSibling=StreamingAgileEncryptionOutputStream.NOSTREAM;
+			this.child=StreamingAgileEncryptionOutputStream.NOSTREAM;
+		}
+
+		/**
+		 * Adds a stream below this storage. Missing storages of the path are created
+		 *
+		 * @param path path of the stream relative to this storage
+		 * @param data content of the stream or null if it is stored in sectors of its own
+		 *
+		 * @return entry of the stream
+		 *
+		 */
+		CompoundFileEntry addStream(String[] path, byte[] data) {
+			CompoundFileEntry parent=this;
+			for (int i=0;i<path.length-1;i++) {
+				CompoundFileEntry storage=null;
+				for (CompoundFileEntry currentChild: parent.children) {
+					if (currentChild.name.equals(path[i])) {
+						storage=currentChild;
+					}
+				}
+				if (storage==null) {
+					storage=new CompoundFileEntry(path[i], StreamingAgileEncryptionOutputStream.TYPE_STORAGE, null, 0);
+					parent.children.add(storage);
+				}
+				parent=storage;
+			}
+			CompoundFileEntry stream=new CompoundFileEntry(path[path.length-1], StreamingAgileEncryptionOutputStream.TYPE_STREAM, data, data==null?0:data.length);
+			parent.children.add(stream);
+			return stream;
+		}
+
+		/**
+		 * Checks if the entry is a stream that is stored in the mini stream
+		 *
+		 * @return true if its content is part of the mini stream
+		 *
+		 */
+		boolean isInMiniStream() {
+			return (this.type==StreamingAgileEncryptionOutputStream.TYPE_STREAM) && (this.data!=null);
+		}
+
+		/**
+		 * Assigns the ids of this entry and all entries below it
+		 *
+		 * @param entries entries in the order of their ids
+		 *
+		 */
+		void collect(List<CompoundFileEntry> entries) {
+			this.id=entries.size();
+			entries.add(this);
+			for (CompoundFileEntry currentChild: this.children) {
+				currentChild.collect(entries);
+			}
+		}
+
+		/**
+		 * Links the children of this storage as a tree. The child in the middle is the root of the tree, the smaller children are linked as left siblings and the larger ones as right siblings (as it is done by POI)
+		 *
+		 */
+		void prepareSiblings() {
+			if (this.children.isEmpty()) {
+				return;
+			}
+			List<CompoundFileEntry> sortedChildren=new ArrayList<>(this.children);
+			Collections.sort(sortedChildren, new Comparator<CompoundFileEntry>() {
+				@Override
+				public int compare(CompoundFileEntry o1, CompoundFileEntry o2) {
+					if (o1.name.length()!=o2.name.length()) {
+						return o1.name.length()-o2.name.length();
+					}
+					return o1.name.toUpperCase().compareTo(o2.name.toUpperCase());
+				}
+			});
+			int midpoint=sortedChildren.size()/2;
+			this.child=sortedChildren.get(midpoint).id;
+			for (int i=midpoint;i>0;i--) {
+				sortedChildren.get(i).leftSibling=sortedChildren.get(i-1).id;
+			}
+			for (int i=midpoint;i<sortedChildren.size()-1;i++) {
+				sortedChildren.get(i).rightSibling=sortedChildren.get(i+1).id;
+			}
+		}
+	}
+
+	/**
+	 * Position of the parts of the compound file in sectors
+	 *
+	 */
+	private static class SectorLayout {
+		private long fatSectors;
+		private long difatSectors;
+		private long miniFatSectors;
+		private long fatStart;
+		private long difatStart;
+		private long directoryStart;
+		private long packageStart;
+		private long miniFatStart;
+		private long miniStreamStart;
+		private long totalSectors;
+
+		SectorLayout(long fatSectors, long difatSectors, long directorySectors, long packageSectors, long miniFatSectors, long miniStreamSectors) {
+			this.fatSectors=fatSectors;
+			this.difatSectors=difatSectors;
+			this.miniFatSectors=miniFatSectors;
+			this.fatStart=0;
+			this.difatStart=this.fatStart+fatSectors;
+			this.directoryStart=this.difatStart+difatSectors;
+			this.packageStart=this.directoryStart+directorySectors;
+			this.miniFatStart=this.packageStart+packageSectors;
+			this.miniStreamStart=this.miniFatStart+miniFatSectors;
+			this.totalSectors=this.miniStreamStart+miniStreamSectors;
+		}
+
+		/**
+		 * Checks if a sector is the last sector of the chain of the directory, the package, the mini FAT or the mini stream
+		 *
+		 * @param sector sector (after the FAT and DIFAT sectors)
+		 *
+		 * @return true if it is the last sector of its chain
+		 *
+		 */
+		boolean isEndOfChain(long sector) {
+			return (sector==this.packageStart-1) || (sector==this.miniFatStart-1) || (sector==this.miniStreamStart-1) || (sector==this.totalSectors-1);
+		}
+	}
+
+}
@@ -0,0 +1,228 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.writer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeWriteConfiguration;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+
+/**
+ * Lets several threads write cells at the same time (cf. hadoopoffice.write.concurrent). Each thread collects copies of its cells in its own batch without any locking. Full batches are handed over to a single owner thread, which writes them into the underlying writer. Thus, only one hand-over per hadoopoffice.write.concurrent.batchcells cells is shared between threads.
+ * Cells of different threads are written in no particular order. Errors of single cells (e.g. an invalid address) are logged by the owner thread as it is done by the record writers. All threads need to have finished writing before the document is closed.
+ *
+ */
+public class MSExcelConcurrentWriter implements OfficeSpreadSheetWriterInterface {
+	private static final Log LOG = LogFactory.getLog(MSExcelConcurrentWriter.class.getName());
+	private static final int MAX_PENDING_BATCHES=16; // threads wait if the owner thread is behind
+	private static final List<SpreadSheetCellDAO> END_OF_CELLS=new ArrayList<>();
+
+	private OfficeSpreadSheetWriterInterface writer;
+	private int batchCells;
+	private BlockingQueue<List<SpreadSheetCellDAO>> pendingBatches;
+	private Queue<CellBatch> threadBatches;
+	private ThreadLocal<CellBatch> currentThreadBatch;
+	private Thread ownerThread;
+	private volatile RuntimeException ownerError;
+	private volatile boolean closed;
+
+	/**
+	 * Creates a writer that can be used by several threads at the same time
+	 *
+	 * @param writer writer into which the cells are written by a single thread
+	 * @param howc configuration (e.g. number of cells per batch)
+	 *
+	 */
+	public MSExcelConcurrentWriter(OfficeSpreadSheetWriterInterface writer, HadoopOfficeWriteConfiguration howc) {
+		this.writer=writer;
+		this.batchCells=Math.max(1, howc.getConcurrentBatchCells());
+	}
+
+	@Override
+	public void create(OutputStream osStream, Map<String, InputStream> linkedWorkbooks,
+			Map<String, String> linkedWorkbooksPasswords, InputStream template) throws OfficeWriterException {
+		this.writer.create(osStream, linkedWorkbooks, linkedWorkbooksPasswords, template);
+		this.pendingBatches=new ArrayBlockingQueue<>(MSExcelConcurrentWriter.MAX_PENDING_BATCHES);
+		this.threadBatches=new ConcurrentLinkedQueue<>();
+		this.currentThreadBatch=new ThreadLocal<CellBatch>() {
+			@Override
+			protected CellBatch initialValue() {
+				CellBatch newBatch=new CellBatch(MSExcelConcurrentWriter.this.batchCells);
+				MSExcelConcurrentWriter.this.threadBatches.add(newBatch);
+				return newBatch;
+			}
+		};
+		this.ownerError=null;
+		this.closed=false;
+		this.ownerThread=new Thread(new Runnable() {
+			@Override
+			public void run() {
+				MSExcelConcurrentWriter.this.drain();
+			}
+		}, "hadoopoffice-writer");
+		this.ownerThread.setDaemon(true);
+		this.ownerThread.start();
+	}
+
+	/**
+	 * Adds a cell to the batch of the current thread. It is copied, so that the caller can reuse it
+	 *
+	 * @param newDAO cell to add. The Cell address needs to be in A1 format. Either formula or formattedValue must be not null.
+	 *
+	 * @throws org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException in case the cell is not valid, the document is already closed or the owner thread has failed
+	 *
+	 */
+	@Override
+	public void write(Object newDAO) throws OfficeWriterException {
+		SpreadSheetCellDAO sscd = MSExcelWriter.checkSpreadSheetCellDAO(newDAO);
+		if (this.closed) {
+			throw new OfficeWriterException("Cannot write cell "+sscd.getAddress()+": document is already closed");
+		}
+		SpreadSheetCellDAO copyDAO=new SpreadSheetCellDAO();
+		copyDAO.set(sscd);
+		CellBatch batch=this.currentThreadBatch.get();
+		batch.cells.add(copyDAO);
+		if (batch.cells.size()>=this.batchCells) {
+			this.handOver(batch.cells);
+			batch.cells=new ArrayList<>(this.batchCells);
+		}
+	}
+
+	/**
+	 * Hands over the remaining batches of all threads, waits until the owner thread has written them and closes the underlying writer
+	 *
+	 * @throws java.io.IOException in case the owner thread has failed or the document cannot be written
+	 *
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		this.closed=true;
+		try {
+			for (CellBatch batch: this.threadBatches) {
+				if ((!batch.cells.isEmpty()) && (this.ownerError==null)) {
+					this.pendingBatches.put(batch.cells);
+				}
+				batch.cells=new ArrayList<>(0);
+			}
+			this.pendingBatches.put(MSExcelConcurrentWriter.END_OF_CELLS);
+			this.ownerThread.join();
+		} catch (InterruptedException e) {
+			LOG.error(e);
+			Thread.currentThread().interrupt();
+			this.ownerThread.interrupt();
+			throw new IOException("Interrupted while writing the document");
+		} finally {
+			this.threadBatches.clear();
+		}
+		try {
+			if (this.ownerError!=null) {
+				throw new IOException("Cannot write cells into the document: "+this.ownerError.toString(), this.ownerError);
+			}
+		} finally {
+			this.writer.close();
+		}
+	}
+
+	/**
+	 * Hands over a batch of cells to the owner thread. Waits if too many batches are not yet written
+	 *
+	 * @param cells cells to write
+	 *
+	 * @throws org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException in case the owner thread has failed or the current thread is interrupted
+	 *
+	 */
+	private void handOver(List<SpreadSheetCellDAO> cells) throws OfficeWriterException {
+		if (this.ownerError!=null) {
+			throw new OfficeWriterException("Cannot write cells into the document: "+this.ownerError.toString());
+		}
+		try {
+			this.pendingBatches.put(cells);
+		} catch (InterruptedException e) {
+			LOG.error(e);
+			Thread.currentThread().interrupt();
+			throw new OfficeWriterException("Interrupted while handing over cells");
+		}
+	}
+
+	/**
+	 * Writes the batches into the underlying writer until the document is closed. Runs in the owner thread
+	 *
+	 */
+	private void drain() {
+		try {
+			List<SpreadSheetCellDAO> cells=this.pendingBatches.take();
+			while (cells!=MSExcelConcurrentWriter.END_OF_CELLS) {
+				for (SpreadSheetCellDAO currentCell: cells) {
+					try {
+						this.writer.write(currentCell);
+					} catch (OfficeWriterException e) {
+						LOG.error(e);
+					}
+				}
+				cells=this.pendingBatches.take();
+			}
+		} catch (InterruptedException e) {
+			LOG.error(e);
+			this.ownerError=new IllegalStateException("Owner thread has been interrupted");
+		} catch (RuntimeException e) {
+			LOG.error(e);
+			this.ownerError=e;
+			this.drainAfterError();
+		}
+	}
+
+	/**
+	 * Takes the remaining batches after the owner thread has failed, so that no thread waits forever
+	 *
+	 */
+	private void drainAfterError() {
+		try {
+			List<SpreadSheetCellDAO> cells=this.pendingBatches.take();
+			while (cells!=MSExcelConcurrentWriter.END_OF_CELLS) {
+				cells=this.pendingBatches.take();
+			}
+		} catch (InterruptedException e) {
+			LOG.error(e);
+		}
+	}
+
+	/**
+	 * Batch of cells of one thread. Only the thread itself accesses it until the document is closed
+	 *
+	 */
+	private static class CellBatch {
+		private List<SpreadSheetCellDAO> cells;
+
+		CellBatch(int batchCells) {
+			this.cells=new ArrayList<>(batchCells);
+		}
+	}
+
+}
@@ -69,6 +69,8 @@ import org.apache.poi.xssf.streaming.SXSSFSheet;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.zuinnote.hadoop.office.format.common.HadoopOfficeWriteConfiguration;
 import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+import org.zuinnote.hadoop.office.format.common.util.MSExcelUtil;
+import org.zuinnote.hadoop.office.format.common.util.StreamingAgileEncryptionOutputStream;
 
 /**
  * @author Jörn Franke (zuinnote@gmail.com)
@@ -132,17 +134,23 @@ public MSExcelLowFootprintWriter(String excelFormat, HadoopOfficeWriteConfigurat
 			this.mappedDrawings.put(safeSheetName,currentSheet.createDrawingPatriarch());
 		}
 		// check if cell exist
-		CellAddress currentCA = new CellAddress(sscd.getAddress());
-		SXSSFRow currentRow = currentSheet.getRow(currentCA.getRow());
+		int currentRowNum=MSExcelUtil.getRowIndex(sscd.getAddress());
+		int currentColumnNum=MSExcelUtil.getColumnIndex(sscd.getAddress());
+		if (currentRowNum<0) { // not in the usual A1 format (e.g. lower case letters)
+			CellAddress currentCA = new CellAddress(sscd.getAddress());
+			currentRowNum=currentCA.getRow();
+			currentColumnNum=currentCA.getColumn();
+		}
+		SXSSFRow currentRow = currentSheet.getRow(currentRowNum);
 		if (currentRow==null) { // row does not exist? => create it
-			currentRow=currentSheet.createRow(currentCA.getRow());
+			currentRow=currentSheet.createRow(currentRowNum);
 		}
-		SXSSFCell currentCell = currentRow.getCell(currentCA.getColumn());
+		SXSSFCell currentCell = currentRow.getCell(currentColumnNum);
 		if ((currentCell!=null)) { // cell already exists and no template loaded ? => throw exception
-			throw new OfficeWriterException("Invalid cell specification: cell already exists at "+currentCA);
+			throw new OfficeWriterException("Invalid cell specification: cell already exists at "+sscd.getAddress());
 		}
 		// create cell if no template is loaded or cell not available in template
-			currentCell=currentRow.createCell(currentCA.getColumn());		
+			currentCell=currentRow.createCell(currentColumnNum);		
 		// set the values accordingly
 		if (!("".equals(sscd.getFormula()))) { // if formula exists then use formula
 			currentCell.setCellFormula(sscd.getFormula());
@@ -176,7 +184,23 @@ public MSExcelLowFootprintWriter(String excelFormat, HadoopOfficeWriteConfigurat
 			this.currentWorkbook.write(this.osStream);
 		} else {
 			// encrypt if needed
-	
+			if ((this.howc.getStreamingEncryption()) && (this.encryptionModeCipher==EncryptionMode.agile)) { // encrypt while the workbook is written
+				EncryptionInfo info = new EncryptionInfo(this.encryptionModeCipher, this.encryptAlgorithmCipher, this.hashAlgorithmCipher, -1, -1, this.chainModeCipher);
+				try {
+					OutputStream os = new StreamingAgileEncryptionOutputStream(this.osStream, info, this.howc.getPassword());
+					this.currentWorkbook.write(os);
+					os.close();
+				} catch (GeneralSecurityException e) {
+					LOG.error(e);
+					throw new IOException(e);
+				} finally {
+					if (this.osStream!=null) {
+						this.osStream.close();
+					}
+					this.currentWorkbook.dispose(); // this is needed to remove tempfiles
+				}
+				return;
+			}
 			POIFSFileSystem fs = new POIFSFileSystem();
 			EncryptionInfo info = new EncryptionInfo(this.encryptionModeCipher, this.encryptAlgorithmCipher, this.hashAlgorithmCipher, -1, -1, this.chainModeCipher);
 			Encryptor enc = info.getEncryptor();
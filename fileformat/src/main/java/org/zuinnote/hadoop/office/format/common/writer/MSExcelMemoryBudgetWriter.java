@@ -0,0 +1,183 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.writer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Comment;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeWriteConfiguration;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+import org.zuinnote.hadoop.office.format.common.util.MSExcelUtil;
+
+/**
+ * Limits the memory of the standard writer (cf. hadoopoffice.write.memory.budget). The writer estimates the memory of the cells, rows, sheets and comments it keeps in its workbook. If the estimate exceeds the budget then the cells written so far are moved into the SXSSF based low footprint writer (MSExcelLowFootprintWriter) behind a writer that sorts the cells (cf. hadoopoffice.write.lowFootprint.sort) and all further cells are written into it. The streaming writer (cf. hadoopoffice.write.lowFootprint.streaming) is not used for this. If this is not possible (or not wanted, cf. hadoopoffice.write.memory.budget.fallback) then writing fails immediately with a MemoryBudgetExceededException instead of running out of memory later.
+ *
+ */
+public class MSExcelMemoryBudgetWriter implements OfficeSpreadSheetWriterInterface {
+	private static final Log LOG = LogFactory.getLog(MSExcelMemoryBudgetWriter.class.getName());
+
+	private MSExcelWriter standardWriter;
+	private OfficeSpreadSheetWriterInterface lowFootprintWriter;
+	private String format;
+	private HadoopOfficeWriteConfiguration howc;
+	private long memoryBudget;
+	private boolean fallbackSupported;
+	private OutputStream osStream;
+	private String exceededMessage;
+
+	/**
+	 * Creates a writer that limits the memory of the standard writer
+	 *
+	 * @param standardWriter standard writer, which keeps the workbook in memory
+	 * @param excelFormat format of the Excel: ooxmlexcel: Excel 2007-2013 (.xlsx), oldexcel: Excel 2003 (.xls)
+	 * @param howc configuration (e.g. memory budget)
+	 *
+	 */
+	public MSExcelMemoryBudgetWriter(MSExcelWriter standardWriter, String excelFormat, HadoopOfficeWriteConfiguration howc) {
+		this.standardWriter=standardWriter;
+		this.format=excelFormat;
+		this.howc=howc;
+		this.memoryBudget=howc.getMemoryBudget();
+	}
+
+	@Override
+	public void create(OutputStream osStream, Map<String, InputStream> linkedWorkbooks,
+			Map<String, String> linkedWorkbooksPasswords, InputStream template) throws OfficeWriterException {
+		this.osStream=osStream;
+		// the low footprint writer supports neither templates nor linked workbooks
+		this.fallbackSupported=(this.howc.getMemoryBudgetFallback()) && (MSExcelWriter.FORMAT_OOXML.equals(this.format)) && (template==null) && ((linkedWorkbooks==null) || (linkedWorkbooks.isEmpty()));
+		this.standardWriter.create(osStream, linkedWorkbooks, linkedWorkbooksPasswords, template);
+	}
+
+	/**
+	 * Writes a cell into the standard writer or, after the memory budget has been exceeded, into the low footprint writer
+	 *
+	 * @param newDAO cell to add. The Cell address needs to be in A1 format. Either formula or formattedValue must be not null.
+	 *
+	 * @throws org.zuinnote.hadoop.office.format.common.writer.MemoryBudgetExceededException in case the budget has been exceeded and the document cannot continue in low footprint mode
+	 * @throws org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException in case the cell is not valid
+	 *
+	 */
+	@Override
+	public void write(Object newDAO) throws OfficeWriterException {
+		if (this.lowFootprintWriter!=null) {
+			this.lowFootprintWriter.write(newDAO);
+			return;
+		}
+		if (this.exceededMessage!=null) {
+			throw new MemoryBudgetExceededException(this.exceededMessage);
+		}
+		this.standardWriter.write(newDAO);
+		long estimatedMemory=this.standardWriter.getEstimatedMemory();
+		if (estimatedMemory>this.memoryBudget) {
+			String message="Estimated memory of the workbook ("+estimatedMemory+" bytes) exceeds the budget of "+this.memoryBudget+" bytes (hadoopoffice.write.memory.budget)";
+			if (this.fallbackSupported) {
+				LOG.warn(message+". Continuing in low footprint mode");
+				this.switchToLowFootprint();
+			} else {
+				LOG.error(message);
+				this.exceededMessage=message;
+				throw new MemoryBudgetExceededException(message);
+			}
+		}
+	}
+
+	/**
+	 * Writes the document. Fails if the memory budget has been exceeded and the document could not continue in low footprint mode
+	 *
+	 * @throws java.io.IOException in case the budget has been exceeded or the document cannot be written
+	 *
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.lowFootprintWriter!=null) {
+			this.lowFootprintWriter.close();
+		} else if (this.exceededMessage!=null) { // an incomplete document is not written
+			try {
+				this.standardWriter.discard();
+			} finally {
+				if (this.osStream!=null) {
+					this.osStream.close();
+				}
+			}
+			throw new IOException(this.exceededMessage);
+		} else {
+			this.standardWriter.close();
+		}
+	}
+
+	/**
+	 * Moves the cells of the standard writer into the SXSSF based low footprint writer, behind a writer that sorts them, and releases the workbook of the standard writer
+	 *
+	 * @throws org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException in case the low footprint writer cannot be created or a cell cannot be moved
+	 *
+	 */
+	private void switchToLowFootprint() throws OfficeWriterException {
+		OfficeSpreadSheetWriterInterface newWriter;
+		try {
+			newWriter=new MSExcelSortingWriter(new MSExcelLowFootprintWriter(this.format, this.howc), this.howc);
+		} catch (InvalidWriterConfigurationException e) {
+			LOG.error(e);
+			throw new OfficeWriterException(e.toString());
+		}
+		newWriter.create(this.osStream, new HashMap<String,InputStream>(), new HashMap<String,String>(), null);
+		Workbook currentWorkbook=this.standardWriter.getCurrentWorkbook();
+		DataFormatter dataFormatter=this.howc.getLocale()==null?new DataFormatter():new DataFormatter(this.howc.getLocale()); // cells have string values unless a template is used
+		SpreadSheetCellDAO movedCell=new SpreadSheetCellDAO();
+		char[] addressBuffer=new char[MSExcelUtil.MAX_ADDRESS_LENGTH];
+		for (int i=0;i<currentWorkbook.getNumberOfSheets();i++) {
+			Sheet currentSheet=currentWorkbook.getSheetAt(i);
+			for (Row currentRow: currentSheet) {
+				for (Cell currentCell: currentRow) {
+					String formattedValue="";
+					String formula="";
+					if (currentCell.getCellTypeEnum()==CellType.FORMULA) {
+						formula=currentCell.getCellFormula();
+					} else {
+						formattedValue=dataFormatter.formatCellValue(currentCell);
+					}
+					String comment="";
+					Comment currentComment=currentCell.getCellComment();
+					if ((currentComment!=null) && (currentComment.getString()!=null)) {
+						comment=currentComment.getString().getString();
+					}
+					movedCell.set(formattedValue, comment, formula, MSExcelUtil.getCellAddressA1Format(currentRow.getRowNum(), currentCell.getColumnIndex(), addressBuffer), currentSheet.getSheetName());
+					newWriter.write(movedCell);
+				}
+			}
+		}
+		try {
+			this.standardWriter.discard();
+		} catch (IOException e) {
+			LOG.error(e);
+		}
+		this.standardWriter=null;
+		this.lowFootprintWriter=newWriter;
+	}
+
+}
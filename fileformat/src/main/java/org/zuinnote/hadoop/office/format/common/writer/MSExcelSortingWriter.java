@@ -0,0 +1,415 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.writer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.poifs.crypt.ChainingMode;
+import org.apache.poi.poifs.crypt.CipherAlgorithm;
+import org.apache.poi.poifs.crypt.CryptoFunctions;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.util.TempFile;
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeWriteConfiguration;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+import org.zuinnote.hadoop.office.format.common.util.MSExcelUtil;
+
+/**
+ * Accepts cells in any order for a low footprint writer, which needs them in the order of the file (cf. hadoopoffice.write.lowFootprint.sort). Cells are buffered and sorted by sheet (in the order of their first cell), row and column. If more cells than hadoopoffice.write.lowFootprint.sort.cachecells are buffered then they are written as sorted run to a temporary file. When the document is closed the runs are merged and the cells are handed over to the underlying writer in the order of the file.
+ * Temporary files are encrypted with a random key if the document is encrypted.
+ *
+ */
+public class MSExcelSortingWriter implements OfficeSpreadSheetWriterInterface {
+	private static final Log LOG = LogFactory.getLog(MSExcelSortingWriter.class.getName());
+	private static final int MAX_MERGE_RUNS=64; // maximum number of temporary files read at the same time
+	private static final int BUFFER_SIZE=64*1024;
+	private static final int ROW_BITS=20; // rows of Excel 2007 and later
+	private static final int COLUMN_BITS=14; // columns of Excel 2007 and later
+
+	private OfficeSpreadSheetWriterInterface writer;
+	private int cacheCells;
+	private CipherAlgorithm encryptAlgorithmCipher;
+	private ChainingMode chainModeCipher;
+	private Map<String,Integer> sheetIndexMap;
+	private SortedCell[] buffer;
+	private int bufferedCells;
+	private List<SortedRun> runs;
+
+	/**
+	 * Creates a writer that sorts the cells for another writer
+	 *
+	 * @param writer writer that needs the cells in the order of the file
+	 * @param howc configuration (e.g. number of cells buffered in memory)
+	 *
+	 */
+	public MSExcelSortingWriter(OfficeSpreadSheetWriterInterface writer, HadoopOfficeWriteConfiguration howc) {
+		this.writer=writer;
+		this.cacheCells=Math.max(1, howc.getLowFootprintSortCacheCells());
+		if (howc.getPassword()!=null) {
+			this.encryptAlgorithmCipher=MSExcelWriter.getAlgorithmCipher(howc.getEncryptAlgorithm());
+			this.chainModeCipher=MSExcelWriter.getChainMode(howc.getChainMode());
+		}
+	}
+
+	@Override
+	public void create(OutputStream osStream, Map<String, InputStream> linkedWorkbooks,
+			Map<String, String> linkedWorkbooksPasswords, InputStream template) throws OfficeWriterException {
+		this.writer.create(osStream, linkedWorkbooks, linkedWorkbooksPasswords, template);
+		this.sheetIndexMap=new HashMap<>();
+		this.buffer=new SortedCell[Math.min(this.cacheCells, 1024)];
+		this.bufferedCells=0;
+		this.runs=new ArrayList<>();
+	}
+
+	/**
+	 * Buffers a cell. It is copied, so that the caller can reuse it
+	 *
+	 * @param newDAO cell to add. The Cell address needs to be in A1 format. Either formula or formattedValue must be not null.
+	 *
+	 * @throws org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException in case the cell is not valid or it cannot be written to a temporary file
+	 *
+	 */
+	@Override
+	public void write(Object newDAO) throws OfficeWriterException {
+		SpreadSheetCellDAO sscd = MSExcelWriter.checkSpreadSheetCellDAO(newDAO);
+		int rowNum=MSExcelUtil.getRowIndex(sscd.getAddress());
+		int columnNum=MSExcelUtil.getColumnIndex(sscd.getAddress());
+		if (rowNum<0) { // not in the usual A1 format (e.g. lower case letters)
+			CellAddress currentCA = new CellAddress(sscd.getAddress());
+			rowNum=currentCA.getRow();
+			columnNum=currentCA.getColumn();
+		}
+		if ((rowNum<0) || (rowNum>=SpreadsheetVersion.EXCEL2007.getMaxRows()) || (columnNum<0) || (columnNum>=SpreadsheetVersion.EXCEL2007.getMaxColumns())) {
+			throw new OfficeWriterException("Invalid cell specification: invalid cell address "+sscd.getAddress());
+		}
+		Integer sheetIndex=this.sheetIndexMap.get(sscd.getSheetName());
+		if (sheetIndex==null) { // sheets are written in the order of their first cell
+			sheetIndex=this.sheetIndexMap.size();
+			this.sheetIndexMap.put(sscd.getSheetName(), sheetIndex);
+		}
+		SpreadSheetCellDAO copyDAO=new SpreadSheetCellDAO();
+		copyDAO.set(sscd);
+		if (this.bufferedCells==this.buffer.length) {
+			if (this.bufferedCells>=this.cacheCells) {
+				try {
+					this.spill();
+				} catch (IOException e) {
+					LOG.error(e);
+					throw new OfficeWriterException(e.toString());
+				}
+			} else {
+				this.buffer=Arrays.copyOf(this.buffer, Math.min(this.cacheCells, this.buffer.length*2));
+			}
+		}
+		this.buffer[this.bufferedCells++]=new SortedCell(MSExcelSortingWriter.getKey(sheetIndex, rowNum, columnNum), copyDAO);
+	}
+
+	/**
+	 * Hands over all cells in the order of the file to the underlying writer and closes it
+	 *
+	 * @throws java.io.IOException in case of errors reading the temporary files or writing the document
+	 *
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			Arrays.sort(this.buffer, 0, this.bufferedCells);
+			if (this.runs.isEmpty()) { // all cells fit in memory
+				for (int i=0;i<this.bufferedCells;i++) {
+					this.writer.write(this.buffer[i].cell);
+					this.buffer[i]=null;
+				}
+			} else {
+				this.spill();
+				while (this.runs.size()>MSExcelSortingWriter.MAX_MERGE_RUNS) { // merge the first runs into a new one
+					List<SortedRun> mergedRuns=new ArrayList<>(this.runs.subList(0, MSExcelSortingWriter.MAX_MERGE_RUNS));
+					this.runs.subList(0, MSExcelSortingWriter.MAX_MERGE_RUNS).clear();
+					SortedRun newRun=this.createRun();
+					this.runs.add(newRun);
+					try (RunMerger merger=new RunMerger(mergedRuns); DataOutputStream runOutput=newRun.getOutputStream()) {
+						while (merger.next()) {
+							runOutput.writeLong(merger.getKey());
+							merger.getCell().write(runOutput);
+						}
+					} finally {
+						for (SortedRun currentRun: mergedRuns) {
+							currentRun.dispose();
+						}
+					}
+				}
+				try (RunMerger merger=new RunMerger(this.runs)) {
+					while (merger.next()) {
+						this.writer.write(merger.getCell());
+					}
+				}
+			}
+		} catch (OfficeWriterException e) {
+			LOG.error(e);
+			throw new IOException(e);
+		} finally {
+			this.buffer=null;
+			for (SortedRun currentRun: this.runs) {
+				currentRun.dispose();
+			}
+			this.runs.clear();
+		}
+		this.writer.close();
+	}
+
+	/**
+	 * Sorts the buffered cells and writes them as new run to a temporary file
+	 *
+	 * @throws java.io.IOException in case of errors writing the temporary file
+	 *
+	 */
+	private void spill() throws IOException {
+		if (this.bufferedCells==0) {
+			return;
+		}
+		Arrays.sort(this.buffer, 0, this.bufferedCells);
+		SortedRun newRun=this.createRun();
+		this.runs.add(newRun);
+		try (DataOutputStream runOutput=newRun.getOutputStream()) {
+			for (int i=0;i<this.bufferedCells;i++) {
+				runOutput.writeLong(this.buffer[i].key);
+				this.buffer[i].cell.write(runOutput);
+				this.buffer[i]=null;
+			}
+		}
+		LOG.debug("Cells written to temporary file: "+this.bufferedCells);
+		this.bufferedCells=0;
+	}
+
+	/**
+	 * Creates a new temporary file for a run
+	 *
+	 * @return run
+	 *
+	 * @throws java.io.IOException in case the temporary file cannot be created
+	 *
+	 */
+	private SortedRun createRun() throws IOException {
+		return new SortedRun(this.encryptAlgorithmCipher, this.chainModeCipher);
+	}
+
+	/**
+	 * Combines sheet, row and column into one number, which has the order of the file
+	 *
+	 * @param sheetIndex index of the sheet
+	 * @param rowNum row (starting from 0)
+	 * @param columnNum column (starting from 0)
+	 *
+	 * @return key
+	 *
+	 */
+	private static long getKey(int sheetIndex, int rowNum, int columnNum) {
+		return (((long)sheetIndex)<<(MSExcelSortingWriter.ROW_BITS+MSExcelSortingWriter.COLUMN_BITS)) | (((long)rowNum)<<MSExcelSortingWriter.COLUMN_BITS) | columnNum;
+	}
+
+	/*
+	* A buffered cell
+	*
+	*/
+	private static class SortedCell implements Comparable<SortedCell> {
+		private long key;
+		private SpreadSheetCellDAO cell;
+
+		SortedCell(long key, SpreadSheetCellDAO cell) {
+			this.key=key;
+			this.cell=cell;
+		}
+
+		@Override
+		public int compareTo(SortedCell o) {
+			return Long.compare(this.key, o.key);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return (o instanceof SortedCell) && (this.key==((SortedCell)o).key);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int)(this.key^(this.key>>>32));
+		}
+	}
+
+	/*
+	* Temporary file with sorted cells. Each cell is stored as key followed by the cell in its Writable format
+	*
+	*/
+	private static class SortedRun {
+		private File tempFile;
+		private CipherAlgorithm ca;
+		private ChainingMode cm;
+		private SecretKeySpec skeySpec;
+		private byte[] iv;
+
+		SortedRun(CipherAlgorithm ca, ChainingMode cm) throws IOException {
+			if (ca!=null) { // generate random key for temporary files
+				SecureRandom sr = new SecureRandom();
+				this.iv = new byte[ca.blockSize];
+				byte[] key = new byte[ca.defaultKeySize/8];
+				sr.nextBytes(this.iv);
+				sr.nextBytes(key);
+				this.skeySpec = new SecretKeySpec(key,ca.jceId);
+				this.ca=ca;
+				this.cm=cm;
+			}
+			this.tempFile=TempFile.createTempFile("hadoopoffice-sort-run",".tmp");
+		}
+
+		DataOutputStream getOutputStream() throws IOException {
+			OutputStream os=new FileOutputStream(this.tempFile);
+			if (this.ca!=null) {
+				os=new CipherOutputStream(os,CryptoFunctions.getCipher(this.skeySpec, this.ca, this.cm, this.iv, Cipher.ENCRYPT_MODE,"PKCS5Padding"));
+			}
+			return new DataOutputStream(new BufferedOutputStream(os, MSExcelSortingWriter.BUFFER_SIZE));
+		}
+
+		DataInputStream getInputStream() throws IOException {
+			InputStream is=new FileInputStream(this.tempFile);
+			if (this.ca!=null) {
+				is=new CipherInputStream(is,CryptoFunctions.getCipher(this.skeySpec, this.ca, this.cm, this.iv, Cipher.DECRYPT_MODE,"PKCS5Padding"));
+			}
+			return new DataInputStream(new BufferedInputStream(is, MSExcelSortingWriter.BUFFER_SIZE));
+		}
+
+		void dispose() {
+			if (!this.tempFile.delete()) {
+				LOG.warn("Cannot delete temporary file "+this.tempFile.getAbsolutePath());
+			}
+		}
+	}
+
+	/*
+	* Reads the cells of several runs in the order of their keys
+	*
+	*/
+	private static class RunMerger implements AutoCloseable {
+		private PriorityQueue<RunReader> readers;
+		private List<RunReader> openReaders;
+		private RunReader currentReader;
+
+		RunMerger(List<SortedRun> runs) throws IOException {
+			this.readers=new PriorityQueue<>(Math.max(1, runs.size()));
+			this.openReaders=new ArrayList<>();
+			for (SortedRun currentRun: runs) {
+				RunReader reader=new RunReader(currentRun.getInputStream());
+				this.openReaders.add(reader);
+				if (reader.next()) {
+					this.readers.add(reader);
+				}
+			}
+		}
+
+		/*
+		* Moves to the next cell
+		*
+		* @return true, if there is a next cell, false if all runs have been read
+		*
+		*/
+		boolean next() throws IOException {
+			if ((this.currentReader!=null) && (this.currentReader.next())) {
+				this.readers.add(this.currentReader);
+			}
+			this.currentReader=this.readers.poll();
+			return this.currentReader!=null;
+		}
+
+		long getKey() {
+			return this.currentReader.key;
+		}
+
+		SpreadSheetCellDAO getCell() {
+			return this.currentReader.cell;
+		}
+
+		@Override
+		public void close() {
+			for (RunReader reader: this.openReaders) {
+				IOUtils.closeQuietly(reader.input);
+			}
+		}
+	}
+
+	/*
+	* Reads the cells of one run. The cell object is reused for all cells
+	*
+	*/
+	private static class RunReader implements Comparable<RunReader> {
+		private DataInputStream input;
+		private long key;
+		private SpreadSheetCellDAO cell;
+
+		RunReader(DataInputStream input) {
+			this.input=input;
+			this.cell=new SpreadSheetCellDAO();
+		}
+
+		boolean next() throws IOException {
+			try {
+				this.key=this.input.readLong();
+			} catch (EOFException e) {
+				return false;
+			}
+			this.cell.readFields(this.input);
+			return true;
+		}
+
+		@Override
+		public int compareTo(RunReader o) {
+			return Long.compare(this.key, o.key);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return this==o;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this);
+		}
+	}
+
+}
@@ -0,0 +1,417 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.common.writer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.poifs.crypt.ChainingMode;
+import org.apache.poi.poifs.crypt.CipherAlgorithm;
+import org.apache.poi.poifs.crypt.EncryptionInfo;
+import org.apache.poi.poifs.crypt.EncryptionMode;
+import org.apache.poi.poifs.crypt.Encryptor;
+import org.apache.poi.poifs.crypt.HashAlgorithm;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeWriteConfiguration;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+import org.zuinnote.hadoop.office.format.common.util.MSExcelUtil;
+import org.zuinnote.hadoop.office.format.common.util.StreamingAgileEncryptionOutputStream;
+
+/**
+ * Writes new Excel files (.xlsx) by streaming the XML of the sheets directly into the zip file (cf. hadoopoffice.write.lowFootprint.streaming). No workbook model, temporary files or objects per cell are created. Strings are stored inline in the cells and formulas are calculated by Excel when the file is opened.
+ *
+ * Cells need to be written in the order of the file, i.e. sheet by sheet, within a sheet row by row and within a row column by column. Comments, linked workbooks, templates and metadata are not supported.
+ *
+ */
+public class MSExcelStreamingWriter implements OfficeSpreadSheetWriterInterface {
+	private static final Log LOG = LogFactory.getLog(MSExcelStreamingWriter.class.getName());
+	private static final int BUFFER_SIZE=64*1024;
+	private static final String XML_DECLARATION="<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+	private static final String NS_MAIN="http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+	private static final String NS_RELATIONSHIPS="http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+	private static final String NS_PACKAGE_RELATIONSHIPS="http://schemas.openxmlformats.org/package/2006/relationships";
+	private static final String CONTENTTYPE_SPREADSHEETML="application/vnd.openxmlformats-officedocument.spreadsheetml.";
+
+	private HadoopOfficeWriteConfiguration howc;
+	private CipherAlgorithm encryptAlgorithmCipher;
+	private HashAlgorithm hashAlgorithmCipher;
+	private EncryptionMode encryptionModeCipher;
+	private ChainingMode chainModeCipher;
+	private OutputStream osStream;
+	private POIFSFileSystem encryptedFileSystem;
+	private boolean encrypted;
+	private ZipOutputStream zipOutputStream;
+	private Writer xmlWriter;
+	private List<String> sheetNames;
+	private String currentSheetName;
+	private int currentRowNum;
+	private int currentColumnNum;
+	private char[] addressBuffer;
+
+public MSExcelStreamingWriter(String excelFormat, HadoopOfficeWriteConfiguration howc) throws InvalidWriterConfigurationException {
+	if (!(MSExcelWriter.FORMAT_OOXML.equals(excelFormat))) {
+		 LOG.error("Unsupported Excel format for streaming: "+excelFormat);
+		 throw new InvalidWriterConfigurationException("Unsupported Excel format for streaming: "+excelFormat);
+	}
+	this.howc=howc;
+	if (this.howc.getPassword()!=null) {
+		this.encryptAlgorithmCipher=MSExcelWriter.getAlgorithmCipher(this.howc.getEncryptAlgorithm());
+		this.hashAlgorithmCipher=MSExcelWriter.getHashAlgorithm(this.howc.getHashAlgorithm());
+		this.encryptionModeCipher=MSExcelWriter.getEncryptionModeCipher(this.howc.getEncryptMode());
+		this.chainModeCipher=MSExcelWriter.getChainMode(this.howc.getChainMode());
+	}
+}
+
+	@Override
+	public void create(OutputStream osStream, Map<String, InputStream> linkedWorkbooks,
+			Map<String, String> linkedWorkbooksPasswords, InputStream template) throws OfficeWriterException {
+		if ((linkedWorkbooks!=null) && (linkedWorkbooks.size()>0)) {
+			throw new OfficeWriterException("Linked Workbooks are not supported in streaming write mode");
+		}
+		if (template!=null) {
+			throw new OfficeWriterException("Templates are not supported in streaming write mode");
+		}
+		if ((this.howc.getMetadata()!=null) && (this.howc.getMetadata().size()>0)) {
+			LOG.warn("Metadata is not supported in streaming write mode");
+		}
+		this.osStream=osStream;
+		OutputStream zipTarget=osStream;
+		this.encrypted=this.howc.getPassword()!=null;
+		if (this.encrypted) { // the zip file is encrypted while it is written
+			EncryptionInfo info = new EncryptionInfo(this.encryptionModeCipher, this.encryptAlgorithmCipher, this.hashAlgorithmCipher, -1, -1, this.chainModeCipher);
+			try {
+				if ((this.howc.getStreamingEncryption()) && (this.encryptionModeCipher==EncryptionMode.agile)) {
+					zipTarget=new StreamingAgileEncryptionOutputStream(osStream, info, this.howc.getPassword());
+				} else {
+					this.encryptedFileSystem=new POIFSFileSystem();
+					Encryptor enc = info.getEncryptor();
+					enc.confirmPassword(this.howc.getPassword());
+					zipTarget=enc.getDataStream(this.encryptedFileSystem);
+				}
+			} catch (IOException|GeneralSecurityException e) {
+				LOG.error(e);
+				throw new OfficeWriterException(e.toString());
+			}
+		}
+		this.zipOutputStream=new ZipOutputStream(zipTarget);
+		this.xmlWriter=new BufferedWriter(new OutputStreamWriter(this.zipOutputStream, StandardCharsets.UTF_8), MSExcelStreamingWriter.BUFFER_SIZE);
+		this.sheetNames=new ArrayList<>();
+		this.currentSheetName=null;
+		this.addressBuffer=new char[MSExcelUtil.MAX_ADDRESS_LENGTH];
+	}
+
+	/**
+	 * Writes a cell directly into the XML of its sheet
+	 *
+	 * @param newDAO cell to write. It needs to be after the previously written cell in the file, otherwise an exception is thrown. Note that the sheet name is sanitized using org.apache.poi.ss.util.WorkbookUtil.createSafeSheetName. The Cell address needs to be in A1 format. Either formula or formattedValue must be not null.
+	 *
+	 */
+	@Override
+	public void write(Object newDAO) throws OfficeWriterException {
+		SpreadSheetCellDAO sscd = MSExcelWriter.checkSpreadSheetCellDAO(newDAO);
+		if ((sscd.getComment()!=null) && (!("".equals(sscd.getComment())))) {
+			throw new OfficeWriterException("Comments are not supported in streaming write mode");
+		}
+		int rowNum=MSExcelUtil.getRowIndex(sscd.getAddress());
+		int columnNum=MSExcelUtil.getColumnIndex(sscd.getAddress());
+		if (rowNum<0) { // not in the usual A1 format (e.g. lower case letters)
+			CellAddress currentCA = new CellAddress(sscd.getAddress());
+			rowNum=currentCA.getRow();
+			columnNum=currentCA.getColumn();
+		}
+		if ((rowNum<0) || (columnNum<0) || (columnNum>=MSExcelUtil.MAX_COLUMNS)) {
+			throw new OfficeWriterException("Invalid cell specification: invalid cell address "+sscd.getAddress());
+		}
+		try {
+			String safeSheetName=WorkbookUtil.createSafeSheetName(sscd.getSheetName());
+			if (!(safeSheetName.equals(this.currentSheetName))) {
+				if (this.sheetNames.contains(safeSheetName)) {
+					throw new OfficeWriterException("Invalid cell specification: sheet \""+safeSheetName+"\" has already been written. Cells need to be written sheet by sheet in streaming write mode");
+				}
+				if (!(safeSheetName.equals(sscd.getSheetName()))) {
+					LOG.warn("Sheetname modified from \""+sscd.getSheetName()+"\" to \""+safeSheetName+"\" to correspond to Excel conventions.");
+				}
+				this.finishSheet();
+				this.startSheet(safeSheetName);
+			}
+			if ((rowNum<this.currentRowNum) || ((rowNum==this.currentRowNum) && (columnNum<=this.currentColumnNum))) {
+				throw new OfficeWriterException("Invalid cell specification: cell "+sscd.getAddress()+" is not after the previously written cell. Cells need to be written row by row in streaming write mode");
+			}
+			if (rowNum!=this.currentRowNum) {
+				if (this.currentRowNum>=0) {
+					this.xmlWriter.write("</row>");
+				}
+				this.xmlWriter.write("<row r=\"");
+				this.xmlWriter.write(Integer.toString(rowNum+1));
+				this.xmlWriter.write("\">");
+				this.currentRowNum=rowNum;
+			}
+			this.currentColumnNum=columnNum;
+			this.xmlWriter.write("<c r=\"");
+			this.xmlWriter.write(this.addressBuffer, 0, MSExcelUtil.appendCellAddressA1Format(rowNum, columnNum, this.addressBuffer, 0));
+			if ((sscd.getFormula()!=null) && (!("".equals(sscd.getFormula())))) { // if formula exists then use formula
+				this.xmlWriter.write("\"><f>");
+				this.writeEscaped(sscd.getFormula());
+				this.xmlWriter.write("</f></c>");
+			} else { // else use formattedValue
+				String formattedValue=sscd.getFormattedValue()==null?"":sscd.getFormattedValue();
+				this.xmlWriter.write("\" t=\"inlineStr\"><is><t");
+				if (hasLeadingTrailingSpaces(formattedValue)) {
+					this.xmlWriter.write(" xml:space=\"preserve\"");
+				}
+				this.xmlWriter.write('>');
+				this.writeEscaped(formattedValue);
+				this.xmlWriter.write("</t></is></c>");
+			}
+		} catch (IOException e) {
+			LOG.error(e);
+			throw new OfficeWriterException(e.toString());
+		}
+	}
+
+	/**
+	 * Finishes the last sheet, writes the parts describing the workbook and closes the file
+	 *
+	 * @throws java.io.IOException in case of errors writing the file
+	 *
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			this.finishSheet();
+			if (this.sheetNames.isEmpty()) { // a workbook needs at least one sheet
+				this.startSheet("Sheet1");
+				this.finishSheet();
+			}
+			this.writeWorkbook();
+			this.zipOutputStream.finish();
+			if (this.encrypted) {
+				this.zipOutputStream.close(); // writes the encrypted data into the file (system)
+				if (this.encryptedFileSystem!=null) {
+					this.encryptedFileSystem.writeFilesystem(this.osStream);
+				}
+			}
+		} finally {
+			if (this.osStream!=null) {
+				this.osStream.close();
+			}
+		}
+	}
+
+	/**
+	 * Starts the part of a new sheet
+	 *
+	 * @param sheetName name of the sheet
+	 *
+	 * @throws java.io.IOException in case of errors writing the file
+	 *
+	 */
+	private void startSheet(String sheetName) throws IOException {
+		this.sheetNames.add(sheetName);
+		this.currentSheetName=sheetName;
+		this.currentRowNum=-1;
+		this.currentColumnNum=-1;
+		this.zipOutputStream.putNextEntry(new ZipEntry("xl/worksheets/sheet"+this.sheetNames.size()+".xml"));
+		this.xmlWriter.write(MSExcelStreamingWriter.XML_DECLARATION);
+		this.xmlWriter.write("<worksheet xmlns=\""+MSExcelStreamingWriter.NS_MAIN+"\"><sheetData>");
+	}
+
+	/**
+	 * Finishes the part of the current sheet, if any
+	 *
+	 * @throws java.io.IOException in case of errors writing the file
+	 *
+	 */
+	private void finishSheet() throws IOException {
+		if (this.currentSheetName==null) {
+			return;
+		}
+		if (this.currentRowNum>=0) {
+			this.xmlWriter.write("</row>");
+		}
+		this.xmlWriter.write("</sheetData></worksheet>");
+		this.xmlWriter.flush();
+		this.zipOutputStream.closeEntry();
+		this.currentSheetName=null;
+	}
+
+	/**
+	 * Writes the parts describing the workbook (e.g. sheet names, relationships and content types) after all sheets have been written
+	 *
+	 * @throws java.io.IOException in case of errors writing the file
+	 *
+	 */
+	private void writeWorkbook() throws IOException {
+		int numberOfSheets=this.sheetNames.size();
+		// workbook
+		this.zipOutputStream.putNextEntry(new ZipEntry("xl/workbook.xml"));
+		this.xmlWriter.write(MSExcelStreamingWriter.XML_DECLARATION);
+		this.xmlWriter.write("<workbook xmlns=\""+MSExcelStreamingWriter.NS_MAIN+"\" xmlns:r=\""+MSExcelStreamingWriter.NS_RELATIONSHIPS+"\"><sheets>");
+		for (int i=0;i<numberOfSheets;i++) {
+			this.xmlWriter.write("<sheet name=\"");
+			this.writeEscaped(this.sheetNames.get(i));
+			this.xmlWriter.write("\" sheetId=\""+(i+1)+"\" r:id=\"rId"+(i+1)+"\"/>");
+		}
+		this.xmlWriter.write("</sheets><calcPr fullCalcOnLoad=\"1\"/></workbook>"); // formulas do not have a cached result
+		this.closeEntry();
+		// relationships of the workbook
+		this.zipOutputStream.putNextEntry(new ZipEntry("xl/_rels/workbook.xml.rels"));
+		this.xmlWriter.write(MSExcelStreamingWriter.XML_DECLARATION);
+		this.xmlWriter.write("<Relationships xmlns=\""+MSExcelStreamingWriter.NS_PACKAGE_RELATIONSHIPS+"\">");
+		for (int i=0;i<numberOfSheets;i++) {
+			this.xmlWriter.write("<Relationship Id=\"rId"+(i+1)+"\" Type=\""+MSExcelStreamingWriter.NS_RELATIONSHIPS+"/worksheet\" Target=\"worksheets/sheet"+(i+1)+".xml\"/>");
+		}
+		this.xmlWriter.write("<Relationship Id=\"rId"+(numberOfSheets+1)+"\" Type=\""+MSExcelStreamingWriter.NS_RELATIONSHIPS+"/styles\" Target=\"styles.xml\"/>");
+		this.xmlWriter.write("</Relationships>");
+		this.closeEntry();
+		// default styles
+		this.zipOutputStream.putNextEntry(new ZipEntry("xl/styles.xml"));
+		this.xmlWriter.write(MSExcelStreamingWriter.XML_DECLARATION);
+		this.xmlWriter.write("<styleSheet xmlns=\""+MSExcelStreamingWriter.NS_MAIN+"\">"
+				+"<fonts count=\"1\"><font><sz val=\"11\"/><name val=\"Calibri\"/><family val=\"2\"/></font></fonts>"
+				+"<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill></fills>"
+				+"<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+				+"<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+				+"<cellXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/></cellXfs>"
+				+"<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>"
+				+"</styleSheet>");
+		this.closeEntry();
+		// relationships of the package
+		this.zipOutputStream.putNextEntry(new ZipEntry("_rels/.rels"));
+		this.xmlWriter.write(MSExcelStreamingWriter.XML_DECLARATION);
+		this.xmlWriter.write("<Relationships xmlns=\""+MSExcelStreamingWriter.NS_PACKAGE_RELATIONSHIPS+"\"><Relationship Id=\"rId1\" Type=\""+MSExcelStreamingWriter.NS_RELATIONSHIPS+"/officeDocument\" Target=\"xl/workbook.xml\"/></Relationships>");
+		this.closeEntry();
+		// content types
+		this.zipOutputStream.putNextEntry(new ZipEntry("[Content_Types].xml"));
+		this.xmlWriter.write(MSExcelStreamingWriter.XML_DECLARATION);
+		this.xmlWriter.write("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+				+"<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+				+"<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+				+"<Override PartName=\"/xl/workbook.xml\" ContentType=\""+MSExcelStreamingWriter.CONTENTTYPE_SPREADSHEETML+"sheet.main+xml\"/>"
+				+"<Override PartName=\"/xl/styles.xml\" ContentType=\""+MSExcelStreamingWriter.CONTENTTYPE_SPREADSHEETML+"styles+xml\"/>");
+		for (int i=0;i<numberOfSheets;i++) {
+			this.xmlWriter.write("<Override PartName=\"/xl/worksheets/sheet"+(i+1)+".xml\" ContentType=\""+MSExcelStreamingWriter.CONTENTTYPE_SPREADSHEETML+"worksheet+xml\"/>");
+		}
+		this.xmlWriter.write("</Types>");
+		this.closeEntry();
+	}
+
+	/**
+	 * Flushes the XML of the current part and closes its entry in the zip file
+	 *
+	 * @throws java.io.IOException in case of errors writing the file
+	 *
+	 */
+	private void closeEntry() throws IOException {
+		this.xmlWriter.flush();
+		this.zipOutputStream.closeEntry();
+	}
+
+	/**
+	 * Writes text escaped for XML content and attributes. Characters that are not allowed in XML (e.g. control characters) are replaced by a question mark as done by POI
+	 *
+	 * @param text text to write
+	 *
+	 * @throws java.io.IOException in case of errors writing the file
+	 *
+	 */
+	private void writeEscaped(String text) throws IOException {
+		int last=0;
+		int length=text.length();
+		for (int i=0;i<length;i++) {
+			char currentChar=text.charAt(i);
+			String replacement;
+			switch (currentChar) {
+				case '<':
+					replacement="&lt;";
+					break;
+				case '>':
+					replacement="&gt;";
+					break;
+				case '&':
+					replacement="&amp;";
+					break;
+				case '"':
+					replacement="&quot;";
+					break;
+				case '\n':
+					replacement="&#xa;";
+					break;
+				case '\r':
+					replacement="&#xd;";
+					break;
+				case '\t':
+					replacement="&#x9;";
+					break;
+				default:
+					replacement=null;
+					if ((currentChar<' ') || (currentChar=='\uFFFE') || (currentChar=='\uFFFF')) {
+						replacement="?";
+					} else if (Character.isHighSurrogate(currentChar)) {
+						if ((i+1<length) && (Character.isLowSurrogate(text.charAt(i+1)))) { // valid pair
+							i++;
+						} else {
+							replacement="?";
+						}
+					} else if (Character.isLowSurrogate(currentChar)) {
+						replacement="?";
+					}
+					break;
+			}
+			if (replacement!=null) {
+				if (i>last) {
+					this.xmlWriter.write(text, last, i-last);
+				}
+				this.xmlWriter.write(replacement);
+				last=i+1;
+			}
+		}
+		if (length>last) {
+			this.xmlWriter.write(text, last, length-last);
+		}
+	}
+
+	/**
+	 * Checks if a text starts or ends with whitespace, which needs to be preserved explicitly
+	 *
+	 * @param text text
+	 *
+	 * @return true, if the text starts or ends with whitespace
+	 *
+	 */
+	private static boolean hasLeadingTrailingSpaces(String text) {
+		if (text.isEmpty()) {
+			return false;
+		}
+		return (Character.isWhitespace(text.charAt(0))) || (Character.isWhitespace(text.charAt(text.length()-1)));
+	}
+
+}
@@ -65,6 +65,9 @@ import org.zuinnote.hadoop.office.format.common.HadoopOfficeWriteConfiguration;
 import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
 import org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException;
 import org.zuinnote.hadoop.office.format.common.parser.MSExcelParser;
+import org.zuinnote.hadoop.office.format.common.util.MSExcelUtil;
+import org.zuinnote.hadoop.office.format.common.util.ParallelDeflateZipOutputStream;
+import org.zuinnote.hadoop.office.format.common.util.StreamingAgileEncryptionOutputStream;
 
 public class MSExcelWriter implements OfficeSpreadSheetWriterInterface {
 public static final String FORMAT_OOXML = "ooxmlexcel";
@@ -72,6 +75,16 @@ public static final String FORMAT_OLD = "oldexcel";
 protected static final String[] VALID_FORMAT = {FORMAT_OOXML, FORMAT_OLD};
 private static final Log LOG = LogFactory.getLog(MSExcelWriter.class.getName());
 private static final String DEFAULT_FORMAT = VALID_FORMAT[0];
+// rough estimates of the memory needed by the workbook model (measured for XSSFWorkbook and HSSFWorkbook)
+private static final long MEMORY_SHEET_OOXML=20000L;
+private static final long MEMORY_ROW_OOXML=400L;
+private static final long MEMORY_CELL_OOXML=1100L;
+private static final long MEMORY_CHAR_OOXML=4L;
+private static final long MEMORY_SHEET_OLD=5000L;
+private static final long MEMORY_ROW_OLD=100L;
+private static final long MEMORY_CELL_OLD=260L;
+private static final long MEMORY_CHAR_OLD=2L;
+private static final long MEMORY_COMMENT=2000L;
 private String format=DEFAULT_FORMAT;
 private OutputStream oStream;
 private Workbook currentWorkbook;
@@ -84,6 +97,7 @@ private HashAlgorithm hashAlgorithmCipher;
 private EncryptionMode encryptionModeCipher;
 private ChainingMode chainModeCipher;
 private boolean hasTemplate;
+private long estimatedMemory;
 
 
 /**
@@ -239,31 +253,48 @@ public void write(Object newDAO) throws OfficeWriterException {
 		}
 		// create drawing anchor (needed for comments...)
 		this.mappedDrawings.put(safeSheetName,currentSheet.createDrawingPatriarch());
+		this.estimatedMemory+=this.isOOXML()?MSExcelWriter.MEMORY_SHEET_OOXML:MSExcelWriter.MEMORY_SHEET_OLD;
 	}
 	// check if cell exist
-	CellAddress currentCA = new CellAddress(sscd.getAddress());
-	Row currentRow = currentSheet.getRow(currentCA.getRow());
+	int currentRowNum=MSExcelUtil.getRowIndex(sscd.getAddress());
+	int currentColumnNum=MSExcelUtil.getColumnIndex(sscd.getAddress());
+	if (currentRowNum<0) { // not in the usual A1 format (e.g. lower case letters)
+		CellAddress currentCA = new CellAddress(sscd.getAddress());
+		currentRowNum=currentCA.getRow();
+		currentColumnNum=currentCA.getColumn();
+	}
+	Row currentRow = currentSheet.getRow(currentRowNum);
 	if (currentRow==null) { // row does not exist? => create it
-		currentRow=currentSheet.createRow(currentCA.getRow());
+		currentRow=currentSheet.createRow(currentRowNum);
+		this.estimatedMemory+=this.isOOXML()?MSExcelWriter.MEMORY_ROW_OOXML:MSExcelWriter.MEMORY_ROW_OLD;
 	}
-	Cell currentCell = currentRow.getCell(currentCA.getColumn());
+	Cell currentCell = currentRow.getCell(currentColumnNum);
 	if ((currentCell!=null) && (this.hasTemplate==false)) { // cell already exists and no template loaded ? => throw exception
-		throw new OfficeWriterException("Invalid cell specification: cell already exists at "+currentCA);
+		throw new OfficeWriterException("Invalid cell specification: cell already exists at "+sscd.getAddress());
 	}
 	// create cell if no template is loaded or cell not available in template
 	if ((this.hasTemplate==false) || (currentCell==null)) {
-		currentCell=currentRow.createCell(currentCA.getColumn());		
+		currentCell=currentRow.createCell(currentColumnNum);		
 	}
 	// set the values accordingly
+	String cellContent;
 	if (!("".equals(sscd.getFormula()))) { // if formula exists then use formula
 		currentCell.setCellFormula(sscd.getFormula());
-		
+		cellContent=sscd.getFormula();
 	} else {	
 	// else use formattedValue
 		currentCell.setCellValue(sscd.getFormattedValue());
+		cellContent=sscd.getFormattedValue();
+	}
+	int contentLength=cellContent==null?0:cellContent.length();
+	if (this.isOOXML()) {
+		this.estimatedMemory+=MSExcelWriter.MEMORY_CELL_OOXML+contentLength*MSExcelWriter.MEMORY_CHAR_OOXML;
+	} else {
+		this.estimatedMemory+=MSExcelWriter.MEMORY_CELL_OLD+contentLength*MSExcelWriter.MEMORY_CHAR_OLD;
 	}
 	// set comment
 	if ((sscd.getComment()!=null) && (!("".equals(sscd.getComment())))) {
+		this.estimatedMemory+=MSExcelWriter.MEMORY_COMMENT+sscd.getComment().length()*MSExcelWriter.MEMORY_CHAR_OOXML;
 		/** the following operations are necessary to create comments **/
 		/** Define size of the comment window **/
 		    ClientAnchor anchor = this.currentWorkbook.getCreationHelper().createClientAnchor();
@@ -280,6 +311,60 @@ public void write(Object newDAO) throws OfficeWriterException {
 	}
 }
 
+/**
+* Returns a rough estimate of the memory that is needed by the cells, rows, sheets and comments written into the workbook. Templates and linked workbooks are not included
+*
+* @return estimated memory in bytes
+*
+*/
+public long getEstimatedMemory() {
+	return this.estimatedMemory;
+}
+
+/**
+* Returns the workbook that is written, e.g. to copy its cells into another writer
+*
+* @return workbook
+*
+*/
+Workbook getCurrentWorkbook() {
+	return this.currentWorkbook;
+}
+
+/**
+* Closes all workbooks without writing the document, e.g. if its cells have been copied into another writer
+*
+* @throws java.io.IOException in case of issues closing the workbooks
+*
+*/
+void discard() throws IOException {
+	try {
+		if (this.ooxmlDocumentFileSystem!=null)  {
+			this.ooxmlDocumentFileSystem.close();
+		}
+		if (this.currentWorkbook!=null) {
+			this.currentWorkbook.close();
+		}
+	} finally {
+		for (Workbook currentWorkbookItem: this.listOfWorkbooks) {
+			if (currentWorkbookItem!=null) {
+				currentWorkbookItem.close();
+			}
+		}
+		this.currentWorkbook=null;
+	}
+}
+
+/**
+* Checks if the workbook is in the new Excel format (.xlsx)
+*
+* @return true if the workbook is in the new Excel format, false if it is in the old Excel format (.xls)
+*
+*/
+private boolean isOOXML() {
+	return !(this.currentWorkbook instanceof HSSFWorkbook);
+}
+
 /***
  * Verifies that an object is a well-formed SpreadSheetCellDAO
  * 
@@ -356,7 +441,7 @@ public void close() throws IOException {
 
 private void finalizeWriteNotEncrypted() throws IOException {
 	try {
-		this.currentWorkbook.write(this.oStream);
+		this.currentWorkbook.write(this.getZipStream(this.oStream));
 	} finally {
 		if (this.oStream!=null) {
 			this.oStream.close();
@@ -366,6 +451,21 @@ private void finalizeWriteNotEncrypted() throws IOException {
 	
 }
 
+/**
+* Wraps the stream into a stream that compresses the parts of a new Excel file with several threads if configured (cf. hadoopoffice.write.parallelDeflate). POI writes the parts into a given ZipOutputStream instead of creating its own.
+*
+* @param os stream to which the workbook is written
+*
+* @return stream to which the workbook should be written
+*
+*/
+private OutputStream getZipStream(OutputStream os) {
+	if ((this.howc.getParallelDeflate()) && (this.currentWorkbook instanceof XSSFWorkbook)) {
+		return new ParallelDeflateZipOutputStream(os, this.howc.getParallelDeflateThreads());
+	}
+	return os;
+}
+
 private void finalizeWriteEncryptedHSSF() throws IOException {
 	LOG.debug("encrypting HSSFWorkbook");
 	Biff8EncryptionKey.setCurrentUserPassword(this.howc.getPassword());
@@ -399,13 +499,23 @@ private void finalizeWriteEncryptedXSSF() throws IOException{
 		OutputStream os = null;
 		try {
 			EncryptionInfo info = new EncryptionInfo(this.encryptionModeCipher, this.encryptAlgorithmCipher, this.hashAlgorithmCipher, -1, -1, this.chainModeCipher);
+			if ((this.howc.getStreamingEncryption()) && (this.encryptionModeCipher==EncryptionMode.agile)) { // encrypt while the workbook is written
+				try {
+					os = new StreamingAgileEncryptionOutputStream(this.oStream, info, this.howc.getPassword());
+					this.currentWorkbook.write(this.getZipStream(os));
+					os.close();
+				} catch (GeneralSecurityException e) {
+					LOG.error(e);
+				}
+				return;
+			}
 			Encryptor enc = info.getEncryptor();
 			enc.confirmPassword(this.howc.getPassword());
 			
 			try {
 				os = enc.getDataStream(ooxmlDocumentFileSystem);
 				if (os!=null) {
-					this.currentWorkbook.write(os);
+					this.currentWorkbook.write(this.getZipStream(os));
 				}
 			} catch (GeneralSecurityException e) {
 				LOG.error(e);
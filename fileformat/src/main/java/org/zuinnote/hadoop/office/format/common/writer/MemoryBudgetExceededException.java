@@ -0,0 +1,34 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.common.writer;
+
+/*
+* Thrown if a document needs more memory than configured (cf. hadoopoffice.write.memory.budget). Unlike other OfficeWriterExceptions it is not specific to a single cell, so that writing cannot continue
+*
+*/
+public class MemoryBudgetExceededException extends OfficeWriterException {
+
+/**
+	 * 
+	 */
+	private static final long serialVersionUID = -3419271538046725018L;
+
+public MemoryBudgetExceededException(String message) {
+	super(message);
+}
+
+}
@@ -18,9 +18,12 @@ package org.zuinnote.hadoop.office.format.mapred;
 
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 
 
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
@@ -31,6 +34,8 @@ import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.RecordReader;
 import org.apache.hadoop.mapred.Reporter;
 
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeIndexFile;
+
 
 
 
@@ -45,6 +50,26 @@ public abstract class AbstractSpreadSheetDocumentFileInputFormat  extends FileIn
 	protected abstract boolean isSplitable(FileSystem fs, Path file);
 
 	public abstract void configure(JobConf conf);
+
+	/*
+	* Lists the input files. Index sidecars (cf. HadoopOfficeIndexFile) next to the documents are not input files
+	*
+	* @param job configuration of the job
+	*
+	* @return input files
+	*
+	* @throws java.io.IOException in case of errors listing the files
+	*/
+	@Override
+	protected FileStatus[] listStatus(JobConf job) throws IOException {
+		List<FileStatus> result = new ArrayList<>();
+		for (FileStatus currentFile: super.listStatus(job)) {
+			if (!currentFile.getPath().getName().endsWith(HadoopOfficeIndexFile.SUFFIX)) {
+				result.add(currentFile);
+			}
+		}
+		return result.toArray(new FileStatus[result.size()]);
+	}
 	
 	
 
@@ -0,0 +1,82 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.mapred;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.ArrayWritable;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.CombineFileInputFormat;
+import org.apache.hadoop.mapred.lib.CombineFileSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeIndexFile;
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
+
+/**
+ * Reads many small Excel documents with few tasks. Several documents are packed into one split (cf. CombineFileInputFormat) according to their size and location: at most mapreduce.input.fileinputformat.split.maxsize bytes per split (if not set then all documents on a node are combined) and at least mapreduce.input.fileinputformat.split.minsize.per.node / mapreduce.input.fileinputformat.split.minsize.per.rack bytes before documents of different nodes / racks are combined.
+ * The documents of a split are read one after the other (cf. CombineExcelRecordReader) and the rows are the same as the ones of ExcelFileInputFormat. Documents are never divided.
+ *
+ */
+public class CombineExcelFileInputFormat extends CombineFileInputFormat<Text,ArrayWritable> {
+
+@Override
+public RecordReader<Text,ArrayWritable> getRecordReader(InputSplit split, JobConf job, Reporter reporter) throws IOException {
+	// send configuration option to ms excel. The format of the Excel (old vs new) is detected automaitcally
+	job.set(HadoopOfficeReadConfiguration.CONF_MIMETYPE,"ms-excel");
+	return new CombineExcelRecordReader((CombineFileSplit) split,job,reporter);
+}
+
+	/**
+	 * Excel documents cannot be divided (see ExcelFileInputFormat), only combined
+	 *
+	*/
+	@Override
+	protected boolean isSplitable(FileSystem fs, Path file) {
+		return false;
+	}
+
+	/*
+	* Lists the input files (used by getSplits). Index sidecars (cf. HadoopOfficeIndexFile) next to the documents are not input files
+	*
+	* @param job context of the job
+	*
+	* @return input files
+	*
+	* @throws java.io.IOException in case of errors listing the files
+	*/
+	@Override
+	protected List<FileStatus> listStatus(JobContext job) throws IOException {
+		List<FileStatus> result = new ArrayList<>();
+		for (FileStatus currentFile: super.listStatus(job)) {
+			if (!currentFile.getPath().getName().endsWith(HadoopOfficeIndexFile.SUFFIX)) {
+				result.add(currentFile);
+			}
+		}
+		return result;
+	}
+
+}
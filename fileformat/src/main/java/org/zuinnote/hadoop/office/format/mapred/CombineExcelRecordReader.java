@@ -0,0 +1,202 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.mapred;
+
+import java.io.IOException;
+
+import java.security.GeneralSecurityException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.ArrayWritable;
+
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.CombineFileSplit;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.logging.Log;
+
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+import org.zuinnote.hadoop.office.format.common.parser.*;
+
+/* CombineExcelRecordReader reads the rows of several Excel documents of a split of CombineExcelFileInputFormat one after the other
+*
+* Each document is read by an ExcelRecordReader (see there for the options). The configuration is parsed and the formatter of the cells (cf. MSExcelParser.createDataFormatter) is created only once for all documents of the split. Only one document is open at a time.
+*
+*
+*/
+
+
+public class CombineExcelRecordReader implements RecordReader<Text,ArrayWritable> {
+private static final Log LOG = LogFactory.getLog(CombineExcelRecordReader.class.getName());
+private CombineFileSplit split;
+private JobConf job;
+private Reporter reporter;
+private HadoopOfficeReadConfiguration hocr;
+private ExcelRecordReader currentReader=null;
+private int nextDocument=0;
+private long completedLength=0L;
+
+/**
+* Creates a reader for the documents of a split
+* @param split Split to use (assumed to be a combined file split)
+* @param job Configuration (see ExcelRecordReader)
+* @param reporter Reporter
+*
+*/
+public CombineExcelRecordReader(CombineFileSplit split, JobConf job, Reporter reporter) {
+	this.split=split;
+	this.job=job;
+	this.reporter=reporter;
+	// parse configuration once for all documents
+	this.hocr=new HadoopOfficeReadConfiguration(job);
+	this.hocr.setDataFormatter(MSExcelParser.createDataFormatter(this.hocr));
+	LOG.debug("Reading "+this.split.getNumPaths()+" documents");
+}
+
+/**
+*
+* Create an empty key
+*
+* @return key
+*/
+@Override
+public Text createKey() {
+	return new Text("");
+}
+
+/**
+*
+* Create an empty value
+*
+* @return value
+*/
+@Override
+public ArrayWritable createValue() {
+	ArrayWritable newArrayWritable = new ArrayWritable(SpreadSheetCellDAO.class);
+	newArrayWritable.set(new SpreadSheetCellDAO[0]);
+	return newArrayWritable;
+}
+
+/**
+*
+* Read row from the current Office document. If it has no more rows then the next document of the split is opened
+*
+* @return true if next more rows are available, false if not
+*
+* @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop or a document cannot be read
+*/
+@Override
+public boolean next(Text key, ArrayWritable value) throws IOException {
+	while ((this.currentReader!=null) || (this.openNextDocument())) {
+		if (this.currentReader.next(key, value)) {
+			return true;
+		}
+		this.closeCurrentDocument();
+	}
+	return false;
+}
+
+/*
+* Get the number of bytes of the documents that have been completely read
+*
+* @return position
+*
+*/
+@Override
+public long getPos() throws IOException {
+	return this.completedLength;
+}
+
+/*
+* Returns how much of the documents have been processed in terms of bytes
+*
+* @return progress percentage
+*
+* @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+*
+*/
+@Override
+public float getProgress() throws IOException {
+	if (this.split.getLength()==0) {
+		return 0.0f;
+	}
+	float currentLength=0.0f;
+	if (this.currentReader!=null) {
+		currentLength=this.currentReader.getProgress()*this.split.getLength(this.nextDocument-1);
+	}
+	return Math.min(1.0f, (this.completedLength+currentLength)/(float)this.split.getLength());
+}
+
+/*
+* Closes the current document
+*
+*
+* @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+*
+*/
+@Override
+public void close() throws IOException {
+	this.closeCurrentDocument();
+}
+
+/*
+* Opens the next document of the split
+*
+* @return true if there is a next document, false if not
+*
+* @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop or the document cannot be read
+*/
+private boolean openNextDocument() throws IOException {
+	if (this.nextDocument>=this.split.getNumPaths()) {
+		return false;
+	}
+	FileSplit documentSplit = new FileSplit(this.split.getPath(this.nextDocument),this.split.getOffset(this.nextDocument),this.split.getLength(this.nextDocument),(String[])null);
+	this.nextDocument++;
+	LOG.debug("Reading document \""+documentSplit.getPath()+"\"");
+	try {
+		this.currentReader = new ExcelRecordReader(documentSplit, this.job, this.reporter, this.hocr);
+	} catch (FormatNotUnderstoodException e) {
+		LOG.error(e);
+		throw new IOException(e.toString());
+	} catch (GeneralSecurityException gse) {
+		LOG.error(gse);
+		throw new IOException(gse.toString());
+	}
+	return true;
+}
+
+/*
+* Closes the current document
+*
+* @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+*/
+private void closeCurrentDocument() throws IOException {
+	if (this.currentReader!=null) {
+		try {
+			this.currentReader.close();
+		} finally {
+			this.completedLength+=this.split.getLength(this.nextDocument-1);
+			this.currentReader=null;
+		}
+	}
+}
+
+}
@@ -31,7 +31,6 @@ import java.io.Serializable;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.Log;
 import org.zuinnote.hadoop.office.format.common.HadoopOfficeWriteConfiguration;
-import org.zuinnote.hadoop.office.format.common.HadoopUtil;
 import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
 import org.zuinnote.hadoop.office.format.common.writer.InvalidWriterConfigurationException;
 import org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException;
@@ -70,7 +69,7 @@ public RecordWriter<NullWritable,SpreadSheetCellDAO> getRecordWriter(FileSystem
 	// add suffix
 	file=file.suffix(ExcelFileOutputFormat.getSuffix(conf.get(HadoopOfficeWriteConfiguration.CONF_MIMETYPE)));
 	 	try {
-			return new ExcelRecordWriter<>(HadoopUtil.getDataOutputStream(conf,file,progress,getCompressOutput(conf),getOutputCompressorClass(conf, ExcelFileOutputFormat.defaultCompressorClass)),file.getName(),conf);
+			return new ExcelRecordWriter<>(file,progress,getCompressOutput(conf),getOutputCompressorClass(conf, ExcelFileOutputFormat.defaultCompressorClass),conf);
 		} catch (InvalidWriterConfigurationException | OfficeWriterException e) {
 			LOG.error(e);
 		}
@@ -30,8 +30,10 @@ import org.apache.hadoop.mapred.Reporter;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.Log;
 
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
 import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
 import org.zuinnote.hadoop.office.format.common.parser.*;
+import org.zuinnote.hadoop.office.format.common.util.SpreadSheetRowKeyBuilder;
 
 /* ExcelRecordReader reads rows from Excel
 *
@@ -45,6 +47,7 @@ import org.zuinnote.hadoop.office.format.common.parser.*;
 public class ExcelRecordReader extends AbstractSpreadSheetDocumentRecordReader<Text,ArrayWritable> {
 private static final Log LOG = LogFactory.getLog(ExcelRecordReader.class.getName());
 private FileSplit split;
+private SpreadSheetRowKeyBuilder keyBuilder=new SpreadSheetRowKeyBuilder();
 
 public ExcelRecordReader(FileSplit split, JobConf job, Reporter reporter) throws IOException,FormatNotUnderstoodException,GeneralSecurityException {
  super(split,job,reporter);
@@ -52,6 +55,21 @@ public ExcelRecordReader(FileSplit split, JobConf job, Reporter reporter) throws
  this.split=split;
 }
 
+/*
+* Creates a reader with an already parsed configuration, e.g. shared by the readers of several files read one after the other (cf. CombineExcelRecordReader)
+*
+* @param split file to read
+* @param job configuration of the job
+* @param reporter Reporter
+* @param hocr HadoopOffice configuration for reading files parsed from job
+*
+*/
+public ExcelRecordReader(FileSplit split, JobConf job, Reporter reporter, HadoopOfficeReadConfiguration hocr) throws IOException,FormatNotUnderstoodException,GeneralSecurityException {
+ super(split,job,reporter,hocr);
+ LOG.debug("Initialize ExcelRecordReader");
+ this.split=split;
+}
+
 /**
 *
 * Create an empty key
@@ -83,18 +101,26 @@ public ArrayWritable createValue() {
 * Read row from Office document. If document does not match a defined metadata filter then it returns no rows. If no metadata filter is defined or document matches metadata filter then it returns rows, if available in the document/selected sheet
 *
 * @return true if next more rows are available, false if not
+*
+* @throws java.io.IOException in case the document cannot be read completely
 */
 @Override
 public boolean next(Text key, ArrayWritable value) throws IOException {
 	if (!(this.getOfficeReader().getFiltered())) {
 		return false;
 	}
-	Object[] objectArray = this.getOfficeReader().getNext();
+	Object[] objectArray;
+	try {
+		objectArray = this.getOfficeReader().getNext();
+	} catch (ParsingAbortedException e) { // do not return the rows of a document that cannot be read completely as if it ended
+		LOG.error(e);
+		throw new IOException(e.getMessage());
+	}
 	if (objectArray==null) {
 		return false; // no more to read
 	}
 	SpreadSheetCellDAO[] cellRows = (SpreadSheetCellDAO[])objectArray;
-	key.set(new Text("["+this.split.getPath().getName()+"]"+this.getOfficeReader().getCurrentSheetName()+"!A"+this.getOfficeReader().getCurrentRow()));
+	this.keyBuilder.set(key, this.split.getPath().getName(), this.getOfficeReader().getCurrentSheetName(), this.getOfficeReader().getCurrentRow());
 	value.set(cellRows);
 	return true;	
 }
@@ -23,6 +23,9 @@ import java.io.Serializable;
 
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.util.Progressable;
 
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.Log;
@@ -60,4 +63,14 @@ public ExcelRecordWriter(DataOutputStream out, String fileName, Configuration co
 }
 
 
+/*
+* Instantiate the constructor of AbstractSpreadSheetDocumentRecordWriter, which writes into one or more files depending on the configuration
+*
+*/
+public ExcelRecordWriter(Path file, Progressable progress, boolean compressed, Class<? extends CompressionCodec> compressorClass, Configuration conf) throws InvalidWriterConfigurationException, IOException, OfficeWriterException {
+	super(file,progress,compressed,compressorClass,conf);
+	LOGRW.debug("Initialize ExcelRecordWriter");
+}
+
+
 }
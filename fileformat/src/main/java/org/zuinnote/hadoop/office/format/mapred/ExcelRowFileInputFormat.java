@@ -0,0 +1,93 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.mapred;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetRowWritable;
+import org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException;
+
+/*
+* Reads Excel files like ExcelFileInputFormat, but returns each row as SpreadSheetRowWritable instead of an ArrayWritable of SpreadSheetCellDAO. The rows are smaller if they are shuffled or written to SequenceFiles, because the sheet name and row number are only stored once per row.
+* All options of ExcelFileInputFormat are supported and the splits are the same.
+*
+*/
+
+public class ExcelRowFileInputFormat extends FileInputFormat<Text,SpreadSheetRowWritable> {
+
+private static final Log LOGIF = LogFactory.getLog(ExcelRowFileInputFormat.class.getName());
+
+@Override
+public RecordReader<Text,SpreadSheetRowWritable> getRecordReader(InputSplit split, JobConf job, Reporter reporter) throws IOException {
+/** Create reader **/
+try {
+		 // send configuration option to ms excel. The format of the Excel (old vs new) is detected automaitcally
+ 		job.set(HadoopOfficeReadConfiguration.CONF_MIMETYPE,"ms-excel");
+		return new ExcelRowRecordReader( (FileSplit) split,job,reporter);
+	} catch (FormatNotUnderstoodException e) {
+		// log
+		LOGIF.error(e);
+	} catch (GeneralSecurityException gse) {
+		LOGIF.error(gse);
+	}
+return null;
+}
+
+public void configure (JobConf conf) {
+		// not used
+}
+
+	/**
+	 * Excel documents cannot be split by bytes (see ExcelFileInputFormat)
+	 *
+	*/
+@Override
+protected boolean isSplitable(FileSystem fs, Path file) {
+	return false;
+}
+
+	/**
+	 * Creates the same splits as ExcelFileInputFormat (e.g. per sheet or per row range)
+	 *
+	 * @param job configuration of the job
+	 * @param numSplits number of splits (hint)
+	 *
+	 * @return array of splits
+	 *
+	 * @throws java.io.IOException in case of errors reading the files
+	 *
+	*/
+@Override
+public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
+	return new ExcelFileInputFormat().getSplits(job, numSplits);
+}
+
+}
@@ -0,0 +1,81 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.mapred;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.RecordWriter;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.util.Progressable;
+import org.apache.hadoop.io.NullWritable;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.logging.Log;
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeWriteConfiguration;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetRowWritable;
+import org.zuinnote.hadoop.office.format.common.writer.InvalidWriterConfigurationException;
+import org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException;
+
+/*
+* Writes Excel files like ExcelFileOutputFormat, but takes rows (SpreadSheetRowWritable) instead of single cells, e.g. the rows read by ExcelRowFileInputFormat. All existing cells of a row are written.
+*
+*/
+
+public class ExcelRowFileOutputFormat extends FileOutputFormat<NullWritable,SpreadSheetRowWritable> implements Serializable {
+/**
+	 * 
+	 */
+	private static final long serialVersionUID = -3208297374569862394L;
+private static final Log LOG = LogFactory.getLog(ExcelRowFileOutputFormat.class.getName());
+
+
+/*
+* Returns a new record writer, if mimetype is not specified it is assumed that the new Excel format (.xlsx) should be used 
+*
+* @param ignored Filesystem - is determined from the configuration
+* @param conf Job configuration
+* @param name Name of the file
+* @paramprogress progress
+*
+* @return Excel Record Writer
+*
+*/
+@Override
+public RecordWriter<NullWritable,SpreadSheetRowWritable> getRecordWriter(FileSystem ignored, JobConf conf, String name, Progressable progress) throws IOException {
+	// check if mimeType is set. If not assume new Excel format (.xlsx)
+	
+	String defaultConf=conf.get(HadoopOfficeWriteConfiguration.CONF_MIMETYPE,ExcelFileOutputFormat.DEFAULT_MIMETYPE);
+	conf.set(HadoopOfficeWriteConfiguration.CONF_MIMETYPE,defaultConf);
+	
+	Path file = getTaskOutputPath(conf, name);
+	// add suffix
+	file=file.suffix(org.zuinnote.hadoop.office.format.mapreduce.ExcelFileOutputFormat.getSuffix(conf.get(HadoopOfficeWriteConfiguration.CONF_MIMETYPE)));
+	 	try {
+			return new ExcelRecordWriter<>(file,progress,getCompressOutput(conf),getOutputCompressorClass(conf, ExcelFileOutputFormat.defaultCompressorClass),conf);
+		} catch (InvalidWriterConfigurationException | OfficeWriterException e) {
+			LOG.error(e);
+		}
+
+	return null;
+}
+
+}
@@ -0,0 +1,113 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.mapred;
+
+import java.io.IOException;
+
+import java.security.GeneralSecurityException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.logging.Log;
+
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetRowWritable;
+import org.zuinnote.hadoop.office.format.common.parser.*;
+import org.zuinnote.hadoop.office.format.common.util.SpreadSheetRowKeyBuilder;
+
+/* ExcelRowRecordReader reads rows from Excel as SpreadSheetRowWritable
+*
+* You can specify the following options:
+* See AbstractTableDocumentRecordReader
+*
+*
+*/
+
+
+public class ExcelRowRecordReader extends AbstractSpreadSheetDocumentRecordReader<Text,SpreadSheetRowWritable> {
+private static final Log LOG = LogFactory.getLog(ExcelRowRecordReader.class.getName());
+private FileSplit split;
+private SpreadSheetRowKeyBuilder keyBuilder=new SpreadSheetRowKeyBuilder();
+
+public ExcelRowRecordReader(FileSplit split, JobConf job, Reporter reporter) throws IOException,FormatNotUnderstoodException,GeneralSecurityException {
+ super(split,job,reporter);
+ LOG.debug("Initialize ExcelRowRecordReader");
+ this.split=split;
+}
+
+/**
+*
+* Create an empty key
+*
+* @return key
+*/
+@Override
+public Text createKey() {	
+	return new Text("");	
+}
+
+/**
+*
+* Create an empty value
+*
+* @return value
+*/
+@Override
+public SpreadSheetRowWritable createValue() {
+	return new SpreadSheetRowWritable();
+}
+
+
+/**
+*
+* Read row from Office document. If document does not match a defined metadata filter then it returns no rows. If no metadata filter is defined or document matches metadata filter then it returns rows, if available in the document/selected sheet
+*
+* @param key is a text containing a reference for the SpreadSheet (e.g. [name.xlsx]Sheet1!A1)
+* @param value row with the sheet name, the row number and the cells of type SpreadSheetCellDAO
+*
+* @return true if next more rows are available, false if not
+*
+* @throws java.io.IOException in case the document cannot be read completely
+*/
+@Override
+public boolean next(Text key, SpreadSheetRowWritable value) throws IOException {
+	if (!(this.getOfficeReader().getFiltered())) {
+		return false;
+	}
+	Object[] objectArray;
+	try {
+		objectArray = this.getOfficeReader().getNext();
+	} catch (ParsingAbortedException e) { // do not return the rows of a document that cannot be read completely as if it ended
+		LOG.error(e);
+		throw new IOException(e.getMessage());
+	}
+	if (objectArray==null) {
+		return false; // no more to read
+	}
+	SpreadSheetCellDAO[] cellRows = (SpreadSheetCellDAO[])objectArray;
+	this.keyBuilder.set(key, this.split.getPath().getName(), this.getOfficeReader().getCurrentSheetName(), this.getOfficeReader().getCurrentRow());
+	value.set(this.getOfficeReader().getCurrentSheetName(), this.getOfficeReader().getCurrentRow(), cellRows);
+	return true;	
+}
+
+
+
+}
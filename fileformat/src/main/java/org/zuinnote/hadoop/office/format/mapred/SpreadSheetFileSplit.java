@@ -0,0 +1,158 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+package org.zuinnote.hadoop.office.format.mapred;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileSplit;
+
+/**
+* A split of a spreadsheet document that covers only some of its sheets or only a range of rows of one sheet. The record reader only decodes the sheets (rows) assigned to the split.
+*
+*/
+
+public class SpreadSheetFileSplit extends FileSplit {
+private String[] sheets;
+private long startRow;
+private long endRow;
+private long rowOffset;
+
+/*
+* Creates an empty split (used for deserialization)
+*
+*/
+public SpreadSheetFileSplit() {
+	super();
+	this.sheets=new String[0];
+}
+
+/**
+* Creates a new split for the given sheets of a file
+*
+* @param file the file name
+* @param start the position of the first byte in the file to process
+* @param length the number of bytes in the file to process
+* @param hosts the list of hosts containing the block, possibly null
+* @param sheets names of the sheets assigned to this split
+*
+*/
+public SpreadSheetFileSplit(Path file, long start, long length, String[] hosts, String[] sheets) {
+	this(file,start,length,hosts,sheets,0L,0L,0L);
+}
+
+/**
+* Creates a new split for a range of rows of the given sheets of a file
+*
+* @param file the file name
+* @param start the position of the first byte in the file to process
+* @param length the number of bytes in the file to process
+* @param hosts the list of hosts containing the block, possibly null
+* @param sheets names of the sheets assigned to this split
+* @param startRow first row (starting from 1) assigned to this split, 0 if rows are read from the beginning of the sheet
+* @param endRow last row (starting from 1) assigned to this split, 0 if rows are read until the end of the sheet
+* @param rowOffset position of the first row in the (inflated) XML of the sheet, 0 if unknown
+*
+*/
+public SpreadSheetFileSplit(Path file, long start, long length, String[] hosts, String[] sheets, long startRow, long endRow, long rowOffset) {
+	super(file,start,length,hosts);
+	this.sheets=sheets;
+	this.startRow=startRow;
+	this.endRow=endRow;
+	this.rowOffset=rowOffset;
+}
+
+/*
+* Get the sheets assigned to this split
+*
+* @return names of the sheets
+*/
+public String[] getSheets() {
+	return this.sheets;
+}
+
+/*
+* Get the first row assigned to this split
+*
+* @return row number (starting from 1), 0 if rows are read from the beginning of the sheet
+*/
+public long getStartRow() {
+	return this.startRow;
+}
+
+/*
+* Get the last row assigned to this split
+*
+* @return row number (starting from 1), 0 if rows are read until the end of the sheet
+*/
+public long getEndRow() {
+	return this.endRow;
+}
+
+/*
+* Get the position of the first row assigned to this split in the (inflated) XML of the sheet
+*
+* @return offset in bytes, 0 if unknown
+*/
+public long getRowOffset() {
+	return this.rowOffset;
+}
+
+@Override
+public void write(DataOutput out) throws IOException {
+	super.write(out);
+	out.writeInt(this.sheets.length);
+	for (int i=0;i<this.sheets.length;i++) {
+		Text.writeString(out, this.sheets[i]);
+	}
+	out.writeLong(this.startRow);
+	out.writeLong(this.endRow);
+	out.writeLong(this.rowOffset);
+}
+
+@Override
+public void readFields(DataInput in) throws IOException {
+	super.readFields(in);
+	int numberOfSheets=in.readInt();
+	this.sheets=new String[numberOfSheets];
+	for (int i=0;i<numberOfSheets;i++) {
+		this.sheets[i]=Text.readString(in);
+	}
+	this.startRow=in.readLong();
+	this.endRow=in.readLong();
+	this.rowOffset=in.readLong();
+}
+
+@Override
+public String toString() {
+	StringBuilder result = new StringBuilder(super.toString());
+	result.append(" sheets:");
+	for (int i=0;i<this.sheets.length;i++) {
+		if (i>0) {
+			result.append(":");
+		}
+		result.append(this.sheets[i]);
+	}
+	if ((this.startRow>0) || (this.endRow>0)) {
+		result.append(" rows:"+this.startRow+"-"+this.endRow);
+	}
+	return result.toString();
+}
+
+}
@@ -18,9 +18,12 @@ package org.zuinnote.hadoop.office.format.mapreduce;
 
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 
 
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.ArrayWritable;
@@ -30,6 +33,8 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeIndexFile;
+
 
 
 /* The input format will return an array of strings that it reads per "row" from the source formats */
@@ -41,6 +46,26 @@ public abstract class AbstractSpreadSheetDocumentFileInputFormat  extends FileIn
 	
 	@Override
 	protected abstract boolean isSplitable(JobContext context, Path file);
+
+	/*
+	* Lists the input files. Index sidecars (cf. HadoopOfficeIndexFile) next to the documents are not input files
+	*
+	* @param job context of the job
+	*
+	* @return input files
+	*
+	* @throws java.io.IOException in case of errors listing the files
+	*/
+	@Override
+	protected List<FileStatus> listStatus(JobContext job) throws IOException {
+		List<FileStatus> result = new ArrayList<>();
+		for (FileStatus currentFile: super.listStatus(job)) {
+			if (!currentFile.getPath().getName().endsWith(HadoopOfficeIndexFile.SUFFIX)) {
+				result.add(currentFile);
+			}
+		}
+		return result;
+	}
 	
 
 
@@ -43,9 +43,11 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.Log;
 
 import org.zuinnote.hadoop.office.format.common.HadoopFileReader;
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeIndexFile;
 import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
 import org.zuinnote.hadoop.office.format.common.OfficeReader;
 import org.zuinnote.hadoop.office.format.common.parser.*;
+import org.zuinnote.hadoop.office.format.common.util.ReadAheadInputStream;
 
 
 
@@ -79,7 +81,18 @@ private HadoopOfficeReadConfiguration hocr;
 */
 public AbstractSpreadSheetDocumentRecordReader(Configuration conf) {
  	// parse configuration
-	this.hocr=new HadoopOfficeReadConfiguration(conf);
+	this(conf,new HadoopOfficeReadConfiguration(conf));
+ }
+
+/**
+* Creates an Abstract Record Reader for tables from various document formats with an already parsed configuration, e.g. shared by the readers of several files read one after the other (cf. CombineExcelRecordReader)
+* @param conf Configuration: configuration of the job
+* @param hocr HadoopOffice configuration for reading files parsed from conf
+*
+*
+*/
+public AbstractSpreadSheetDocumentRecordReader(Configuration conf, HadoopOfficeReadConfiguration hocr) {
+	this.hocr=hocr;
      this.conf=conf;	
  }
 
@@ -104,6 +117,13 @@ try {
     final Path file = fSplit.getPath();
     codec = new CompressionCodecFactory(context.getConfiguration()).getCodec(file);
     this.hocr.setFileName(file.getName());
+    if (split instanceof SpreadSheetFileSplit) { // only decode the sheets (rows) assigned to this split
+	SpreadSheetFileSplit sSplit = (SpreadSheetFileSplit)split;
+	this.hocr.setSheets(getSheetsConfiguration(sSplit.getSheets()));
+	this.hocr.setRowRangeStart(sSplit.getStartRow());
+	this.hocr.setRowRangeEnd(sSplit.getEndRow());
+	this.hocr.setRowRangeOffset(sSplit.getRowOffset());
+    }
     FSDataInputStream fileIn = file.getFileSystem(conf).open(file);
     // open stream
       if (isCompressedInput()) { // decompress
@@ -111,19 +131,27 @@ try {
       	if (codec instanceof SplittableCompressionCodec) {
 		LOG.debug("Reading from a compressed file \""+file+"\" with splittable compression codec");
         	final SplitCompressionInputStream cIn =((SplittableCompressionCodec)codec).createInputStream(fileIn, decompressor, start, end,SplittableCompressionCodec.READ_MODE.CONTINUOUS);
-		officeReader = new OfficeReader(cIn, this.hocr);  
+		officeReader = new OfficeReader(this.getPipelinedInputStream(cIn), this.hocr);  
 		start = cIn.getAdjustedStart();
        		end = cIn.getAdjustedEnd();
         	filePosition = cIn; // take pos from compressed stream
       } else {
 	LOG.debug("Reading from a compressed file \""+file+"\" with non-splittable compression codec");
-	officeReader = new OfficeReader(codec.createInputStream(fileIn,decompressor), this.hocr);
+	officeReader = new OfficeReader(this.getPipelinedInputStream(codec.createInputStream(fileIn,decompressor)), this.hocr);
         filePosition = fileIn;
       }
     } else {
 	LOG.debug("Reading from an uncompressed file \""+file+"\"");
+	if (this.hocr.getIndexSidecar()) { // the parser reads only the needed parts of the file if it is indexed
+		this.hocr.setWorkbookIndex(HadoopOfficeIndexFile.read(conf, file, this.hocr));
+	}
       fileIn.seek(start);
-	officeReader = new OfficeReader(fileIn, this.hocr);  
+	this.hocr.setFileLength(end); // Excel files are not split, so the split ends at the end of the file
+	if ((this.hocr.getWorkbookIndex()==null) && (!this.hocr.getLowFootprint() || (this.hocr.getPassword()==null))) {
+		officeReader = new OfficeReader(this.getPipelinedInputStream(fileIn), this.hocr);
+	} else { // positioned reads of the parts of the file (or of the segments of an encrypted file in low footprint mode)
+		officeReader = new OfficeReader(fileIn, this.hocr);
+	}  
       filePosition = fileIn;
     }
     // initialize reader
@@ -217,6 +245,39 @@ if (start == end) {
     }
 }
 
+/*
+* Converts the sheets of a split into the format of hadoopoffice.read.sheets
+*
+* @param sheets names of the sheets
+*
+* @return ":" separated list of sheets
+*/
+private static String getSheetsConfiguration(String[] sheets) {
+	StringBuilder result = new StringBuilder();
+	for (int i=0;i<sheets.length;i++) {
+		if (i>0) {
+			result.append(":");
+		}
+		result.append(sheets[i]);
+	}
+	return result.toString();
+}
+
+/*
+* Reads a stream ahead in a background thread if the pipeline is enabled (cf. hadoopoffice.read.pipeline), so that reading and decompressing the file overlaps with parsing
+*
+* @param in stream of the file
+*
+* @return stream read ahead or in if the pipeline is not enabled
+*/
+private InputStream getPipelinedInputStream(InputStream in) {
+	if (!this.hocr.getPipeline()) {
+		return in;
+	}
+	LOG.debug("Reading file ahead of parsing");
+	return new ReadAheadInputStream(in, this.hocr.getPipelineBufferSize(), ReadAheadInputStream.DEFAULT_NUMBER_OF_BUFFERS, "hadoopoffice-readahead-"+this.hocr.getFileName());
+}
+
 /*
 * Determines if the input is compressed or not
 *
@@ -27,6 +27,9 @@ import java.util.Map;
 
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.util.Progressable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.RecordWriter;
@@ -37,8 +40,11 @@ import org.apache.commons.logging.Log;
 
 import org.zuinnote.hadoop.office.format.common.HadoopFileReader;
 import org.zuinnote.hadoop.office.format.common.HadoopOfficeWriteConfiguration;
+import org.zuinnote.hadoop.office.format.common.HadoopUtil;
 import org.zuinnote.hadoop.office.format.common.OfficeWriter;
+import org.zuinnote.hadoop.office.format.common.PartitionedOfficeWriter;
 import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetRowWritable;
 import org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException;
 import org.zuinnote.hadoop.office.format.common.writer.*;
 
@@ -54,6 +60,7 @@ public static final Log LOG = LogFactory.getLog(AbstractSpreadSheetDocumentRecor
 private OfficeWriter officeWriter;
 private Map<String,InputStream> linkedWorkbooksMap;
 private HadoopOfficeWriteConfiguration howc;
+private PartitionedOfficeWriter partitionedWriter;
 private HadoopFileReader currentReader;
 private DataOutputStream out;
 
@@ -83,11 +90,50 @@ public AbstractSpreadSheetDocumentRecordWriter() {
 *
 */
 public AbstractSpreadSheetDocumentRecordWriter(DataOutputStream out, String fileName, Configuration conf) throws IOException,InvalidWriterConfigurationException,InvalidCellSpecificationException,FormatNotUnderstoodException, GeneralSecurityException, OfficeWriterException {
- 	this.out=out;
 	// parse configuration
      this.howc=new HadoopOfficeWriteConfiguration(conf,fileName);
-       // load linked workbooks as inputstreams
       this.currentReader= new HadoopFileReader(conf);
+      this.createOfficeWriter(out);
+}
+
+/**
+* Creates an Abstract Record Writer for tables to various document formats. Depending on the configuration (e.g. hadoopoffice.write.rollover.rows) the tables are written into several files
+* 
+* @param file file of the task. Further files are named like this file with the sheet name and/or a number appended
+* @param progress progress of the task
+* @param compressed true if the files should be compressed
+* @param compressorClass codec to compress the files
+* @param conf Configuration to be parsed by HadoopOfficeWriteConfiguration
+*
+* @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+* @throws org.zuinnote.hadoop.office.format.common.writer.InvalidWriterConfigurationException in case the writer could not be configured correctly
+* @throws org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException in case of issues creating the initial document
+*
+*/
+public AbstractSpreadSheetDocumentRecordWriter(Path file, Progressable progress, boolean compressed, Class<? extends CompressionCodec> compressorClass, Configuration conf) throws IOException, InvalidWriterConfigurationException, OfficeWriterException {
+	// parse configuration
+	this.howc=new HadoopOfficeWriteConfiguration(conf,file.getName());
+	this.currentReader= new HadoopFileReader(conf);
+	if (PartitionedOfficeWriter.isPartitioned(this.howc)) { // several files per task
+		this.partitionedWriter=new PartitionedOfficeWriter(conf,file,progress,compressed,compressorClass,this.currentReader);
+	} else {
+		this.createOfficeWriter(HadoopUtil.getDataOutputStream(conf,file,progress,compressed,compressorClass));
+	}
+}
+
+/**
+* Creates the OfficeWriter for a single file
+*
+* @param out OutputStream to which the tables should be written to
+*
+* @throws java.io.IOException in case of errors reading linked workbooks or the template
+* @throws org.zuinnote.hadoop.office.format.common.writer.InvalidWriterConfigurationException in case the writer could not be configured correctly
+* @throws org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException in case of issues creating the initial document
+*
+*/
+private void createOfficeWriter(DataOutputStream out) throws IOException, InvalidWriterConfigurationException, OfficeWriterException {
+	this.out=out;
+	// load linked workbooks as inputstreams
       this.linkedWorkbooksMap=this.currentReader.loadLinkedWorkbooks(this.howc.getLinkedWorkbooksName());
      // create OfficeWriter 
        this.officeWriter=new OfficeWriter(this.howc);
@@ -100,20 +146,60 @@ public AbstractSpreadSheetDocumentRecordWriter(DataOutputStream out, String file
 
 /**
 *
-* Write SpreadSheetDAO into a table document. Note this does not necessarily mean it is already written in the OutputStream, but usually the in-memory representation.
+* Write SpreadSheetDAO into a table document. Note this does not necessarily mean it is already written in the OutputStream, but usually the in-memory representation. Several threads can write at the same time without waiting for each other if hadoopoffice.write.concurrent is true.
 * @param key is ignored
-* @param value is a SpreadSheet Cell to be inserted into the table document
+* @param value is a SpreadSheet Cell to be inserted into the table document or a SpreadSheetRowWritable, whose cells are inserted
 *
 */
 @Override
-public synchronized void write(NullWritable key, SpreadSheetCellDAO value) throws IOException {
+public void write(NullWritable key, SpreadSheetCellDAO value) throws IOException {
+	if ((this.howc.getConcurrent()) && (this.partitionedWriter==null)) { // the office writer can be used by several threads at the same time
+		this.writeCells(value);
+	} else {
+		synchronized(this) {
+			this.writeCells(value);
+		}
+	}
+}
 
+/**
+*
+* Writes a SpreadSheetDAO or all cells of a SpreadSheetRowWritable into the office writer
+* @param value is a SpreadSheet Cell to be inserted into the table document or a SpreadSheetRowWritable, whose cells are inserted
+*
+*/
+private void writeCells(SpreadSheetCellDAO value) throws IOException {
 		try {
-			this.officeWriter.write(value);
+			if (value instanceof SpreadSheetRowWritable) {
+				SpreadSheetRowWritable row = (SpreadSheetRowWritable)value;
+				for (int i=0;i<row.getNumberOfCells();i++) {
+					if (row.getCell(i)!=null) {
+						this.writeCell(row.getCell(i));
+					}
+				}
+			} else {
+				this.writeCell(value);
+			}
+		} catch (MemoryBudgetExceededException e) { // the document cannot be completed
+			LOG.error(e);
+			throw new IOException(e.getMessage());
 		} catch (OfficeWriterException e) {
 			LOG.error(e);
 		}
-	
+}
+
+/**
+*
+* Writes a cell into the office writer or into the current file of its partition
+* @param cell cell to be inserted into the table document
+*
+*/
+private void writeCell(Object cell) throws OfficeWriterException, IOException {
+	if (this.partitionedWriter!=null) {
+		this.partitionedWriter.write(cell);
+	} else {
+		this.officeWriter.write(cell);
+	}
 }
 
 
@@ -126,7 +212,11 @@ public synchronized void write(NullWritable key, SpreadSheetCellDAO value) throw
 public synchronized void  close(TaskAttemptContext context) throws IOException {
 
 		try {
-			this.officeWriter.close();
+			if (this.partitionedWriter!=null) {
+				this.partitionedWriter.close();
+			} else {
+				this.officeWriter.close();
+			}
 		}  finally {
 			if (this.out!=null) {
 				this.out.close();
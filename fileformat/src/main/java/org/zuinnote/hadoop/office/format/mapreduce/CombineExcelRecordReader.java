@@ -0,0 +1,197 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.mapreduce;
+
+import java.io.IOException;
+
+import java.security.GeneralSecurityException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.ArrayWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.logging.Log;
+
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+import org.zuinnote.hadoop.office.format.common.parser.*;
+
+/* CombineExcelRecordReader reads the rows of several Excel documents of a split of CombineExcelFileInputFormat one after the other
+*
+* Each document is read by an ExcelRecordReader (see there for the options). The configuration is parsed and the formatter of the cells (cf. MSExcelParser.createDataFormatter) is created only once for all documents of the split. Only one document is open at a time.
+*
+*
+*/
+
+
+public class CombineExcelRecordReader extends RecordReader<Text,ArrayWritable> {
+private static final Log LOG = LogFactory.getLog(CombineExcelRecordReader.class.getName());
+private CombineFileSplit split;
+private TaskAttemptContext context;
+private HadoopOfficeReadConfiguration hocr;
+private ExcelRecordReader currentReader=null;
+private int nextDocument=0;
+private long completedLength=0L;
+private Text currentKey=new Text("");
+private ArrayWritable currentValue=new ArrayWritable(SpreadSheetCellDAO.class);
+
+/**
+* Initializes reader
+* @param split Split to use (assumed to be a combined file split)
+* @param context context of the job
+*
+*
+* @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+* @throws java.lang.InterruptedException in case of thread interruption
+*
+*/
+@Override
+public void initialize(InputSplit split, TaskAttemptContext context) throws IOException, InterruptedException {
+	this.split=(CombineFileSplit)split;
+	this.context=context;
+	// parse configuration once for all documents
+	this.hocr=new HadoopOfficeReadConfiguration(context.getConfiguration());
+	this.hocr.setDataFormatter(MSExcelParser.createDataFormatter(this.hocr));
+	LOG.debug("Reading "+this.split.getNumPaths()+" documents");
+}
+
+/**
+*
+*  get current key after calling next()
+*
+* @return key is a text containing a reference for the SpreadSheet (e.g. [name.xlsx]Sheet1!A1)
+*/
+@Override
+public Text getCurrentKey() {
+	return this.currentKey;
+}
+
+/**
+*
+*  get current value after calling next()
+*
+* @return is an array of type SpreadSheetDAO
+*/
+@Override
+public ArrayWritable getCurrentValue() {
+	return this.currentValue;
+}
+
+/**
+*
+* Read row from the current Office document. If it has no more rows then the next document of the split is opened
+*
+* @return true if next more rows are available, false if not
+*
+* @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+* @throws java.lang.InterruptedException in case a document cannot be read
+*/
+@Override
+public boolean nextKeyValue() throws IOException, InterruptedException {
+	while ((this.currentReader!=null) || (this.openNextDocument())) {
+		if (this.currentReader.nextKeyValue()) {
+			this.currentKey.set(this.currentReader.getCurrentKey());
+			this.currentValue.set(this.currentReader.getCurrentValue().get());
+			return true;
+		}
+		this.closeCurrentDocument();
+	}
+	return false;
+}
+
+/*
+* Returns how much of the documents have been processed in terms of bytes
+*
+* @return progress percentage
+*
+* @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+*
+*/
+@Override
+public float getProgress() throws IOException {
+	if ((this.split==null) || (this.split.getLength()==0)) {
+		return 0.0f;
+	}
+	float currentLength=0.0f;
+	if (this.currentReader!=null) {
+		currentLength=this.currentReader.getProgress()*this.split.getLength(this.nextDocument-1);
+	}
+	return Math.min(1.0f, (this.completedLength+currentLength)/(float)this.split.getLength());
+}
+
+/*
+* Closes the current document
+*
+*
+* @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+*
+*/
+@Override
+public void close() throws IOException {
+	this.closeCurrentDocument();
+}
+
+/*
+* Opens the next document of the split
+*
+* @return true if there is a next document, false if not
+*
+* @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+* @throws java.lang.InterruptedException in case the document cannot be read
+*/
+private boolean openNextDocument() throws IOException, InterruptedException {
+	if (this.nextDocument>=this.split.getNumPaths()) {
+		return false;
+	}
+	FileSplit documentSplit = new FileSplit(this.split.getPath(this.nextDocument),this.split.getOffset(this.nextDocument),this.split.getLength(this.nextDocument),null);
+	this.nextDocument++;
+	LOG.debug("Reading document \""+documentSplit.getPath()+"\"");
+	try {
+		this.currentReader = new ExcelRecordReader(this.context.getConfiguration(), documentSplit, this.hocr);
+	} catch (FormatNotUnderstoodException e) {
+		LOG.error(e);
+		throw new InterruptedException();
+	} catch (GeneralSecurityException gse) {
+		LOG.error(gse);
+		throw new InterruptedException();
+	}
+	this.currentReader.initialize(documentSplit, this.context);
+	return true;
+}
+
+/*
+* Closes the current document
+*
+* @throws java.io.IOException in case of errors reading from the filestream provided by Hadoop
+*/
+private void closeCurrentDocument() throws IOException {
+	if (this.currentReader!=null) {
+		try {
+			this.currentReader.close();
+		} finally {
+			this.completedLength+=this.split.getLength(this.nextDocument-1);
+			this.currentReader=null;
+		}
+	}
+}
+
+}
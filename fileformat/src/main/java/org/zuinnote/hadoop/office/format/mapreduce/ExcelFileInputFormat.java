@@ -17,6 +17,9 @@
 package org.zuinnote.hadoop.office.format.mapreduce;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 
 import org.apache.hadoop.conf.Configuration;
@@ -35,6 +38,8 @@ import org.apache.commons.logging.Log;
 
 import java.security.GeneralSecurityException;
 
+import org.zuinnote.hadoop.office.format.common.HadoopFileReader;
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeIndexFile;
 import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
 import org.zuinnote.hadoop.office.format.common.parser.*;
 
@@ -68,6 +73,8 @@ public void configure (Configuration conf) {
 	 * Unfortunately, we cannot split Excel documents correctly. Apache POI/library requires full documents.
 	 * Nevertheless, most of the time you have anyway small (smaller than default HDFS blocksize) Office documents that can be processed fast. 
 	 * Hence, you should put them in Hadoop Archives (HAR) either uncompressed or compressed to reduce load on namenode.
+	 * Many small documents can also be read with few tasks by combining several documents into one split (see CombineExcelFileInputFormat).
+	 * Large workbooks with many sheets can be distributed by sheet instead (see hadoopoffice.read.split.sheets and getSplits). Large sheets of new Excel files (.xlsx) can be divided into row ranges (see hadoopoffice.read.split.rows).
 	 *
 	*/
 	@Override
@@ -76,4 +83,87 @@ public void configure (Configuration conf) {
   	}	
 
 
+	/**
+	 * Creates the splits. If hadoopoffice.read.split.sheets is true then one split per sheet (or group of sheets, see hadoopoffice.read.split.sheetspersplit) is created. The sheet names are read once from the workbook index (workbook.xml or BoundSheet records).
+	 * If hadoopoffice.read.split.rows is greater than 0 then each sheet of a new Excel file (.xlsx) is divided into row ranges with at most this number of rows (one split per row range). The positions of the rows are determined once by scanning the sheets (cf. MSExcelSheetRowIndex) or taken from the index sidecar of the file (cf. HadoopOfficeIndexFile, hadoopoffice.read.index.sidecar). Sheets of old Excel files (.xls) are not divided. Row ranges are only created in low footprint mode (hadoopoffice.read.lowFootprint), because the standard parser loads the full workbook for each split. Otherwise one split per sheet is created.
+	 * Each split covers the full file, but the record reader only decodes the sheets (rows) assigned to it.
+	 *
+	 * @param job context of the job
+	 *
+	 * @return list of splits
+	 *
+	 * @throws java.io.IOException in case of errors reading the files
+	 *
+	*/
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		List<InputSplit> fileSplits = super.getSplits(job);
+		HadoopOfficeReadConfiguration hocr = new HadoopOfficeReadConfiguration(job.getConfiguration());
+		if ((hocr.getSplitRows()>0) && (!hocr.getLowFootprint())) {
+			LOG.warn("Row ranges (hadoopoffice.read.split.rows) are only supported in low footprint mode (hadoopoffice.read.lowFootprint). One split per sheet is created instead");
+			hocr.setSplitRows(0);
+			hocr.setSplitSheets(true);
+		}
+		if ((!hocr.getSplitSheets()) && (hocr.getSplitRows()<=0)) {
+			return fileSplits;
+		}
+		String[] selectedSheets=null;
+		if ((hocr.getSheets()!=null) && !("".equals(hocr.getSheets()))) {
+			selectedSheets=hocr.getSheets().split(":");
+		}
+		List<InputSplit> result = new ArrayList<>();
+		HadoopFileReader currentHFR = new HadoopFileReader(job.getConfiguration());
+		try {
+			for (InputSplit currentSplit: fileSplits) {
+				FileSplit currentFileSplit = (FileSplit) currentSplit;
+				hocr.setFileName(currentFileSplit.getPath().getName());
+				MSExcelWorkbookIndex currentIndex = null;
+				if (hocr.getIndexSidecar()) {
+					currentIndex = HadoopOfficeIndexFile.read(job.getConfiguration(), currentFileSplit.getPath(), hocr);
+				}
+				if (currentIndex==null) {
+					currentIndex = new MSExcelWorkbookIndex(hocr);
+					InputStream currentIn = currentHFR.openFile(currentFileSplit.getPath());
+					try {
+						currentIndex.parse(currentIn);
+					} catch (FormatNotUnderstoodException e) {
+						LOG.error(e);
+						LOG.warn("Cannot read sheets of \""+currentFileSplit.getPath()+"\". One split is created for the whole file");
+						result.add(currentFileSplit);
+						continue;
+					} finally {
+						currentIn.close();
+					}
+				}
+				if (hocr.getSplitRows()>0) {
+					List<String[]> sheetGroups = currentIndex.getSheetGroups(selectedSheets, 1);
+					int numberOfSplits=0;
+					for (String[] currentSheetGroup: sheetGroups) {
+						MSExcelSheetRowIndex currentRowIndex = currentIndex.getSheetRowIndex(currentSheetGroup[0]);
+						if (currentRowIndex==null) {
+							LOG.info("No row index for sheet \""+currentSheetGroup[0]+"\" of \""+currentFileSplit.getPath()+"\". One split is created for the whole sheet");
+							result.add(new SpreadSheetFileSplit(currentFileSplit.getPath(),currentFileSplit.getStart(),currentFileSplit.getLength(),currentFileSplit.getLocations(),currentSheetGroup));
+							numberOfSplits++;
+							continue;
+						}
+						for (MSExcelSheetRowIndex.RowRange currentRowRange: currentRowIndex.getRowRanges(hocr.getSplitRows())) {
+							result.add(new SpreadSheetFileSplit(currentFileSplit.getPath(),currentFileSplit.getStart(),currentFileSplit.getLength(),currentFileSplit.getLocations(),currentSheetGroup,currentRowRange.getStartRow(),currentRowRange.getEndRow(),currentRowRange.getOffset()));
+							numberOfSplits++;
+						}
+					}
+					LOG.info("Creating "+numberOfSplits+" splits for \""+currentFileSplit.getPath()+"\"");
+				} else {
+					List<String[]> sheetGroups = currentIndex.getSheetGroups(selectedSheets, hocr.getSheetsPerSplit());
+					LOG.info("Creating "+sheetGroups.size()+" splits for \""+currentFileSplit.getPath()+"\"");
+					for (String[] currentSheetGroup: sheetGroups) {
+						result.add(new SpreadSheetFileSplit(currentFileSplit.getPath(),currentFileSplit.getStart(),currentFileSplit.getLength(),currentFileSplit.getLocations(),currentSheetGroup));
+					}
+				}
+			}
+		} finally {
+			currentHFR.close();
+		}
+		return result;
+	}
+
 }
@@ -32,7 +32,6 @@ import java.security.GeneralSecurityException;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.Log;
 import org.zuinnote.hadoop.office.format.common.HadoopOfficeWriteConfiguration;
-import org.zuinnote.hadoop.office.format.common.HadoopUtil;
 import org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException;
 import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
 import org.zuinnote.hadoop.office.format.common.writer.InvalidWriterConfigurationException;
@@ -70,7 +69,7 @@ public RecordWriter<NullWritable,SpreadSheetCellDAO> getRecordWriter(TaskAttempt
 
 
 	 	try {
-			return new ExcelRecordWriter<>(HadoopUtil.getDataOutputStream(conf,file,context,getCompressOutput(context),getOutputCompressorClass(context, ExcelFileOutputFormat.defaultCompressorClass)),file.getName(),conf);
+			return new ExcelRecordWriter<>(file,context,getCompressOutput(context),getOutputCompressorClass(context, ExcelFileOutputFormat.defaultCompressorClass),conf);
 		} catch (InvalidWriterConfigurationException | InvalidCellSpecificationException | FormatNotUnderstoodException
 				| GeneralSecurityException | OfficeWriterException e) {
 			LOG.error(e);
@@ -28,8 +28,10 @@ import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.Log;
 
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
 import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
 import org.zuinnote.hadoop.office.format.common.parser.*;
+import org.zuinnote.hadoop.office.format.common.util.SpreadSheetRowKeyBuilder;
 
 /* ExcelRecordReader reads rows from Excel
 *
@@ -43,6 +45,7 @@ import org.zuinnote.hadoop.office.format.common.parser.*;
 public class ExcelRecordReader extends AbstractSpreadSheetDocumentRecordReader<Text,ArrayWritable> {
 private static final Log LOG = LogFactory.getLog(ExcelRecordReader.class.getName());
 private FileSplit split;
+private SpreadSheetRowKeyBuilder keyBuilder=new SpreadSheetRowKeyBuilder();
 private Text currentKey=new Text("");
 private ArrayWritable currentValue=new ArrayWritable(SpreadSheetCellDAO.class);
 
@@ -52,6 +55,20 @@ public ExcelRecordReader(Configuration conf, FileSplit split) throws IOException
  this.split=split;
 }
 
+/*
+* Creates a reader with an already parsed configuration, e.g. shared by the readers of several files read one after the other (cf. CombineExcelRecordReader)
+*
+* @param conf configuration of the job
+* @param split file to read
+* @param hocr HadoopOffice configuration for reading files parsed from conf
+*
+*/
+public ExcelRecordReader(Configuration conf, FileSplit split, HadoopOfficeReadConfiguration hocr) throws IOException,FormatNotUnderstoodException,GeneralSecurityException {
+ super(conf,hocr);
+ LOG.debug("Initalizing ExcelRecordReader");
+ this.split=split;
+}
+
 /**
 *
 *  get current key after calling next()
@@ -80,18 +97,26 @@ public ArrayWritable getCurrentValue() {
 * Read row from Office document. If document does not match a defined metadata filter then it returns no rows. If no metadata filter is defined or document matches metadata filter then it returns rows, if available in the document/selected sheet
 *
 * @return true if next more rows are available, false if not
+*
+* @throws java.io.IOException in case the document cannot be read completely
 */
 @Override
 public boolean nextKeyValue() throws IOException {
 	if (!(this.getOfficeReader().getFiltered())) {
 		return false;
 	}
-	Object[] objectArray = this.getOfficeReader().getNext();
+	Object[] objectArray;
+	try {
+		objectArray = this.getOfficeReader().getNext();
+	} catch (ParsingAbortedException e) { // do not return the rows of a document that cannot be read completely as if it ended
+		LOG.error(e);
+		throw new IOException(e.getMessage());
+	}
 	if (objectArray==null) {
 		return false; // no more to read
 	}
 	SpreadSheetCellDAO[] cellRows = (SpreadSheetCellDAO[])objectArray;
-	this.currentKey.set(new Text("["+this.split.getPath().getName()+"]"+this.getOfficeReader().getCurrentSheetName()+"!A"+this.getOfficeReader().getCurrentRow()));
+	this.keyBuilder.set(this.currentKey, this.split.getPath().getName(), this.getOfficeReader().getCurrentSheetName(), this.getOfficeReader().getCurrentRow());
 	this.currentValue.set(cellRows);
 	return true;	
 }
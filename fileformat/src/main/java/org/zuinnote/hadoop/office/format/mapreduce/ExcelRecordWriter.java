@@ -27,6 +27,9 @@ import org.apache.commons.logging.Log;
 
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.util.Progressable;
 
 import org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException;
 
@@ -67,4 +70,14 @@ public ExcelRecordWriter(DataOutputStream out, String fileName, Configuration co
 }
 
 
+/*
+* Instantiate the constructor of AbstractSpreadSheetDocumentRecordWriter, which writes into one or more files depending on the configuration
+*
+*/
+public ExcelRecordWriter(Path file, Progressable progress, boolean compressed, Class<? extends CompressionCodec> compressorClass, Configuration conf) throws IOException, InvalidWriterConfigurationException, InvalidCellSpecificationException, FormatNotUnderstoodException, GeneralSecurityException, OfficeWriterException {
+	super(file,progress,compressed,compressorClass,conf);
+	LOGEW.debug("Initializing ExcelRecordWriter");
+}
+
+
 }
@@ -0,0 +1,88 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.mapreduce;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeReadConfiguration;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetRowWritable;
+import org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException;
+
+/*
+* Reads Excel files like ExcelFileInputFormat, but returns each row as SpreadSheetRowWritable instead of an ArrayWritable of SpreadSheetCellDAO. The rows are smaller if they are shuffled or written to SequenceFiles, because the sheet name and row number are only stored once per row.
+* All options of ExcelFileInputFormat are supported and the splits are the same.
+*
+*/
+
+public class ExcelRowFileInputFormat extends FileInputFormat<Text,SpreadSheetRowWritable> {
+
+private static final Log LOG = LogFactory.getLog(ExcelRowFileInputFormat.class.getName());
+
+@Override
+public RecordReader<Text,SpreadSheetRowWritable> createRecordReader(InputSplit split, TaskAttemptContext ctx) throws IOException {
+/** Create reader **/
+try {
+		 // send configuration option to ms excel. The format of the Excel (old vs new) is detected automaitcally
+ 		ctx.getConfiguration().set(HadoopOfficeReadConfiguration.CONF_MIMETYPE,"ms-excel");
+		return new ExcelRowRecordReader(ctx.getConfiguration(), (FileSplit) split);
+	} catch (FormatNotUnderstoodException e) {
+		// log
+		LOG.error(e);
+	} catch (GeneralSecurityException gse) {
+		LOG.error(gse);
+	}
+return null;
+}
+
+	/**
+	 * Excel documents cannot be split by bytes (see ExcelFileInputFormat)
+	 *
+	*/
+	@Override
+  	protected boolean isSplitable(JobContext context, Path file) {
+		return false;
+  	}
+
+	/**
+	 * Creates the same splits as ExcelFileInputFormat (e.g. per sheet or per row range)
+	 *
+	 * @param job context of the job
+	 *
+	 * @return list of splits
+	 *
+	 * @throws java.io.IOException in case of errors reading the files
+	 *
+	*/
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		return new ExcelFileInputFormat().getSplits(job);
+	}
+
+}
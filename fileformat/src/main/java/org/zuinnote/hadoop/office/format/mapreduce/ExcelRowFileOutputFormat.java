@@ -0,0 +1,82 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.io.NullWritable;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import java.security.GeneralSecurityException;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.logging.Log;
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeWriteConfiguration;
+import org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetRowWritable;
+import org.zuinnote.hadoop.office.format.common.writer.InvalidWriterConfigurationException;
+import org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException;
+import org.zuinnote.hadoop.office.format.common.writer.InvalidCellSpecificationException;
+
+/*
+* Writes Excel files like ExcelFileOutputFormat, but takes rows (SpreadSheetRowWritable) instead of single cells, e.g. the rows read by ExcelRowFileInputFormat. All existing cells of a row are written.
+*
+*/
+
+public class ExcelRowFileOutputFormat extends FileOutputFormat<NullWritable,SpreadSheetRowWritable> implements Serializable {
+/**
+	 * 
+	 */
+	private static final long serialVersionUID = 6379211465366235447L;
+private static final Log LOG = LogFactory.getLog(ExcelRowFileOutputFormat.class.getName());
+
+
+/*
+* Returns a new record writer, if mimetype is not specified it is assumed that the new Excel format (.xlsx) should be used 
+*
+* @param context MR context
+*
+* @return Excel Record Writer
+*
+*/
+@Override
+public RecordWriter<NullWritable,SpreadSheetRowWritable> getRecordWriter(TaskAttemptContext context) throws IOException {
+	// check if mimeType is set. If not assume new Excel format (.xlsx)
+	Configuration conf=context.getConfiguration();
+	String defaultConf=conf.get(HadoopOfficeWriteConfiguration.CONF_MIMETYPE,ExcelFileOutputFormat.DEFAULT_MIMETYPE);
+	conf.set(HadoopOfficeWriteConfiguration.CONF_MIMETYPE,defaultConf);
+	// add suffix	
+	Path file = getDefaultWorkFile(context,ExcelFileOutputFormat.getSuffix(conf.get(HadoopOfficeWriteConfiguration.CONF_MIMETYPE)));
+
+
+	 	try {
+			return new ExcelRecordWriter<>(file,context,getCompressOutput(context),getOutputCompressorClass(context, ExcelFileOutputFormat.defaultCompressorClass),conf);
+		} catch (InvalidWriterConfigurationException | InvalidCellSpecificationException | FormatNotUnderstoodException
+				| GeneralSecurityException | OfficeWriterException e) {
+			LOG.error(e);
+		}
+
+	return null;
+}
+
+}
@@ -0,0 +1,111 @@
+/**
+* Copyright 2017 ZuInnoTe (Jörn Franke) <zuinnote@gmail.com>
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+**/
+
+package org.zuinnote.hadoop.office.format.mapreduce;
+
+import java.io.IOException;
+
+import java.security.GeneralSecurityException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.commons.logging.Log;
+
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetCellDAO;
+import org.zuinnote.hadoop.office.format.common.dao.SpreadSheetRowWritable;
+import org.zuinnote.hadoop.office.format.common.parser.*;
+import org.zuinnote.hadoop.office.format.common.util.SpreadSheetRowKeyBuilder;
+
+/* ExcelRowRecordReader reads rows from Excel as SpreadSheetRowWritable
+*
+* You can specify the following options:
+* See AbstractTableDocumentRecordReader
+*
+*
+*/
+
+
+public class ExcelRowRecordReader extends AbstractSpreadSheetDocumentRecordReader<Text,SpreadSheetRowWritable> {
+private static final Log LOG = LogFactory.getLog(ExcelRowRecordReader.class.getName());
+private FileSplit split;
+private SpreadSheetRowKeyBuilder keyBuilder=new SpreadSheetRowKeyBuilder();
+private Text currentKey=new Text("");
+private SpreadSheetRowWritable currentValue=new SpreadSheetRowWritable();
+
+public ExcelRowRecordReader(Configuration conf, FileSplit split) throws IOException,FormatNotUnderstoodException,GeneralSecurityException {
+ super(conf);
+ LOG.debug("Initalizing ExcelRowRecordReader");
+ this.split=split;
+}
+
+/**
+*
+*  get current key after calling next()
+*
+* @return key is a text containing a reference for the SpreadSheet (e.g. [name.xlsx]Sheet1!A1)
+*/
+@Override
+public Text getCurrentKey() {
+	return this.currentKey;
+}
+
+/**
+*
+*  get current value after calling next()
+*
+* @return row with the sheet name, the row number and the cells of type SpreadSheetCellDAO
+*/
+@Override
+public SpreadSheetRowWritable getCurrentValue() {
+	return this.currentValue;
+}
+
+
+/**
+*
+* Read row from Office document. If document does not match a defined metadata filter then it returns no rows. If no metadata filter is defined or document matches metadata filter then it returns rows, if available in the document/selected sheet
+*
+* @return true if next more rows are available, false if not
+*
+* @throws java.io.IOException in case the document cannot be read completely
+*/
+@Override
+public boolean nextKeyValue() throws IOException {
+	if (!(this.getOfficeReader().getFiltered())) {
+		return false;
+	}
+	Object[] objectArray;
+	try {
+		objectArray = this.getOfficeReader().getNext();
+	} catch (ParsingAbortedException e) { // do not return the rows of a document that cannot be read completely as if it ended
+		LOG.error(e);
+		throw new IOException(e.getMessage());
+	}
+	if (objectArray==null) {
+		return false; // no more to read
+	}
+	SpreadSheetCellDAO[] cellRows = (SpreadSheetCellDAO[])objectArray;
+	this.keyBuilder.set(this.currentKey, this.split.getPath().getName(), this.getOfficeReader().getCurrentSheetName(), this.getOfficeReader().getCurrentRow());
+	this.currentValue.set(this.getOfficeReader().getCurrentSheetName(), this.getOfficeReader().getCurrentRow(), cellRows);
+	return true;	
+}
+
+
+
+}
@@ -18,6 +18,7 @@
 package org.zuinnote.hadoop.office.format.mapred;
 
 import java.io.IOException;
+import java.util.GregorianCalendar;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.Files;
 import java.nio.file.FileVisitResult;
@@ -46,7 +47,10 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.ArrayWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.FileInputFormat;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.FileSplit;
@@ -66,6 +70,8 @@ import org.apache.hadoop.util.ReflectionUtils;
 
 import org.apache.poi.EncryptedDocumentException;
 
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeIndexFile;
+import org.zuinnote.hadoop.office.format.common.HadoopOfficeIndexTool;
 import org.zuinnote.hadoop.office.format.common.dao.*;
 import org.zuinnote.hadoop.office.format.common.parser.FormatNotUnderstoodException;
 import org.zuinnote.hadoop.office.format.common.writer.OfficeWriterException;
@@ -665,6 +671,44 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
     }
 
 
+    @Test
+    public void readExcelInputFormatExcel2013CombineFiles() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	Path file2013 = new Path(classLoader.getResource("excel2013test.xlsx").getFile());
+    	Path file2003 = new Path(classLoader.getResource("excel2003test.xls").getFile());
+    	FileInputFormat.setInputPaths(job, file2013, file2003);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+   	CombineExcelFileInputFormat format = new CombineExcelFileInputFormat();
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for both Excel files", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = reader.createKey();
+	ArrayWritable spreadSheetValue = reader.createValue();
+	boolean readExcel2013=false;
+	boolean readExcel2003=false;
+	int numberOfRows=0;
+	while (reader.next(spreadSheetKey,spreadSheetValue)) {
+		numberOfRows++;
+		if ("[excel2013test.xlsx]Sheet1!A1".equals(spreadSheetKey.toString())) {
+			readExcel2013=true;
+		} else if ("[excel2003test.xls]Sheet1!A1".equals(spreadSheetKey.toString())) {
+			readExcel2003=true;
+		}
+		if (spreadSheetKey.toString().endsWith("Sheet1!A3")) { // the formatter is shared by both files
+			assertEquals("Combined split contains row 3 with cell 1 == \"31/12/99\" ("+spreadSheetKey.toString()+")", "31/12/99", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+		}
+	}
+	assertTrue("Combined split contains the rows of \"excel2013test.xlsx\"", readExcel2013);
+	assertTrue("Combined split contains the rows of \"excel2003test.xls\"", readExcel2003);
+	assertEquals("Combined split contains 6 rows of each Excel file", 12, numberOfRows);
+	assertEquals("All rows of the combined split have been read", 1.0f, reader.getProgress(), 0.0f);
+	reader.close();
+    }
+
+
     @Test
     public void readExcelInputFormatExcel2013MultiSheetAll() throws IOException {
 	JobConf job = new JobConf(defaultConf);
@@ -764,6 +808,239 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
     }
 
 
+    @Test
+    public void readExcelInputFormatExcel2013MultiSheetSplitBySheet() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// one split per sheet
+	job.set("hadoopoffice.read.split.sheets","true");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("One split per sheet generated for Excel file", 2, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split 1 for Excel file contains row 1 (first sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split 1 for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A1\"", "[excel2013testmultisheet.xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split 1 for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	for (int i=2;i<=6;i++) {
+		assertTrue("Input Split 1 for Excel file contains row "+i+" (first sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	}
+	assertFalse("Input Split 1 for Excel file contains only the first sheet", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+	reader = format.getRecordReader(inputSplits[1], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	assertTrue("Input Split 2 for Excel file contains row 1 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split 2 for Excel file has keyname == \"[excel2013testmultisheet.xlsx]testsheet!A1\"", "[excel2013testmultisheet.xlsx]testsheet!A1", spreadSheetKey.toString());
+	assertEquals("Input Split 2 for Excel file contains row 1 with cell 1 == \"8\"", "8", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());	
+	assertTrue("Input Split 2 for Excel file contains row 2 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertTrue("Input Split 2 for Excel file contains row 3 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split 2 for Excel file contains row 3 with cell 3 == \"seven\"", "seven", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());	
+	assertFalse("Input Split 2 for Excel file contains only the second sheet", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2003MultiSheetSplitBySheetLowFootprint() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2003testmultisheet.xls";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+	// both sheets in one split
+	job.set("hadoopoffice.read.split.sheets","true");
+	job.set("hadoopoffice.read.split.sheetspersplit","2");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("One split for both sheets generated for Excel file", 1, inputSplits.length);
+	assertArrayEquals("Split contains both sheets", new String[]{"Sheet1","testsheet"}, ((SpreadSheetFileSplit)inputSplits[0]).getSheets());
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	for (int i=1;i<=6;i++) {
+		assertTrue("Input Split for Excel file contains row "+i+" (first sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	}
+	assertTrue("Input Split for Excel file contains row 7 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2003testmultisheet.xls]testsheet!A1\"", "[excel2003testmultisheet.xls]testsheet!A1", spreadSheetKey.toString());
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2013SingleSheetSplitByRowsLowFootprint() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+	// first sheet divided into row ranges of two rows
+	job.set("hadoopoffice.read.sheets","Sheet1");
+	job.set("hadoopoffice.read.split.rows","2");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Three row ranges generated for Excel file", 3, inputSplits.length);
+	assertEquals("Split 2 starts at row 3", 3L, ((SpreadSheetFileSplit)inputSplits[1]).getStartRow());
+	assertEquals("Split 2 ends at row 4", 4L, ((SpreadSheetFileSplit)inputSplits[1]).getEndRow());
+	assertTrue("Split 2 contains offset of row 3", ((SpreadSheetFileSplit)inputSplits[1]).getRowOffset()>0);
+	assertEquals("Split 3 ends at the end of the sheet", 0L, ((SpreadSheetFileSplit)inputSplits[2]).getEndRow());
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[1], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split 2 for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split 2 for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A3\"", "[excel2013testmultisheet.xlsx]Sheet1!A3", spreadSheetKey.toString());
+	assertTrue("Input Split 2 for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split 2 for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A4\"", "[excel2013testmultisheet.xlsx]Sheet1!A4", spreadSheetKey.toString());
+	assertFalse("Input Split 2 for Excel file contains only rows 3 and 4", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+	reader = format.getRecordReader(inputSplits[2], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	assertTrue("Input Split 3 for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split 3 for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A5\"", "[excel2013testmultisheet.xlsx]Sheet1!A5", spreadSheetKey.toString());
+	assertTrue("Input Split 3 for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));
+	assertFalse("Input Split 3 for Excel file contains only rows 5 and 6", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2013MultiSheetSplitByRowsLowFootprint() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+	// all sheets divided into row ranges of two rows
+	job.set("hadoopoffice.read.split.rows","2");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Five row ranges generated for Excel file (three for the first and two for the second sheet)", 5, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split 1 for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split 1 for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A1\"", "[excel2013testmultisheet.xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split 1 for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertTrue("Input Split 1 for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertFalse("Input Split 1 for Excel file contains only rows 1 and 2", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+	reader = format.getRecordReader(inputSplits[4], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	assertTrue("Input Split 5 for Excel file contains row 3 of the second sheet", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split 5 for Excel file has keyname == \"[excel2013testmultisheet.xlsx]testsheet!A3\"", "[excel2013testmultisheet.xlsx]testsheet!A3", spreadSheetKey.toString());
+	assertEquals("Input Split 5 for Excel file contains row 3 with cell 3 == \"seven\"", "seven", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertFalse("Input Split 5 for Excel file contains only row 3 of the second sheet", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2013MultiSheetSplitByRowsStandardFallback() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// row ranges are not supported in standard mode, one split per sheet is created instead
+	job.set("hadoopoffice.read.split.rows","2");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("One split per sheet generated for Excel file", 2, inputSplits.length);
+	assertArrayEquals("Split 1 contains the first sheet", new String[]{"Sheet1"}, ((SpreadSheetFileSplit)inputSplits[0]).getSheets());
+	assertEquals("Split 1 starts at the beginning of the sheet", 0L, ((SpreadSheetFileSplit)inputSplits[0]).getStartRow());
+	assertEquals("Split 1 ends at the end of the sheet", 0L, ((SpreadSheetFileSplit)inputSplits[0]).getEndRow());
+	assertArrayEquals("Split 2 contains the second sheet", new String[]{"testsheet"}, ((SpreadSheetFileSplit)inputSplits[1]).getSheets());
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	for (int i=1;i<=6;i++) {
+		assertTrue("Input Split 1 for Excel file contains row "+i, reader.next(spreadSheetKey,spreadSheetValue));
+	}
+	assertEquals("Input Split 1 for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A6\"", "[excel2013testmultisheet.xlsx]Sheet1!A6", spreadSheetKey.toString());
+	assertFalse("Input Split 1 for Excel file contains only the first sheet", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2013SingleSheetSplitByRowsIndexSidecarLowFootprint() throws Exception {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+	// copy the file so that the index sidecar can be created next to it
+	java.nio.file.Path indexedDir = Files.createDirectories(tmpPath.resolve("indexsidecar"));
+	java.nio.file.Path indexedFile = Files.copy(new File(fileNameSpreadSheet).toPath(), indexedDir.resolve(fileName));
+    	Path file = new Path(indexedFile.toUri());
+	// create the index sidecar storing every third row
+	job.set("hadoopoffice.read.index.rowinterval","3");
+	HadoopOfficeIndexTool indexTool = new HadoopOfficeIndexTool();
+	indexTool.setConf(job);
+	assertEquals("Index sidecar has been created", 0, indexTool.run(new String[]{file.toString()}));
+	assertTrue("Index sidecar exists", Files.exists(indexedDir.resolve(fileName+HadoopOfficeIndexFile.SUFFIX)));
+    	FileInputFormat.setInputPaths(job, new Path(indexedDir.toUri()));
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+	// row ranges are taken from the index sidecar (rounded to its interval of three rows)
+	job.set("hadoopoffice.read.split.rows","2");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Three row ranges generated for Excel file from the index sidecar (two for the first and one for the second sheet)", 3, inputSplits.length);
+	assertEquals("Split 2 starts at row 4", 4L, ((SpreadSheetFileSplit)inputSplits[1]).getStartRow());
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[1], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split 2 for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split 2 for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A4\"", "[excel2013testmultisheet.xlsx]Sheet1!A4", spreadSheetKey.toString());
+	assertTrue("Input Split 2 for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
+	assertTrue("Input Split 2 for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split 2 for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A6\"", "[excel2013testmultisheet.xlsx]Sheet1!A6", spreadSheetKey.toString());
+	assertFalse("Input Split 2 for Excel file contains only rows 4 to 6", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+	reader = format.getRecordReader(inputSplits[2], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	assertTrue("Input Split 3 for Excel file contains row 1 of the second sheet", reader.next(spreadSheetKey,spreadSheetValue));
+	assertTrue("Input Split 3 for Excel file contains row 2 of the second sheet", reader.next(spreadSheetKey,spreadSheetValue));
+	assertTrue("Input Split 3 for Excel file contains row 3 of the second sheet", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split 3 for Excel file has keyname == \"[excel2013testmultisheet.xlsx]testsheet!A3\"", "[excel2013testmultisheet.xlsx]testsheet!A3", spreadSheetKey.toString());
+	assertEquals("Input Split 3 for Excel file contains row 3 with cell 3 == \"seven\"", "seven", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertFalse("Input Split 3 for Excel file contains only the second sheet", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
     @Test
     public void readExcelInputFormatExcel2013Comment() throws IOException {
 JobConf job = new JobConf(defaultConf);
@@ -1079,6 +1356,60 @@ JobConf job = new JobConf(defaultConf);
 	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
     }
 
+    @Test
+    public void writeExcelOutputFormatExcel2013SingleSheetColumnAddresses() throws IOException {
+	// cells after column Z and an address with lower case letters
+	// (String formattedValue, String comment, String formula, String address,String sheetName)
+	SpreadSheetCellDAO ab1 = new SpreadSheetCellDAO("test1","","","AB1","Sheet1");
+	SpreadSheetCellDAO c2 = new SpreadSheetCellDAO("test2","","","c2","Sheet1");
+	SpreadSheetCellDAO aaa3 = new SpreadSheetCellDAO("test3","","","AAA3","Sheet1");
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013columnaddressestestout";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	writer.write(null,ab1);
+	writer.write(null,c2);
+	writer.write(null,aaa3);
+	writer.close(reporter);
+	// try to read it again (the low footprint parser decodes the addresses of the sheet XML)
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	job.set("hadoopoffice.read.lowFootprint", "true");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 1 with 28 columns", 28, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 28 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[27]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 28 at address AB1", "AB1", ((SpreadSheetCellDAO)spreadSheetValue.get()[27]).getAddress());
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 2 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 2 with cell 3 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 2 with cell 3 at address C2", "C2", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getAddress());
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 3 with 703 columns", 703, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 3 with cell 703 == \"test3\"", "test3", ((SpreadSheetCellDAO)spreadSheetValue.get()[702]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 703 at address AAA3", "AAA3", ((SpreadSheetCellDAO)spreadSheetValue.get()[702]).getAddress());
+    }
+
  @Test
     public void writeExcelOutputFormatExcel2013SingleSheetEncryptedPositive() throws IOException {
 	// one row string and three columns ("test1","test2","test3")
@@ -2649,6 +2980,56 @@ assertEquals("Input Split for Excel file contains row 1 with cell 4 == \"test4\"
 	assertEquals("Input Split for Excel file contains row 9 with cell 3 == \"seven\"", "seven", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());	
     }
 
+    @Test
+    public void readExcelInputFormatExcel2013SingleSheetLowFootprintCorruptAfterFirstRow() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileNameSpreadSheet=classLoader.getResource("excel2013test.xlsx").getFile();	
+	// copy the file, but cut off the sheet after its first row
+	String fileName="excel2013testcorruptsheet.xlsx";
+	java.nio.file.Path corruptFile = tmpPath.resolve(fileName);
+	try (java.util.zip.ZipInputStream zipIn = new java.util.zip.ZipInputStream(new java.io.FileInputStream(fileNameSpreadSheet));
+		java.util.zip.ZipOutputStream zipOut = new java.util.zip.ZipOutputStream(Files.newOutputStream(corruptFile))) {
+		java.util.zip.ZipEntry currentEntry;
+		while ((currentEntry=zipIn.getNextEntry())!=null) {
+			java.io.ByteArrayOutputStream entryContent = new java.io.ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int readBytes;
+			while ((readBytes=zipIn.read(buffer))!=-1) {
+				entryContent.write(buffer,0,readBytes);
+			}
+			byte[] content = entryContent.toByteArray();
+			if ("xl/worksheets/sheet1.xml".equals(currentEntry.getName())) {
+				String sheetXML = new String(content, java.nio.charset.StandardCharsets.UTF_8);
+				content = sheetXML.substring(0, sheetXML.indexOf("</row>")+"</row>".length()).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+			}
+			zipOut.putNextEntry(new java.util.zip.ZipEntry(currentEntry.getName()));
+			zipOut.write(content);
+			zipOut.closeEntry();
+		}
+	}
+    	Path file = new Path(corruptFile.toUri());
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+"]Sheet1!A1\"", "["+fileName+"]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	// the rest of the sheet cannot be read, which must not look like the end of the document
+	exception.expect(IOException.class);
+	reader.next(spreadSheetKey,spreadSheetValue);
+    }
+
     @Test
     public void readExcelInputFormatExcel2013SingleSheetLowFootprint() throws IOException {
 	JobConf job = new JobConf(defaultConf);
@@ -2771,20 +3152,18 @@ assertEquals("Input Split for Excel file contains row 1 with cell 4 == \"test4\"
     }
     
     @Test
-    public void readExcelInputFormatExcel2003SingleSheetEncryptedPositiveLowFootprint() throws IOException {
-    	JobConf job = new JobConf(defaultConf);
+    public void readExcelInputFormatExcel2013MultiSheetAllLowFootPrintSmallCache() throws IOException {
+	JobConf job = new JobConf(defaultConf);
     	ClassLoader classLoader = getClass().getClassLoader();
-    	String fileName="excel2003encrypt.xls";
+    	String fileName="excel2013testmultisheet.xlsx";
     	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
     	Path file = new Path(fileNameSpreadSheet);
     	FileInputFormat.setInputPaths(job, file);
 	// set locale to the one of the test data
 	job.set("hadoopoffice.read.locale.bcp47","de");
-
-	// low footprint
+	// low footprint with only one row in memory
 	job.set("hadoopoffice.read.lowFootprint", "true");
-	// for decryption simply set the password
-	job.set("hadoopoffice.read.security.crypt.password","test");
+	job.set("hadoopoffice.read.lowFootprint.cacherows", "1");
    	ExcelFileInputFormat format = new ExcelFileInputFormat();
     	format.configure(job);
     	InputSplit[] inputSplits = format.getSplits(job,1);
@@ -2793,30 +3172,38 @@ assertEquals("Input Split for Excel file contains row 1 with cell 4 == \"test4\"
 	assertNotNull("Format returned  null RecordReader", reader);
 	Text spreadSheetKey = new Text();	
 	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
-	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
-	assertEquals("Input Split for Excel file has keyname == \"[excel2003encrypt.xls]Sheet1!A1\"", "[excel2003encrypt.xls]Sheet1!A1", spreadSheetKey.toString());
-	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
-	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
-	assertEquals("Input Split for Excel file contains row 1 with cell 1 sheetname == \"Sheet1\"", "Sheet1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getSheetName());	
-	assertEquals("Input Split for Excel file contains row 1 with cell 1 address == \"A1\"", "A1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getAddress());	
-assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());	
-assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"", "test3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());	
+	for (int i=1;i<=5;i++) {
+		assertTrue("Input Split for Excel file contains row "+i+" (first sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+		assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A"+i+"\"", "[excel2013testmultisheet.xlsx]Sheet1!A"+i, spreadSheetKey.toString());
+	}
+	assertTrue("Input Split for Excel file contains row 6 (first sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A6\"", "[excel2013testmultisheet.xlsx]Sheet1!A6", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 6 with cell 3== \"15\"", "15", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 7 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]testsheet!A1\"", "[excel2013testmultisheet.xlsx]testsheet!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 7 with cell 1 == \"8\"", "8", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());	
+	assertTrue("Input Split for Excel file contains row 8 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertTrue("Input Split for Excel file contains row 9 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]testsheet!A3\"", "[excel2013testmultisheet.xlsx]testsheet!A3", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 9 with cell 3 == \"seven\"", "seven", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());	
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	assertFalse("Input Split for Excel file contains no further rows after end", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
     }
-    
+
     @Test
-    public void readExcelInputFormatExcel2013SingleSheetEncryptedPositiveLowFootprint() throws IOException {
-    	JobConf job = new JobConf(defaultConf);
+    public void readExcelInputFormatExcel2013MultiSheetAllLowFootPrintSharedStringsSpill() throws IOException {
+	JobConf job = new JobConf(defaultConf);
     	ClassLoader classLoader = getClass().getClassLoader();
-    	String fileName="excel2013encrypt.xlsx";
+    	String fileName="excel2013testmultisheet.xlsx";
     	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
     	Path file = new Path(fileNameSpreadSheet);
     	FileInputFormat.setInputPaths(job, file);
 	// set locale to the one of the test data
 	job.set("hadoopoffice.read.locale.bcp47","de");
-	// low footprint
+	// low footprint with only the first shared strings in memory, the others are written to a temporary file
 	job.set("hadoopoffice.read.lowFootprint", "true");
-	// for decryption simply set the password
-	job.set("hadoopoffice.read.security.crypt.password","test");
+	job.set("hadoopoffice.read.lowFootprint.sharedstrings.memorylimit", "10");
    	ExcelFileInputFormat format = new ExcelFileInputFormat();
     	format.configure(job);
     	InputSplit[] inputSplits = format.getSplits(job,1);
@@ -2825,162 +3212,1840 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
 	assertNotNull("Format returned  null RecordReader", reader);
 	Text spreadSheetKey = new Text();	
 	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
-	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
-	assertEquals("Input Split for Excel file has keyname == \"[excel2013encrypt.xlsx]Sheet1!A1\"", "[excel2013encrypt.xlsx]Sheet1!A1", spreadSheetKey.toString());
-	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
-	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
-	assertEquals("Input Split for Excel file contains row 1 with cell 1 sheetname == \"Sheet1\"", "Sheet1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getSheetName());	
-	assertEquals("Input Split for Excel file contains row 1 with cell 1 address == \"A1\"", "A1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getAddress());	
-assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());	
-assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"", "test3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());	
+	assertTrue("Input Split for Excel file contains row 1 (first sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\" (shared string in memory)", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	for (int i=2;i<=8;i++) {
+		assertTrue("Input Split for Excel file contains row "+i, reader.next(spreadSheetKey,spreadSheetValue));
+	}
+	assertTrue("Input Split for Excel file contains row 9 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]testsheet!A3\"", "[excel2013testmultisheet.xlsx]testsheet!A3", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 9 with cell 3 == \"seven\" (shared string in temporary file)", "seven", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());	
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
     }
 
     @Test
-    public void readExcelInputFormatExcel2013SingleSheetEncryptedNegativeLowFootprint() throws IOException {
-    	JobConf job = new JobConf(defaultConf);
+    public void readExcelInputFormatExcel2013MultiSheetColumnProjection() throws IOException {
+	JobConf job = new JobConf(defaultConf);
     	ClassLoader classLoader = getClass().getClassLoader();
-    	String fileName="excel2013encrypt.xlsx";
+    	String fileName="excel2013testmultisheet.xlsx";
     	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
     	Path file = new Path(fileNameSpreadSheet);
     	FileInputFormat.setInputPaths(job, file);
 	// set locale to the one of the test data
 	job.set("hadoopoffice.read.locale.bcp47","de");
-	// low footprint
-	job.set("hadoopoffice.read.lowFootprint", "true");
-	// for decryption simply set the password
-	job.set("hadoopoffice.read.security.crypt.password","test2");
+	// select the first and third column of the second sheet
+	job.set("hadoopoffice.read.sheets","testsheet");
+	job.set("hadoopoffice.read.columns","A,C");
    	ExcelFileInputFormat format = new ExcelFileInputFormat();
     	format.configure(job);
     	InputSplit[] inputSplits = format.getSplits(job,1);
     	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
-    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);	
-    	assertNull("Null record reader implies invalid password",reader);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]testsheet!A1\"", "[excel2013testmultisheet.xlsx]testsheet!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 2 columns", 2, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"8\"", "8", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertNull("Input Split for Excel file contains row 1 with cell 2 == null (not projected)", spreadSheetValue.get()[1]);
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"test\"", "test", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 3 with 3 columns", 3, spreadSheetValue.get().length);
+	assertNull("Input Split for Excel file contains row 3 with cell 2 == null", spreadSheetValue.get()[1]);
+	assertEquals("Input Split for Excel file contains row 3 with cell 3 == \"seven\"", "seven", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
     }
-    
+
     @Test
-    public void readExcelInputFormatExcel2003SingleSheetEncryptedNegativeLowFootprint() throws IOException {
-    	JobConf job = new JobConf(defaultConf);
+    public void readExcelInputFormatExcel2013MultiSheetColumnProjectionLowFootprint() throws IOException {
+	JobConf job = new JobConf(defaultConf);
     	ClassLoader classLoader = getClass().getClassLoader();
-    	String fileName="excel2003encrypt.xls";
+    	String fileName="excel2013testmultisheet.xlsx";
     	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
     	Path file = new Path(fileNameSpreadSheet);
     	FileInputFormat.setInputPaths(job, file);
 	// set locale to the one of the test data
 	job.set("hadoopoffice.read.locale.bcp47","de");
-
+	// select the first and third column of the second sheet
+	job.set("hadoopoffice.read.sheets","testsheet");
+	job.set("hadoopoffice.read.columns","A,C");
 	// low footprint
 	job.set("hadoopoffice.read.lowFootprint", "true");
-	// for decryption simply set the password
-	job.set("hadoopoffice.read.security.crypt.password","test2");
    	ExcelFileInputFormat format = new ExcelFileInputFormat();
     	format.configure(job);
     	InputSplit[] inputSplits = format.getSplits(job,1);
     	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
     	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
-    	assertNull("Null record reader implies invalid password",reader);
-    }
-    
-    @Test
-    public void readExcelInputFormatExcel2013EmptyRowsLowFootprint() throws IOException {
-    	JobConf job = new JobConf(defaultConf);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]testsheet!A1\"", "[excel2013testmultisheet.xlsx]testsheet!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 1 column (the cell of column B is skipped)", 1, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"8\"", "8", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"test\"", "test", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 3 with 3 columns", 3, spreadSheetValue.get().length);
+	assertNull("Input Split for Excel file contains row 3 with cell 2 == null", spreadSheetValue.get()[1]);
+	assertEquals("Input Split for Excel file contains row 3 with cell 3 == \"seven\"", "seven", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2003MultiSheetColumnProjectionHeaderLowFootprint() throws IOException {
+	JobConf job = new JobConf(defaultConf);
     	ClassLoader classLoader = getClass().getClassLoader();
-    	String fileName="excel2013testemptyrows.xlsx";
+    	String fileName="excel2003testmultisheet.xls";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// select the column with the header "99" of the second sheet
+	job.set("hadoopoffice.read.sheets","testsheet");
+	job.set("hadoopoffice.read.columns","99");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2003testmultisheet.xls]testsheet!A1\"", "[excel2003testmultisheet.xls]testsheet!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 2 columns", 2, spreadSheetValue.get().length);
+	assertNull("Input Split for Excel file contains row 1 with cell 1 == null (not projected)", spreadSheetValue.get()[0]);
+	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"99\"", "99", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 2 with 1 column", 1, spreadSheetValue.get().length);
+	assertNull("Input Split for Excel file contains row 2 with cell 1 == null (not projected)", spreadSheetValue.get()[0]);
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 3 with 2 columns (until the last projected column)", 2, spreadSheetValue.get().length);
+	assertNull("Input Split for Excel file contains row 3 with cell 1 == null (not projected)", spreadSheetValue.get()[0]);
+	assertNull("Input Split for Excel file contains row 3 with cell 2 == null", spreadSheetValue.get()[1]);
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2013MultiSheetRowFilter() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// only rows 3 to 6 where column B is not empty
+	job.set("hadoopoffice.read.filter.rows","3-6");
+	job.set("hadoopoffice.read.filter.cell.B",".+");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A3\"", "[excel2013testmultisheet.xlsx]Sheet1!A3", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == \"5\"", "5", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 5 (row 4 has an empty cell in column B)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A5\"", "[excel2013testmultisheet.xlsx]Sheet1!A5", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 5 with cell 2 == \"6\"", "6", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 5 with cell 3 == \"10\"", "10", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A6\"", "[excel2013testmultisheet.xlsx]Sheet1!A6", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 6 with cell 3 == \"15\"", "15", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows (row 3 of the second sheet has an empty cell in column B)", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2013MultiSheetRowFilterLowFootprint() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// only rows 3 to 6 where column B is not empty, but only columns A and C are read
+	job.set("hadoopoffice.read.filter.rows","3-6");
+	job.set("hadoopoffice.read.filter.cell.B",".+");
+	job.set("hadoopoffice.read.columns","A,C");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A3\"", "[excel2013testmultisheet.xlsx]Sheet1!A3", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 3 with 1 column (column B is only read for the filter)", 1, spreadSheetValue.get().length);
+	assertTrue("Input Split for Excel file contains row 5 (row 4 has an empty cell in column B)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A5\"", "[excel2013testmultisheet.xlsx]Sheet1!A5", spreadSheetKey.toString());
+	assertNull("Input Split for Excel file contains row 5 with cell 2 == null (not projected)", spreadSheetValue.get()[1]);
+	assertEquals("Input Split for Excel file contains row 5 with cell 3 == \"10\"", "10", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A6\"", "[excel2013testmultisheet.xlsx]Sheet1!A6", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 6 with cell 3 == \"15\"", "15", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows (row 3 of the second sheet has an empty cell in column B)", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2003MultiSheetRowFilterLowFootprint() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2003testmultisheet.xls";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// only row 2 where column A is "test"
+	job.set("hadoopoffice.read.filter.rows","2");
+	job.set("hadoopoffice.read.filter.cell.A","test");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 2 of the second sheet", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2003testmultisheet.xls]testsheet!A2\"", "[excel2003testmultisheet.xls]testsheet!A2", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"test\"", "test", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2013MultiSheetTypedValues() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// typed values of rows 3 and 5
+	job.set("hadoopoffice.read.typedValues","true");
+	job.set("hadoopoffice.read.filter.rows","3,5");
+	job.set("hadoopoffice.read.sheets","Sheet1");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	SpreadSheetCellDAO dateCell=(SpreadSheetCellDAO)spreadSheetValue.get()[0];
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"31/12/99\"", "31/12/99", dateCell.getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 of type date", SpreadSheetCellDAO.TYPE_DATE, dateCell.getValueType());
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 with serial number 36525", 36525.0, dateCell.getNumericValue(), 0.0);
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == 31.12.1999", new GregorianCalendar(1999,11,31).getTimeInMillis(), dateCell.getLongValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 of type numeric", SpreadSheetCellDAO.TYPE_NUMERIC, ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getValueType());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == 5", 5.0, ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getNumericValue(), 0.0);
+	assertEquals("Input Split for Excel file contains row 3 with cell 5 of type string", SpreadSheetCellDAO.TYPE_STRING, ((SpreadSheetCellDAO)spreadSheetValue.get()[4]).getValueType());
+	assertTrue("Input Split for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 5 with cell 2 (formula) of type numeric", SpreadSheetCellDAO.TYPE_NUMERIC, ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getValueType());
+	assertEquals("Input Split for Excel file contains row 5 with cell 2 (formula) == 6", 6.0, ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getNumericValue(), 0.0);
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2013MultiSheetTypedValuesLowFootprint() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// typed values of rows 3 and 5
+	job.set("hadoopoffice.read.typedValues","true");
+	job.set("hadoopoffice.read.filter.rows","3,5");
+	job.set("hadoopoffice.read.sheets","Sheet1");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	SpreadSheetCellDAO dateCell=(SpreadSheetCellDAO)spreadSheetValue.get()[0];
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"31/12/99\"", "31/12/99", dateCell.getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 of type date", SpreadSheetCellDAO.TYPE_DATE, dateCell.getValueType());
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 with serial number 36525", 36525.0, dateCell.getNumericValue(), 0.0);
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == 31.12.1999", new GregorianCalendar(1999,11,31).getTimeInMillis(), dateCell.getLongValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 of type numeric", SpreadSheetCellDAO.TYPE_NUMERIC, ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getValueType());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == 5", 5.0, ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getNumericValue(), 0.0);
+	assertEquals("Input Split for Excel file contains row 3 with cell 5 of type string", SpreadSheetCellDAO.TYPE_STRING, ((SpreadSheetCellDAO)spreadSheetValue.get()[4]).getValueType());
+	assertTrue("Input Split for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 5 with cell 2 (formula) of type numeric", SpreadSheetCellDAO.TYPE_NUMERIC, ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getValueType());
+	assertEquals("Input Split for Excel file contains row 5 with cell 2 (formula) == 6", 6.0, ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getNumericValue(), 0.0);
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2003MultiSheetTypedValuesUnformattedLowFootprint() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2003testmultisheet.xls";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// typed values of row 3 without formatting
+	job.set("hadoopoffice.read.typedValues","true");
+	job.set("hadoopoffice.read.typedValues.format","false");
+	job.set("hadoopoffice.read.filter.rows","3");
+	job.set("hadoopoffice.read.sheets","Sheet1");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	SpreadSheetCellDAO dateCell=(SpreadSheetCellDAO)spreadSheetValue.get()[0];
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"36525\" (not formatted)", "36525", dateCell.getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 of type date", SpreadSheetCellDAO.TYPE_DATE, dateCell.getValueType());
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == 31.12.1999", new GregorianCalendar(1999,11,31).getTimeInMillis(), dateCell.getLongValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == \"5\"", "5", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 of type numeric", SpreadSheetCellDAO.TYPE_NUMERIC, ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getValueType());
+	assertEquals("Input Split for Excel file contains row 3 with cell 5 of type string", SpreadSheetCellDAO.TYPE_STRING, ((SpreadSheetCellDAO)spreadSheetValue.get()[4]).getValueType());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2013MultiSheetSerialization() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// typed values of row 3
+	job.set("hadoopoffice.read.typedValues","true");
+	job.set("hadoopoffice.read.filter.rows","3");
+	job.set("hadoopoffice.read.sheets","Sheet1");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	SpreadSheetCellDAO dateCell=(SpreadSheetCellDAO)spreadSheetValue.get()[0];
+	reader.close();
+	// serialize and deserialize the cell
+	DataOutputBuffer dataOutput = new DataOutputBuffer();
+	dateCell.write(dataOutput);
+	DataInputBuffer dataInput = new DataInputBuffer();
+	dataInput.reset(dataOutput.getData(), dataOutput.getLength());
+	SpreadSheetCellDAO readCell = new SpreadSheetCellDAO();
+	readCell.readFields(dataInput);
+	assertEquals("Deserialized cell has formatted value == \"31/12/99\"", "31/12/99", readCell.getFormattedValue());
+	assertEquals("Deserialized cell has address == \"A3\"", "A3", readCell.getAddress());
+	assertEquals("Deserialized cell has sheet name == \"Sheet1\"", "Sheet1", readCell.getSheetName());
+	assertEquals("Deserialized cell has comment == \"\"", "", readCell.getComment());
+	assertEquals("Deserialized cell has type date", SpreadSheetCellDAO.TYPE_DATE, readCell.getValueType());
+	assertEquals("Deserialized cell has serial number 36525", 36525.0, readCell.getNumericValue(), 0.0);
+	assertEquals("Deserialized cell has date 31.12.1999", new GregorianCalendar(1999,11,31).getTimeInMillis(), readCell.getLongValue());
+	// cells in the original format (five Text objects) can still be read
+	DataOutputBuffer originalOutput = new DataOutputBuffer();
+	Text.writeString(originalOutput, "31/12/99");
+	Text.writeString(originalOutput, "");
+	Text.writeString(originalOutput, "");
+	Text.writeString(originalOutput, "A3");
+	Text.writeString(originalOutput, "Sheet1");
+	DataOutputBuffer untypedOutput = new DataOutputBuffer();
+	new SpreadSheetCellDAO("31/12/99","","","A3","Sheet1").write(untypedOutput);
+	assertTrue("Serialized cell is smaller than in the original format", untypedOutput.getLength()<originalOutput.getLength());
+	dataInput.reset(originalOutput.getData(), originalOutput.getLength());
+	readCell.readFields(dataInput);
+	assertEquals("Cell in original format has formatted value == \"31/12/99\"", "31/12/99", readCell.getFormattedValue());
+	assertEquals("Cell in original format has address == \"A3\"", "A3", readCell.getAddress());
+	assertEquals("Cell in original format has sheet name == \"Sheet1\"", "Sheet1", readCell.getSheetName());
+	assertEquals("Cell in original format has no type", SpreadSheetCellDAO.TYPE_UNKNOWN, readCell.getValueType());
+    }
+
+    @Test
+    public void readExcelRowInputFormatExcel2013MultiSheetSerialization() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	job.set("hadoopoffice.read.sheets","Sheet1");
+   	ExcelRowFileInputFormat format = new ExcelRowFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, SpreadSheetRowWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = reader.createKey();
+	SpreadSheetRowWritable spreadSheetValue = reader.createValue();
+	// serialize all rows of the first sheet as rows and as arrays of cells
+	DataOutputBuffer rowOutput = new DataOutputBuffer();
+	DataOutputBuffer arrayOutput = new DataOutputBuffer();
+	int numberOfRows=0;
+	while (reader.next(spreadSheetKey,spreadSheetValue)) {
+		spreadSheetValue.write(rowOutput);
+		// ArrayWritable cannot serialize null, so cells that do not exist are empty cells
+		SpreadSheetCellDAO[] cells = spreadSheetValue.toArray();
+		for (int i=0;i<cells.length;i++) {
+			if (cells[i]==null) {
+				cells[i] = new SpreadSheetCellDAO();
+			}
+		}
+		new ArrayWritable(SpreadSheetCellDAO.class, cells).write(arrayOutput);
+		numberOfRows++;
+	}
+	reader.close();
+	assertEquals("Input Split for Excel file contains 6 rows", 6, numberOfRows);
+	assertTrue("Serialized rows are smaller than arrays of cells", rowOutput.getLength()<arrayOutput.getLength());
+	// a sparse row
+	SpreadSheetCellDAO[] sparseCells = new SpreadSheetCellDAO[40];
+	sparseCells[39] = new SpreadSheetCellDAO("sparse","","","AN7","Sheet1");
+	new SpreadSheetRowWritable("Sheet1",7,sparseCells).write(rowOutput);
+	// deserialize into the same object
+	DataInputBuffer rowInput = new DataInputBuffer();
+	rowInput.reset(rowOutput.getData(), rowOutput.getLength());
+	SpreadSheetRowWritable row = new SpreadSheetRowWritable();
+	row.readFields(rowInput);
+	assertEquals("Row 1 has sheet name == \"Sheet1\"", "Sheet1", row.getSheetName());
+	assertEquals("Row 1 has row number 1", 1L, row.getRowNum());
+	assertEquals("Row 1 has 4 cells", 4, row.getNumberOfCells());
+	assertEquals("Row 1 has cell 1 == \"test1\"", "test1", row.getCell(0).getFormattedValue());
+	row.readFields(rowInput);
+	row.readFields(rowInput);
+	assertEquals("Row 3 has row number 3", 3L, row.getRowNum());
+	assertEquals("Row 3 has 5 cells", 5, row.getNumberOfCells());
+	assertEquals("Row 3 has cell 1 == \"31/12/99\"", "31/12/99", row.getCell(0).getFormattedValue());
+	assertEquals("Row 3 has cell 1 with address == \"A3\"", "A3", row.getCell(0).getAddress());
+	assertEquals("Row 3 has cell 1 with sheet name == \"Sheet1\"", "Sheet1", row.getCell(0).getSheetName());
+	assertEquals("Row 3 has cell 2 == \"5\"", "5", row.getCell(1).getFormattedValue());
+	assertNull("Row 3 has cell 3 == null", row.getCell(2));
+	assertNull("Row 3 has cell 4 == null", row.getCell(3));
+	assertEquals("Row 3 has cell 5 == \"null\"", "null", row.getCell(4).getFormattedValue());
+	assertEquals("Row 3 has cell 5 with address == \"E3\"", "E3", row.getCell(4).getAddress());
+	row.readFields(rowInput);
+	row.readFields(rowInput);
+	row.readFields(rowInput);
+	assertEquals("Row 6 has cell 3 == \"15\"", "15", row.getCell(2).getFormattedValue());
+	row.readFields(rowInput);
+	assertEquals("Sparse row has row number 7", 7L, row.getRowNum());
+	assertEquals("Sparse row has 40 cells", 40, row.getNumberOfCells());
+	assertNull("Sparse row has cell 1 == null", row.getCell(0));
+	assertEquals("Sparse row has cell 40 == \"sparse\"", "sparse", row.getCell(39).getFormattedValue());
+	assertEquals("Sparse row has cell 40 with address == \"AN7\"", "AN7", row.getCell(39).getAddress());
+    }
+
+    @Test
+    public void writeExcelRowOutputFormatExcel2013SingleSheet() throws IOException {
+	// one row with strings ("test1","test2") and one row with a number in the third column
+	SpreadSheetRowWritable row1 = new SpreadSheetRowWritable("Sheet1",1,new SpreadSheetCellDAO[]{new SpreadSheetCellDAO("test1","","","A1","Sheet1"),new SpreadSheetCellDAO("test2","","","B1","Sheet1")});
+	SpreadSheetRowWritable row2 = new SpreadSheetRowWritable("Sheet1",2,new SpreadSheetCellDAO[]{null,null,new SpreadSheetCellDAO("","","3","C2","Sheet1")});
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013rowtestout";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new Excel format, anyway default, but here for illustrative purposes
+   	ExcelRowFileOutputFormat outputFormat = new ExcelRowFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetRowWritable> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	writer.write(null,row1);
+	writer.write(null,row2);
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+   	ExcelRowFileInputFormat inputFormat = new ExcelRowFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, SpreadSheetRowWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = reader.createKey();
+	SpreadSheetRowWritable spreadSheetValue = reader.createValue();
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A1\"", "["+fileName+".xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 2 columns", 2, spreadSheetValue.getNumberOfCells());
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", spreadSheetValue.getCell(0).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", spreadSheetValue.getCell(1).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 2 with row number 2", 2L, spreadSheetValue.getRowNum());
+	assertEquals("Input Split for Excel file contains row 2 with 3 columns", 3, spreadSheetValue.getNumberOfCells());
+	assertNull("Input Split for Excel file contains row 2 with cell 1 == null", spreadSheetValue.getCell(0));
+	assertEquals("Input Split for Excel file contains row 2 with cell 3 == \"3\"", "3", spreadSheetValue.getCell(2).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2013MultiSheetReuseObjects() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
     	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
     	Path file = new Path(fileNameSpreadSheet);
     	FileInputFormat.setInputPaths(job, file);
 	// set locale to the one of the test data
 	job.set("hadoopoffice.read.locale.bcp47","de");
-
-	// low footprint
-	job.set("hadoopoffice.read.lowFootprint", "true");
-   	ExcelFileInputFormat format = new ExcelFileInputFormat();
-    	format.configure(job);
-    	InputSplit[] inputSplits = format.getSplits(job,1);
+	// reuse arrays and cells of rows
+	job.set("hadoopoffice.read.reuseObjects","true");
+	job.set("hadoopoffice.read.sheets","Sheet1");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = reader.createKey();
+	ArrayWritable spreadSheetValue = reader.createValue();
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A1\"", "[excel2013testmultisheet.xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	Writable[] cellsRow1=spreadSheetValue.get().clone();
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A2\"", "[excel2013testmultisheet.xlsx]Sheet1!A2", spreadSheetKey.toString());
+	SpreadSheetCellDAO cellRow2=(SpreadSheetCellDAO)spreadSheetValue.get()[0];
+	assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"4\"", "4", cellRow2.getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A3\"", "[excel2013testmultisheet.xlsx]Sheet1!A3", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 3 with 5 columns", 5, spreadSheetValue.get().length);
+	// the cells of the rows before are reused for row 3
+	boolean reused=spreadSheetValue.get()[0]==cellRow2;
+	for (int i=0;i<cellsRow1.length;i++) {
+		reused|=spreadSheetValue.get()[0]==cellsRow1[i];
+	}
+	assertTrue("Input Split for Excel file reuses a cell of row 1 or row 2 for row 3", reused);
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"31/12/99\"", "31/12/99", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 address == \"A3\"", "A3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getAddress());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == \"5\"", "5", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertNull("Input Split for Excel file contains row 3 with cell 3 == null", spreadSheetValue.get()[2]);
+	assertEquals("Input Split for Excel file contains row 3 with cell 5 == \"null\"", "null", ((SpreadSheetCellDAO)spreadSheetValue.get()[4]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 4 with 1 column", 1, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 5 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 5 with cell 1 == \"2\"", "2", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 5 with cell 3 == \"10\"", "10", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]Sheet1!A6\"", "[excel2013testmultisheet.xlsx]Sheet1!A6", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 6 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 6 with cell 3 == \"15\"", "15", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2003MultiSheetReuseObjectsLowFootprint() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2003testmultisheet.xls";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// reuse arrays and cells of rows
+	job.set("hadoopoffice.read.reuseObjects","true");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = reader.createKey();
+	ArrayWritable spreadSheetValue = reader.createValue();
+	assertTrue("Input Split for Excel file contains row 1 (first sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2003testmultisheet.xls]Sheet1!A1\"", "[excel2003testmultisheet.xls]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 4 == \"test4\"", "test4", ((SpreadSheetCellDAO)spreadSheetValue.get()[3]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 2 (first sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"4\"", "4", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 3 (first sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 3 with 5 columns", 5, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"31/12/99\"", "31/12/99", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 address == \"A3\"", "A3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getAddress());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == \"5\"", "5", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertNull("Input Split for Excel file contains row 3 with cell 3 == null", spreadSheetValue.get()[2]);
+	assertEquals("Input Split for Excel file contains row 3 with cell 5 == \"null\"", "null", ((SpreadSheetCellDAO)spreadSheetValue.get()[4]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 4 (first sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 5 (first sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 5 with cell 2 == \"6\"", "6", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 6 (first sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 6 with cell 3 == \"15\"", "15", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 7 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2003testmultisheet.xls]testsheet!A1\"", "[excel2003testmultisheet.xls]testsheet!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 7 with cell 1 == \"8\"", "8", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 7 with cell 1 sheetname == \"testsheet\"", "testsheet", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getSheetName());
+	assertEquals("Input Split for Excel file contains row 7 with cell 2 == \"99\"", "99", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 8 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 8 with cell 1 == \"test\"", "test", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 9 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2003testmultisheet.xls]testsheet!A3\"", "[excel2003testmultisheet.xls]testsheet!A3", spreadSheetKey.toString());
+	assertNull("Input Split for Excel file contains row 9 with cell 1 == null", spreadSheetValue.get()[0]);
+	assertEquals("Input Split for Excel file contains row 9 with cell 3 == \"seven\"", "seven", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2013MultiSheetAllLowFootPrintSheetThreads() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint with two threads decoding the sheets and a small cache
+	job.set("hadoopoffice.read.lowFootprint", "true");
+	job.set("hadoopoffice.read.lowFootprint.sheetThreads", "2");
+	job.set("hadoopoffice.read.lowFootprint.cacherows", "1");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = reader.createKey();
+	ArrayWritable spreadSheetValue = reader.createValue();
+	// rows are returned in the order of the sheets
+	String[] expectedKeys = new String[]{"Sheet1!A1","Sheet1!A2","Sheet1!A3","Sheet1!A4","Sheet1!A5","Sheet1!A6","testsheet!A1","testsheet!A2","testsheet!A3"};
+	String[] expectedFirstValues = new String[]{"test1","4","31/12/99","1","2","3","8","test",null};
+	for (int i=0;i<expectedKeys.length;i++) {
+		assertTrue("Input Split for Excel file contains row "+(i+1), reader.next(spreadSheetKey,spreadSheetValue));
+		assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx]"+expectedKeys[i]+"\"", "[excel2013testmultisheet.xlsx]"+expectedKeys[i], spreadSheetKey.toString());
+		if (expectedFirstValues[i]==null) {
+			assertNull("Input Split for Excel file contains row "+(i+1)+" with cell 1 == null", spreadSheetValue.get()[0]);
+		} else {
+			assertEquals("Input Split for Excel file contains row "+(i+1)+" with cell 1 == \""+expectedFirstValues[i]+"\"", expectedFirstValues[i], ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+		}
+	}
+	assertEquals("Input Split for Excel file contains row 9 with cell 3 == \"seven\"", "seven", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatGzipCompressedExcel2013MultiSheetAllPipelineLowFootprint() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+	CompressionCodec gzip = new GzipCodec();
+	ReflectionUtils.setConf(gzip, job);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testmultisheet.xlsx.gz";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// decompress and inflate ahead of parsing with small buffers
+	job.set("hadoopoffice.read.pipeline", "true");
+	job.set("hadoopoffice.read.pipeline.buffersize", "512");
+	job.set("hadoopoffice.read.lowFootprint", "true");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = reader.createKey();
+	ArrayWritable spreadSheetValue = reader.createValue();
+	// rows are returned in the order of the sheets
+	String[] expectedKeys = new String[]{"Sheet1!A1","Sheet1!A2","Sheet1!A3","Sheet1!A4","Sheet1!A5","Sheet1!A6","testsheet!A1","testsheet!A2","testsheet!A3"};
+	String[] expectedFirstValues = new String[]{"test1","4","31/12/99","1","2","3","8","test",null};
+	for (int i=0;i<expectedKeys.length;i++) {
+		assertTrue("Input Split for Excel file contains row "+(i+1), reader.next(spreadSheetKey,spreadSheetValue));
+		assertEquals("Input Split for Excel file has keyname == \"[excel2013testmultisheet.xlsx.gz]"+expectedKeys[i]+"\"", "[excel2013testmultisheet.xlsx.gz]"+expectedKeys[i], spreadSheetKey.toString());
+		if (expectedFirstValues[i]==null) {
+			assertNull("Input Split for Excel file contains row "+(i+1)+" with cell 1 == null", spreadSheetValue.get()[0]);
+		} else {
+			assertEquals("Input Split for Excel file contains row "+(i+1)+" with cell 1 == \""+expectedFirstValues[i]+"\"", expectedFirstValues[i], ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+		}
+	}
+	assertEquals("Input Split for Excel file contains row 9 with cell 3 == \"seven\"", "seven", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2003MultiSheetAllLowFootPrintFormattedNumbers() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2003testmultisheet.xls";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	job.set("hadoopoffice.read.lowFootprint", "true");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = reader.createKey();
+	ArrayWritable spreadSheetValue = reader.createValue();
+	// numbers (including results of formulas) are formatted as by the DataFormatter of POI
+	String[][] expectedValues = new String[][]{{"test1","test2","test3","test4"},{"4"},{"31/12/99","5",null,null,"null"},{"1"},{"2","6","10"},{"3","4","15"},{"8","99"}};
+	for (int i=0;i<expectedValues.length;i++) {
+		assertTrue("Input Split for Excel file contains row "+(i+1), reader.next(spreadSheetKey,spreadSheetValue));
+		for (int j=0;j<expectedValues[i].length;j++) {
+			if (expectedValues[i][j]==null) {
+				assertNull("Input Split for Excel file contains row "+(i+1)+" with cell "+(j+1)+" == null", spreadSheetValue.get()[j]);
+			} else {
+				assertEquals("Input Split for Excel file contains row "+(i+1)+" with cell "+(j+1)+" == \""+expectedValues[i][j]+"\"", expectedValues[i][j], ((SpreadSheetCellDAO)spreadSheetValue.get()[j]).getFormattedValue());
+			}
+		}
+	}
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2003MultiSheetSelectedSheetLowFootPrintSmallCache() throws IOException {
+	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2003testmultisheet.xls";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// select the second sheet
+	job.set("hadoopoffice.read.sheets","testsheet");
+	// low footprint with only one row in memory
+	job.set("hadoopoffice.read.lowFootprint", "true");
+	job.set("hadoopoffice.read.lowFootprint.cacherows", "1");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2003testmultisheet.xls]testsheet!A1\"", "[excel2003testmultisheet.xls]testsheet!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 2 columns", 2, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"8\"", "8", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());	
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 sheetname == \"testsheet\"", "testsheet", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getSheetName());	
+	assertTrue("Input Split for Excel file contains row 2 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"test\"", "test", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());	
+	assertTrue("Input Split for Excel file contains row 3 (second sheet)", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"[excel2003testmultisheet.xls]testsheet!A3\"", "[excel2003testmultisheet.xls]testsheet!A3", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 3 with cell 3 == \"seven\"", "seven", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());	
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	reader.close();
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2003SingleSheetEncryptedPositiveLowFootprint() throws IOException {
+    	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2003encrypt.xls";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+	// for decryption simply set the password
+	job.set("hadoopoffice.read.security.crypt.password","test");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertEquals("Input Split for Excel file has keyname == \"[excel2003encrypt.xls]Sheet1!A1\"", "[excel2003encrypt.xls]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 sheetname == \"Sheet1\"", "Sheet1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getSheetName());	
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 address == \"A1\"", "A1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getAddress());	
+assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());	
+assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"", "test3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());	
+    }
+    
+    @Test
+    public void readExcelInputFormatExcel2013SingleSheetEncryptedPositiveLowFootprint() throws IOException {
+    	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013encrypt.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+	// for decryption simply set the password
+	job.set("hadoopoffice.read.security.crypt.password","test");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013encrypt.xlsx]Sheet1!A1\"", "[excel2013encrypt.xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 sheetname == \"Sheet1\"", "Sheet1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getSheetName());	
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 address == \"A1\"", "A1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getAddress());	
+assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());	
+assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"", "test3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());	
+    }
+
+    @Test
+    public void readExcelInputFormatExcel2013SingleSheetEncryptedNegativeLowFootprint() throws IOException {
+    	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013encrypt.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+	// for decryption simply set the password
+	job.set("hadoopoffice.read.security.crypt.password","test2");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);	
+    	assertNull("Null record reader implies invalid password",reader);
+    }
+    
+    @Test
+    public void readExcelInputFormatExcel2003SingleSheetEncryptedNegativeLowFootprint() throws IOException {
+    	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2003encrypt.xls";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+	// for decryption simply set the password
+	job.set("hadoopoffice.read.security.crypt.password","test2");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+    	assertNull("Null record reader implies invalid password",reader);
+    }
+    
+    @Test
+    public void readExcelInputFormatExcel2013EmptyRowsLowFootprint() throws IOException {
+    	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2013testemptyrows.xlsx";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertEquals("Input Split for Excel file has keyname == \"[excel2013testemptyrows.xlsx]Sheet1!A1\"", "[excel2013testemptyrows.xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 0 columns", 0, spreadSheetValue.get().length);
+	
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 2 with 2 columns", 2, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"4\"", "4", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());	
+		assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());	
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertEquals("Input Split for Excel file contains row 3 with 0 columns", 0, spreadSheetValue.get().length);
+	
+	assertTrue("Input Split for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 4 with 1 column", 1, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());	
+	assertTrue("Input Split for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 5 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 5 with cell 1 == \"2\"", "2", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());			 
+	assertEquals("Input Split for Excel file contains row 5 with cell 2== \"6\"", "6", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 5 with cell 3== \"10\"", "10", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertEquals("Input Split for Excel file contains row 6 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 6 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());		 
+	assertEquals("Input Split for Excel file contains row 6 with cell 2== \"4\"", "4", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 6 with cell 3== \"10\"", "10", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+    }
+    
+    @Test
+    public void readExcelInputFormatExcel2003EmptyRowsLowFootprint() throws IOException {
+    	JobConf job = new JobConf(defaultConf);
+    	ClassLoader classLoader = getClass().getClassLoader();
+    	String fileName="excel2003testemptyrows.xls";
+    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
+    	Path file = new Path(fileNameSpreadSheet);
+    	FileInputFormat.setInputPaths(job, file);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+
+	// low footprint
+	job.set("hadoopoffice.read.lowFootprint", "true");
+   	ExcelFileInputFormat format = new ExcelFileInputFormat();
+    	format.configure(job);
+    	InputSplit[] inputSplits = format.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertEquals("Input Split for Excel file has keyname == \"[excel2003testemptyrows.xls]Sheet1!A1\"", "[excel2003testemptyrows.xls]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 0 columns", 0, spreadSheetValue.get().length);
+	
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 2 with 2 columns", 2, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"4\"", "4", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());	
+		assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());	
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertEquals("Input Split for Excel file contains row 3 with 0 columns", 0, spreadSheetValue.get().length);
+	
+	assertTrue("Input Split for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 4 with 1 column", 1, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());	
+	assertTrue("Input Split for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 5 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 5 with cell 1 == \"2\"", "2", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());			 
+	assertEquals("Input Split for Excel file contains row 5 with cell 2== \"6\"", "6", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 5 with cell 3== \"10\"", "10", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertEquals("Input Split for Excel file contains row 6 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 6 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());		 
+	assertEquals("Input Split for Excel file contains row 6 with cell 2== \"4\"", "4", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 6 with cell 3== \"10\"", "10", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+    }
+    
+    @Test
+    public void writeExcelOutputFormatExcel2013SingleSheetLowFootPrint() throws IOException {
+	// one row string and three columns ("test1","test2","test3")
+	// (String formattedValue, String comment, String formula, String address,String sheetName)
+	SpreadSheetCellDAO a1 = new SpreadSheetCellDAO("test1","","","A1","Sheet1");
+	SpreadSheetCellDAO b1 = new SpreadSheetCellDAO("test2","","","B1","Sheet1");
+	SpreadSheetCellDAO c1 = new SpreadSheetCellDAO("test3","","","C1","Sheet1");
+	// empty row => nothing todo
+	// one row numbers (1,2,3)
+	SpreadSheetCellDAO a3 = new SpreadSheetCellDAO("","","1","A3","Sheet1");
+	SpreadSheetCellDAO b3 = new SpreadSheetCellDAO("","","2","B3","Sheet1");
+	SpreadSheetCellDAO c3 = new SpreadSheetCellDAO("","","3","C3","Sheet1");
+	// one row formulas (=A3+B3)
+	SpreadSheetCellDAO a4 = new SpreadSheetCellDAO("","","A3+B3","A4","Sheet1");
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013singlesheettestoutlowfootprint";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint
+	job.set("hadoopoffice.write.lowFootprint", "true");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new Excel format, anyway default, but here for illustrative purposes
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	writer.write(null,a1);
+	writer.write(null,b1);
+	writer.write(null,c1);
+	writer.write(null,a3);
+	writer.write(null,b3);
+	writer.write(null,c3);
+	writer.write(null,a4);
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A1\"", "["+fileName+".xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"", "test3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 2 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 3 with 3 columns", 3,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == \"2\"", "2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 3 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 4 with 1 column", 1,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+    }
+
+    @Test
+    public void writeExcelOutputFormatExcel2013SingleSheetEncryptedPositiveLowFootprint() throws IOException {
+	// one row string and three columns ("test1","test2","test3")
+	// (String formattedValue, String comment, String formula, String address,String sheetName)
+	SpreadSheetCellDAO a1 = new SpreadSheetCellDAO("test1","","","A1","Sheet1");
+	SpreadSheetCellDAO b1 = new SpreadSheetCellDAO("test2","","","B1","Sheet1");
+	SpreadSheetCellDAO c1 = new SpreadSheetCellDAO("test3","","","C1","Sheet1");
+	// empty row => nothing todo
+	// one row numbers (1,2,3)
+	SpreadSheetCellDAO a3 = new SpreadSheetCellDAO("","","1","A3","Sheet1");
+	SpreadSheetCellDAO b3 = new SpreadSheetCellDAO("","","2","B3","Sheet1");
+	SpreadSheetCellDAO c3 = new SpreadSheetCellDAO("","","3","C3","Sheet1");
+	// one row formulas (=A3+B3)
+	SpreadSheetCellDAO a4 = new SpreadSheetCellDAO("","","A3+B3","A4","Sheet1");
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013singlesheettestoutencryptedpositivelowfootprint";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+
+	// low footprint
+	job.set("hadoopoffice.write.lowFootprint", "true");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+	// security
+	// for the new Excel format you need to decide on your own which algorithms are secure
+	job.set("hadoopoffice.write.security.crypt.encrypt.mode","agile");
+	job.set("hadoopoffice.write.security.crypt.encrypt.algorithm","aes256");
+	job.set("hadoopoffice.write.security.crypt.chain.mode","cbc");
+	job.set("hadoopoffice.write.security.crypt.hash.algorithm","sha512");
+	job.set("hadoopoffice.write.security.crypt.password","test");
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	writer.write(null,a1);
+	writer.write(null,b1);
+	writer.write(null,c1);
+	writer.write(null,a3);
+	writer.write(null,b3);
+	writer.write(null,c3);
+	writer.write(null,a4);
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// you just need to provide the password to read encrypted data
+	job.set("hadoopoffice.read.security.crypt.password","test");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A1\"", "["+fileName+".xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"", "test3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 2 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 3 with 3 columns", 3,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == \"2\"", "2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 3 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 4 with 1 column", 1,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+    }
+
+    @Test
+    public void writeExcelOutputFormatExcel2013MultiSheetEncryptedLowFootprintStreaming() throws IOException {
+	// cells are written in the order of the file
+	// (String formattedValue, String comment, String formula, String address,String sheetName)
+	SpreadSheetCellDAO a1 = new SpreadSheetCellDAO("test1","","","A1","Sheet1");
+	SpreadSheetCellDAO b1 = new SpreadSheetCellDAO("test2","","","B1","Sheet1");
+	SpreadSheetCellDAO c1 = new SpreadSheetCellDAO(" test3 ","","","C1","Sheet1");
+	// empty row => nothing todo
+	// one row numbers (1,2,3)
+	SpreadSheetCellDAO a3 = new SpreadSheetCellDAO("","","1","A3","Sheet1");
+	SpreadSheetCellDAO b3 = new SpreadSheetCellDAO("","","2","B3","Sheet1");
+	SpreadSheetCellDAO c3 = new SpreadSheetCellDAO("","","3","C3","Sheet1");
+	// one row formulas (=A3+B3)
+	SpreadSheetCellDAO a4 = new SpreadSheetCellDAO("","","A3+B3","A4","Sheet1");
+	// second sheet with characters that need to be escaped
+	SpreadSheetCellDAO sheet2b2 = new SpreadSheetCellDAO("<test4> & \"test5\"","","","B2","Sheet2");
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013multisheettestoutencryptedlowfootprintstreaming";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint streaming
+	job.set("hadoopoffice.write.lowFootprint", "true");
+	job.set("hadoopoffice.write.lowFootprint.streaming", "true");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+	// security
+	job.set("hadoopoffice.write.security.crypt.encrypt.mode","agile");
+	job.set("hadoopoffice.write.security.crypt.encrypt.algorithm","aes256");
+	job.set("hadoopoffice.write.security.crypt.chain.mode","cbc");
+	job.set("hadoopoffice.write.security.crypt.hash.algorithm","sha512");
+	job.set("hadoopoffice.write.security.crypt.password","test");
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	writer.write(null,a1);
+	writer.write(null,b1);
+	writer.write(null,c1);
+	writer.write(null,a3);
+	writer.write(null,b3);
+	writer.write(null,c3);
+	writer.write(null,a4);
+	writer.write(null,sheet2b2);
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// you just need to provide the password to read encrypted data
+	job.set("hadoopoffice.read.security.crypt.password","test");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A1\"", "["+fileName+".xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 3 == \" test3 \"", " test3 ", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 2 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 3 with 3 columns", 3,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == \"2\"", "2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 3 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 4 with 1 column", 1,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 with formula A3+B3", "A3+B3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormula());
+	assertTrue("Input Split for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet2!A1\"", "["+fileName+".xlsx]Sheet2!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contain row 5 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 6 with 2 columns", 2,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 6 with cell 2 == \"<test4> & \"test5\"\"", "<test4> & \"test5\"", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+    }
+
+    @Test
+    public void writeExcelOutputFormatExcel2013SingleSheetLowFootprintStreamingUnencrypted() throws IOException {
+	// 2000 cells in 200 rows, so that the zip file is larger than the buffers of the streams
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013singlesheettestoutlowfootprintstreamingunencrypted";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint streaming without encryption
+	job.set("hadoopoffice.write.lowFootprint", "true");
+	job.set("hadoopoffice.write.lowFootprint.streaming", "true");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	for (int i=0;i<2000;i++) {
+		writer.write(null,new SpreadSheetCellDAO(String.valueOf(i*7919L),"","",String.valueOf((char)('A'+i%10))+(i/10+1),"Sheet1"));
+	}
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	for (int i=0;i<200;i++) {
+		assertTrue("Input Split for Excel file contains row "+(i+1), reader.next(spreadSheetKey,spreadSheetValue));
+		assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A"+(i+1)+"\"", "["+fileName+".xlsx]Sheet1!A"+(i+1), spreadSheetKey.toString());
+		assertEquals("Input Split for Excel file contains row "+(i+1)+" with 10 columns", 10, spreadSheetValue.get().length);
+		assertEquals("Input Split for Excel file contains row "+(i+1)+" with cell 10 == \""+((i*10+9)*7919L)+"\"", String.valueOf((i*10+9)*7919L), ((SpreadSheetCellDAO)spreadSheetValue.get()[9]).getFormattedValue());
+	}
+	assertFalse("Input Split for Excel file contains no further row", reader.next(spreadSheetKey,spreadSheetValue));
+    }
+
+    @Test
+    public void writeExcelOutputFormatExcel2013SingleSheetLowFootprintStreamingLineBreaks() throws IOException {
+	// (String formattedValue, String comment, String formula, String address,String sheetName)
+	SpreadSheetCellDAO a1 = new SpreadSheetCellDAO("test1\r\ntest2","","","A1","Sheet1");
+	SpreadSheetCellDAO b1 = new SpreadSheetCellDAO("test3\rtest4","","","B1","Sheet1");
+	SpreadSheetCellDAO c1 = new SpreadSheetCellDAO("test5\ntest6","","","C1","Sheet1");
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013singlesheettestoutlowfootprintstreaminglinebreaks";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint streaming without encryption
+	job.set("hadoopoffice.write.lowFootprint", "true");
+	job.set("hadoopoffice.write.lowFootprint.streaming", "true");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	writer.write(null,a1);
+	writer.write(null,b1);
+	writer.write(null,c1);
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\\r\\ntest2\"", "test1\r\ntest2", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test3\\rtest4\"", "test3\rtest4", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test5\\ntest6\"", "test5\ntest6", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further row", reader.next(spreadSheetKey,spreadSheetValue));
+    }
+
+    @Test
+    public void writeExcelOutputFormatExcel2013MultiSheetEncryptedLowFootprintUnsorted() throws IOException {
+	// cells are written in any order
+	// (String formattedValue, String comment, String formula, String address,String sheetName)
+	SpreadSheetCellDAO a1 = new SpreadSheetCellDAO("test1","","","A1","Sheet1");
+	SpreadSheetCellDAO b1 = new SpreadSheetCellDAO("test2","","","B1","Sheet1");
+	SpreadSheetCellDAO c1 = new SpreadSheetCellDAO(" test3 ","","","C1","Sheet1");
+	// empty row => nothing todo
+	// one row numbers (1,2,3)
+	SpreadSheetCellDAO a3 = new SpreadSheetCellDAO("","","1","A3","Sheet1");
+	SpreadSheetCellDAO b3 = new SpreadSheetCellDAO("","","2","B3","Sheet1");
+	SpreadSheetCellDAO c3 = new SpreadSheetCellDAO("","","3","C3","Sheet1");
+	// one row formulas (=A3+B3)
+	SpreadSheetCellDAO a4 = new SpreadSheetCellDAO("","","A3+B3","A4","Sheet1");
+	// second sheet with characters that need to be escaped
+	SpreadSheetCellDAO sheet2b2 = new SpreadSheetCellDAO("<test4> & \"test5\"","","","B2","Sheet2");
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013multisheettestoutencryptedlowfootprintunsorted";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// low footprint with cells sorted in temporary files (at most two cells in memory)
+	job.set("hadoopoffice.write.lowFootprint", "true");
+	job.set("hadoopoffice.write.lowFootprint.sort", "true");
+	job.set("hadoopoffice.write.lowFootprint.sort.cachecells", "2");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+	// security
+	job.set("hadoopoffice.write.security.crypt.encrypt.mode","agile");
+	job.set("hadoopoffice.write.security.crypt.encrypt.algorithm","aes256");
+	job.set("hadoopoffice.write.security.crypt.chain.mode","cbc");
+	job.set("hadoopoffice.write.security.crypt.hash.algorithm","sha512");
+	job.set("hadoopoffice.write.security.crypt.password","test");
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	writer.write(null,a1);
+	writer.write(null,sheet2b2);
+	writer.write(null,c3);
+	writer.write(null,a4);
+	writer.write(null,b3);
+	writer.write(null,c1);
+	writer.write(null,a3);
+	writer.write(null,b1);
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// you just need to provide the password to read encrypted data
+	job.set("hadoopoffice.read.security.crypt.password","test");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A1\"", "["+fileName+".xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 3 == \" test3 \"", " test3 ", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 2 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 3 with 3 columns", 3,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == \"2\"", "2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 3 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 4 with 1 column", 1,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 with formula A3+B3", "A3+B3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormula());
+	assertTrue("Input Split for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet2!A1\"", "["+fileName+".xlsx]Sheet2!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contain row 5 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 6 with 2 columns", 2,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 6 with cell 2 == \"<test4> & \"test5\"\"", "<test4> & \"test5\"", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+    }
+
+    @Test
+    public void writeExcelOutputFormatExcel2013SingleSheetConcurrent() throws IOException, InterruptedException {
+	// several threads write cells at the same time
+	final int numberOfThreads=4;
+	final int rowsPerThread=25;
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013singlesheettestoutconcurrent";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// cells are collected per thread and handed over in batches of 8 cells
+	job.set("hadoopoffice.write.concurrent", "true");
+	job.set("hadoopoffice.write.concurrent.batchcells", "8");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	final RecordWriter<NullWritable,SpreadSheetCellDAO> concurrentWriter=writer;
+	final IOException[] errors=new IOException[numberOfThreads];
+	Thread[] threads=new Thread[numberOfThreads];
+	for (int t=0;t<numberOfThreads;t++) {
+		final int threadNum=t;
+		threads[t]=new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for (int i=0;i<rowsPerThread;i++) {
+						int rowNum=threadNum*rowsPerThread+i+1;
+						concurrentWriter.write(null,new SpreadSheetCellDAO(String.valueOf(rowNum),"","","A"+rowNum,"Sheet1"));
+						concurrentWriter.write(null,new SpreadSheetCellDAO("thread"+threadNum,"","","B"+rowNum,"Sheet1"));
+					}
+				} catch (IOException e) {
+					errors[threadNum]=e;
+				}
+			}
+		});
+		threads[t].start();
+	}
+	for (int t=0;t<numberOfThreads;t++) {
+		threads[t].join();
+		assertNull("Thread "+t+" has written all cells", errors[t]);
+	}
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	for (int i=1;i<=numberOfThreads*rowsPerThread;i++) {
+		assertTrue("Input Split for Excel file contains row "+i, reader.next(spreadSheetKey,spreadSheetValue));
+		assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A"+i+"\"", "["+fileName+".xlsx]Sheet1!A"+i, spreadSheetKey.toString());
+		assertEquals("Input Split for Excel file contains row "+i+" with 2 columns", 2, spreadSheetValue.get().length);
+		assertEquals("Input Split for Excel file contains row "+i+" with cell 1 == \""+i+"\"", String.valueOf(i), ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+		assertEquals("Input Split for Excel file contains row "+i+" with cell 2 == \"thread"+((i-1)/rowsPerThread)+"\"", "thread"+((i-1)/rowsPerThread), ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	}
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+    }
+
+    @Test
+    public void writeExcelOutputFormatExcel2013MultiSheetPartitionedRollover() throws IOException {
+	// five rows in the first sheet and one row in the second sheet
+	// (String formattedValue, String comment, String formula, String address,String sheetName)
+	SpreadSheetCellDAO[] cells = new SpreadSheetCellDAO[] {
+		new SpreadSheetCellDAO("1","","","A1","Sheet1"),
+		new SpreadSheetCellDAO("row1","","","B1","Sheet1"),
+		new SpreadSheetCellDAO("2","","","A2","Sheet1"),
+		new SpreadSheetCellDAO("3","","","A3","Sheet1"),
+		new SpreadSheetCellDAO("row3","","","B3","Sheet1"),
+		new SpreadSheetCellDAO("4","","","A4","Sheet1"),
+		new SpreadSheetCellDAO("5","","","A5","Sheet1"),
+		new SpreadSheetCellDAO("test","","","A1","Sheet2")
+	};
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013multisheettestoutpartitioned";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// one file per sheet and a new file after two rows
+	job.set("hadoopoffice.write.partition.sheet", "true");
+	job.set("hadoopoffice.write.rollover.rows", "2");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	for (int i=0;i<cells.length;i++) {
+		writer.write(null,cells[i]);
+	}
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	String outputDir=tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt;
+	Path inputFile = new Path(outputDir+File.separator+fileName+"-Sheet1-1.xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	// the second file of the first sheet starts with row 3, which is renumbered to row 1
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+"-Sheet1-1.xlsx]Sheet1!A1\"", "["+fileName+"-Sheet1-1.xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 2 columns", 2, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"row3\"", "row3", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 2 with 1 column", 1, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"4\"", "4", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	// the other files of the task
+	assertTrue("First file of the first sheet exists", new File(outputDir,fileName+"-Sheet1.xlsx").exists());
+	assertTrue("Third file of the first sheet exists", new File(outputDir,fileName+"-Sheet1-2.xlsx").exists());
+	assertTrue("File of the second sheet exists", new File(outputDir,fileName+"-Sheet2.xlsx").exists());
+	assertFalse("File of the task is not written", new File(outputDir,fileName+".xlsx").exists());
+    }
+
+    @Test
+    public void writeExcelOutputFormatExcel2013MultiSheetPartitionedSameFileName() throws IOException {
+	// both sheet names lead to the same file name
+	// (String formattedValue, String comment, String formula, String address,String sheetName)
+	SpreadSheetCellDAO sheet1a1 = new SpreadSheetCellDAO("test1","","","A1","Sales 1");
+	SpreadSheetCellDAO sheet2a1 = new SpreadSheetCellDAO("test2","","","A1","Sales_1");
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013multisheettestoutpartitionedsamefilename";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// one file per sheet
+	job.set("hadoopoffice.write.partition.sheet", "true");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	writer.write(null,sheet1a1);
+	writer.write(null,sheet2a1);
+	writer.close(reporter);
+	// try to read both files again
+	String outputDir=tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt;
+	String[] partFileNames = new String[] {fileName+"-Sales_1.xlsx", fileName+"-Sales_1_2.xlsx"};
+	String[] sheetNames = new String[] {"Sales 1", "Sales_1"};
+	for (int i=0;i<partFileNames.length;i++) {
+		job = new JobConf(defaultConf);
+		Path inputFile = new Path(outputDir+File.separator+partFileNames[i]);
+    		FileInputFormat.setInputPaths(job, inputFile);
+		// set locale to the one of the test data
+		job.set("hadoopoffice.read.locale.bcp47","de");
+   		ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    		inputFormat.configure(job);
+    		InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    		assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    		RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+		assertNotNull("Format returned  null RecordReader", reader);
+		Text spreadSheetKey = new Text();	
+		ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+		assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+		assertEquals("Input Split for Excel file has keyname == \"["+partFileNames[i]+"]"+sheetNames[i]+"!A1\"", "["+partFileNames[i]+"]"+sheetNames[i]+"!A1", spreadSheetKey.toString());
+		assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test"+(i+1)+"\"", "test"+(i+1), ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+		assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+		reader.close();
+	}
+    }
+
+    @Test
+    public void writeExcelOutputFormatExcel2013MultiSheetMemoryBudgetFallback() throws IOException {
+	// cells are written in any order, also after the writer has continued in low footprint mode
+	// (String formattedValue, String comment, String formula, String address,String sheetName)
+	SpreadSheetCellDAO a1 = new SpreadSheetCellDAO("test1","","","A1","Sheet1");
+	SpreadSheetCellDAO b1 = new SpreadSheetCellDAO("test2","","","B1","Sheet1");
+	SpreadSheetCellDAO c1 = new SpreadSheetCellDAO(" test3 ","","","C1","Sheet1");
+	// empty row => nothing todo
+	// one row numbers (1,2,3)
+	SpreadSheetCellDAO a3 = new SpreadSheetCellDAO("","","1","A3","Sheet1");
+	SpreadSheetCellDAO b3 = new SpreadSheetCellDAO("","","2","B3","Sheet1");
+	SpreadSheetCellDAO c3 = new SpreadSheetCellDAO("","","3","C3","Sheet1");
+	// one row formulas (=A3+B3)
+	SpreadSheetCellDAO a4 = new SpreadSheetCellDAO("","","A3+B3","A4","Sheet1");
+	// second sheet with characters that need to be escaped
+	SpreadSheetCellDAO sheet2b2 = new SpreadSheetCellDAO("<test4> & \"test5\"","","","B2","Sheet2");
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013multisheettestoutmemorybudget";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// standard writer with a small memory budget, the second sheet exceeds it
+	job.set("hadoopoffice.write.memory.budget", "30000");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	writer.write(null,a1);
+	writer.write(null,sheet2b2);
+	writer.write(null,c3);
+	writer.write(null,a4);
+	writer.write(null,b3);
+	writer.write(null,c1);
+	writer.write(null,a3);
+	writer.write(null,b1);
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A1\"", "["+fileName+".xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 3 == \" test3 \"", " test3 ", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 2 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 3 with 3 columns", 3,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == \"2\"", "2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 3 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 4 with 1 column", 1,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 with formula A3+B3", "A3+B3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormula());
+	assertTrue("Input Split for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet2!A1\"", "["+fileName+".xlsx]Sheet2!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contain row 5 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 6 with 2 columns", 2,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 6 with cell 2 == \"<test4> & \"test5\"\"", "<test4> & \"test5\"", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+    }
+
+    @Test
+    public void writeExcelOutputFormatExcel2013MultiSheetEncryptedParallelDeflate() throws IOException {
+	// (String formattedValue, String comment, String formula, String address,String sheetName)
+	SpreadSheetCellDAO a1 = new SpreadSheetCellDAO("test1","","","A1","Sheet1");
+	SpreadSheetCellDAO b1 = new SpreadSheetCellDAO("test2","","","B1","Sheet1");
+	SpreadSheetCellDAO c1 = new SpreadSheetCellDAO(" test3 ","","","C1","Sheet1");
+	// empty row => nothing todo
+	// one row numbers (1,2,3)
+	SpreadSheetCellDAO a3 = new SpreadSheetCellDAO("","","1","A3","Sheet1");
+	SpreadSheetCellDAO b3 = new SpreadSheetCellDAO("","","2","B3","Sheet1");
+	SpreadSheetCellDAO c3 = new SpreadSheetCellDAO("","","3","C3","Sheet1");
+	// one row formulas (=A3+B3)
+	SpreadSheetCellDAO a4 = new SpreadSheetCellDAO("","","A3+B3","A4","Sheet1");
+	// second sheet with characters that need to be escaped
+	SpreadSheetCellDAO sheet2b2 = new SpreadSheetCellDAO("<test4> & \"test5\"","","","B2","Sheet2");
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013multisheettestoutencryptedparalleldeflate";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// compress the parts of the file with several threads
+	job.set("hadoopoffice.write.parallelDeflate", "true");
+	job.set("hadoopoffice.write.parallelDeflate.threads", "2");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+	// security
+	job.set("hadoopoffice.write.security.crypt.encrypt.mode","agile");
+	job.set("hadoopoffice.write.security.crypt.encrypt.algorithm","aes256");
+	job.set("hadoopoffice.write.security.crypt.chain.mode","cbc");
+	job.set("hadoopoffice.write.security.crypt.hash.algorithm","sha512");
+	job.set("hadoopoffice.write.security.crypt.password","test");
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	writer.write(null,a1);
+	writer.write(null,sheet2b2);
+	writer.write(null,c3);
+	writer.write(null,a4);
+	writer.write(null,b3);
+	writer.write(null,c1);
+	writer.write(null,a3);
+	writer.write(null,b1);
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// you just need to provide the password to read encrypted data
+	job.set("hadoopoffice.read.security.crypt.password","test");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
     	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
-    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
 	assertNotNull("Format returned  null RecordReader", reader);
 	Text spreadSheetKey = new Text();	
 	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
-	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
-	assertEquals("Input Split for Excel file has keyname == \"[excel2013testemptyrows.xlsx]Sheet1!A1\"", "[excel2013testemptyrows.xlsx]Sheet1!A1", spreadSheetKey.toString());
-	assertEquals("Input Split for Excel file contains row 1 with 0 columns", 0, spreadSheetValue.get().length);
-	
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A1\"", "["+fileName+".xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 3 == \" test3 \"", " test3 ", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
 	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
-	assertEquals("Input Split for Excel file contains row 2 with 2 columns", 2, spreadSheetValue.get().length);
-	assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"4\"", "4", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());	
-		assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());	
-	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));	
-	assertEquals("Input Split for Excel file contains row 3 with 0 columns", 0, spreadSheetValue.get().length);
-	
+	assertEquals("Input Split for Excel file contain row 2 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 3 with 3 columns", 3,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == \"2\"", "2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 3 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
 	assertTrue("Input Split for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
-	assertEquals("Input Split for Excel file contains row 4 with 1 column", 1, spreadSheetValue.get().length);
-	assertEquals("Input Split for Excel file contains row 4 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());	
+	assertEquals("Input Split for Excel file contain row 4 with 1 column", 1,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 with formula A3+B3", "A3+B3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormula());
 	assertTrue("Input Split for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
-	assertEquals("Input Split for Excel file contains row 5 with 3 columns", 3, spreadSheetValue.get().length);
-	assertEquals("Input Split for Excel file contains row 5 with cell 1 == \"2\"", "2", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());			 
-	assertEquals("Input Split for Excel file contains row 5 with cell 2== \"6\"", "6", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
-	assertEquals("Input Split for Excel file contains row 5 with cell 3== \"10\"", "10", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
-	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));	
-	assertEquals("Input Split for Excel file contains row 6 with 3 columns", 3, spreadSheetValue.get().length);
-	assertEquals("Input Split for Excel file contains row 6 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());		 
-	assertEquals("Input Split for Excel file contains row 6 with cell 2== \"4\"", "4", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
-	assertEquals("Input Split for Excel file contains row 6 with cell 3== \"10\"", "10", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet2!A1\"", "["+fileName+".xlsx]Sheet2!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contain row 5 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 6 with 2 columns", 2,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 6 with cell 2 == \"<test4> & \"test5\"\"", "<test4> & \"test5\"", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
     }
-    
+
     @Test
-    public void readExcelInputFormatExcel2003EmptyRowsLowFootprint() throws IOException {
-    	JobConf job = new JobConf(defaultConf);
-    	ClassLoader classLoader = getClass().getClassLoader();
-    	String fileName="excel2003testemptyrows.xls";
-    	String fileNameSpreadSheet=classLoader.getResource(fileName).getFile();	
-    	Path file = new Path(fileNameSpreadSheet);
-    	FileInputFormat.setInputPaths(job, file);
+    public void writeExcelOutputFormatExcel2013SingleSheetParallelDeflateLargeSheet() throws IOException {
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013singlesheettestoutparalleldeflatelarge";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
 	// set locale to the one of the test data
 	job.set("hadoopoffice.read.locale.bcp47","de");
-
-	// low footprint
-	job.set("hadoopoffice.read.lowFootprint", "true");
-   	ExcelFileInputFormat format = new ExcelFileInputFormat();
-    	format.configure(job);
-    	InputSplit[] inputSplits = format.getSplits(job,1);
+	// compress the parts of the file with several threads
+	job.set("hadoopoffice.write.parallelDeflate", "true");
+	job.set("hadoopoffice.write.parallelDeflate.threads", "2");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	// the sheet is larger than one block of the parallel compression
+	int numberOfRows=30000;
+	for (int i=1;i<=numberOfRows;i++) {
+		writer.write(null,new SpreadSheetCellDAO("row"+i,"","","A"+i,"Sheet1"));
+		writer.write(null,new SpreadSheetCellDAO("","",String.valueOf(i),"B"+i,"Sheet1"));
+	}
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
     	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
-    	RecordReader<Text, ArrayWritable> reader = format.getRecordReader(inputSplits[0], job, reporter);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
 	assertNotNull("Format returned  null RecordReader", reader);
 	Text spreadSheetKey = new Text();	
 	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
-	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
-	assertEquals("Input Split for Excel file has keyname == \"[excel2003testemptyrows.xls]Sheet1!A1\"", "[excel2003testemptyrows.xls]Sheet1!A1", spreadSheetKey.toString());
-	assertEquals("Input Split for Excel file contains row 1 with 0 columns", 0, spreadSheetValue.get().length);
-	
-	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
-	assertEquals("Input Split for Excel file contains row 2 with 2 columns", 2, spreadSheetValue.get().length);
-	assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"4\"", "4", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());	
-		assertEquals("Input Split for Excel file contains row 2 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());	
-	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));	
-	assertEquals("Input Split for Excel file contains row 3 with 0 columns", 0, spreadSheetValue.get().length);
-	
-	assertTrue("Input Split for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
-	assertEquals("Input Split for Excel file contains row 4 with 1 column", 1, spreadSheetValue.get().length);
-	assertEquals("Input Split for Excel file contains row 4 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());	
-	assertTrue("Input Split for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
-	assertEquals("Input Split for Excel file contains row 5 with 3 columns", 3, spreadSheetValue.get().length);
-	assertEquals("Input Split for Excel file contains row 5 with cell 1 == \"2\"", "2", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());			 
-	assertEquals("Input Split for Excel file contains row 5 with cell 2== \"6\"", "6", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
-	assertEquals("Input Split for Excel file contains row 5 with cell 3== \"10\"", "10", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
-	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));	
-	assertEquals("Input Split for Excel file contains row 6 with 3 columns", 3, spreadSheetValue.get().length);
-	assertEquals("Input Split for Excel file contains row 6 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());		 
-	assertEquals("Input Split for Excel file contains row 6 with cell 2== \"4\"", "4", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
-	assertEquals("Input Split for Excel file contains row 6 with cell 3== \"10\"", "10", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	for (int i=1;i<=numberOfRows;i++) {
+		assertTrue("Input Split for Excel file contains row "+i, reader.next(spreadSheetKey,spreadSheetValue));
+		assertEquals("Input Split for Excel file contains row "+i+" with cell 1 == \"row"+i+"\"", "row"+i, ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+		assertEquals("Input Split for Excel file contains row "+i+" with cell 2 == \""+i+"\"", String.valueOf(i), ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	}
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A"+numberOfRows+"\"", "["+fileName+".xlsx]Sheet1!A"+numberOfRows, spreadSheetKey.toString());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
     }
-    
+
     @Test
-    public void writeExcelOutputFormatExcel2013SingleSheetLowFootPrint() throws IOException {
-	// one row string and three columns ("test1","test2","test3")
+    public void writeExcelOutputFormatExcel2013MultiSheetEncryptedNoStreamingEncryption() throws IOException {
 	// (String formattedValue, String comment, String formula, String address,String sheetName)
 	SpreadSheetCellDAO a1 = new SpreadSheetCellDAO("test1","","","A1","Sheet1");
 	SpreadSheetCellDAO b1 = new SpreadSheetCellDAO("test2","","","B1","Sheet1");
-	SpreadSheetCellDAO c1 = new SpreadSheetCellDAO("test3","","","C1","Sheet1");
+	SpreadSheetCellDAO c1 = new SpreadSheetCellDAO(" test3 ","","","C1","Sheet1");
 	// empty row => nothing todo
 	// one row numbers (1,2,3)
 	SpreadSheetCellDAO a3 = new SpreadSheetCellDAO("","","1","A3","Sheet1");
@@ -2988,9 +5053,11 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
 	SpreadSheetCellDAO c3 = new SpreadSheetCellDAO("","","3","C3","Sheet1");
 	// one row formulas (=A3+B3)
 	SpreadSheetCellDAO a4 = new SpreadSheetCellDAO("","","A3+B3","A4","Sheet1");
+	// second sheet with characters that need to be escaped
+	SpreadSheetCellDAO sheet2b2 = new SpreadSheetCellDAO("<test4> & \"test5\"","","","B2","Sheet2");
 	// write
 	JobConf job = new JobConf(defaultConf);
-    	String fileName="excel2013singlesheettestoutlowfootprint";
+    	String fileName="excel2013multisheettestoutencryptednostreamingencryption";
     	String tmpDir=tmpPath.toString();	
     	Path outputPath = new Path(tmpDir);
     	FileOutputFormat.setOutputPath(job, outputPath);
@@ -2998,19 +5065,26 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
 	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
 	// set locale to the one of the test data
 	job.set("hadoopoffice.read.locale.bcp47","de");
-	// low footprint
-	job.set("hadoopoffice.write.lowFootprint", "true");
-	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new Excel format, anyway default, but here for illustrative purposes
+	// encryption of POI instead of the streaming encryption
+	job.set("hadoopoffice.write.security.crypt.streaming", "false");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+	// security
+	job.set("hadoopoffice.write.security.crypt.encrypt.mode","agile");
+	job.set("hadoopoffice.write.security.crypt.encrypt.algorithm","aes256");
+	job.set("hadoopoffice.write.security.crypt.chain.mode","cbc");
+	job.set("hadoopoffice.write.security.crypt.hash.algorithm","sha512");
+	job.set("hadoopoffice.write.security.crypt.password","test");
    	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
     	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
 	assertNotNull("Format returned  null RecordWriter", writer);
 	writer.write(null,a1);
-	writer.write(null,b1);
-	writer.write(null,c1);
-	writer.write(null,a3);
-	writer.write(null,b3);
+	writer.write(null,sheet2b2);
 	writer.write(null,c3);
 	writer.write(null,a4);
+	writer.write(null,b3);
+	writer.write(null,c1);
+	writer.write(null,a3);
+	writer.write(null,b1);
 	writer.close(reporter);
 	// try to read it again
 	job = new JobConf(defaultConf);
@@ -3018,6 +5092,8 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
     	FileInputFormat.setInputPaths(job, inputFile);
 	// set locale to the one of the test data
 	job.set("hadoopoffice.read.locale.bcp47","de");
+	// you just need to provide the password to read encrypted data
+	job.set("hadoopoffice.read.security.crypt.password","test");
    	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
     	inputFormat.configure(job);
     	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
@@ -3026,12 +5102,12 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
 	assertNotNull("Format returned  null RecordReader", reader);
 	Text spreadSheetKey = new Text();	
 	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
-	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
 	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A1\"", "["+fileName+".xlsx]Sheet1!A1", spreadSheetKey.toString());
 	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
 	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
 	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
-	assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"", "test3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 3 == \" test3 \"", " test3 ", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
 	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
 	assertEquals("Input Split for Excel file contain row 2 and is empty", 0,spreadSheetValue.get().length);	
 	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
@@ -3041,16 +5117,108 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
 	assertEquals("Input Split for Excel file contains row 3 with cell 3 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
 	assertTrue("Input Split for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
 	assertEquals("Input Split for Excel file contain row 4 with 1 column", 1,spreadSheetValue.get().length);	
-	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 with formula A3+B3", "A3+B3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormula());
+	assertTrue("Input Split for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet2!A1\"", "["+fileName+".xlsx]Sheet2!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contain row 5 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 6 with 2 columns", 2,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 6 with cell 2 == \"<test4> & \"test5\"\"", "<test4> & \"test5\"", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
     }
 
     @Test
-    public void writeExcelOutputFormatExcel2013SingleSheetEncryptedPositiveLowFootprint() throws IOException {
-	// one row string and three columns ("test1","test2","test3")
+    public void writeExcelOutputFormatExcel2013MultiSheetEncryptedLowFootprintSegments() throws IOException {
 	// (String formattedValue, String comment, String formula, String address,String sheetName)
 	SpreadSheetCellDAO a1 = new SpreadSheetCellDAO("test1","","","A1","Sheet1");
 	SpreadSheetCellDAO b1 = new SpreadSheetCellDAO("test2","","","B1","Sheet1");
-	SpreadSheetCellDAO c1 = new SpreadSheetCellDAO("test3","","","C1","Sheet1");
+	SpreadSheetCellDAO c1 = new SpreadSheetCellDAO(" test3 ","","","C1","Sheet1");
+	// empty row => nothing todo
+	// one row numbers (1,2,3) as values, because formulas are not evaluated in low footprint mode
+	SpreadSheetCellDAO a3 = new SpreadSheetCellDAO("1","","","A3","Sheet1");
+	SpreadSheetCellDAO b3 = new SpreadSheetCellDAO("2","","","B3","Sheet1");
+	SpreadSheetCellDAO c3 = new SpreadSheetCellDAO("3","","","C3","Sheet1");
+	// second sheet with characters that need to be escaped
+	SpreadSheetCellDAO sheet2b2 = new SpreadSheetCellDAO("<test4> & \"test5\"","","","B2","Sheet2");
+	// write
+	JobConf job = new JobConf(defaultConf);
+    	String fileName="excel2013multisheettestoutencryptedlowfootprintsegments";
+    	String tmpDir=tmpPath.toString();	
+    	Path outputPath = new Path(tmpDir);
+    	FileOutputFormat.setOutputPath(job, outputPath);
+	// set generic outputformat settings
+	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
+	// security
+	job.set("hadoopoffice.write.security.crypt.encrypt.mode","agile");
+	job.set("hadoopoffice.write.security.crypt.encrypt.algorithm","aes256");
+	job.set("hadoopoffice.write.security.crypt.chain.mode","cbc");
+	job.set("hadoopoffice.write.security.crypt.hash.algorithm","sha512");
+	job.set("hadoopoffice.write.security.crypt.password","test");
+   	ExcelFileOutputFormat outputFormat = new ExcelFileOutputFormat();
+    	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
+	assertNotNull("Format returned  null RecordWriter", writer);
+	writer.write(null,a1);
+	writer.write(null,sheet2b2);
+	writer.write(null,c3);
+	writer.write(null,b3);
+	writer.write(null,c1);
+	writer.write(null,a3);
+	writer.write(null,b1);
+	writer.close(reporter);
+	// try to read it again
+	job = new JobConf(defaultConf);
+	Path inputFile = new Path(tmpDir+File.separator+"_temporary"+File.separator+"0"+File.separator+"_temporary"+File.separator+attempt+File.separator+fileName+".xlsx");
+    	FileInputFormat.setInputPaths(job, inputFile);
+	// set locale to the one of the test data
+	job.set("hadoopoffice.read.locale.bcp47","de");
+	// you just need to provide the password to read encrypted data
+	job.set("hadoopoffice.read.security.crypt.password","test");
+	// decrypt the segments of the encrypted package directly from the file, even if the pipeline is enabled
+	job.set("hadoopoffice.read.lowFootprint", "true");
+	job.set("hadoopoffice.read.pipeline", "true");
+   	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
+    	inputFormat.configure(job);
+    	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
+    	assertEquals("Only one split generated for Excel file", 1, inputSplits.length);
+    	RecordReader<Text, ArrayWritable> reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertNotNull("Format returned  null RecordReader", reader);
+	Text spreadSheetKey = new Text();	
+	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A1\"", "["+fileName+".xlsx]Sheet1!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 3 == \" test3 \"", " test3 ", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 2 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 3 with 3 columns", 3,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"1\"", "1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 2 == \"2\"", "2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 3 with cell 3 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	// the second sheet follows after the empty rows
+	SpreadSheetCellDAO lastCell=null;
+	while (reader.next(spreadSheetKey,spreadSheetValue)) {
+		if (spreadSheetValue.get().length>0) {
+			lastCell=(SpreadSheetCellDAO)spreadSheetValue.get()[spreadSheetValue.get().length-1];
+		}
+	}
+	assertNotNull("Input Split for Excel file contains the second sheet", lastCell);
+	assertEquals("Input Split for Excel file contains cell B2 of the second sheet", "Sheet2", lastCell.getSheetName());
+	assertEquals("Input Split for Excel file contains cell B2 of the second sheet == \"<test4> & \"test5\"\"", "<test4> & \"test5\"", lastCell.getFormattedValue());
+    }
+
+    @Test
+    public void writeExcelOutputFormatExcel2013MultiSheetEncryptedKeyCache() throws IOException {
+	// (String formattedValue, String comment, String formula, String address,String sheetName)
+	SpreadSheetCellDAO a1 = new SpreadSheetCellDAO("test1","","","A1","Sheet1");
+	SpreadSheetCellDAO b1 = new SpreadSheetCellDAO("test2","","","B1","Sheet1");
+	SpreadSheetCellDAO c1 = new SpreadSheetCellDAO(" test3 ","","","C1","Sheet1");
 	// empty row => nothing todo
 	// one row numbers (1,2,3)
 	SpreadSheetCellDAO a3 = new SpreadSheetCellDAO("","","1","A3","Sheet1");
@@ -3058,9 +5226,11 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
 	SpreadSheetCellDAO c3 = new SpreadSheetCellDAO("","","3","C3","Sheet1");
 	// one row formulas (=A3+B3)
 	SpreadSheetCellDAO a4 = new SpreadSheetCellDAO("","","A3+B3","A4","Sheet1");
+	// second sheet with characters that need to be escaped
+	SpreadSheetCellDAO sheet2b2 = new SpreadSheetCellDAO("<test4> & \"test5\"","","","B2","Sheet2");
 	// write
 	JobConf job = new JobConf(defaultConf);
-    	String fileName="excel2013singlesheettestoutencryptedpositivelowfootprint";
+    	String fileName="excel2013multisheettestoutencryptedkeycache";
     	String tmpDir=tmpPath.toString();	
     	Path outputPath = new Path(tmpDir);
     	FileOutputFormat.setOutputPath(job, outputPath);
@@ -3068,12 +5238,8 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
 	job.set(JobContext.TASK_ATTEMPT_ID, attempt);
 	// set locale to the one of the test data
 	job.set("hadoopoffice.read.locale.bcp47","de");
-
-	// low footprint
-	job.set("hadoopoffice.write.lowFootprint", "true");
 	job.set("hadoopoffice.write.mimeType","application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"); // new excel format
 	// security
-	// for the new Excel format you need to decide on your own which algorithms are secure
 	job.set("hadoopoffice.write.security.crypt.encrypt.mode","agile");
 	job.set("hadoopoffice.write.security.crypt.encrypt.algorithm","aes256");
 	job.set("hadoopoffice.write.security.crypt.chain.mode","cbc");
@@ -3083,12 +5249,13 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
     	RecordWriter<NullWritable,SpreadSheetCellDAO> writer = outputFormat.getRecordWriter(null, job, fileName, null);
 	assertNotNull("Format returned  null RecordWriter", writer);
 	writer.write(null,a1);
-	writer.write(null,b1);
-	writer.write(null,c1);
-	writer.write(null,a3);
-	writer.write(null,b3);
+	writer.write(null,sheet2b2);
 	writer.write(null,c3);
 	writer.write(null,a4);
+	writer.write(null,b3);
+	writer.write(null,c1);
+	writer.write(null,a3);
+	writer.write(null,b1);
 	writer.close(reporter);
 	// try to read it again
 	job = new JobConf(defaultConf);
@@ -3098,6 +5265,8 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
 	job.set("hadoopoffice.read.locale.bcp47","de");
 	// you just need to provide the password to read encrypted data
 	job.set("hadoopoffice.read.security.crypt.password","test");
+	// cache the key derived from the password
+	job.set("hadoopoffice.read.security.crypt.keyCache", "true");
    	ExcelFileInputFormat inputFormat = new ExcelFileInputFormat();
     	inputFormat.configure(job);
     	InputSplit[] inputSplits = inputFormat.getSplits(job,1);
@@ -3106,12 +5275,12 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
 	assertNotNull("Format returned  null RecordReader", reader);
 	Text spreadSheetKey = new Text();	
 	ArrayWritable spreadSheetValue = new ArrayWritable(SpreadSheetCellDAO.class);
-	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));	
+	assertTrue("Input Split for Excel file contains row 1", reader.next(spreadSheetKey,spreadSheetValue));
 	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet1!A1\"", "["+fileName+".xlsx]Sheet1!A1", spreadSheetKey.toString());
 	assertEquals("Input Split for Excel file contains row 1 with 3 columns", 3, spreadSheetValue.get().length);
 	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\"", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
 	assertEquals("Input Split for Excel file contains row 1 with cell 2 == \"test2\"", "test2", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
-	assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"", "test3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 1 with cell 3 == \" test3 \"", " test3 ", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
 	assertTrue("Input Split for Excel file contains row 2", reader.next(spreadSheetKey,spreadSheetValue));
 	assertEquals("Input Split for Excel file contain row 2 and is empty", 0,spreadSheetValue.get().length);	
 	assertTrue("Input Split for Excel file contains row 3", reader.next(spreadSheetKey,spreadSheetValue));
@@ -3121,7 +5290,19 @@ assertEquals("Input Split for Excel file contains row 1 with cell 3 == \"test3\"
 	assertEquals("Input Split for Excel file contains row 3 with cell 3 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[2]).getFormattedValue());
 	assertTrue("Input Split for Excel file contains row 4", reader.next(spreadSheetKey,spreadSheetValue));
 	assertEquals("Input Split for Excel file contain row 4 with 1 column", 1,spreadSheetValue.get().length);	
-	assertEquals("Input Split for Excel file contains row 3 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 == \"3\"", "3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
+	assertEquals("Input Split for Excel file contains row 4 with cell 1 with formula A3+B3", "A3+B3", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormula());
+	assertTrue("Input Split for Excel file contains row 5", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file has keyname == \"["+fileName+".xlsx]Sheet2!A1\"", "["+fileName+".xlsx]Sheet2!A1", spreadSheetKey.toString());
+	assertEquals("Input Split for Excel file contain row 5 and is empty", 0,spreadSheetValue.get().length);	
+	assertTrue("Input Split for Excel file contains row 6", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contain row 6 with 2 columns", 2,spreadSheetValue.get().length);	
+	assertEquals("Input Split for Excel file contains row 6 with cell 2 == \"<test4> & \"test5\"\"", "<test4> & \"test5\"", ((SpreadSheetCellDAO)spreadSheetValue.get()[1]).getFormattedValue());
+	assertFalse("Input Split for Excel file contains no further rows", reader.next(spreadSheetKey,spreadSheetValue));
+	// read it again: the key derived from the password is taken from the cache
+	reader = inputFormat.getRecordReader(inputSplits[0], job, reporter);
+	assertTrue("Input Split for Excel file contains row 1 when read again", reader.next(spreadSheetKey,spreadSheetValue));
+	assertEquals("Input Split for Excel file contains row 1 with cell 1 == \"test1\" when read again", "test1", ((SpreadSheetCellDAO)spreadSheetValue.get()[0]).getFormattedValue());
     }
 
 @Test